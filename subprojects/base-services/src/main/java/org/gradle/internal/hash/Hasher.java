@@ -16,6 +16,8 @@
 
 package org.gradle.internal.hash;
 
+import java.nio.ByteBuffer;
+
 /**
  * Hasher abstraction that can be fed different kinds of primitives.
  * Inspired by the Google Guava project – https://github.com/google/guava.
@@ -23,6 +25,12 @@ package org.gradle.internal.hash;
 public interface Hasher {
     void putBytes(byte[] bytes);
     void putBytes(byte[] bytes, int off, int len);
+
+    /**
+     * Feeds the remaining bytes of the given buffer to the hasher, leaving the buffer's position at its limit.
+     */
+    void putBytes(ByteBuffer bytes);
+
     void putByte(byte value);
     void putInt(int value);
     void putLong(long value);
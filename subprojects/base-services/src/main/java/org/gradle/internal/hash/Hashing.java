@@ -43,6 +43,13 @@ public class Hashing {
         return SHA1;
     }
 
+    /**
+     * A fast non-cryptographic 128-bit hash function. Only use it for hashes that never leave the machine.
+     */
+    public static HashFunction murmur3_128() {
+        return Murmur3HashFunction.INSTANCE;
+    }
+
     private static abstract class MessageDigestHashFunction implements HashFunction {
         public static MessageDigestHashFunction of(String algorithm) {
             MessageDigest prototype;
@@ -149,6 +156,12 @@ public class Hashing {
             digest.update(bytes, off, len);
         }
 
+        @Override
+        public void putBytes(ByteBuffer bytes) {
+            checkNotDone();
+            digest.update(bytes);
+        }
+
         @Override
         public HashCode hash() {
             done = true;
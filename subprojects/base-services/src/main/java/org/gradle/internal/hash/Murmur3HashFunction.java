@@ -0,0 +1,268 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import com.google.common.base.Charsets;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The 128-bit x64 variant of MurmurHash3 with a seed of 0, producing the same hashes as Guava's {@code Hashing.murmur3_128()}.
+ *
+ * This is a fast non-cryptographic hash function. It must only be used for hashes that never leave the machine.
+ */
+class Murmur3HashFunction implements HashFunction {
+    static final HashFunction INSTANCE = new Murmur3HashFunction();
+
+    private Murmur3HashFunction() {
+    }
+
+    @Override
+    public Hasher newHasher() {
+        return new Murmur3Hasher();
+    }
+
+    @Override
+    public HashCode hashBytes(byte[] bytes) {
+        Hasher hasher = newHasher();
+        hasher.putBytes(bytes);
+        return hasher.hash();
+    }
+
+    @Override
+    public HashCode hashString(CharSequence string) {
+        Hasher hasher = newHasher();
+        hasher.putString(string);
+        return hasher.hash();
+    }
+
+    @Override
+    public String toString() {
+        return "murmur3_128";
+    }
+
+    private static class Murmur3Hasher implements Hasher {
+        private static final int BLOCK_SIZE = 16;
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        // Holds the bytes that do not fill a complete block yet
+        private final byte[] buffer = new byte[BLOCK_SIZE];
+        private int buffered;
+        private long h1;
+        private long h2;
+        private long length;
+        private boolean done;
+
+        private void checkNotDone() {
+            if (done) {
+                throw new IllegalStateException("Cannot reuse hasher");
+            }
+        }
+
+        @Override
+        public void putByte(byte value) {
+            checkNotDone();
+            buffer[buffered++] = value;
+            if (buffered == BLOCK_SIZE) {
+                processBlock(buffer, 0);
+                buffered = 0;
+            }
+        }
+
+        @Override
+        public void putBytes(byte[] bytes) {
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void putBytes(byte[] bytes, int off, int len) {
+            checkNotDone();
+            int pos = off;
+            int end = off + len;
+            if (buffered > 0) {
+                int count = Math.min(BLOCK_SIZE - buffered, len);
+                System.arraycopy(bytes, pos, buffer, buffered, count);
+                buffered += count;
+                pos += count;
+                if (buffered < BLOCK_SIZE) {
+                    return;
+                }
+                processBlock(buffer, 0);
+                buffered = 0;
+            }
+            while (end - pos >= BLOCK_SIZE) {
+                processBlock(bytes, pos);
+                pos += BLOCK_SIZE;
+            }
+            int remaining = end - pos;
+            if (remaining > 0) {
+                System.arraycopy(bytes, pos, buffer, 0, remaining);
+                buffered = remaining;
+            }
+        }
+
+        @Override
+        public void putBytes(ByteBuffer bytes) {
+            checkNotDone();
+            while (buffered > 0 && bytes.hasRemaining()) {
+                putByte(bytes.get());
+            }
+            if (bytes.remaining() >= BLOCK_SIZE) {
+                // Read complete blocks straight from the buffer, without copying them
+                ByteBuffer blocks = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+                int blockCount = blocks.remaining() / BLOCK_SIZE;
+                for (int i = 0; i < blockCount; i++) {
+                    processBlock(blocks.getLong(), blocks.getLong());
+                }
+                ((Buffer) bytes).position(bytes.position() + blockCount * BLOCK_SIZE);
+            }
+            while (bytes.hasRemaining()) {
+                putByte(bytes.get());
+            }
+        }
+
+        @Override
+        public void putInt(int value) {
+            for (int i = 0; i < 4; i++) {
+                putByte((byte) (value >>> (i * 8)));
+            }
+        }
+
+        @Override
+        public void putLong(long value) {
+            for (int i = 0; i < 8; i++) {
+                putByte((byte) (value >>> (i * 8)));
+            }
+        }
+
+        @Override
+        public void putDouble(double value) {
+            putLong(Double.doubleToRawLongBits(value));
+        }
+
+        @Override
+        public void putBoolean(boolean value) {
+            putByte((byte) (value ? 1 : 0));
+        }
+
+        @Override
+        public void putString(CharSequence value) {
+            putBytes(value.toString().getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public void putHash(HashCode hashCode) {
+            putBytes(hashCode.getBytes());
+        }
+
+        @Override
+        public HashCode hash() {
+            checkNotDone();
+            done = true;
+            processTail();
+            long length = this.length;
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+
+            byte[] bytes = new byte[BLOCK_SIZE];
+            writeLittleEndian(h1, bytes, 0);
+            writeLittleEndian(h2, bytes, 8);
+            return HashCode.fromBytesNoCopy(bytes);
+        }
+
+        private void processBlock(byte[] bytes, int off) {
+            processBlock(readLittleEndian(bytes, off), readLittleEndian(bytes, off + 8));
+        }
+
+        private void processBlock(long k1, long k2) {
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+
+            length += BLOCK_SIZE;
+        }
+
+        private void processTail() {
+            long k1 = 0;
+            long k2 = 0;
+            for (int i = buffered - 1; i >= 8; i--) {
+                k2 ^= (long) (buffer[i] & 0xff) << ((i - 8) * 8);
+            }
+            for (int i = Math.min(buffered, 8) - 1; i >= 0; i--) {
+                k1 ^= (long) (buffer[i] & 0xff) << (i * 8);
+            }
+            h1 ^= mixK1(k1);
+            h2 ^= mixK2(k2);
+            length += buffered;
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            return k1;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            return k2;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+
+        private static long readLittleEndian(byte[] bytes, int off) {
+            return (bytes[off] & 0xffL)
+                | (bytes[off + 1] & 0xffL) << 8
+                | (bytes[off + 2] & 0xffL) << 16
+                | (bytes[off + 3] & 0xffL) << 24
+                | (bytes[off + 4] & 0xffL) << 32
+                | (bytes[off + 5] & 0xffL) << 40
+                | (bytes[off + 6] & 0xffL) << 48
+                | (bytes[off + 7] & 0xffL) << 56;
+        }
+
+        private static void writeLittleEndian(long value, byte[] bytes, int off) {
+            for (int i = 0; i < 8; i++) {
+                bytes[off + i] = (byte) (value >>> (i * 8));
+            }
+        }
+    }
+}
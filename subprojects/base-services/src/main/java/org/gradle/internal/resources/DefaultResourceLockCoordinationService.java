@@ -21,12 +21,35 @@ import com.google.common.collect.Sets;
 import org.gradle.api.Transformer;
 import org.gradle.internal.UncheckedException;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Coordinates changes to resource lock state, so that a set of locks can be acquired or released atomically.
+ *
+ * <p>Actions that cannot make progress wait until the lock state changes. By default, every waiting action is woken up at once when
+ * this happens, and all of them then compete for the state lock. With hand-off wake-ups enabled, the waiting actions are instead woken
+ * up one at a time, in the order they started waiting. Each woken action wakes the next one when it has evaluated the new state, so
+ * every waiting action still sees each state change, but only one of them contends for the state lock at any time.</p>
+ */
 public class DefaultResourceLockCoordinationService implements ResourceLockCoordinationService {
-    private final Object lock = new Object();
+    /**
+     * Enables hand-off wake-ups of waiting actions.
+     */
+    public static final String HANDOFF_WAKEUPS_PROPERTY = "org.gradle.internal.resource-locks.handoff-wakeups";
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final boolean handoffWakeUps;
+    // Actions waiting for the next state change
+    private final Deque<Waiter> waiters = new ArrayDeque<Waiter>();
+    // Actions that have seen a state change but have not yet been woken up for it
+    private final Deque<Waiter> pendingWakeUps = new ArrayDeque<Waiter>();
+    private boolean wakeUpInProgress;
     private final ThreadLocal<List<ResourceLockState>> currentState = new ThreadLocal<List<ResourceLockState>>() {
         @Override
         protected List<ResourceLockState> initialValue() {
@@ -34,21 +57,43 @@ public class DefaultResourceLockCoordinationService implements ResourceLockCoord
         }
     };
 
+    public DefaultResourceLockCoordinationService() {
+        this(false);
+    }
+
+    public DefaultResourceLockCoordinationService(boolean handoffWakeUps) {
+        this.handoffWakeUps = handoffWakeUps;
+    }
+
+    public static DefaultResourceLockCoordinationService fromSystemProperties() {
+        return new DefaultResourceLockCoordinationService(Boolean.getBoolean(HANDOFF_WAKEUPS_PROPERTY));
+    }
+
     @Override
     public boolean withStateLock(Transformer<ResourceLockState.Disposition, ResourceLockState> stateLockAction) {
+        boolean wokenUp = false;
         while (true) {
             DefaultResourceLockState resourceLockState = new DefaultResourceLockState();
             ResourceLockState.Disposition disposition;
-            synchronized (lock) {
+            lock.lock();
+            try {
                 try {
                     currentState.get().add(resourceLockState);
-                    disposition = stateLockAction.transform(resourceLockState);
+                    try {
+                        disposition = stateLockAction.transform(resourceLockState);
+                    } finally {
+                        if (wokenUp) {
+                            // This action has seen the state change it was woken up for, so wake up the next one
+                            wokenUp = false;
+                            wakeUpNext();
+                        }
+                    }
 
                     switch (disposition) {
                         case RETRY:
                             resourceLockState.releaseLocks();
                             try {
-                                lock.wait();
+                                wokenUp = awaitStateChange();
                             } catch (InterruptedException e) {
                                 throw UncheckedException.throwAsUncheckedException(e);
                             }
@@ -68,7 +113,43 @@ public class DefaultResourceLockCoordinationService implements ResourceLockCoord
                 } finally {
                     currentState.get().remove(resourceLockState);
                 }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits until this thread is woken up after a state change.
+     *
+     * @return true if this thread must wake up the next waiting action once it has evaluated the new state.
+     */
+    private boolean awaitStateChange() throws InterruptedException {
+        Waiter waiter = new Waiter(lock.newCondition());
+        waiters.add(waiter);
+        try {
+            while (!waiter.wokenUp) {
+                waiter.condition.await();
+            }
+        } catch (InterruptedException e) {
+            if (waiter.wokenUp) {
+                if (handoffWakeUps) {
+                    wakeUpNext();
+                }
+            } else {
+                waiters.remove(waiter);
+                pendingWakeUps.remove(waiter);
             }
+            throw e;
+        }
+        return handoffWakeUps;
+    }
+
+    private void wakeUpNext() {
+        Waiter next = pendingWakeUps.poll();
+        wakeUpInProgress = next != null;
+        if (next != null) {
+            next.wakeUp();
         }
     }
 
@@ -89,8 +170,36 @@ public class DefaultResourceLockCoordinationService implements ResourceLockCoord
     }
 
     public void notifyStateChange() {
-        synchronized (lock) {
-            lock.notifyAll();
+        lock.lock();
+        try {
+            if (handoffWakeUps) {
+                pendingWakeUps.addAll(waiters);
+                waiters.clear();
+                if (!wakeUpInProgress) {
+                    wakeUpNext();
+                }
+            } else {
+                for (Waiter waiter : waiters) {
+                    waiter.wakeUp();
+                }
+                waiters.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class Waiter {
+        private final Condition condition;
+        private boolean wokenUp;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+
+        void wakeUp() {
+            wokenUp = true;
+            condition.signal();
         }
     }
 
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import com.google.common.base.Charsets
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+class Murmur3HashFunctionTest extends Specification {
+    def guava = com.google.common.hash.Hashing.murmur3_128()
+
+    @Unroll
+    def "produces the same hash as Guava for #length bytes"() {
+        def bytes = new byte[length]
+        new Random(length).nextBytes(bytes)
+
+        expect:
+        Hashing.murmur3_128().hashBytes(bytes).toString() == guava.hashBytes(bytes).toString()
+
+        where:
+        length << [0, 1, 7, 8, 15, 16, 17, 31, 32, 33, 1000]
+    }
+
+    def "produces the same hash when bytes are added in chunks"() {
+        def bytes = new byte[1000]
+        def random = new Random(1234L)
+        random.nextBytes(bytes)
+        def hasher = Hashing.murmur3_128().newHasher()
+
+        when:
+        def offset = 0
+        while (offset < bytes.length) {
+            def length = Math.min(bytes.length - offset, random.nextInt(20))
+            if (length == 1) {
+                hasher.putByte(bytes[offset])
+            } else {
+                hasher.putBytes(bytes, offset, length)
+            }
+            offset += length
+        }
+
+        then:
+        hasher.hash() == Hashing.murmur3_128().hashBytes(bytes)
+    }
+
+    @Unroll
+    def "produces the same hash when bytes are added from a #type buffer"() {
+        def bytes = new byte[1000]
+        new Random(1234L).nextBytes(bytes)
+        def buffer = direct ? ByteBuffer.allocateDirect(bytes.length) : ByteBuffer.allocate(bytes.length)
+        buffer.put(bytes)
+        buffer.flip()
+        buffer.position(5)
+        def hasher = Hashing.murmur3_128().newHasher()
+
+        when:
+        hasher.putBytes(bytes, 0, 5)
+        hasher.putBytes(buffer)
+
+        then:
+        hasher.hash() == Hashing.murmur3_128().hashBytes(bytes)
+        !buffer.hasRemaining()
+
+        where:
+        direct << [true, false]
+        type = direct ? "direct" : "heap"
+    }
+
+    def "hashes primitives like Guava"() {
+        def hasher = Hashing.murmur3_128().newHasher()
+        def guavaHasher = guava.newHasher()
+
+        when:
+        hasher.putInt(42)
+        hasher.putLong(1234L)
+        hasher.putBoolean(true)
+        hasher.putDouble(1.5d)
+        hasher.putString("some string")
+        guavaHasher.putInt(42)
+        guavaHasher.putLong(1234L)
+        guavaHasher.putBoolean(true)
+        guavaHasher.putDouble(1.5d)
+        guavaHasher.putString("some string", Charsets.UTF_8)
+
+        then:
+        hasher.hash().toString() == guavaHasher.hash().toString()
+    }
+
+    def "cannot reuse hasher"() {
+        def hasher = Hashing.murmur3_128().newHasher()
+        hasher.hash()
+
+        when:
+        hasher.putInt(1)
+
+        then:
+        thrown(IllegalStateException)
+    }
+}
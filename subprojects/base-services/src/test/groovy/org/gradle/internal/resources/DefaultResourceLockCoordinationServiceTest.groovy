@@ -108,6 +108,49 @@ class DefaultResourceLockCoordinationServiceTest extends ConcurrentSpec {
         lock2.lockedState
     }
 
+    def "wakes up every waiting action when hand-off wake-ups are enabled"() {
+        def coordinationService = new DefaultResourceLockCoordinationService(true)
+        def locks = (0..2).collect { new TestTrackedResourceLock("lock${it}", coordinationService, Mock(Action), Mock(Action), true, false) }
+
+        when:
+        async {
+            locks.eachWithIndex { lock, i ->
+                start {
+                    def count = 0
+                    coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                        @Override
+                        ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                            if (lock.tryLock()) {
+                                return FINISHED
+                            }
+                            if (count++ == 0) {
+                                instant."waiting${i}"
+                            }
+                            return RETRY
+                        }
+                    })
+                    assert lock.doIsLockedByCurrentThread()
+                }
+            }
+
+            thread.blockUntil.waiting0
+            thread.blockUntil.waiting1
+            thread.blockUntil.waiting2
+
+            locks.each { it.lockedState = false }
+            coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                @Override
+                ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                    locks.each { resourceLockState.registerUnlocked(it) }
+                    return FINISHED
+                }
+            })
+        }
+
+        then:
+        locks.every { it.lockedState }
+    }
+
     def "can nest multiple calls to withStateLock"() {
         def lock = [
             resourceLock("lock1"),
@@ -43,10 +43,15 @@ import org.gradle.caching.local.internal.DefaultBuildCacheTempFileStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -55,8 +60,19 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.Semaphore;
 
 public class DefaultBuildCacheController implements BuildCacheController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultBuildCacheController.class);
+
+    /**
+     * Stores packed entries in the build caches on background threads, instead of on the thread that executed the task.
+     */
+    public static final String ASYNC_STORE_PROPERTY = "org.gradle.internal.build-cache.async-store";
+
+    private static final int STORE_THREADS = 4;
+    private static final int MAX_PENDING_STORES = 16;
+    private static final String PENDING_FILE_SUFFIX = ".pending";
 
     @VisibleForTesting
     final BuildCacheServiceHandle legacyLocal;
@@ -70,6 +86,7 @@ public class DefaultBuildCacheController implements BuildCacheController {
     private final BuildCacheTempFileStore tmp;
     private final BuildOperationExecutor buildOperationExecutor;
     private final boolean emitDebugLogging;
+    private final StoreQueue storeQueue;
 
     private boolean closed;
 
@@ -78,10 +95,13 @@ public class DefaultBuildCacheController implements BuildCacheController {
         BuildOperationExecutor buildOperationExecutor,
         File gradleUserHomeDir,
         boolean logStackTraces,
-        boolean emitDebugLogging
+        boolean emitDebugLogging,
+        boolean asyncStores,
+        ExecutorFactory executorFactory
     ) {
         this.buildOperationExecutor = buildOperationExecutor;
         this.emitDebugLogging = emitDebugLogging;
+        this.storeQueue = asyncStores ? new StoreQueue(executorFactory) : null;
 
         if (config.local instanceof LocalBuildCacheService) {
             LocalBuildCacheService castLocal = (LocalBuildCacheService) config.local;
@@ -223,19 +243,79 @@ public class DefaultBuildCacheController implements BuildCacheController {
             public void execute(File file) {
                 pack.execute(file);
 
-                if (legacyLocal.canStore()) {
-                    legacyLocal.store(key, new StoreTarget(file));
+                if (storeQueue == null) {
+                    storePacked(key, file);
+                } else {
+                    storeQueue.submit(key, file);
                 }
+            }
+        });
+    }
 
-                if (remote.canStore()) {
-                    remote.store(key, new StoreTarget(file));
-                }
+    private void storePacked(BuildCacheKey key, File file) {
+        if (legacyLocal.canStore()) {
+            legacyLocal.store(key, new StoreTarget(file));
+        }
 
-                if (local.canStore()) {
-                    local.store(key, file);
-                }
+        if (remote.canStore()) {
+            remote.store(key, new StoreTarget(file));
+        }
+
+        if (local.canStore()) {
+            local.store(key, file);
+        }
+    }
+
+    /**
+     * Stores packed entries on background threads. The outputs are still packed on the thread that executed the task, as they may change once the task has finished.
+     *
+     * At most a fixed number of stores can be pending. When that many are pending, submitting a store blocks until one has finished.
+     * A failed store is logged, the same way a failed store on the task thread is, and does not fail the build.
+     */
+    private class StoreQueue {
+        private final ManagedExecutor executor;
+        private final Semaphore pendingStores = new Semaphore(MAX_PENDING_STORES);
+
+        StoreQueue(ExecutorFactory executorFactory) {
+            this.executor = executorFactory.create("Build cache store", STORE_THREADS);
+        }
+
+        void submit(final BuildCacheKey key, File packedFile) {
+            pendingStores.acquireUninterruptibly();
+            // The packed file is deleted once the task thread is done with it, so move it out of the way
+            final File file = new File(packedFile.getPath() + PENDING_FILE_SUFFIX);
+            if (!packedFile.renameTo(file)) {
+                pendingStores.release();
+                storePacked(key, packedFile);
+                return;
             }
-        });
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            storePacked(key, file);
+                        } catch (Exception e) {
+                            LOGGER.warn("Failed to store cache entry {}", key.getDisplayName(), e);
+                        } finally {
+                            GFileUtils.deleteQuietly(file);
+                            pendingStores.release();
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                GFileUtils.deleteQuietly(file);
+                pendingStores.release();
+                throw e;
+            }
+        }
+
+        /**
+         * Waits for all pending stores to finish.
+         */
+        void stop() {
+            executor.stop();
+        }
     }
 
     private class Pack implements Action<File> {
@@ -276,7 +356,13 @@ public class DefaultBuildCacheController implements BuildCacheController {
     public void close() {
         if (!closed) {
             closed = true;
-            CompositeStoppable.stoppable(legacyLocal, local, remote).stop();
+            try {
+                if (storeQueue != null) {
+                    storeQueue.stop();
+                }
+            } finally {
+                CompositeStoppable.stoppable(legacyLocal, local, remote).stop();
+            }
         }
     }
 
@@ -23,6 +23,7 @@ import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.testing.internal.util.Specification
@@ -43,6 +44,7 @@ class DefaultBuildCacheControllerTest extends Specification {
     def localPush = true
     def remote = Mock(BuildCacheService)
     def remotePush = true
+    def asyncStores = false
 
     BuildCacheService legacyLocal = null
 
@@ -92,7 +94,7 @@ class DefaultBuildCacheControllerTest extends Specification {
             ),
             operations,
             tmpDir.file("dir"),
-            false, false
+            false, false, asyncStores, new DefaultExecutorFactory()
         )
     }
 
@@ -122,6 +124,36 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * local.storeLocally(key, _)
     }
 
+    def "stores in the background and waits for pending stores on close when asynchronous stores are enabled"() {
+        given:
+        asyncStores = true
+        def controller = controller
+
+        when:
+        controller.store(storeCommand)
+        controller.close()
+
+        then:
+        1 * remote.store(key, _)
+        1 * local.storeLocally(key, _)
+        !tmpDir.file("file.pending").exists()
+    }
+
+    def "does suppress exceptions from background stores"() {
+        given:
+        asyncStores = true
+        def controller = controller
+        1 * local.storeLocally(key, _) >> { throw new RuntimeException() }
+
+        when:
+        controller.store(storeCommand)
+        controller.close()
+
+        then:
+        noExceptionThrown()
+        !tmpDir.file("file.pending").exists()
+    }
+
     def "does not store to local if local push is disabled"() {
         given:
         localPush = false
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.changedetection.state.DefaultFileSystemMirror
+import org.gradle.api.internal.changedetection.state.DefaultFileSystemSnapshotter
+import org.gradle.api.internal.changedetection.state.WellKnownFileLocations
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.internal.tasks.OutputType
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter
+import org.gradle.internal.fingerprint.impl.AbsolutePathFingerprintingStrategy
+import org.gradle.internal.fingerprint.impl.DefaultCurrentFileCollectionFingerprint
+import org.gradle.internal.hash.DefaultStreamHasher
+import org.gradle.internal.hash.Hashing
+import org.gradle.internal.hash.TestFileHasher
+import org.gradle.internal.nativeplatform.filesystem.FileSystem
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.api.internal.tasks.OutputType.DIRECTORY
+import static org.gradle.api.internal.tasks.OutputType.FILE
+
+@CleanupTestDirectory
+class IndexedTaskOutputPackerTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def readOrigin = Stub(TaskOutputOriginReader)
+    def writeOrigin = Stub(TaskOutputOriginWriter)
+
+    def fileSystem = Mock(FileSystem)
+    def streamHasher = new DefaultStreamHasher({ Hashing.md5().newHasher() })
+    def stringInterner = new StringInterner()
+    def packer = new IndexedTaskOutputPacker(fileSystem, streamHasher, stringInterner)
+    def tarPacker = new GZipTaskOutputPacker(new TarTaskOutputPacker(fileSystem, streamHasher, stringInterner))
+    def fileSystemMirror = new DefaultFileSystemMirror(Stub(WellKnownFileLocations))
+    def snapshotter = new DefaultFileSystemSnapshotter(new TestFileHasher(), stringInterner, TestFiles.fileSystem(), fileSystemMirror)
+
+    def "can pack task output directory"() {
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        def sourceSubDir = sourceOutputDir.file("subdir").createDir()
+        def sourceDataFile = sourceSubDir.file("data.txt")
+        sourceDataFile << "output"
+        def targetOutputDir = temporaryFolder.file("target").createDir()
+        def targetSubDir = targetOutputDir.file("subdir")
+        def targetDataFile = targetSubDir.file("data.txt")
+        def output = new ByteArrayOutputStream()
+
+        when:
+        def packResult = packer.pack(specs(DIRECTORY, sourceOutputDir), fingerprints(sourceOutputDir), output, writeOrigin)
+
+        then:
+        1 * fileSystem.getUnixMode(sourceSubDir) >> 0711
+        1 * fileSystem.getUnixMode(sourceDataFile) >> 0600
+        0 * _
+        packResult.entries == 4
+
+        when:
+        def result = packer.unpack(specs(DIRECTORY, targetOutputDir), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        1 * fileSystem.chmod(targetOutputDir, 0755)
+        1 * fileSystem.chmod(targetSubDir, 0711)
+        1 * fileSystem.chmod(targetDataFile, 0600)
+        0 * _
+        and:
+        targetDataFile.text == "output"
+        result.entries == 4
+        result.snapshots["test"].hash == snapshotter.snapshot(sourceOutputDir).hash
+    }
+
+    def "can pack single task output file larger than a block"() {
+        def sourceOutputFile = temporaryFolder.file("source.txt")
+        sourceOutputFile.text = "output" * 50000
+        def targetOutputFile = temporaryFolder.file("target.txt")
+        def output = new ByteArrayOutputStream()
+
+        when:
+        packer.pack(specs(FILE, sourceOutputFile), fingerprints(sourceOutputFile), output, writeOrigin)
+        packer.unpack(specs(FILE, targetOutputFile), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        targetOutputFile.text == sourceOutputFile.text
+        output.size() < sourceOutputFile.length()
+    }
+
+    def "removes missing outputs when unpacking"() {
+        def sourceOutput = temporaryFolder.file("source")
+        def targetOutput = temporaryFolder.file("target").createDir()
+        def output = new ByteArrayOutputStream()
+
+        when:
+        packer.pack(specs(DIRECTORY, sourceOutput), fingerprints(sourceOutput), output, writeOrigin)
+        def result = packer.unpack(specs(DIRECTORY, targetOutput), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        !targetOutput.exists()
+        result.entries == 2
+        result.snapshots.isEmpty()
+    }
+
+    def "fails to unpack corrupted content"() {
+        def sourceOutputFile = temporaryFolder.file("source.txt")
+        sourceOutputFile.text = "output"
+        def output = new ByteArrayOutputStream()
+        packer.pack(specs(FILE, sourceOutputFile), fingerprints(sourceOutputFile), output, writeOrigin)
+        def bytes = output.toByteArray()
+        bytes[bytes.length - 1]++
+
+        when:
+        packer.unpack(specs(FILE, temporaryFolder.file("target.txt")), new ByteArrayInputStream(bytes), readOrigin)
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message.contains("corrupted content")
+    }
+
+    def "unpacks tar.gz and indexed entries when packing #packed entries"() {
+        def versionedPacker = new VersionedTaskOutputPacker(tarPacker, packer, packIndexed)
+        def sourceOutputFile = temporaryFolder.file("source.txt")
+        sourceOutputFile.text = "output"
+        def tarOutput = new ByteArrayOutputStream()
+        def indexedOutput = new ByteArrayOutputStream()
+        tarPacker.pack(specs(FILE, sourceOutputFile), fingerprints(sourceOutputFile), tarOutput, writeOrigin)
+        packer.pack(specs(FILE, sourceOutputFile), fingerprints(sourceOutputFile), indexedOutput, writeOrigin)
+
+        when:
+        versionedPacker.unpack(specs(FILE, temporaryFolder.file("tar.txt")), new ByteArrayInputStream(tarOutput.toByteArray()), readOrigin)
+        versionedPacker.unpack(specs(FILE, temporaryFolder.file("indexed.txt")), new ByteArrayInputStream(indexedOutput.toByteArray()), readOrigin)
+
+        then:
+        temporaryFolder.file("tar.txt").text == "output"
+        temporaryFolder.file("indexed.txt").text == "output"
+
+        when:
+        def output = new ByteArrayOutputStream()
+        versionedPacker.pack(specs(FILE, sourceOutputFile), fingerprints(sourceOutputFile), output, writeOrigin)
+
+        then:
+        (new DataInputStream(new ByteArrayInputStream(output.toByteArray())).readInt() == IndexedTaskOutputPacker.MAGIC) == packIndexed
+
+        where:
+        packIndexed << [true, false]
+        packed = packIndexed ? "indexed" : "tar.gz"
+    }
+
+    def specs(OutputType type, File output) {
+        [new ResolvedTaskOutputFilePropertySpec("test", type, output)] as SortedSet
+    }
+
+    def fingerprints(File output) {
+        [test: DefaultCurrentFileCollectionFingerprint.from([snapshotter.snapshot(output)], AbsolutePathFingerprintingStrategy.IGNORE_MISSING)]
+    }
+}
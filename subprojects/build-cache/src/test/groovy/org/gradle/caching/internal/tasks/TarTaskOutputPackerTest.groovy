@@ -25,6 +25,7 @@ import org.gradle.api.internal.tasks.OutputType
 import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.fingerprint.FileCollectionFingerprint
 import org.gradle.internal.fingerprint.FingerprintingStrategy
 import org.gradle.internal.fingerprint.impl.AbsolutePathFingerprintingStrategy
@@ -339,6 +340,29 @@ class TarTaskOutputPackerTest extends Specification {
         0 * _
     }
 
+    def "unpacks the same output directory when files are written in parallel"() {
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        (1..20).each { sourceOutputDir.file("dir${it % 3}/file${it}.txt") << "output ${it}" }
+        def output = new ByteArrayOutputStream()
+        pack output, prop(DIRECTORY, sourceOutputDir)
+        def unpackPool = new TaskOutputUnpackPool(new DefaultExecutorFactory(), 4)
+        def parallelPacker = new TarTaskOutputPacker(fileSystem, streamHasher, stringInterner, unpackPool)
+
+        when:
+        def sequentialResult = packer.unpack([prop(DIRECTORY, temporaryFolder.file("sequential")).property] as SortedSet, new ByteArrayInputStream(output.toByteArray()), readOrigin)
+        def parallelResult = parallelPacker.unpack([prop(DIRECTORY, temporaryFolder.file("parallel")).property] as SortedSet, new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        parallelResult.entries == sequentialResult.entries
+        parallelResult.snapshots["test"].hash == sequentialResult.snapshots["test"].hash
+        (1..20).each {
+            assert temporaryFolder.file("parallel/dir${it % 3}/file${it}.txt").text == "output ${it}"
+        }
+
+        cleanup:
+        unpackPool.stop()
+    }
+
     def pack(OutputStream output, TaskOutputOriginWriter writeOrigin = this.writeOrigin, PropertyDefinition... propertyDefs) {
         def propertySpecs = propertyDefs*.property as SortedSet
         def outputSnapshots = propertyDefs.collectEntries { propertyDef ->
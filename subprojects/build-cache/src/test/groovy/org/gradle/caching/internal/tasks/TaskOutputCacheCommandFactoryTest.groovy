@@ -86,7 +86,8 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         def result = load.load(input)
 
         then:
-        1 * taskOutputsGenerationListener.beforeTaskOutputChanged()
+        1 * taskProperties.getLocalStateFiles() >> localStateFiles
+        1 * taskOutputsGenerationListener.beforeTaskOutputChanged([outputDir, outputFile, localStateFile]*.absolutePath)
         1 * originFactory.createReader(task)
 
         then:
@@ -133,7 +134,8 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         command.load(input)
 
         then:
-        1 * taskOutputsGenerationListener.beforeTaskOutputChanged()
+        1 * taskProperties.getLocalStateFiles() >> localStateFiles
+        1 * taskOutputsGenerationListener.beforeTaskOutputChanged([outputFile, localStateFile]*.absolutePath)
         1 * originFactory.createReader(task)
 
         then:
@@ -168,7 +170,9 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         command.load(input)
 
         then:
-        1 * taskOutputsGenerationListener.beforeTaskOutputChanged()
+        1 * outputProperties.iterator() >> [].iterator()
+        1 * taskProperties.getLocalStateFiles() >> localStateFiles
+        1 * taskOutputsGenerationListener.beforeTaskOutputChanged([localStateFile.absolutePath])
         1 * originFactory.createReader(task)
 
         then:
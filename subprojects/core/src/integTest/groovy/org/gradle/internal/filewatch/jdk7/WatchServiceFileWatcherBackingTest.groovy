@@ -32,9 +32,16 @@ import spock.lang.Unroll
 
 import java.nio.file.FileSystems
 import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardWatchEventKinds
+import java.nio.file.WatchEvent
+import java.nio.file.WatchKey
 import java.nio.file.WatchService
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.atomic.AtomicReference
 
 import static org.gradle.internal.filewatch.jdk7.WatchServiceFileWatcherBackingTest.DirNotExistsTestScenario.*
@@ -181,4 +188,74 @@ class WatchServiceFileWatcherBackingTest extends AbstractFileWatcherTest {
         }
         0 * watchService.take()
     }
+
+    def "delivers a batch taken by the poller thread before delivering pending events completes"() {
+        given:
+        def watchService = Mock(WatchService)
+        def watchKey = Mock(WatchKey)
+        def watchEvent = Mock(WatchEvent)
+        def taken = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def delivered = new AtomicBoolean()
+        def polls = new AtomicInteger()
+        def dir = testDir.file("dir").createDir()
+        def registrar = new WatchServiceRegistrar(watchService, Mock(FileWatcherListener), fileSystem) {
+            @Override
+            void onChange(FileWatcher watcher, FileWatcherEvent event) {
+                delivered.set(true)
+            }
+        }
+        watchService.poll(_, _) >> { long timeout, TimeUnit unit ->
+            if (polls.getAndIncrement() == 0) {
+                return watchKey
+            }
+            Thread.sleep(unit.toMillis(timeout))
+            null
+        }
+        watchService.poll() >> null
+        watchKey.watchable() >> dir.toPath()
+        watchKey.pollEvents() >> {
+            // Blocks the poller thread between taking the batch and delivering it, ignoring interrupts as the JDK does
+            taken.countDown()
+            boolean interrupted = false
+            while (true) {
+                try {
+                    release.await()
+                    break
+                } catch (InterruptedException e) {
+                    interrupted = true
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt()
+            }
+            [watchEvent]
+        }
+        watchEvent.kind() >> StandardWatchEventKinds.ENTRY_MODIFY
+        watchEvent.context() >> Paths.get("file.txt")
+
+        def fileWatcher = new WatchServiceFileWatcherBacking(onError, Mock(FileWatcherListener), watchService, registrar).start(executorService)
+
+        when:
+        taken.await()
+        def flush = executorService.submit {
+            fileWatcher.deliverPendingEvents()
+            delivered.get()
+        }
+        sleep(200)
+
+        then:
+        !flush.done
+        !delivered.get()
+
+        when:
+        release.countDown()
+
+        then:
+        flush.get(10, TimeUnit.SECONDS)
+        fileWatcher.running
+
+        cleanup:
+        fileWatcher?.stop()
+    }
 }
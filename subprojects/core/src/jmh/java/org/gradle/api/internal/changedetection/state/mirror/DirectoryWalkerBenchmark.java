@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state.mirror;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.internal.MutableBoolean;
+import org.gradle.internal.hash.DefaultContentHasherFactory;
+import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+import org.gradle.internal.nativeintegration.services.FileSystems;
+import org.gradle.internal.nativeintegration.services.NativeServices;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Walks and hashes a directory tree that is as wide at each level as it is deep, sequentially and in parallel.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class DirectoryWalkerBenchmark {
+    private static final int FILES_PER_DIRECTORY = 20;
+
+    @Param({"3", "4"})
+    int depth;
+
+    @Param({"1024", "65536"})
+    int fileSize;
+
+    @Param({"1", "2", "4", "8"})
+    int parallelism;
+
+    File root;
+    DirectoryWalkerPool walkerPool;
+    MirrorUpdatingDirectoryWalker walker;
+
+    @Setup
+    public void setup() throws IOException {
+        File tmpDir = Files.createTempDirectory("directory-walker").toFile();
+        NativeServices.initialize(new File(tmpDir, "native"));
+        FileSystem fileSystem = FileSystems.getDefault();
+        FileHasher hasher = new DefaultFileHasher(new DefaultStreamHasher(new DefaultContentHasherFactory()));
+
+        root = new File(tmpDir, "root");
+        createTree(root, depth, new Random(1234L));
+        walkerPool = new DirectoryWalkerPool(parallelism);
+        walker = new MirrorUpdatingDirectoryWalker(hasher, fileSystem, new StringInterner(), walkerPool);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        walkerPool.stop();
+        FileUtils.forceDelete(root.getParentFile());
+    }
+
+    @Benchmark
+    public void walkAndHash(Blackhole blackhole) {
+        blackhole.consume(walker.walkDir(root.getAbsolutePath(), null, new MutableBoolean()));
+    }
+
+    private void createTree(File dir, int levels, Random random) throws IOException {
+        if (!dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        byte[] content = new byte[fileSize];
+        for (int i = 0; i < FILES_PER_DIRECTORY; i++) {
+            random.nextBytes(content);
+            FileOutputStream outputStream = new FileOutputStream(new File(dir, "file" + i + ".bin"));
+            try {
+                outputStream.write(content);
+            } finally {
+                outputStream.close();
+            }
+        }
+        if (levels > 0) {
+            for (int i = 0; i < depth; i++) {
+                createTree(new File(dir, "dir" + i), levels - 1, random);
+            }
+        }
+    }
+}
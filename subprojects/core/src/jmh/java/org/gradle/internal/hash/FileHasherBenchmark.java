@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares hashing files through streams with hashing them through memory mapping and direct buffers.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class FileHasherBenchmark {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    @Param({"1024", "1048576", "209715200"})
+    int fileSize;
+
+    @Param({"stream", "mapped", "direct"})
+    String type;
+
+    File file;
+    FileHasher hasher;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("file-hasher", ".bin");
+        byte[] chunk = new byte[Math.min(fileSize, CHUNK_SIZE)];
+        Random random = new Random(1234L);
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            for (int written = 0; written < fileSize; written += chunk.length) {
+                random.nextBytes(chunk);
+                outputStream.write(chunk, 0, Math.min(chunk.length, fileSize - written));
+            }
+        } finally {
+            outputStream.close();
+        }
+
+        ContentHasherFactory hasherFactory = new DefaultContentHasherFactory();
+        FileHasher streamHasher = new DefaultFileHasher(new DefaultStreamHasher(hasherFactory));
+        if (type.equals("stream")) {
+            hasher = streamHasher;
+        } else {
+            // Use the threshold of 0, so every file is hashed without streaming
+            hasher = new MemoryMappingFileHasher(streamHasher, hasherFactory, 0, type.equals("mapped"));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void hash(Blackhole blackhole) {
+        blackhole.consume(hasher.hash(file));
+    }
+}
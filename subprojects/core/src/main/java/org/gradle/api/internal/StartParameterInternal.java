@@ -25,14 +25,19 @@ import java.util.Set;
 
 public class StartParameterInternal extends StartParameter implements Deprecatable {
     private final Deprecatable deprecationHandler = new LoggingDeprecatable();
+    private boolean resolutionProfile;
 
     @Override
     public StartParameter newInstance() {
-        return prepareNewInstance(new StartParameterInternal());
+        StartParameterInternal p = (StartParameterInternal) prepareNewInstance(new StartParameterInternal());
+        p.resolutionProfile = resolutionProfile;
+        return p;
     }
 
     public StartParameter newBuild() {
-        return prepareNewBuild(new StartParameterInternal());
+        StartParameterInternal p = (StartParameterInternal) prepareNewBuild(new StartParameterInternal());
+        p.resolutionProfile = resolutionProfile;
+        return p;
     }
 
     @Override
@@ -57,4 +62,15 @@ public class StartParameterInternal extends StartParameter implements Deprecatab
     public void setGradleHomeDir(File gradleHomeDir) {
         this.gradleHomeDir = gradleHomeDir;
     }
+
+    /**
+     * Returns true if a report of where the time was spent resolving each configuration should be generated.
+     */
+    public boolean isResolutionProfile() {
+        return resolutionProfile;
+    }
+
+    public void setResolutionProfile(boolean resolutionProfile) {
+        this.resolutionProfile = resolutionProfile;
+    }
 }
@@ -48,4 +48,9 @@ public interface TaskOutputsInternal extends TaskOutputs {
      */
     TaskOutputCachingState getCachingState(TaskProperties taskProperties);
 
+    /**
+     * Whether caching has been enabled for the task with {@link #cacheIf}. Does not evaluate the specs.
+     */
+    boolean isCachingDeclared();
+
 }
@@ -69,6 +69,14 @@ public final class ResolveConfigurationDependenciesBuildOperationType implements
         @Nullable
         String getRepositoryId(ResolvedComponentResult resolvedComponentResult);
 
+        /**
+         * Counters and timers collected while resolving the graph, such as the number of nodes visited and the metadata cache hits and misses of each repository.
+         * Empty when nothing was resolved from repositories.
+         *
+         * @since 5.0
+         */
+        Map<String, ?> getStatistics();
+
     }
 
     /**
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the task durations in the task history store, keyed by the identity path of the task, which includes the path of the build that owns it.
+ *
+ * Durations are recorded while the task graph is executing, so they are buffered in memory and only written to the store when the build finishes.
+ */
+public class CacheBackedTaskDurationHistory implements TaskDurationHistory, Closeable {
+    private final PersistentIndexedCache<String, Long> durations;
+    private final Map<String, Long> recordedDurations = new ConcurrentHashMap<String, Long>();
+
+    public CacheBackedTaskDurationHistory(TaskHistoryStore cacheAccess) {
+        this.durations = cacheAccess.createCache("taskDurations", String.class, BaseSerializerFactory.LONG_SERIALIZER, 10000, true);
+    }
+
+    @Nullable
+    @Override
+    public Long getPreviousDuration(TaskInternal task) {
+        return durations.get(task.getIdentityPath().getPath());
+    }
+
+    @Override
+    public void recordDuration(TaskInternal task, long durationMillis) {
+        recordedDurations.put(task.getIdentityPath().getPath(), durationMillis);
+    }
+
+    @Override
+    public void close() {
+        for (Map.Entry<String, Long> entry : recordedDurations.entrySet()) {
+            durations.put(entry.getKey(), entry.getValue());
+        }
+        recordedDurations.clear();
+    }
+}
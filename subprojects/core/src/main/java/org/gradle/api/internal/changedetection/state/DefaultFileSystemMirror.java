@@ -16,87 +16,289 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import org.gradle.api.Action;
 import org.gradle.api.internal.changedetection.state.mirror.PhysicalSnapshot;
+import org.gradle.api.internal.file.FileSystemSubset;
 import org.gradle.api.internal.tasks.execution.TaskOutputChangesListener;
 import org.gradle.initialization.RootBuildLifecycleListener;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.filewatch.FileWatcher;
+import org.gradle.internal.filewatch.FileWatcherEvent;
+import org.gradle.internal.filewatch.FileWatcherFactory;
+import org.gradle.internal.filewatch.FileWatcherListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
-import java.util.Map;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * See {@link DefaultFileSystemSnapshotter} for some more details
+ *
+ * <p>When a {@link FileWatcherFactory} is provided, the state for files that do not live in an append-only cache is retained between builds.
+ * The directories visited during a build are watched for changes once the build completes, and any change reported by the watcher discards the state
+ * for the changed location. State captured for a location before it was watched is discarded at the end of the build, as changes made while it was
+ * being captured may have been missed. The events the watcher has been notified of are delivered at the start of each build, before any retained
+ * state is used. State is not retained when the watcher polls for changes, as it may notice changes made between builds too late.
+ * When a watched directory is deleted, or the watcher may have missed events, the affected locations are no longer considered watched,
+ * so they are watched again once they are visited again.</p>
  */
-public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputChangesListener, RootBuildLifecycleListener {
-    // Maps from interned absolute path for a file to metadata for the file.
-    private final Map<String, FileMetadataSnapshot> metadata = new ConcurrentHashMap<String, FileMetadataSnapshot>();
-    private final Map<String, FileMetadataSnapshot> cacheMetadata = new ConcurrentHashMap<String, FileMetadataSnapshot>();
-    // Maps from interned absolute path for a file to snapshot for the file.
-    private final Map<String, PhysicalSnapshot> files = new ConcurrentHashMap<String, PhysicalSnapshot>();
-    private final Map<String, PhysicalSnapshot> cacheFiles = new ConcurrentHashMap<String, PhysicalSnapshot>();
+public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputChangesListener, RootBuildLifecycleListener, Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultFileSystemMirror.class);
+
+    // Metadata and snapshots for files, keyed by the segments of their absolute path.
+    private final FileSystemMirrorTrie files = new FileSystemMirrorTrie();
+    private final FileSystemMirrorTrie cacheFiles = new FileSystemMirrorTrie();
+
+    // Locations that are watched for changes. State for files in these locations is retained between builds.
+    private final Set<String> watchedRoots = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // Directories visited during the current build which are not watched yet.
+    private final Set<String> unwatchedRoots = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     private final WellKnownFileLocations wellKnownFileLocations;
+    private final FileWatcherFactory fileWatcherFactory;
+    private FileWatcher fileWatcher;
+    private volatile boolean retainingUnsupported;
 
     public DefaultFileSystemMirror(WellKnownFileLocations wellKnownFileLocations) {
+        this(wellKnownFileLocations, null);
+    }
+
+    public DefaultFileSystemMirror(WellKnownFileLocations wellKnownFileLocations, @Nullable FileWatcherFactory fileWatcherFactory) {
         this.wellKnownFileLocations = wellKnownFileLocations;
+        this.fileWatcherFactory = fileWatcherFactory;
     }
 
     @Nullable
     @Override
     public PhysicalSnapshot getSnapshot(String absolutePath) {
-        // Could potentially also look whether we have the details for an ancestor directory tree
         // Could possibly infer that the path refers to a directory, if we have details for a descendant path (and it's not a missing file)
         if (wellKnownFileLocations.isImmutable(absolutePath)) {
-            return cacheFiles.get(absolutePath);
+            return cacheFiles.getSnapshot(absolutePath);
         }
-        return files.get(absolutePath);
+        return files.getSnapshot(absolutePath);
     }
 
     @Override
     public void putSnapshot(PhysicalSnapshot file) {
-        if (wellKnownFileLocations.isImmutable(file.getAbsolutePath())) {
-            cacheFiles.put(file.getAbsolutePath(), file);
+        String absolutePath = file.getAbsolutePath();
+        if (wellKnownFileLocations.isImmutable(absolutePath)) {
+            cacheFiles.putSnapshot(file);
         } else {
-            files.put(file.getAbsolutePath(), file);
+            files.putSnapshot(file);
+            visited(absolutePath, file.getType());
         }
     }
 
     @Override
     public FileMetadataSnapshot getMetadata(String absolutePath) {
         if (wellKnownFileLocations.isImmutable(absolutePath)) {
-            return cacheMetadata.get(absolutePath);
+            return cacheFiles.getMetadata(absolutePath);
         }
-        return metadata.get(absolutePath);
+        return files.getMetadata(absolutePath);
     }
 
     @Override
     public void putMetadata(String absolutePath, FileMetadataSnapshot metadata) {
         if (wellKnownFileLocations.isImmutable(absolutePath)) {
-            cacheMetadata.put(absolutePath, metadata);
+            cacheFiles.putMetadata(absolutePath, metadata);
         } else {
-            this.metadata.put(absolutePath, metadata);
+            files.putMetadata(absolutePath, metadata);
+            visited(absolutePath, metadata.getType());
         }
     }
 
     @Override
     public void beforeTaskOutputChanged() {
-        // When the task outputs are generated, throw away all state for files that do not live in an append-only cache.
-        // This is intentionally very simple, to be improved later
-        metadata.clear();
+        // When the task outputs are generated and we don't know where, throw away all state for files that do not live in an append-only cache.
         files.clear();
     }
 
+    @Override
+    public void beforeTaskOutputChanged(Iterable<String> affectedOutputPaths) {
+        for (String affectedOutputPath : affectedOutputPaths) {
+            files.invalidate(affectedOutputPath);
+        }
+    }
+
     @Override
     public void afterStart() {
+        FileWatcher watcher = getFileWatcher();
+        if (watcher != null) {
+            // Discard the state for locations changed since the previous build before it is used
+            watcher.deliverPendingEvents();
+        }
     }
 
     @Override
     public void beforeComplete() {
-        // We throw away all state between builds
-        metadata.clear();
-        cacheMetadata.clear();
-        files.clear();
+        // Throw away all state for files in append-only caches between builds, as the caches may be cleaned up
         cacheFiles.clear();
+        if (!isRetaining()) {
+            // We throw away all state between builds
+            files.clear();
+            return;
+        }
+
+        List<String> newRoots = new ArrayList<String>();
+        for (String unwatchedRoot : unwatchedRoots) {
+            // Watching a directory also watches the directories beneath it
+            if (!hasAncestorIn(unwatchedRoot, unwatchedRoots)) {
+                newRoots.add(unwatchedRoot);
+            }
+        }
+        unwatchedRoots.clear();
+        for (String newRoot : newRoots) {
+            files.invalidate(newRoot);
+        }
+        startWatching(newRoots);
+    }
+
+    @Override
+    public void stop() {
+        stopWatching();
+    }
+
+    private boolean isRetaining() {
+        return fileWatcherFactory != null && !retainingUnsupported;
+    }
+
+    private synchronized FileWatcher getFileWatcher() {
+        return fileWatcher;
+    }
+
+    private void visited(String absolutePath, FileType type) {
+        if (!isRetaining()) {
+            return;
+        }
+        // Only directories are watched, so watch the directory containing a file
+        String directory = type == FileType.Directory ? absolutePath : getParentPath(absolutePath);
+        if (directory != null && !isWatched(directory)) {
+            unwatchedRoots.add(directory);
+        }
+    }
+
+    private boolean isWatched(String absolutePath) {
+        for (String path = absolutePath; path != null; path = getParentPath(path)) {
+            if (watchedRoots.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasAncestorIn(String absolutePath, Set<String> paths) {
+        for (String path = getParentPath(absolutePath); path != null; path = getParentPath(path)) {
+            if (paths.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void startWatching(List<String> roots) {
+        if (roots.isEmpty()) {
+            return;
+        }
+        FileSystemSubset.Builder subset = FileSystemSubset.builder();
+        List<String> existingRoots = new ArrayList<String>(roots.size());
+        for (String root : roots) {
+            // A directory that does not exist cannot be watched, so state for it is captured again in each build
+            File directory = new File(root);
+            if (directory.isDirectory()) {
+                subset.add(directory);
+                existingRoots.add(root);
+            }
+        }
+        if (existingRoots.isEmpty()) {
+            return;
+        }
+        try {
+            if (fileWatcher == null) {
+                fileWatcher = fileWatcherFactory.watch(new Action<Throwable>() {
+                    @Override
+                    public void execute(Throwable failure) {
+                        LOGGER.info("Failed to watch the file system for changes, discarding file system state.", failure);
+                        stopWatching();
+                    }
+                }, new FileWatcherListener() {
+                    @Override
+                    public void onChange(FileWatcher watcher, FileWatcherEvent event) {
+                        fileChanged(event);
+                    }
+                });
+                if (!fileWatcher.isNotifiedOfChangesImmediately()) {
+                    LOGGER.info("The file system is polled for changes, not retaining file system state between builds.");
+                    retainingUnsupported = true;
+                    stopWatching();
+                    return;
+                }
+            }
+            fileWatcher.watch(subset.build());
+            watchedRoots.addAll(existingRoots);
+        } catch (IOException e) {
+            LOGGER.info("Failed to watch the file system for changes, discarding file system state.", e);
+            stopWatching();
+        }
+    }
+
+    private synchronized void stopWatching() {
+        if (fileWatcher != null) {
+            fileWatcher.stop();
+            fileWatcher = null;
+        }
+        watchedRoots.clear();
+        files.clear();
+    }
+
+    private void fileChanged(FileWatcherEvent event) {
+        File file = event.getFile();
+        if (event.getType() == FileWatcherEvent.Type.UNDEFINED || file == null) {
+            // Something happened, but we don't know what. Events may have been lost, so watch the locations again when they are next visited
+            watchedRoots.clear();
+            files.clear();
+        } else {
+            String absolutePath = file.getAbsolutePath();
+            if (event.getType() == FileWatcherEvent.Type.DELETE) {
+                // The watch for a deleted directory is cancelled, which is also reported as a deletion of the directory.
+                // A directory recreated in its place is not watched, so forget about the watches for the location
+                removeWatchedRoots(absolutePath);
+            }
+            files.invalidate(absolutePath);
+        }
+    }
+
+    private void removeWatchedRoots(String absolutePath) {
+        String prefix = absolutePath.endsWith(File.separator) ? absolutePath : absolutePath + File.separatorChar;
+        Iterator<String> iterator = watchedRoots.iterator();
+        while (iterator.hasNext()) {
+            String watchedRoot = iterator.next();
+            if (watchedRoot.equals(absolutePath) || watchedRoot.startsWith(prefix)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Nullable
+    private static String getParentPath(String absolutePath) {
+        int lastSeparator = absolutePath.lastIndexOf(File.separatorChar);
+        if (lastSeparator < 0 || lastSeparator == absolutePath.length() - 1) {
+            // A file system root
+            return null;
+        }
+        if (lastSeparator == 0 || absolutePath.charAt(lastSeparator - 1) == ':') {
+            // The parent is a file system root
+            return absolutePath.substring(0, lastSeparator + 1);
+        }
+        return absolutePath.substring(0, lastSeparator);
     }
 }
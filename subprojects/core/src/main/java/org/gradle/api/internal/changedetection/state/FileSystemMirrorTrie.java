@@ -0,0 +1,231 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.internal.changedetection.state.mirror.PhysicalDirectorySnapshot;
+import org.gradle.api.internal.changedetection.state.mirror.PhysicalMissingSnapshot;
+import org.gradle.api.internal.changedetection.state.mirror.PhysicalSnapshot;
+import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.nativeintegration.filesystem.DefaultFileMetadata;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the metadata and snapshots of file system locations in a trie, with one node per path segment.
+ *
+ * Locations beneath a location with a directory snapshot are looked up in that snapshot, so the snapshot of a directory also
+ * answers queries for everything it contains. Discarding the state of a location and its descendants only touches the nodes
+ * on the path to the location.
+ */
+class FileSystemMirrorTrie {
+    private static final char SEPARATOR = File.separatorChar;
+
+    private volatile Node root = new Node();
+
+    @Nullable
+    public PhysicalSnapshot getSnapshot(String absolutePath) {
+        Node node = root;
+        PhysicalSnapshot ancestorSnapshot = null;
+        int ancestorSegmentEnd = -1;
+        int start = 0;
+        while (true) {
+            int end = segmentEnd(absolutePath, start);
+            node = node.getChild(absolutePath.substring(start, end));
+            if (node == null) {
+                break;
+            }
+            PhysicalSnapshot snapshot = node.snapshot;
+            if (end == absolutePath.length()) {
+                if (snapshot != null) {
+                    return snapshot;
+                }
+                break;
+            }
+            if (snapshot != null) {
+                ancestorSnapshot = snapshot;
+                ancestorSegmentEnd = end;
+            }
+            start = end + 1;
+            if (start >= absolutePath.length()) {
+                return snapshot;
+            }
+        }
+        if (ancestorSnapshot == null) {
+            return null;
+        }
+        return findDescendant(ancestorSnapshot, absolutePath, ancestorSegmentEnd + 1);
+    }
+
+    @Nullable
+    public FileMetadataSnapshot getMetadata(String absolutePath) {
+        Node node = findNode(absolutePath);
+        if (node != null) {
+            FileMetadataSnapshot metadata = node.metadata;
+            if (metadata != null) {
+                return metadata;
+            }
+        }
+        // Regular files need a stat to find out their length, but the type of directories and missing files is known from the snapshot
+        PhysicalSnapshot snapshot = getSnapshot(absolutePath);
+        if (snapshot == null) {
+            return null;
+        }
+        switch (snapshot.getType()) {
+            case Directory:
+                return DefaultFileMetadata.directory();
+            case Missing:
+                return DefaultFileMetadata.missing();
+            default:
+                return null;
+        }
+    }
+
+    public void putSnapshot(PhysicalSnapshot snapshot) {
+        getOrCreateNode(snapshot.getAbsolutePath()).snapshot = snapshot;
+    }
+
+    public void putMetadata(String absolutePath, FileMetadataSnapshot metadata) {
+        getOrCreateNode(absolutePath).metadata = metadata;
+    }
+
+    /**
+     * Discards the state for the given location, the locations beneath it and the locations containing it.
+     */
+    public void invalidate(String absolutePath) {
+        Node parent = null;
+        Node node = root;
+        String segment = null;
+        int start = 0;
+        while (start < absolutePath.length() || parent == null) {
+            node.snapshot = null;
+            node.metadata = null;
+            int end = segmentEnd(absolutePath, start);
+            segment = absolutePath.substring(start, end);
+            parent = node;
+            node = node.getChild(segment);
+            if (node == null) {
+                return;
+            }
+            start = end + 1;
+        }
+        parent.removeChild(segment);
+    }
+
+    public void clear() {
+        root = new Node();
+    }
+
+    @Nullable
+    private Node findNode(String absolutePath) {
+        Node node = root;
+        int start = 0;
+        do {
+            int end = segmentEnd(absolutePath, start);
+            node = node.getChild(absolutePath.substring(start, end));
+            start = end + 1;
+        } while (node != null && start < absolutePath.length());
+        return node;
+    }
+
+    private Node getOrCreateNode(String absolutePath) {
+        Node node = root;
+        int start = 0;
+        do {
+            int end = segmentEnd(absolutePath, start);
+            node = node.getOrCreateChild(absolutePath.substring(start, end));
+            start = end + 1;
+        } while (start < absolutePath.length());
+        return node;
+    }
+
+    @Nullable
+    private static PhysicalSnapshot findDescendant(PhysicalSnapshot ancestor, String absolutePath, int start) {
+        PhysicalSnapshot current = ancestor;
+        while (start < absolutePath.length()) {
+            int end = segmentEnd(absolutePath, start);
+            if (current.getType() != FileType.Directory) {
+                // Nothing can exist beneath a file or a missing file
+                return new PhysicalMissingSnapshot(absolutePath, absolutePath.substring(absolutePath.lastIndexOf(SEPARATOR) + 1));
+            }
+            String name = absolutePath.substring(start, end);
+            PhysicalSnapshot child = null;
+            for (PhysicalSnapshot candidate : ((PhysicalDirectorySnapshot) current).getChildren()) {
+                if (candidate.getName().equals(name)) {
+                    child = candidate;
+                    break;
+                }
+            }
+            if (child == null) {
+                // Directory snapshots leave out the files excluded by default, such as .git, so the location may still exist
+                return null;
+            }
+            current = child;
+            start = end + 1;
+        }
+        return current;
+    }
+
+    private static int segmentEnd(String absolutePath, int start) {
+        int end = absolutePath.indexOf(SEPARATOR, start);
+        return end < 0 ? absolutePath.length() : end;
+    }
+
+    private static class Node {
+        private volatile ConcurrentMap<String, Node> children;
+        private volatile FileMetadataSnapshot metadata;
+        private volatile PhysicalSnapshot snapshot;
+
+        @Nullable
+        Node getChild(String segment) {
+            ConcurrentMap<String, Node> children = this.children;
+            return children == null ? null : children.get(segment);
+        }
+
+        Node getOrCreateChild(String segment) {
+            ConcurrentMap<String, Node> children = this.children;
+            if (children == null) {
+                synchronized (this) {
+                    children = this.children;
+                    if (children == null) {
+                        children = new ConcurrentHashMap<String, Node>(4);
+                        this.children = children;
+                    }
+                }
+            }
+            Node child = children.get(segment);
+            if (child == null) {
+                Node newChild = new Node();
+                child = children.putIfAbsent(segment, newChild);
+                if (child == null) {
+                    child = newChild;
+                }
+            }
+            return child;
+        }
+
+        void removeChild(String segment) {
+            ConcurrentMap<String, Node> children = this.children;
+            if (children != null) {
+                children.remove(segment);
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.base.Objects;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import org.gradle.api.Transformer;
@@ -32,7 +33,9 @@ import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
 import org.gradle.cache.internal.CrossProcessSynchronizingCache;
 import org.gradle.cache.internal.HeapProportionalCacheSizer;
 import org.gradle.cache.internal.MultiProcessSafeAsyncPersistentIndexedCache;
+import org.gradle.internal.serialize.Serializer;
 
+import javax.annotation.Nullable;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -40,40 +43,69 @@ import java.util.concurrent.atomic.AtomicReference;
  * The in-memory cache is invalidated when the backing cache is changed by another process.
  *
  * Also decorates each cache so that updates to the backing cache are made asynchronously.
+ *
+ * When an off-heap size is set, the serialized values of the caches that provide their value serializer are also kept in direct memory,
+ * and the in-memory cache only keeps a fraction of the entries it would otherwise keep.
  */
 public class InMemoryCacheDecoratorFactory {
     private final static Logger LOG = Logging.getLogger(InMemoryCacheDecoratorFactory.class);
+    public static final String OFF_HEAP_SIZE_SYSTEM_PROPERTY = "org.gradle.internal.cache.offHeapSizeMegabytes";
+    private static final int MAX_OFF_HEAP_SIZE_MEGABYTES = 1024;
+    private static final int HOT_SET_FRACTION = 8;
     private final boolean longLivingProcess;
+    private final int offHeapSizeMegabytes;
     private final HeapProportionalCacheSizer cacheSizer = new HeapProportionalCacheSizer();
     private final CrossBuildInMemoryCache<String, CacheDetails> caches;
 
     public InMemoryCacheDecoratorFactory(boolean longLivingProcess, CrossBuildInMemoryCacheFactory cacheFactory) {
+        this(longLivingProcess, cacheFactory, Integer.getInteger(OFF_HEAP_SIZE_SYSTEM_PROPERTY, 0));
+    }
+
+    public InMemoryCacheDecoratorFactory(boolean longLivingProcess, CrossBuildInMemoryCacheFactory cacheFactory, int offHeapSizeMegabytes) {
+        if (offHeapSizeMegabytes < 0 || offHeapSizeMegabytes > MAX_OFF_HEAP_SIZE_MEGABYTES) {
+            LOG.warn("Invalid value for java system property '{}': {}. The off-heap cache will not be used.", OFF_HEAP_SIZE_SYSTEM_PROPERTY, offHeapSizeMegabytes);
+            offHeapSizeMegabytes = 0;
+        }
         this.longLivingProcess = longLivingProcess;
+        this.offHeapSizeMegabytes = offHeapSizeMegabytes;
         caches = cacheFactory.newCache();
     }
 
     public CacheDecorator decorator(final int maxEntriesToKeepInMemory, final boolean cacheInMemoryForShortLivedProcesses) {
-        return new InMemoryCacheDecorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses);
+        return new InMemoryCacheDecorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses, null);
     }
 
-    private <K, V> MultiProcessSafeAsyncPersistentIndexedCache<K, V> applyInMemoryCaching(String cacheId, MultiProcessSafeAsyncPersistentIndexedCache<K, V> backingCache, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
+    /**
+     * Creates a decorator that can also keep the values of the cache off-heap, serialized using the given serializer.
+     */
+    public CacheDecorator decorator(final int maxEntriesToKeepInMemory, final boolean cacheInMemoryForShortLivedProcesses, Serializer<?> valueSerializer) {
+        return new InMemoryCacheDecorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses, valueSerializer);
+    }
+
+    private <K, V> MultiProcessSafeAsyncPersistentIndexedCache<K, V> applyInMemoryCaching(String cacheId, MultiProcessSafeAsyncPersistentIndexedCache<K, V> backingCache, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses, @Nullable Serializer<?> valueSerializer) {
         if (!longLivingProcess && !cacheInMemoryForShortLivedProcesses) {
             // Short lived process, don't cache in memory
             LOG.debug("Creating cache {} without in-memory store.", cacheId);
             return backingCache;
         }
         int targetSize = cacheSizer.scaleCacheSize(maxEntriesToKeepInMemory);
-        CacheDetails cacheDetails = getCache(cacheId, targetSize);
-        return new InMemoryDecoratedCache<K, V>(backingCache, cacheDetails.entries, cacheId, cacheDetails.lockState);
+        boolean offHeap = valueSerializer != null && offHeapSizeMegabytes > 0;
+        if (offHeap) {
+            // Only keep the hot set on heap
+            targetSize = Math.max(1, targetSize / HOT_SET_FRACTION);
+        }
+        CacheDetails cacheDetails = getCache(cacheId, targetSize, offHeap ? valueSerializer : null);
+        return new InMemoryDecoratedCache<K, V>(backingCache, cacheDetails.entries, cacheDetails.offHeapStore, cacheId, cacheDetails.lockState);
     }
 
-    private CacheDetails getCache(final String cacheId, final int maxSize) {
+    private CacheDetails getCache(final String cacheId, final int maxSize, @Nullable final Serializer<?> offHeapSerializer) {
         CacheDetails cacheDetails = caches.get(cacheId, new Transformer<CacheDetails, String>() {
             @Override
             public CacheDetails transform(String cacheId) {
                 Cache<Object, Object> entries = createInMemoryCache(cacheId, maxSize);
-                CacheDetails cacheDetails = new CacheDetails(cacheId, maxSize, entries, new AtomicReference<FileLock.State>(null));
-                LOG.debug("Creating in-memory store for cache {} (max size: {})", cacheId, maxSize);
+                OffHeapValueStore offHeapStore = offHeapSerializer == null ? null : new OffHeapValueStore(offHeapSerializer, offHeapSizeMegabytes * 1024 * 1024);
+                CacheDetails cacheDetails = new CacheDetails(cacheId, maxSize, entries, offHeapStore, new AtomicReference<FileLock.State>(null));
+                LOG.debug("Creating in-memory store for cache {} (max size: {}, off-heap: {})", cacheId, maxSize, offHeapStore != null);
                 return cacheDetails;
             }
         });
@@ -94,10 +126,12 @@ public class InMemoryCacheDecoratorFactory {
     private class InMemoryCacheDecorator implements CacheDecorator {
         private final int maxEntriesToKeepInMemory;
         private final boolean cacheInMemoryForShortLivedProcesses;
+        private final Serializer<?> valueSerializer;
 
-        InMemoryCacheDecorator(int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
+        InMemoryCacheDecorator(int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses, @Nullable Serializer<?> valueSerializer) {
             this.maxEntriesToKeepInMemory = maxEntriesToKeepInMemory;
             this.cacheInMemoryForShortLivedProcesses = cacheInMemoryForShortLivedProcesses;
+            this.valueSerializer = valueSerializer;
         }
 
         @Override
@@ -109,7 +143,8 @@ public class InMemoryCacheDecoratorFactory {
                 return false;
             }
             InMemoryCacheDecorator other = (InMemoryCacheDecorator) obj;
-            return maxEntriesToKeepInMemory == other.maxEntriesToKeepInMemory && cacheInMemoryForShortLivedProcesses == other.cacheInMemoryForShortLivedProcesses;
+            return maxEntriesToKeepInMemory == other.maxEntriesToKeepInMemory && cacheInMemoryForShortLivedProcesses == other.cacheInMemoryForShortLivedProcesses
+                && Objects.equal(valueSerializer, other.valueSerializer);
         }
 
         @Override
@@ -120,7 +155,7 @@ public class InMemoryCacheDecoratorFactory {
         @Override
         public <K, V> MultiProcessSafePersistentIndexedCache<K, V> decorate(String cacheId, String cacheName, MultiProcessSafePersistentIndexedCache<K, V> persistentCache, CrossProcessCacheAccess crossProcessCacheAccess, AsyncCacheAccess asyncCacheAccess) {
             MultiProcessSafeAsyncPersistentIndexedCache<K, V> asyncCache = new AsyncCacheAccessDecoratedCache<K, V>(asyncCacheAccess, persistentCache);
-            MultiProcessSafeAsyncPersistentIndexedCache<K, V> memCache = applyInMemoryCaching(cacheId, asyncCache, maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses);
+            MultiProcessSafeAsyncPersistentIndexedCache<K, V> memCache = applyInMemoryCaching(cacheId, asyncCache, maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses, valueSerializer);
             return new CrossProcessSynchronizingCache<K, V>(memCache, crossProcessCacheAccess);
         }
     }
@@ -129,12 +164,14 @@ public class InMemoryCacheDecoratorFactory {
         private final String cacheId;
         private final int maxEntries;
         private final Cache<Object, Object> entries;
+        private final OffHeapValueStore offHeapStore;
         private final AtomicReference<FileLock.State> lockState;
 
-        CacheDetails(String cacheId, int maxEntries, Cache<Object, Object> entries, AtomicReference<FileLock.State> lockState) {
+        CacheDetails(String cacheId, int maxEntries, Cache<Object, Object> entries, @Nullable OffHeapValueStore offHeapStore, AtomicReference<FileLock.State> lockState) {
             this.cacheId = cacheId;
             this.maxEntries = maxEntries;
             this.entries = entries;
+            this.offHeapStore = offHeapStore;
             this.lockState = lockState;
         }
     }
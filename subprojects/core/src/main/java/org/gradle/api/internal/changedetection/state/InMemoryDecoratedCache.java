@@ -27,6 +27,7 @@ import org.gradle.cache.internal.MultiProcessSafeAsyncPersistentIndexedCache;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.hash.HashCode;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -39,10 +40,19 @@ class InMemoryDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentInd
     private final Cache<Object, Object> inMemoryCache;
     private final String cacheId;
     private final AtomicReference<FileLock.State> fileLockStateReference;
+    private final OffHeapValueStore offHeapStore;
 
     public InMemoryDecoratedCache(MultiProcessSafeAsyncPersistentIndexedCache<K, V> delegate, Cache<Object, Object> inMemoryCache, String cacheId, AtomicReference<FileLock.State> fileLockStateReference) {
+        this(delegate, inMemoryCache, null, cacheId, fileLockStateReference);
+    }
+
+    /**
+     * @param offHeapStore when not null, keeps the serialized values of the cache, so that the in-memory cache only needs to keep the values used most recently.
+     */
+    public InMemoryDecoratedCache(MultiProcessSafeAsyncPersistentIndexedCache<K, V> delegate, Cache<Object, Object> inMemoryCache, @Nullable OffHeapValueStore offHeapStore, String cacheId, AtomicReference<FileLock.State> fileLockStateReference) {
         this.delegate = delegate;
         this.inMemoryCache = inMemoryCache;
+        this.offHeapStore = offHeapStore;
         this.cacheId = cacheId;
         this.fileLockStateReference = fileLockStateReference;
     }
@@ -60,7 +70,7 @@ class InMemoryDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentInd
             value = inMemoryCache.get(key, new Callable<Object>() {
                 @Override
                 public Object call() throws Exception {
-                    Object out = delegate.get(key);
+                    Object out = getFromBackingStores(key);
                     return out == null ? NULL : out;
                 }
             });
@@ -76,6 +86,23 @@ class InMemoryDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentInd
         }
     }
 
+    @Nullable
+    private Object getFromBackingStores(K key) {
+        if (offHeapStore == null) {
+            return delegate.get(key);
+        }
+        Object value = offHeapStore.get(key);
+        if (value == null) {
+            // Do not replace a value written or removed by another thread while reading the backing cache
+            long modification = offHeapStore.currentModification();
+            value = delegate.get(key);
+            if (value != null) {
+                offHeapStore.putIfNotModifiedSince(key, value, modification);
+            }
+        }
+        return value;
+    }
+
     private void validateKeyType(K key) {
         assert key instanceof String || key instanceof Long || key instanceof File || key instanceof HashCode || key instanceof ValueSnapshot : "Unsupported key type: " + key;
     }
@@ -96,13 +123,17 @@ class InMemoryDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentInd
             value = inMemoryCache.get(key, new Callable<Object>() {
                 @Override
                 public Object call() throws Exception {
+                    long modification = offHeapStore == null ? 0 : offHeapStore.currentModification();
                     if (!wasNull) {
-                        Object out = delegate.get(key);
+                        Object out = getFromBackingStores(key);
                         if (out != null) {
                             return out;
                         }
                     }
                     V value = producer.transform(key);
+                    if (offHeapStore != null) {
+                        offHeapStore.putIfNotModifiedSince(key, value, modification);
+                    }
                     delegate.putLater(key, value, completion);
                     completionRef.set(Runnables.doNothing());
                     return value;
@@ -125,12 +156,18 @@ class InMemoryDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentInd
     @Override
     public void putLater(K key, V value, Runnable completion) {
         inMemoryCache.put(key, value);
+        if (offHeapStore != null) {
+            offHeapStore.put(key, value);
+        }
         delegate.putLater(key, value, completion);
     }
 
     @Override
     public void removeLater(K key, Runnable completion) {
         inMemoryCache.put(key, NULL);
+        if (offHeapStore != null) {
+            offHeapStore.remove(key);
+        }
         delegate.removeLater(key, completion);
     }
 
@@ -146,6 +183,9 @@ class InMemoryDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentInd
         }
         if (outOfDate) {
             inMemoryCache.invalidateAll();
+            if (offHeapStore != null) {
+                offHeapStore.clear();
+            }
         }
         delegate.afterLockAcquire(currentCacheState);
     }
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.Cast;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the serialized values of a cache in direct memory, outside of the heap, and decodes them when read.
+ *
+ * <p>Values are written one after the other to a ring of fixed size pages. When the ring is full, the oldest page is reused, discarding the values written to it.
+ * A value read from the page that is reused next is written again to the current page, so that values that are still used survive.</p>
+ *
+ * <p>Values loaded from a backing store are written with {@link #putIfNotModifiedSince(Object, Object, long)}, so that a value loaded before a key was
+ * written or removed does not replace the newer state.</p>
+ */
+class OffHeapValueStore {
+    static final int PAGE_SIZE = 1024 * 1024;
+    private final Serializer<Object> serializer;
+    private final ByteBuffer[] pages;
+    private final List<List<Object>> keysByPage;
+    // Position of each value in the ring in the high 32 bits, and length in the low 32 bits
+    private final Map<Object, Long> locations = new HashMap<Object, Long>();
+    // Modification count at which each key was last written or removed with put() or remove()
+    private final Map<Object, Long> modifications = new HashMap<Object, Long>();
+    private long modificationCount;
+    private long clearedAt;
+    private int currentPage;
+    private int writePosition;
+
+    OffHeapValueStore(Serializer<?> serializer, int maxBytes) {
+        this.serializer = Cast.uncheckedCast(serializer);
+        int pageCount = Math.max(1, maxBytes / PAGE_SIZE);
+        this.pages = new ByteBuffer[pageCount];
+        this.keysByPage = new ArrayList<List<Object>>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            keysByPage.add(new ArrayList<Object>());
+        }
+    }
+
+    @Nullable
+    Object get(Object key) {
+        byte[] bytes;
+        synchronized (this) {
+            Long location = locations.get(key);
+            if (location == null) {
+                return null;
+            }
+            int position = (int) (location >>> 32);
+            bytes = new byte[(int) location.longValue()];
+            ByteBuffer page = pages[position / PAGE_SIZE].duplicate();
+            page.position(position % PAGE_SIZE);
+            page.get(bytes);
+            if (pages.length > 1 && position / PAGE_SIZE == (currentPage + 1) % pages.length) {
+                write(key, bytes);
+            }
+        }
+        try {
+            return serializer.read(new KryoBackedDecoder(new ByteArrayInputStream(bytes)));
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    /**
+     * Returns a marker to pass to {@link #putIfNotModifiedSince(Object, Object, long)}, taken before reading a value from the backing store.
+     */
+    synchronized long currentModification() {
+        return modificationCount;
+    }
+
+    void put(Object key, Object value) {
+        byte[] bytes = serialize(value);
+        synchronized (this) {
+            modifications.put(key, ++modificationCount);
+            store(key, bytes);
+        }
+    }
+
+    /**
+     * Stores the given value unless the key has been written, removed or the store cleared since the given modification was current.
+     */
+    void putIfNotModifiedSince(Object key, Object value, long modification) {
+        byte[] bytes = serialize(value);
+        synchronized (this) {
+            Long lastModification = modifications.get(key);
+            if (modification < clearedAt || (lastModification != null && lastModification > modification)) {
+                return;
+            }
+            store(key, bytes);
+        }
+    }
+
+    private byte[] serialize(Object value) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream, 512);
+        try {
+            serializer.write(encoder, value);
+            encoder.flush();
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private void store(Object key, byte[] bytes) {
+        if (bytes.length > PAGE_SIZE) {
+            locations.remove(key);
+        } else {
+            write(key, bytes);
+        }
+    }
+
+    synchronized void remove(Object key) {
+        modifications.put(key, ++modificationCount);
+        locations.remove(key);
+    }
+
+    synchronized void clear() {
+        locations.clear();
+        modifications.clear();
+        clearedAt = ++modificationCount;
+        for (List<Object> keys : keysByPage) {
+            keys.clear();
+        }
+        currentPage = 0;
+        writePosition = 0;
+    }
+
+    synchronized int size() {
+        return locations.size();
+    }
+
+    private void write(Object key, byte[] bytes) {
+        if (writePosition + bytes.length > PAGE_SIZE) {
+            currentPage = (currentPage + 1) % pages.length;
+            writePosition = 0;
+            discardPage(currentPage);
+        }
+        if (pages[currentPage] == null) {
+            pages[currentPage] = ByteBuffer.allocateDirect(PAGE_SIZE);
+        }
+        ByteBuffer page = pages[currentPage].duplicate();
+        page.position(writePosition);
+        page.put(bytes);
+        int position = currentPage * PAGE_SIZE + writePosition;
+        locations.put(key, ((long) position << 32) | bytes.length);
+        keysByPage.get(currentPage).add(key);
+        writePosition += bytes.length;
+    }
+
+    private void discardPage(int page) {
+        List<Object> keys = keysByPage.get(page);
+        for (Object key : keys) {
+            Long location = locations.get(key);
+            // The key may have been written again to another page since
+            if (location != null && (int) (location >>> 32) / PAGE_SIZE == page) {
+                locations.remove(key);
+            }
+        }
+        keys.clear();
+    }
+}
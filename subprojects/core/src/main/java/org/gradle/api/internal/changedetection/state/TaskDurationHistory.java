@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.internal.TaskInternal;
+
+import javax.annotation.Nullable;
+
+/**
+ * Remembers how long tasks took to execute, so the next build can schedule long running tasks early.
+ */
+public interface TaskDurationHistory {
+    /**
+     * Returns how long the given task took to execute in the build that last executed it, in milliseconds, or null if unknown.
+     */
+    @Nullable
+    Long getPreviousDuration(TaskInternal task);
+
+    /**
+     * Records how long the given task took to execute its actions in this build. The duration becomes visible to the next build.
+     * Only tasks that actually executed their actions should be recorded, as up-to-date or cached tasks say nothing about how long the work takes.
+     */
+    void recordDuration(TaskInternal task, long durationMillis);
+}
@@ -19,8 +19,10 @@ package org.gradle.api.internal.changedetection.state;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
+import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.tasks.OriginTaskExecutionMetadata;
 import org.gradle.internal.fingerprint.HistoricalFileCollectionFingerprint;
+import org.gradle.internal.fingerprint.impl.ColumnarFingerprintsSerializer;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.id.UniqueId;
 import org.gradle.internal.serialize.AbstractSerializer;
@@ -29,14 +31,14 @@ import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.Serializer;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.List;
 
 public class TaskExecutionFingerprintSerializer extends AbstractSerializer<HistoricalTaskExecution> {
     private final InputPropertiesSerializer inputPropertiesSerializer;
-    private final Serializer<HistoricalFileCollectionFingerprint> fileCollectionFingerprintSerializer;
+    private final ColumnarFingerprintsSerializer fingerprintsSerializer;
 
-    TaskExecutionFingerprintSerializer(Serializer<HistoricalFileCollectionFingerprint> fileCollectionFingerprintSerializer) {
-        this.fileCollectionFingerprintSerializer = fileCollectionFingerprintSerializer;
+    TaskExecutionFingerprintSerializer(Serializer<HistoricalFileCollectionFingerprint> fileCollectionFingerprintSerializer, StringInterner stringInterner) {
+        this.fingerprintsSerializer = new ColumnarFingerprintsSerializer(fileCollectionFingerprintSerializer, stringInterner);
         this.inputPropertiesSerializer = new InputPropertiesSerializer();
     }
 
@@ -48,8 +50,9 @@ public class TaskExecutionFingerprintSerializer extends AbstractSerializer<Histo
             decoder.readLong()
         );
 
-        ImmutableSortedMap<String, HistoricalFileCollectionFingerprint> inputFilesFingerprints = readFingerprints(decoder);
-        ImmutableSortedMap<String, HistoricalFileCollectionFingerprint> outputFilesFingerprints = readFingerprints(decoder);
+        List<ImmutableSortedMap<String, HistoricalFileCollectionFingerprint>> fingerprints = fingerprintsSerializer.read(decoder, 2);
+        ImmutableSortedMap<String, HistoricalFileCollectionFingerprint> inputFilesFingerprints = fingerprints.get(0);
+        ImmutableSortedMap<String, HistoricalFileCollectionFingerprint> outputFilesFingerprints = fingerprints.get(1);
 
         ImplementationSnapshot taskImplementation = readImplementation(decoder);
 
@@ -87,8 +90,7 @@ public class TaskExecutionFingerprintSerializer extends AbstractSerializer<Histo
         encoder.writeBoolean(execution.isSuccessful());
         encoder.writeString(execution.getOriginExecutionMetadata().getBuildInvocationId().asString());
         encoder.writeLong(execution.getOriginExecutionMetadata().getExecutionTime());
-        writeFingerprints(encoder, execution.getInputFingerprints());
-        writeFingerprints(encoder, execution.getOutputFingerprints());
+        fingerprintsSerializer.write(encoder, ImmutableList.of(execution.getInputFingerprints(), execution.getOutputFingerprints()));
         writeImplementation(encoder, execution.getTaskImplementation());
         encoder.writeSmallInt(execution.getTaskActionImplementations().size());
         for (ImplementationSnapshot actionImpl : execution.getTaskActionImplementations()) {
@@ -116,23 +118,4 @@ public class TaskExecutionFingerprintSerializer extends AbstractSerializer<Histo
             encoder.writeBinary(implementation.getClassLoaderHash().toByteArray());
         }
     }
-
-    private ImmutableSortedMap<String, HistoricalFileCollectionFingerprint> readFingerprints(Decoder decoder) throws Exception {
-        int count = decoder.readSmallInt();
-        ImmutableSortedMap.Builder<String, HistoricalFileCollectionFingerprint> builder = ImmutableSortedMap.naturalOrder();
-        for (int fingerprintIdx = 0; fingerprintIdx < count; fingerprintIdx++) {
-            String property = decoder.readString();
-            HistoricalFileCollectionFingerprint fingerprint = fileCollectionFingerprintSerializer.read(decoder);
-            builder.put(property, fingerprint);
-        }
-        return builder.build();
-    }
-
-    private void writeFingerprints(Encoder encoder, Map<String, HistoricalFileCollectionFingerprint> fingerprints) throws Exception {
-        encoder.writeSmallInt(fingerprints.size());
-        for (Map.Entry<String, HistoricalFileCollectionFingerprint> entry : fingerprints.entrySet()) {
-            encoder.writeString(entry.getKey());
-            fileCollectionFingerprintSerializer.write(encoder, entry.getValue());
-        }
-    }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state.mirror;
+
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A bounded pool of threads used to walk and hash directory trees in parallel.
+ *
+ * The threads are created on demand and retire when idle, so an unused pool does not hold on to any threads.
+ *
+ * The threads do not hold worker leases, so walking in parallel is opt-in: the pool walks directory trees on the calling thread
+ * unless {@value #PARALLELISM_PROPERTY} is set.
+ */
+@SuppressWarnings("Since15")
+public class DirectoryWalkerPool implements Stoppable {
+    /**
+     * The maximum number of threads used to walk a directory tree. A value of 1, the default, walks directory trees on the calling thread.
+     * These threads are not bounded by {@code --max-workers}.
+     */
+    public static final String PARALLELISM_PROPERTY = "org.gradle.internal.directory-walker.parallelism";
+
+    private final int parallelism;
+    private ForkJoinPool pool;
+
+    public DirectoryWalkerPool(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public static DirectoryWalkerPool fromSystemProperties() {
+        return new DirectoryWalkerPool(Integer.getInteger(PARALLELISM_PROPERTY, 1));
+    }
+
+    public boolean isParallel() {
+        return parallelism > 1;
+    }
+
+    public <T> T invoke(ForkJoinTask<T> task) {
+        return getPool().invoke(task);
+    }
+
+    private synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.gradle.api.internal.changedetection.state.mirror;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -43,33 +44,58 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystemLoopException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
+/**
+ * Walks a directory tree and snapshots its contents.
+ *
+ * <p>When a {@link DirectoryWalkerPool} that allows parallelism is given, the tree is walked as a fork/join computation: each directory is listed
+ * by its own task, subdirectories are walked by forked tasks and large numbers of files are hashed in parallel. The snapshot of each directory is
+ * assembled from the snapshots of its children, which are sorted by name, so the result is the same as the result of a sequential walk.</p>
+ */
 @SuppressWarnings("Since15")
 public class MirrorUpdatingDirectoryWalker {
+    // Files of a directory are hashed in forked tasks of at most this many files
+    private static final int FILES_PER_HASHING_TASK = 32;
+
     private final FileHasher hasher;
     private final FileSystem fileSystem;
     private final StringInterner stringInterner;
     private final DefaultExcludes defaultExcludes;
+    private final DirectoryWalkerPool walkerPool;
 
     public MirrorUpdatingDirectoryWalker(FileHasher hasher, FileSystem fileSystem, StringInterner stringInterner) {
+        this(hasher, fileSystem, stringInterner, new DirectoryWalkerPool(1));
+    }
+
+    public MirrorUpdatingDirectoryWalker(FileHasher hasher, FileSystem fileSystem, StringInterner stringInterner, DirectoryWalkerPool walkerPool) {
         this.hasher = hasher;
         this.fileSystem = fileSystem;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(DirectoryScanner.getDefaultExcludes());
+        this.walkerPool = walkerPool;
     }
 
     public PhysicalSnapshot walkDir(String absolutePath, @Nullable PatternSet patterns, final MutableBoolean hasBeenFiltered) {
         Path rootPath = Paths.get(absolutePath);
         final Spec<FileTreeElement> spec = (patterns == null || patterns.isEmpty()) ? null : patterns.getAsSpec();
+        if (walkerPool.isParallel()) {
+            return walkDirInParallel(rootPath, spec, hasBeenFiltered);
+        }
         final MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
 
         try {
@@ -77,7 +103,7 @@ public class MirrorUpdatingDirectoryWalker {
                 @Override
                 public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
                     String name = stringInterner.intern(dir.getFileName().toString());
-                    if (builder.isRoot() || isAllowed(dir, name, true, attrs, builder.getRelativePath())) {
+                    if (builder.isRoot() || isAllowed(dir, name, true, attrs, builder.getRelativePath(), spec, hasBeenFiltered)) {
                         builder.preVisitDirectory(internedAbsolutePath(dir), name);
                         return FileVisitResult.CONTINUE;
                     } else {
@@ -88,7 +114,7 @@ public class MirrorUpdatingDirectoryWalker {
                 @Override
                 public FileVisitResult visitFile(Path file, @Nullable BasicFileAttributes attrs) {
                     String name = stringInterner.intern(file.getFileName().toString());
-                    if (isAllowed(file, name, false, attrs, builder.getRelativePath())) {
+                    if (isAllowed(file, name, false, attrs, builder.getRelativePath(), spec, hasBeenFiltered)) {
                         if (attrs == null) {
                             throw new GradleException(String.format("Cannot read file '%s': not authorized.", file));
                         }
@@ -96,7 +122,7 @@ public class MirrorUpdatingDirectoryWalker {
                             // when FileVisitOption.FOLLOW_LINKS, we only get here when link couldn't be followed
                             throw new GradleException(String.format("Could not list contents of '%s'. Couldn't follow symbolic link.", file));
                         }
-                        addFileSnapshot(file, name, attrs);
+                        builder.visit(fileSnapshot(file, name, attrs));
                     }
                     return FileVisitResult.CONTINUE;
                 }
@@ -106,7 +132,7 @@ public class MirrorUpdatingDirectoryWalker {
                     // File loop exceptions are ignored. When we encounter a loop (via symbolic links), we continue
                     // so we include all the other files apart from the loop.
                     // This way, we include each file only once.
-                    if (isNotFileSystemLoopException(exc) && isAllowed(file, file.getFileName().toString(), false, null, builder.getRelativePath())) {
+                    if (isNotFileSystemLoopException(exc) && isAllowed(file, file.getFileName().toString(), false, null, builder.getRelativePath(), spec, hasBeenFiltered)) {
                         throw new GradleException(String.format("Could not read path '%s'.", file), exc);
                     }
                     return FileVisitResult.CONTINUE;
@@ -127,41 +153,244 @@ public class MirrorUpdatingDirectoryWalker {
                 private boolean isNotFileSystemLoopException(@Nullable IOException e) {
                     return e != null && !(e instanceof FileSystemLoopException);
                 }
+            });
+        } catch (IOException e) {
+            throw new GradleException(String.format("Could not list contents of directory '%s'.", rootPath), e);
+        }
+        return builder.getResult();
+    }
+
+    private PhysicalSnapshot walkDirInParallel(Path rootPath, @Nullable Spec<FileTreeElement> spec, MutableBoolean hasBeenFiltered) {
+        BasicFileAttributes rootAttributes;
+        try {
+            rootAttributes = Files.readAttributes(rootPath, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new GradleException(String.format("Could not list contents of directory '%s'.", rootPath), e);
+        }
+        String rootName = stringInterner.intern(rootPath.getFileName().toString());
+        WalkContext context = new WalkContext(spec, hasBeenFiltered);
+        return walkerPool.invoke(new WalkDirectoryTask(context, null, rootPath, rootName, rootAttributes, ImmutableList.<String>of()));
+    }
+
+    private PhysicalFileSnapshot fileSnapshot(Path file, String name, BasicFileAttributes attrs) {
+        Preconditions.checkNotNull(attrs, "Unauthorized access to %", file);
+        DefaultFileMetadata metadata = new DefaultFileMetadata(FileType.RegularFile, attrs.lastModifiedTime().toMillis(), attrs.size());
+        HashCode hash = hasher.hash(file.toFile(), metadata);
+        return new PhysicalFileSnapshot(internedAbsolutePath(file), name, hash, metadata.getLastModified());
+    }
+
+    private String internedAbsolutePath(Path file) {
+        return stringInterner.intern(file.toString());
+    }
 
-                private void addFileSnapshot(Path file, String name, BasicFileAttributes attrs) {
-                    Preconditions.checkNotNull(attrs, "Unauthorized access to %", file);
-                    DefaultFileMetadata metadata = new DefaultFileMetadata(FileType.RegularFile, attrs.lastModifiedTime().toMillis(), attrs.size());
-                    HashCode hash = hasher.hash(file.toFile(), metadata);
-                    PhysicalFileSnapshot fileSnapshot = new PhysicalFileSnapshot(internedAbsolutePath(file), name, hash, metadata.getLastModified());
-                    builder.visit(fileSnapshot);
+    private boolean isAllowed(Path path, String name, boolean isDirectory, @Nullable BasicFileAttributes attrs, Iterable<String> relativePath, @Nullable Spec<FileTreeElement> spec, MutableBoolean hasBeenFiltered) {
+        if (isDirectory) {
+            if (defaultExcludes.excludeDir(name)) {
+                return false;
+            }
+        } else if (defaultExcludes.excludeFile(name)) {
+            return false;
+        }
+        if (spec == null) {
+            return true;
+        }
+        boolean allowed = spec.isSatisfiedBy(new PathBackedFileTreeElement(path, name, isDirectory, attrs, relativePath, fileSystem));
+        if (!allowed) {
+            hasBeenFiltered.set(true);
+        }
+        return allowed;
+    }
+
+    private static class WalkContext {
+        private final Spec<FileTreeElement> spec;
+        private final MutableBoolean hasBeenFiltered;
+
+        WalkContext(@Nullable Spec<FileTreeElement> spec, MutableBoolean hasBeenFiltered) {
+            this.spec = spec;
+            this.hasBeenFiltered = hasBeenFiltered;
+        }
+    }
+
+    /**
+     * Lists a single directory, hashes the files in it and walks its subdirectories in forked tasks.
+     */
+    private class WalkDirectoryTask extends RecursiveTask<PhysicalSnapshot> {
+        private final WalkContext context;
+        private final WalkDirectoryTask parent;
+        private final Path dir;
+        private final String name;
+        private final BasicFileAttributes attrs;
+        // The relative path of the directory, without the name of the root directory
+        private final List<String> relativePath;
+
+        WalkDirectoryTask(WalkContext context, @Nullable WalkDirectoryTask parent, Path dir, String name, BasicFileAttributes attrs, List<String> relativePath) {
+            this.context = context;
+            this.parent = parent;
+            this.dir = dir;
+            this.name = name;
+            this.attrs = attrs;
+            this.relativePath = relativePath;
+        }
+
+        @Override
+        protected PhysicalSnapshot compute() {
+            List<WalkDirectoryTask> subdirectories = new ArrayList<WalkDirectoryTask>();
+            List<Path> files = new ArrayList<Path>();
+            List<String> fileNames = new ArrayList<String>();
+            List<BasicFileAttributes> fileAttributes = new ArrayList<BasicFileAttributes>();
+
+            DirectoryStream<Path> entries;
+            try {
+                entries = Files.newDirectoryStream(dir);
+            } catch (IOException e) {
+                if (parent == null || isAllowed(dir, name, false, null, parent.relativePath)) {
+                    throw new GradleException(String.format("Could not read path '%s'.", dir), e);
                 }
+                return null;
+            }
+            try {
+                for (Path entry : entries) {
+                    String entryName = stringInterner.intern(entry.getFileName().toString());
+                    BasicFileAttributes entryAttributes = readAttributes(entry, entryName);
+                    if (entryAttributes == null) {
+                        continue;
+                    }
+                    if (entryAttributes.isDirectory()) {
+                        if (!isAllowed(entry, entryName, true, entryAttributes, relativePath) || isAncestor(entry, entryAttributes)) {
+                            continue;
+                        }
+                        List<String> childRelativePath = ImmutableList.<String>builder().addAll(relativePath).add(entryName).build();
+                        subdirectories.add(new WalkDirectoryTask(context, this, entry, entryName, entryAttributes, childRelativePath));
+                    } else if (isAllowed(entry, entryName, false, entryAttributes, relativePath)) {
+                        files.add(entry);
+                        fileNames.add(entryName);
+                        fileAttributes.add(entryAttributes);
+                    }
+                }
+            } catch (DirectoryIteratorException e) {
+                throw new GradleException(String.format("Could not read directory path '%s'.", dir), e.getCause());
+            } finally {
+                closeQuietly(entries);
+            }
 
-                private String internedAbsolutePath(Path file) {
-                    return stringInterner.intern(file.toString());
+            PhysicalSnapshot[] fileSnapshots = new PhysicalSnapshot[files.size()];
+            HashFilesTask hashFiles = new HashFilesTask(files, fileNames, fileAttributes, fileSnapshots, 0, fileSnapshots.length);
+            if (subdirectories.isEmpty()) {
+                hashFiles.invoke();
+            } else {
+                hashFiles.fork();
+                invokeAll(subdirectories);
+                hashFiles.join();
+            }
+
+            MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+            builder.preVisitDirectory(internedAbsolutePath(dir), name);
+            for (PhysicalSnapshot fileSnapshot : fileSnapshots) {
+                builder.visit(fileSnapshot);
+            }
+            for (WalkDirectoryTask subdirectory : subdirectories) {
+                PhysicalSnapshot directorySnapshot = subdirectory.getRawResult();
+                if (directorySnapshot != null) {
+                    builder.visit(directorySnapshot);
                 }
+            }
+            builder.postVisitDirectory();
+            return builder.getResult();
+        }
 
-                private boolean isAllowed(Path path, String name, boolean isDirectory, @Nullable BasicFileAttributes attrs, Iterable<String> relativePath) {
-                    if (isDirectory) {
-                        if (defaultExcludes.excludeDir(name)) {
-                            return false;
-                        }
-                    } else if (defaultExcludes.excludeFile(name)) {
-                        return false;
+        @Nullable
+        private BasicFileAttributes readAttributes(Path entry, String entryName) {
+            try {
+                return Files.readAttributes(entry, BasicFileAttributes.class);
+            } catch (IOException e) {
+                BasicFileAttributes linkAttributes;
+                try {
+                    linkAttributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException ignored) {
+                    linkAttributes = null;
+                }
+                if (linkAttributes != null && linkAttributes.isSymbolicLink()) {
+                    if (isAllowed(entry, entryName, false, linkAttributes, relativePath)) {
+                        throw new GradleException(String.format("Could not list contents of '%s'. Couldn't follow symbolic link.", entry));
                     }
-                    if (spec == null) {
+                } else if (isAllowed(entry, entryName, false, null, relativePath)) {
+                    throw new GradleException(String.format("Could not read path '%s'.", entry), e);
+                }
+                return null;
+            }
+        }
+
+        /**
+         * Detects loops via symbolic links, which are skipped so we include each file only once.
+         */
+        private boolean isAncestor(Path entry, BasicFileAttributes entryAttributes) {
+            Object fileKey = entryAttributes.fileKey();
+            for (WalkDirectoryTask ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+                if (fileKey != null) {
+                    if (fileKey.equals(ancestor.attrs.fileKey())) {
                         return true;
                     }
-                    boolean allowed = spec.isSatisfiedBy(new PathBackedFileTreeElement(path, name, isDirectory, attrs, relativePath, fileSystem));
-                    if (!allowed) {
-                        hasBeenFiltered.set(true);
+                } else {
+                    try {
+                        if (Files.isSameFile(entry, ancestor.dir)) {
+                            return true;
+                        }
+                    } catch (IOException ignored) {
+                        // Not the same file, as far as we can tell
                     }
-                    return allowed;
                 }
-            });
-        } catch (IOException e) {
-            throw new GradleException(String.format("Could not list contents of directory '%s'.", rootPath), e);
+            }
+            return false;
+        }
+
+        private boolean isAllowed(Path path, String name, boolean isDirectory, @Nullable BasicFileAttributes attrs, List<String> relativePath) {
+            // Setting the flag from several threads is fine, as it is only ever set to true and read once the walk has completed
+            return MirrorUpdatingDirectoryWalker.this.isAllowed(path, name, isDirectory, attrs, relativePath, context.spec, context.hasBeenFiltered);
+        }
+    }
+
+    /**
+     * Hashes a range of the files of a directory, splitting the range into forked tasks when it is large.
+     */
+    private class HashFilesTask extends RecursiveAction {
+        private final List<Path> files;
+        private final List<String> names;
+        private final List<BasicFileAttributes> attributes;
+        private final PhysicalSnapshot[] snapshots;
+        private final int start;
+        private final int end;
+
+        HashFilesTask(List<Path> files, List<String> names, List<BasicFileAttributes> attributes, PhysicalSnapshot[] snapshots, int start, int end) {
+            this.files = files;
+            this.names = names;
+            this.attributes = attributes;
+            this.snapshots = snapshots;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > FILES_PER_HASHING_TASK) {
+                int middle = (start + end) >>> 1;
+                invokeAll(
+                    new HashFilesTask(files, names, attributes, snapshots, start, middle),
+                    new HashFilesTask(files, names, attributes, snapshots, middle, end)
+                );
+                return;
+            }
+            for (int i = start; i < end; i++) {
+                snapshots[i] = fileSnapshot(files.get(i), names.get(i), attributes.get(i));
+            }
+        }
+    }
+
+    private static void closeQuietly(DirectoryStream<Path> stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+            // Nothing useful to do
         }
-        return builder.getResult();
     }
 
     @VisibleForTesting
@@ -34,6 +34,13 @@ public class PhysicalDirectorySnapshot extends AbstractPhysicalSnapshot implemen
         this.contentHash = contentHash;
     }
 
+    /**
+     * The snapshots of the direct children of the directory.
+     */
+    public List<PhysicalSnapshot> getChildren() {
+        return children;
+    }
+
     @Override
     public HashCode getHash() {
         return contentHash;
@@ -42,6 +42,10 @@ public class PhysicalFileSnapshot extends AbstractPhysicalSnapshot {
         return contentHash;
     }
 
+    public long getLastModified() {
+        return lastModified;
+    }
+
     @Override
     public boolean isContentAndMetadataUpToDate(PhysicalSnapshot other) {
         if (!(other instanceof PhysicalFileSnapshot)) {
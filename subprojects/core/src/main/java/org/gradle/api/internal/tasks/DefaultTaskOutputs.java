@@ -153,6 +153,11 @@ public class DefaultTaskOutputs implements TaskOutputsInternal {
         return ENABLED;
     }
 
+    @Override
+    public boolean isCachingDeclared() {
+        return !cacheIfSpecs.isEmpty();
+    }
+
     @Nullable
     private OverlappingOutputs getOverlappingOutputs() {
         return history != null ? history.getOverlappingOutputs() : null;
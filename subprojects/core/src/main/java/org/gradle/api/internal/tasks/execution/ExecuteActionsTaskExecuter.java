@@ -15,6 +15,7 @@
  */
 package org.gradle.api.internal.tasks.execution;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import org.gradle.api.BuildCancelledException;
 import org.gradle.api.GradleException;
@@ -43,6 +44,7 @@ import org.gradle.internal.operations.BuildOperationRef;
 import org.gradle.internal.scopeids.id.BuildInvocationScopeId;
 import org.gradle.internal.work.AsyncWorkTracker;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -70,7 +72,12 @@ public class ExecuteActionsTaskExecuter implements TaskExecuter {
     public void execute(TaskInternal task, TaskStateInternal state, TaskExecutionContext context) {
         listener.beforeActions(task);
         if (task.hasTaskActions()) {
-            outputsGenerationListener.beforeTaskOutputChanged();
+            TaskProperties taskProperties = context.getTaskProperties();
+            if (taskProperties.hasDeclaredOutputs()) {
+                outputsGenerationListener.beforeTaskOutputChanged(getAffectedOutputPaths(taskProperties));
+            } else {
+                outputsGenerationListener.beforeTaskOutputChanged();
+            }
         }
         state.setExecuting(true);
         try {
@@ -89,6 +96,14 @@ public class ExecuteActionsTaskExecuter implements TaskExecuter {
         }
     }
 
+    private static List<String> getAffectedOutputPaths(TaskProperties taskProperties) {
+        List<String> affectedOutputPaths = new ArrayList<String>();
+        for (File file : Iterables.concat(taskProperties.getOutputFiles(), taskProperties.getLocalStateFiles(), taskProperties.getDestroyableFiles())) {
+            affectedOutputPaths.add(file.getAbsolutePath());
+        }
+        return affectedOutputPaths;
+    }
+
     private GradleException executeActions(TaskInternal task, TaskStateInternal state, TaskExecutionContext context) {
         LOGGER.debug("Executing actions for {}.", task);
         final List<ContextAwareTaskAction> actions = new ArrayList<ContextAwareTaskAction>(task.getTaskActions());
@@ -22,4 +22,12 @@ public interface TaskOutputChangesListener {
      * This is for example just before the task actions are executed or the outputs are loaded from the cache.
      */
     void beforeTaskOutputChanged();
+
+    /**
+     * Invoked when the outputs for a task are about to change, and the locations that can change are known.
+     * Only the given locations and the files beneath them are changed.
+     *
+     * @param affectedOutputPaths the absolute paths of the locations that are about to change.
+     */
+    void beforeTaskOutputChanged(Iterable<String> affectedOutputPaths);
 }
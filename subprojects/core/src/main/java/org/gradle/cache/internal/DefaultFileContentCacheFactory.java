@@ -24,6 +24,7 @@ import org.gradle.cache.FileLockManager;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.internal.FileUtils;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.serialize.HashCodeSerializer;
@@ -32,6 +33,7 @@ import org.gradle.internal.serialize.Serializer;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -84,7 +86,7 @@ public class DefaultFileContentCacheFactory implements FileContentCacheFactory,
     }
 
     /**
-     * Maintains 2 levels of in-memory caching. The first, fast, level indexes on file path and contains the value that is very likely to reflect the current contents of the file. This first cache is invalidated whenever any task actions are run.
+     * Maintains 2 levels of in-memory caching. The first, fast, level indexes on file path and contains the value that is very likely to reflect the current contents of the file. This first cache is invalidated whenever task actions change the files.
      *
      * The second level indexes on the hash of file content and contains the value that was calculated from a file with the given hash.
      */
@@ -108,6 +110,20 @@ public class DefaultFileContentCacheFactory implements FileContentCacheFactory,
             cache.clear();
         }
 
+        @Override
+        public void beforeTaskOutputChanged(Iterable<String> affectedOutputPaths) {
+            Iterator<File> iterator = cache.keySet().iterator();
+            while (iterator.hasNext()) {
+                String absolutePath = iterator.next().getAbsolutePath();
+                for (String affectedOutputPath : affectedOutputPaths) {
+                    if (FileUtils.doesPathStartWith(absolutePath, affectedOutputPath)) {
+                        iterator.remove();
+                        break;
+                    }
+                }
+            }
+        }
+
         @Override
         public V get(File file) {
             // TODO - don't calculate the same value concurrently
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.gradle.BuildResult;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.InternalBuildAdapter;
+import org.gradle.internal.operations.BuildOperationListener;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
+import org.gradle.internal.operations.OperationIdentifier;
+import org.gradle.internal.operations.OperationProgressEvent;
+import org.gradle.internal.time.Clock;
+
+/**
+ * Reports the file lock wait times collected during a build as a progress event of the current build operation when the build finishes.
+ */
+public class FileLockWaitStatisticsReporter extends InternalBuildAdapter {
+    private static final Logger LOGGER = Logging.getLogger(FileLockWaitStatisticsReporter.class);
+
+    private final FileLockWaitStatistics statistics;
+    private final Clock clock;
+    private final BuildOperationListener listener;
+    private final CurrentBuildOperationRef currentBuildOperationRef;
+
+    public FileLockWaitStatisticsReporter(FileLockWaitStatistics statistics, Clock clock, BuildOperationListener listener, CurrentBuildOperationRef currentBuildOperationRef) {
+        this.statistics = statistics;
+        this.clock = clock;
+        this.listener = listener;
+        this.currentBuildOperationRef = currentBuildOperationRef;
+    }
+
+    @Override
+    public void buildFinished(BuildResult result) {
+        FileLockWaitStatistics.Histogram histogram = statistics.snapshotAndReset();
+        if (histogram.getLockAcquisitions() == 0 && histogram.getTimeouts() == 0) {
+            return;
+        }
+        LOGGER.debug("File lock wait times: {}", histogram);
+        OperationIdentifier id = currentBuildOperationRef.getId();
+        if (id != null) {
+            listener.progress(id, new OperationProgressEvent(clock.getCurrentTime(), histogram));
+        }
+    }
+}
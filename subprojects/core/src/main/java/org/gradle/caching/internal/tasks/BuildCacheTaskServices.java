@@ -32,6 +32,7 @@ import org.gradle.caching.internal.controller.RootBuildCacheControllerRef;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginFactory;
 import org.gradle.initialization.buildsrc.BuildSourceBuilder;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -55,8 +56,14 @@ public class BuildCacheTaskServices {
 
     private static final Path ROOT_BUILD_SRC_PATH = Path.path(":" + BuildSourceBuilder.BUILD_SRC);
 
-    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner) {
-        return new GZipTaskOutputPacker(new TarTaskOutputPacker(fileSystem, fileHasher, stringInterner));
+    TaskOutputUnpackPool createTaskOutputUnpackPool(ExecutorFactory executorFactory) {
+        return TaskOutputUnpackPool.fromSystemProperties(executorFactory);
+    }
+
+    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner, TaskOutputUnpackPool unpackPool) {
+        TaskOutputPacker tarPacker = new GZipTaskOutputPacker(new TarTaskOutputPacker(fileSystem, fileHasher, stringInterner, unpackPool));
+        TaskOutputPacker indexedPacker = new IndexedTaskOutputPacker(fileSystem, fileHasher, stringInterner);
+        return new VersionedTaskOutputPacker(tarPacker, indexedPacker, Boolean.getBoolean(VersionedTaskOutputPacker.INDEXED_ENTRIES_PROPERTY));
     }
 
     TaskOutputOriginFactory createTaskOutputOriginFactory(
@@ -84,10 +91,11 @@ public class BuildCacheTaskServices {
         BuildOperationExecutor buildOperationExecutor,
         InstantiatorFactory instantiatorFactory,
         GradleInternal gradle,
-        RootBuildCacheControllerRef rootControllerRef
+        RootBuildCacheControllerRef rootControllerRef,
+        ExecutorFactory executorFactory
     ) {
         if (isRoot(gradle) || isRootBuildSrc(gradle) || isGradleBuildTaskRoot(rootControllerRef)) {
-            return doCreateBuildCacheController(serviceRegistry, buildCacheConfiguration, buildOperationExecutor, instantiatorFactory, gradle);
+            return doCreateBuildCacheController(serviceRegistry, buildCacheConfiguration, buildOperationExecutor, instantiatorFactory, gradle, executorFactory);
         } else {
             // must be an included build
             return rootControllerRef.getForNonRootBuild();
@@ -111,7 +119,7 @@ public class BuildCacheTaskServices {
         return gradle.getParent() == null;
     }
 
-    private BuildCacheController doCreateBuildCacheController(ServiceRegistry serviceRegistry, BuildCacheConfigurationInternal buildCacheConfiguration, BuildOperationExecutor buildOperationExecutor, InstantiatorFactory instantiatorFactory, GradleInternal gradle) {
+    private BuildCacheController doCreateBuildCacheController(ServiceRegistry serviceRegistry, BuildCacheConfigurationInternal buildCacheConfiguration, BuildOperationExecutor buildOperationExecutor, InstantiatorFactory instantiatorFactory, GradleInternal gradle, ExecutorFactory executorFactory) {
         StartParameter startParameter = gradle.getStartParameter();
         Path buildIdentityPath = gradle.getIdentityPath();
         File gradleUserHomeDir = gradle.getGradleUserHomeDir();
@@ -129,7 +137,8 @@ public class BuildCacheTaskServices {
             remoteAccessMode,
             logStackTraces,
             emitDebugLogging,
-            instantiatorFactory.inject(serviceRegistry)
+            instantiatorFactory.inject(serviceRegistry),
+            executorFactory
         );
     }
 
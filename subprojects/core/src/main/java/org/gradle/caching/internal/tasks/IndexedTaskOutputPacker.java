@@ -0,0 +1,605 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.tools.zip.UnixStat;
+import org.gradle.api.GradleException;
+import org.gradle.api.NonNullApi;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.changedetection.state.mirror.MerkleDirectorySnapshotBuilder;
+import org.gradle.api.internal.changedetection.state.mirror.PhysicalDirectorySnapshot;
+import org.gradle.api.internal.changedetection.state.mirror.PhysicalFileSnapshot;
+import org.gradle.api.internal.changedetection.state.mirror.PhysicalSnapshot;
+import org.gradle.api.internal.changedetection.state.mirror.PhysicalSnapshotVisitor;
+import org.gradle.api.internal.tasks.OriginTaskExecutionMetadata;
+import org.gradle.api.internal.tasks.OutputType;
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
+import org.gradle.api.internal.tasks.TaskFilePropertySpec;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.StreamHasher;
+import org.gradle.internal.nativeplatform.filesystem.FileSystem;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.gradle.caching.internal.tasks.TaskOutputPackerUtils.ensureDirectoryForProperty;
+import static org.gradle.caching.internal.tasks.TaskOutputPackerUtils.removeMissingOutput;
+
+/**
+ * Packages task output to a cache entry that starts with an index of all files, followed by their compressed content.
+ *
+ * <p>The index lists every output property with its tree of directories and files, including the mode, size and content hash of
+ * each file. The content of each file follows in index order, split into blocks that are compressed independently with the fastest
+ * deflate level, or stored as is when they do not compress. An entry can therefore be verified and its files skipped without
+ * decompressing the rest of the entry. The content hashes are checked when unpacking.</p>
+ *
+ * <p>Layout of an entry:</p>
+ * <pre>
+ * int magic, int format version
+ * int origin metadata length, origin metadata
+ * for each property: boolean true, UTF property name, root entry
+ * boolean false
+ * for each file, in index order: blocks of (int stored length, stored bytes)
+ *
+ * entry = byte MISSING
+ *       | byte FILE, int mode, long size, byte hash length, hash
+ *       | byte DIRECTORY, int mode, (child entry)*, byte END_OF_DIRECTORY
+ * child entry = entry kind, UTF name, rest of entry
+ * </pre>
+ */
+@NonNullApi
+public class IndexedTaskOutputPacker implements TaskOutputPacker {
+    static final int MAGIC = 0x47524345;
+    static final int FORMAT_VERSION = 2;
+
+    private static final byte MISSING = 0;
+    private static final byte FILE = 1;
+    private static final byte DIRECTORY = 2;
+    private static final byte END_OF_DIRECTORY = 3;
+    @SuppressWarnings("OctalInteger")
+    private static final int FILE_PERMISSION_MASK = 0777;
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final FileSystem fileSystem;
+    private final StreamHasher streamHasher;
+    private final StringInterner stringInterner;
+
+    public IndexedTaskOutputPacker(FileSystem fileSystem, StreamHasher streamHasher, StringInterner stringInterner) {
+        this.fileSystem = fileSystem;
+        this.streamHasher = streamHasher;
+        this.stringInterner = stringInterner;
+    }
+
+    @Override
+    public PackResult pack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, CurrentFileCollectionFingerprint> outputFingerprints, OutputStream output, TaskOutputOriginWriter writeOrigin) throws IOException {
+        DataOutputStream dataOutput = new DataOutputStream(new BufferedOutputStream(output, BLOCK_SIZE));
+        try {
+            dataOutput.writeInt(MAGIC);
+            dataOutput.writeInt(FORMAT_VERSION);
+
+            ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+            writeOrigin.execute(metadata);
+            dataOutput.writeInt(metadata.size());
+            metadata.writeTo(dataOutput);
+
+            List<IndexedFile> files = new ArrayList<IndexedFile>();
+            long entries = 1;
+            for (ResolvedTaskOutputFilePropertySpec propertySpec : propertySpecs) {
+                String propertyName = propertySpec.getPropertyName();
+                if (propertySpec.getOutputFile() == null) {
+                    continue;
+                }
+                try {
+                    dataOutput.writeBoolean(true);
+                    dataOutput.writeUTF(propertyName);
+                    IndexingVisitor indexingVisitor = new IndexingVisitor(dataOutput, propertySpec.getOutputType(), files);
+                    outputFingerprints.get(propertyName).visitRoots(indexingVisitor);
+                    entries += indexingVisitor.finish();
+                } catch (Exception ex) {
+                    throw new GradleException(String.format("Could not pack property '%s': %s", propertyName, ex.getMessage()), ex);
+                }
+            }
+            dataOutput.writeBoolean(false);
+
+            BlockOutputStream blockOutput = new BlockOutputStream(dataOutput);
+            for (IndexedFile file : files) {
+                packFileContent(file, blockOutput);
+            }
+            blockOutput.finish();
+            dataOutput.flush();
+            return new PackResult(entries);
+        } finally {
+            IOUtils.closeQuietly(dataOutput);
+        }
+    }
+
+    private void packFileContent(IndexedFile file, BlockOutputStream blockOutput) throws IOException {
+        InputStream input = new FileInputStream(file.file);
+        try {
+            long written = blockOutput.getCount();
+            HashCode hash = streamHasher.hashCopy(input, blockOutput);
+            // The content must match the index, which was written from the fingerprint of the outputs
+            if (!hash.equals(file.hash) || blockOutput.getCount() - written != file.size) {
+                throw new IllegalStateException(String.format("File '%s' changed while it was packed", file.file));
+            }
+            blockOutput.endFile();
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    @Override
+    public UnpackResult unpack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, InputStream input, TaskOutputOriginReader readOrigin) throws IOException {
+        DataInputStream dataInput = new DataInputStream(new BufferedInputStream(input, BLOCK_SIZE));
+        try {
+            return unpack(propertySpecs, dataInput, readOrigin);
+        } catch (EOFException e) {
+            throw new IllegalStateException("Cached result format error, the entry is truncated.", e);
+        } finally {
+            IOUtils.closeQuietly(dataInput);
+        }
+    }
+
+    private UnpackResult unpack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, DataInputStream dataInput, TaskOutputOriginReader readOrigin) throws IOException {
+        if (dataInput.readInt() != MAGIC) {
+            throw new IllegalStateException("Cached result format error, not an indexed cache entry.");
+        }
+        int formatVersion = dataInput.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IllegalStateException(String.format("Cached result format error, unsupported format version %d.", formatVersion));
+        }
+
+        byte[] metadata = new byte[dataInput.readInt()];
+        dataInput.readFully(metadata);
+        OriginTaskExecutionMetadata originMetadata = readOrigin.execute(new ByteArrayInputStream(metadata));
+
+        Map<String, ResolvedTaskOutputFilePropertySpec> propertySpecsMap = Maps.uniqueIndex(propertySpecs, new Function<TaskFilePropertySpec, String>() {
+            @Override
+            public String apply(TaskFilePropertySpec propertySpec) {
+                return propertySpec.getPropertyName();
+            }
+        });
+        Map<ResolvedTaskOutputFilePropertySpec, IndexEntry> index = new LinkedHashMap<ResolvedTaskOutputFilePropertySpec, IndexEntry>();
+        long entries = 1;
+        while (dataInput.readBoolean()) {
+            String propertyName = dataInput.readUTF();
+            ResolvedTaskOutputFilePropertySpec propertySpec = propertySpecsMap.get(propertyName);
+            if (propertySpec == null) {
+                throw new IllegalStateException(String.format("No output property '%s' registered", propertyName));
+            }
+            IndexEntry rootEntry = readEntry(dataInput, dataInput.readByte(), "");
+            index.put(propertySpec, rootEntry);
+            entries += rootEntry.count();
+        }
+
+        Map<String, PhysicalSnapshot> snapshots = new HashMap<String, PhysicalSnapshot>();
+        BlockInputStream blockInput = new BlockInputStream(dataInput);
+        try {
+            for (Map.Entry<ResolvedTaskOutputFilePropertySpec, IndexEntry> entry : index.entrySet()) {
+                unpackProperty(entry.getKey(), entry.getValue(), blockInput, snapshots);
+            }
+        } finally {
+            blockInput.end();
+        }
+        return new UnpackResult(originMetadata, entries, snapshots);
+    }
+
+    private static IndexEntry readEntry(DataInputStream dataInput, byte kind, String name) throws IOException {
+        switch (kind) {
+            case MISSING:
+                return new IndexEntry(kind, name, 0, 0, null);
+            case FILE:
+                int fileMode = dataInput.readInt();
+                long size = dataInput.readLong();
+                byte[] hash = new byte[dataInput.readUnsignedByte()];
+                dataInput.readFully(hash);
+                return new IndexEntry(kind, name, fileMode, size, HashCode.fromBytes(hash));
+            case DIRECTORY:
+                IndexEntry directory = new IndexEntry(kind, name, dataInput.readInt(), 0, null);
+                byte childKind;
+                while ((childKind = dataInput.readByte()) != END_OF_DIRECTORY) {
+                    if (childKind == MISSING) {
+                        throw new IllegalStateException("Cached result format error, missing entry inside a directory.");
+                    }
+                    directory.children.add(readEntry(dataInput, childKind, checkName(dataInput.readUTF())));
+                }
+                return directory;
+            default:
+                throw new IllegalStateException("Cached result format error, invalid entry kind: " + kind);
+        }
+    }
+
+    private static String checkName(String name) {
+        if (name.isEmpty() || name.equals(".") || name.equals("..") || name.indexOf('/') >= 0 || name.indexOf('\\') >= 0) {
+            throw new IllegalStateException("Cached result format error, invalid file name: " + name);
+        }
+        return name;
+    }
+
+    private void unpackProperty(ResolvedTaskOutputFilePropertySpec propertySpec, IndexEntry rootEntry, BlockInputStream blockInput, Map<String, PhysicalSnapshot> snapshots) throws IOException {
+        File propertyRoot = propertySpec.getOutputFile();
+        String propertyName = propertySpec.getPropertyName();
+        if (propertyRoot == null) {
+            throw new IllegalStateException("Optional property should have a value: " + propertyName);
+        }
+        if (rootEntry.kind == MISSING) {
+            removeMissingOutput(propertyRoot);
+            return;
+        }
+
+        OutputType outputType = propertySpec.getOutputType();
+        ensureDirectoryForProperty(outputType, propertyRoot);
+        if (outputType == OutputType.FILE) {
+            if (rootEntry.kind != FILE) {
+                throw new IllegalStateException("Property should be an output file property: " + propertyName);
+            }
+            snapshots.put(propertyName, unpackFile(rootEntry, blockInput, propertyRoot, propertyRoot.getName()));
+            return;
+        }
+
+        if (rootEntry.kind != DIRECTORY) {
+            throw new IllegalStateException("Property should be an output directory property: " + propertyName);
+        }
+        MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        unpackDirectory(rootEntry, blockInput, propertyRoot, propertyRoot.getName(), builder);
+        snapshots.put(propertyName, builder.getResult());
+    }
+
+    private void unpackDirectory(IndexEntry entry, BlockInputStream blockInput, File directory, String name, MerkleDirectorySnapshotBuilder builder) throws IOException {
+        FileUtils.forceMkdir(directory);
+        fileSystem.chmod(directory, entry.mode & FILE_PERMISSION_MASK);
+        builder.preVisitDirectory(stringInterner.intern(directory.getAbsolutePath()), stringInterner.intern(name));
+        for (IndexEntry child : entry.children) {
+            File childFile = new File(directory, child.name);
+            if (child.kind == DIRECTORY) {
+                unpackDirectory(child, blockInput, childFile, child.name, builder);
+            } else {
+                builder.visit(unpackFile(child, blockInput, childFile, child.name));
+            }
+        }
+        builder.postVisitDirectory();
+    }
+
+    private PhysicalFileSnapshot unpackFile(IndexEntry entry, BlockInputStream blockInput, File outputFile, String name) throws IOException {
+        OutputStream output = new FileOutputStream(outputFile);
+        HashCode hash;
+        try {
+            blockInput.startFile(entry.size);
+            hash = streamHasher.hashCopy(blockInput, output);
+            fileSystem.chmod(outputFile, entry.mode & FILE_PERMISSION_MASK);
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+        if (!hash.equals(entry.hash)) {
+            throw new IllegalStateException(String.format("Cached result format error, corrupted content for '%s'.", outputFile));
+        }
+        return new PhysicalFileSnapshot(stringInterner.intern(outputFile.getAbsolutePath()), stringInterner.intern(name), hash, outputFile.lastModified());
+    }
+
+    private static class IndexedFile {
+        final File file;
+        final long size;
+        final HashCode hash;
+
+        IndexedFile(File file, long size, HashCode hash) {
+            this.file = file;
+            this.size = size;
+            this.hash = hash;
+        }
+    }
+
+    private static class IndexEntry {
+        final byte kind;
+        final String name;
+        final int mode;
+        final long size;
+        @Nullable
+        final HashCode hash;
+        final List<IndexEntry> children = new ArrayList<IndexEntry>();
+
+        IndexEntry(byte kind, String name, int mode, long size, @Nullable HashCode hash) {
+            this.kind = kind;
+            this.name = name;
+            this.mode = mode;
+            this.size = size;
+            this.hash = hash;
+        }
+
+        long count() {
+            long count = 1;
+            for (IndexEntry child : children) {
+                count += child.count();
+            }
+            return count;
+        }
+    }
+
+    private class IndexingVisitor implements PhysicalSnapshotVisitor {
+        private final DataOutputStream output;
+        private final OutputType outputType;
+        private final List<IndexedFile> files;
+        private int depth;
+        private long entries;
+
+        IndexingVisitor(DataOutputStream output, OutputType outputType, List<IndexedFile> files) {
+            this.output = output;
+            this.outputType = outputType;
+            this.files = files;
+        }
+
+        @Override
+        public boolean preVisitDirectory(PhysicalDirectorySnapshot directorySnapshot) {
+            boolean root = depth == 0;
+            assertCorrectType(root, directorySnapshot);
+            int mode = root ? UnixStat.DEFAULT_DIR_PERM : fileSystem.getUnixMode(new File(directorySnapshot.getAbsolutePath()));
+            try {
+                writeEntryStart(root, DIRECTORY, directorySnapshot.getName());
+                output.writeInt(mode);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            depth++;
+            entries++;
+            return true;
+        }
+
+        @Override
+        public void visit(PhysicalSnapshot fileSnapshot) {
+            boolean root = depth == 0;
+            try {
+                if (fileSnapshot.getType() == FileType.Missing) {
+                    writeEntryStart(root, MISSING, fileSnapshot.getName());
+                } else {
+                    assertCorrectType(root, fileSnapshot);
+                    File file = new File(fileSnapshot.getAbsolutePath());
+                    long size = file.length();
+                    HashCode hash = fileSnapshot.getHash();
+                    writeEntryStart(root, FILE, fileSnapshot.getName());
+                    output.writeInt(fileSystem.getUnixMode(file));
+                    output.writeLong(size);
+                    byte[] hashBytes = hash.toByteArray();
+                    output.writeByte(hashBytes.length);
+                    output.write(hashBytes);
+                    files.add(new IndexedFile(file, size, hash));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            entries++;
+        }
+
+        @Override
+        public void postVisitDirectory(PhysicalDirectorySnapshot directorySnapshot) {
+            depth--;
+            try {
+                output.writeByte(END_OF_DIRECTORY);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        long finish() throws IOException {
+            if (entries == 0) {
+                output.writeByte(MISSING);
+                entries++;
+            }
+            return entries;
+        }
+
+        private void writeEntryStart(boolean root, byte kind, String name) throws IOException {
+            output.writeByte(kind);
+            if (!root) {
+                output.writeUTF(name);
+            }
+        }
+
+        private void assertCorrectType(boolean root, PhysicalSnapshot snapshot) {
+            if (root) {
+                switch (outputType) {
+                    case DIRECTORY:
+                        if (snapshot.getType() != FileType.Directory) {
+                            throw new IllegalArgumentException(String.format("Expected '%s' to be a directory", snapshot.getAbsolutePath()));
+                        }
+                        break;
+                    case FILE:
+                        if (snapshot.getType() != FileType.RegularFile) {
+                            throw new IllegalArgumentException(String.format("Expected '%s' to be a file", snapshot.getAbsolutePath()));
+                        }
+                        break;
+                    default:
+                        throw new AssertionError();
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the content of each file into blocks, and compresses each block on its own.
+     */
+    private static class BlockOutputStream extends OutputStream {
+        private final DataOutputStream output;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private final byte[] compressed = new byte[BLOCK_SIZE];
+        private int blockLength;
+        private long count;
+
+        BlockOutputStream(DataOutputStream output) {
+            this.output = output;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            while (len > 0) {
+                int length = Math.min(len, BLOCK_SIZE - blockLength);
+                System.arraycopy(bytes, off, block, blockLength, length);
+                blockLength += length;
+                count += length;
+                off += length;
+                len -= length;
+                if (blockLength == BLOCK_SIZE) {
+                    writeBlock();
+                }
+            }
+        }
+
+        void endFile() throws IOException {
+            if (blockLength > 0) {
+                writeBlock();
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            deflater.reset();
+            deflater.setInput(block, 0, blockLength);
+            deflater.finish();
+            int compressedLength = deflater.deflate(compressed, 0, blockLength);
+            if (deflater.finished() && compressedLength < blockLength) {
+                output.writeInt(compressedLength);
+                output.write(compressed, 0, compressedLength);
+            } else {
+                // The block does not compress, so store it as is
+                output.writeInt(blockLength);
+                output.write(block, 0, blockLength);
+            }
+            blockLength = 0;
+        }
+
+        void finish() {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reads back the content of a single file at a time from the blocks written by {@link BlockOutputStream}.
+     */
+    private static class BlockInputStream extends InputStream {
+        private final DataInputStream input;
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private final byte[] stored = new byte[BLOCK_SIZE];
+        private long remainingInFile;
+        private int blockLength;
+        private int blockPosition;
+
+        BlockInputStream(DataInputStream input) {
+            this.input = input;
+        }
+
+        void startFile(long size) {
+            remainingInFile = size;
+            blockLength = 0;
+            blockPosition = 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            return read(buffer, 0, 1) < 0 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (blockPosition == blockLength) {
+                if (remainingInFile == 0) {
+                    return -1;
+                }
+                readBlock();
+            }
+            int length = Math.min(len, blockLength - blockPosition);
+            System.arraycopy(block, blockPosition, bytes, off, length);
+            blockPosition += length;
+            return length;
+        }
+
+        private void readBlock() throws IOException {
+            int expectedLength = (int) Math.min(BLOCK_SIZE, remainingInFile);
+            int storedLength = input.readInt();
+            if (storedLength <= 0 || storedLength > expectedLength) {
+                throw new IllegalStateException("Cached result format error, invalid block length: " + storedLength);
+            }
+            if (storedLength == expectedLength) {
+                input.readFully(block, 0, storedLength);
+            } else {
+                input.readFully(stored, 0, storedLength);
+                inflater.reset();
+                inflater.setInput(stored, 0, storedLength);
+                try {
+                    int inflated = 0;
+                    while (!inflater.finished() && inflated < expectedLength) {
+                        int length = inflater.inflate(block, inflated, expectedLength - inflated);
+                        if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                            break;
+                        }
+                        inflated += length;
+                    }
+                    if (inflated != expectedLength || !inflater.finished()) {
+                        throw new IllegalStateException("Cached result format error, corrupted block.");
+                    }
+                } catch (DataFormatException e) {
+                    throw new IllegalStateException("Cached result format error, corrupted block.", e);
+                }
+            }
+            blockLength = expectedLength;
+            blockPosition = 0;
+            remainingInFile -= expectedLength;
+        }
+
+        void end() {
+            inflater.end();
+        }
+    }
+}
@@ -43,6 +43,8 @@ import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
 import org.gradle.api.internal.tasks.TaskFilePropertySpec;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.Cast;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
 import org.gradle.internal.hash.HashCode;
@@ -51,6 +53,7 @@ import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 
 import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -61,16 +64,21 @@ import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static org.gradle.caching.internal.tasks.TaskOutputPackerUtils.ensureDirectoryForProperty;
-import static org.gradle.caching.internal.tasks.TaskOutputPackerUtils.makeDirectory;
+import static org.gradle.caching.internal.tasks.TaskOutputPackerUtils.removeMissingOutput;
 
 /**
  * Packages task output to a POSIX TAR file.
@@ -82,6 +90,9 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
     @SuppressWarnings("OctalInteger")
     private static final int FILE_PERMISSION_MASK = 0777;
     private static final int BUFFER_SIZE = 64 * 1024;
+    // Larger files are written on the unpacking thread, so their content does not need to be held in memory
+    private static final long MAX_BACKGROUND_WRITE_SIZE = 1024 * 1024;
+    private static final Object END_OF_DIRECTORY = new Object();
     private static final ThreadLocal<byte[]> COPY_BUFFERS = new ThreadLocal<byte[]>() {
         @Override
         protected byte[] initialValue() {
@@ -92,11 +103,18 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
     private final FileSystem fileSystem;
     private final StreamHasher streamHasher;
     private final StringInterner stringInterner;
+    @Nullable
+    private final TaskOutputUnpackPool unpackPool;
 
     public TarTaskOutputPacker(FileSystem fileSystem, StreamHasher streamHasher, StringInterner stringInterner) {
+        this(fileSystem, streamHasher, stringInterner, null);
+    }
+
+    public TarTaskOutputPacker(FileSystem fileSystem, StreamHasher streamHasher, StringInterner stringInterner, @Nullable TaskOutputUnpackPool unpackPool) {
         this.fileSystem = fileSystem;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.unpackPool = unpackPool != null && unpackPool.isParallel() ? unpackPool : null;
     }
 
     @Override
@@ -231,7 +249,7 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         }
         // We are handling the root of the property here
         if (missing) {
-            unpackMissingFile(propertyRoot);
+            removeMissingOutput(propertyRoot);
             return input.getNextTarEntry();
         }
 
@@ -255,16 +273,7 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         return unpackDirectoryTree(input, rootEntry, snapshots, entries, propertyRoot, propertyName);
     }
 
-    private void unpackMissingFile(File propertyRoot) throws IOException {
-        if (!makeDirectory(propertyRoot.getParentFile())) {
-            // Make sure output is removed if it exists already
-            if (propertyRoot.exists()) {
-                FileUtils.forceDelete(propertyRoot);
-            }
-        }
-    }
-
-    private PhysicalFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File outputFile, String absolutePath, String fileName) throws IOException {
+    private PhysicalFileSnapshot unpackFile(InputStream input, TarArchiveEntry entry, File outputFile, String absolutePath, String fileName) throws IOException {
         OutputStream output = new FileOutputStream(outputFile);
         HashCode hash;
         try {
@@ -283,7 +292,17 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         RelativePathParser parser = new RelativePathParser();
         parser.rootPath(rootEntry.getName());
 
-        MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        UnpackedTreeBuilder builder = new UnpackedTreeBuilder();
+        try {
+            return unpackDirectoryTree(input, snapshots, entries, propertyRoot, propertyName, parser, builder);
+        } finally {
+            // Do not leave files being written when unpacking fails
+            builder.waitForPendingWrites();
+        }
+    }
+
+    @Nullable
+    private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, Map<String, PhysicalSnapshot> snapshots, AtomicInteger entries, File propertyRoot, String propertyName, RelativePathParser parser, UnpackedTreeBuilder builder) throws IOException {
         String rootPath = stringInterner.intern(propertyRoot.getAbsolutePath());
         String rootDirName = stringInterner.intern(propertyRoot.getName());
         builder.preVisitDirectory(rootPath, rootDirName);
@@ -309,8 +328,7 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
                 String outputDirName = stringInterner.intern(parser.getName());
                 builder.preVisitDirectory(outputPath, outputDirName);
             } else {
-                PhysicalFileSnapshot fileSnapshot = unpackFile(input, entry, outputFile, outputFile.getAbsolutePath(), parser.getName());
-                builder.visit(fileSnapshot);
+                builder.visitFile(input, entry, outputFile, parser.getName());
             }
         }
 
@@ -322,6 +340,107 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         return entry;
     }
 
+    /**
+     * Builds the snapshot of an unpacked directory tree.
+     *
+     * When an unpack pool is available, small files are written, chmod-ed and hashed in the background. The shape of the tree is then
+     * recorded and replayed in archive order once all files have been written. Directories are still created on the unpacking thread
+     * before any of their files are submitted.
+     */
+    private class UnpackedTreeBuilder {
+        private final MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        private final List<Object> pendingEvents = new ArrayList<Object>();
+        private final List<Future<PhysicalFileSnapshot>> pendingWrites = new ArrayList<Future<PhysicalFileSnapshot>>();
+
+        void preVisitDirectory(String absolutePath, String name) {
+            if (pendingWrites.isEmpty()) {
+                builder.preVisitDirectory(absolutePath, name);
+            } else {
+                pendingEvents.add(new PendingDirectory(absolutePath, name));
+            }
+        }
+
+        void postVisitDirectory() {
+            if (pendingWrites.isEmpty()) {
+                builder.postVisitDirectory();
+            } else {
+                pendingEvents.add(END_OF_DIRECTORY);
+            }
+        }
+
+        void visitFile(TarArchiveInputStream input, final TarArchiveEntry entry, final File outputFile, final String fileName) throws IOException {
+            if (unpackPool == null || entry.getSize() > MAX_BACKGROUND_WRITE_SIZE) {
+                PhysicalFileSnapshot fileSnapshot = unpackFile(input, entry, outputFile, outputFile.getAbsolutePath(), fileName);
+                if (pendingWrites.isEmpty()) {
+                    builder.visit(fileSnapshot);
+                } else {
+                    pendingEvents.add(fileSnapshot);
+                }
+                return;
+            }
+            final byte[] content = IOUtils.toByteArray(input, entry.getSize());
+            Future<PhysicalFileSnapshot> write = unpackPool.submit(new Callable<PhysicalFileSnapshot>() {
+                @Override
+                public PhysicalFileSnapshot call() throws IOException {
+                    return unpackFile(new ByteArrayInputStream(content), entry, outputFile, outputFile.getAbsolutePath(), fileName);
+                }
+            });
+            pendingWrites.add(write);
+            pendingEvents.add(write);
+        }
+
+        PhysicalSnapshot getResult() throws IOException {
+            for (Object event : pendingEvents) {
+                if (event == END_OF_DIRECTORY) {
+                    builder.postVisitDirectory();
+                } else if (event instanceof PendingDirectory) {
+                    PendingDirectory directory = (PendingDirectory) event;
+                    builder.preVisitDirectory(directory.absolutePath, directory.name);
+                } else if (event instanceof Future) {
+                    builder.visit(waitFor(Cast.<Future<PhysicalFileSnapshot>>uncheckedCast(event)));
+                } else {
+                    builder.visit((PhysicalSnapshot) event);
+                }
+            }
+            pendingEvents.clear();
+            pendingWrites.clear();
+            return builder.getResult();
+        }
+
+        void waitForPendingWrites() {
+            for (Future<PhysicalFileSnapshot> write : pendingWrites) {
+                try {
+                    write.get();
+                } catch (Exception ignored) {
+                    // The failure is reported when the result is built
+                }
+            }
+        }
+
+        private PhysicalFileSnapshot waitFor(Future<PhysicalFileSnapshot> write) throws IOException {
+            try {
+                return write.get();
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw UncheckedException.throwAsUncheckedException(e.getCause());
+            }
+        }
+    }
+
+    private static class PendingDirectory {
+        final String absolutePath;
+        final String name;
+
+        PendingDirectory(String absolutePath, String name) {
+            this.absolutePath = absolutePath;
+            this.name = name;
+        }
+    }
+
     private void chmodUnpackedFile(TarArchiveEntry entry, File outputFile) {
         fileSystem.chmod(outputFile, entry.getMode() & FILE_PERMISSION_MASK);
     }
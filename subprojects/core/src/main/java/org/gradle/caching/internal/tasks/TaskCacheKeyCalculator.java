@@ -21,8 +21,10 @@ import org.gradle.api.internal.changedetection.state.CurrentTaskExecution;
 import org.gradle.api.internal.changedetection.state.ValueSnapshot;
 import org.gradle.caching.internal.DefaultBuildCacheHasher;
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
+import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 
+import javax.annotation.Nullable;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.SortedSet;
@@ -30,9 +32,19 @@ import java.util.SortedSet;
 public class TaskCacheKeyCalculator {
 
     private final boolean buildCacheDebugLogging;
+    private final FileHasher cacheKeyFileHasher;
 
     public TaskCacheKeyCalculator(boolean buildCacheDebugLogging) {
+        this(buildCacheDebugLogging, null);
+    }
+
+    /**
+     * @param cacheKeyFileHasher when not null, hashes the content of the input files of tasks that declare caching for their cache keys,
+     * as the content hashes of the fingerprints are not MD5 hashes.
+     */
+    public TaskCacheKeyCalculator(boolean buildCacheDebugLogging, @Nullable FileHasher cacheKeyFileHasher) {
         this.buildCacheDebugLogging = buildCacheDebugLogging;
+        this.cacheKeyFileHasher = cacheKeyFileHasher;
     }
 
     public TaskOutputCachingBuildCacheKey calculate(TaskInternal task, CurrentTaskExecution execution) {
@@ -55,9 +67,15 @@ public class TaskCacheKeyCalculator {
             }
         }
 
+        // Only the keys of tasks that declare caching are used to load and store outputs, so the other tasks keep the keys of their fingerprints
+        boolean rehashInputFiles = cacheKeyFileHasher != null && task.getOutputs().isCachingDeclared();
         SortedMap<String, CurrentFileCollectionFingerprint> inputFingerprints = execution.getInputFingerprints();
         for (Map.Entry<String, CurrentFileCollectionFingerprint> entry : inputFingerprints.entrySet()) {
-            builder.appendInputFilesProperty(entry.getKey(), entry.getValue());
+            CurrentFileCollectionFingerprint fingerprint = entry.getValue();
+            if (rehashInputFiles) {
+                fingerprint = fingerprint.rehash(cacheKeyFileHasher);
+            }
+            builder.appendInputFilesProperty(entry.getKey(), fingerprint);
         }
 
         SortedSet<String> outputPropertyNamesForCacheKey = execution.getOutputPropertyNamesForCacheKey();
@@ -101,7 +101,7 @@ public class TaskOutputCacheCommandFactory {
 
         @Override
         public BuildCacheLoadCommand.Result<OriginTaskExecutionMetadata> load(InputStream input) {
-            taskOutputChangesListener.beforeTaskOutputChanged();
+            taskOutputChangesListener.beforeTaskOutputChanged(getAffectedOutputPaths());
             final TaskOutputPacker.UnpackResult unpackResult;
             try {
                 unpackResult = packer.unpack(outputProperties, input, taskOutputOriginFactory.createReader(task));
@@ -134,6 +134,20 @@ public class TaskOutputCacheCommandFactory {
             };
         }
 
+        private List<String> getAffectedOutputPaths() {
+            List<String> affectedOutputPaths = new ArrayList<String>();
+            for (ResolvedTaskOutputFilePropertySpec outputProperty : outputProperties) {
+                File outputFile = outputProperty.getOutputFile();
+                if (outputFile != null) {
+                    affectedOutputPaths.add(outputFile.getAbsolutePath());
+                }
+            }
+            for (File localStateFile : taskProperties.getLocalStateFiles()) {
+                affectedOutputPaths.add(localStateFile.getAbsolutePath());
+            }
+            return affectedOutputPaths;
+        }
+
         private void updateSnapshots(Map<String, ? extends PhysicalSnapshot> propertiesSnapshots, OriginTaskExecutionMetadata originMetadata) {
             ImmutableSortedMap.Builder<String, CurrentFileCollectionFingerprint> propertyFingerprintsBuilder = ImmutableSortedMap.naturalOrder();
             AbsolutePathFingerprintingStrategy fingerprintingStrategy = AbsolutePathFingerprintingStrategy.IGNORE_MISSING;
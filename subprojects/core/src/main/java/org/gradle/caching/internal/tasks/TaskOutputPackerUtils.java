@@ -45,6 +45,15 @@ public class TaskOutputPackerUtils {
         }
     }
 
+    public static void removeMissingOutput(File specRoot) throws IOException {
+        if (!makeDirectory(specRoot.getParentFile())) {
+            // Make sure output is removed if it exists already
+            if (specRoot.exists()) {
+                FileUtils.forceDelete(specRoot);
+            }
+        }
+    }
+
     public static boolean makeDirectory(File output) throws IOException {
         if (output.isDirectory()) {
             return false;
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A small pool of threads that write, chmod and hash the files of unpacked build cache entries while the entry is decompressed on the calling thread.
+ *
+ * The threads are created on first use. At most a fixed number of files can be waiting to be written, which bounds the memory held by their content.
+ *
+ * The threads do not hold worker leases, so unpacking in parallel is opt-in: the files are written on the calling thread
+ * unless {@value #PARALLELISM_PROPERTY} is set.
+ */
+public class TaskOutputUnpackPool implements Stoppable {
+    /**
+     * The maximum number of threads used to write the files of an unpacked entry. A value of 1, the default, writes the files on the calling thread.
+     * These threads are not bounded by {@code --max-workers}.
+     */
+    public static final String PARALLELISM_PROPERTY = "org.gradle.internal.build-cache.unpack-parallelism";
+
+    private static final int MAX_PENDING_WRITES = 32;
+
+    private final ExecutorFactory executorFactory;
+    private final int parallelism;
+    private final Semaphore pendingWrites = new Semaphore(MAX_PENDING_WRITES);
+    private ManagedExecutor executor;
+
+    public TaskOutputUnpackPool(ExecutorFactory executorFactory, int parallelism) {
+        this.executorFactory = executorFactory;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public static TaskOutputUnpackPool fromSystemProperties(ExecutorFactory executorFactory) {
+        return new TaskOutputUnpackPool(executorFactory, Integer.getInteger(PARALLELISM_PROPERTY, 1));
+    }
+
+    public boolean isParallel() {
+        return parallelism > 1;
+    }
+
+    /**
+     * Submits a write to the pool, blocking while too many writes are pending.
+     */
+    public <T> Future<T> submit(final Callable<T> write) {
+        pendingWrites.acquireUninterruptibly();
+        try {
+            return getExecutor().submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    try {
+                        return write.call();
+                    } finally {
+                        pendingWrites.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            pendingWrites.release();
+            throw e;
+        }
+    }
+
+    private synchronized ManagedExecutor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("Build cache unpack", parallelism);
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.SortedSet;
+
+/**
+ * Packs task output in the configured cache entry format, and unpacks cache entries in any of the supported formats.
+ *
+ * The format of an entry is detected from its first bytes, so entries in the original tar.gz format remain readable when
+ * indexed entries are enabled.
+ */
+public class VersionedTaskOutputPacker implements TaskOutputPacker {
+    /**
+     * Packs new cache entries with {@link IndexedTaskOutputPacker}. Only enable this when every build that shares the build caches can read indexed entries.
+     */
+    public static final String INDEXED_ENTRIES_PROPERTY = "org.gradle.internal.build-cache.indexed-entries";
+
+    private final TaskOutputPacker tarPacker;
+    private final TaskOutputPacker indexedPacker;
+    private final boolean packIndexed;
+
+    public VersionedTaskOutputPacker(TaskOutputPacker tarPacker, TaskOutputPacker indexedPacker, boolean packIndexed) {
+        this.tarPacker = tarPacker;
+        this.indexedPacker = indexedPacker;
+        this.packIndexed = packIndexed;
+    }
+
+    @Override
+    public PackResult pack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, CurrentFileCollectionFingerprint> outputFingerprints, OutputStream output, TaskOutputOriginWriter writeOrigin) throws IOException {
+        TaskOutputPacker packer = packIndexed ? indexedPacker : tarPacker;
+        return packer.pack(propertySpecs, outputFingerprints, output, writeOrigin);
+    }
+
+    @Override
+    public UnpackResult unpack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, InputStream input, TaskOutputOriginReader readOrigin) throws IOException {
+        BufferedInputStream bufferedInput = new BufferedInputStream(input);
+        TaskOutputPacker packer = isIndexed(bufferedInput) ? indexedPacker : tarPacker;
+        return packer.unpack(propertySpecs, bufferedInput, readOrigin);
+    }
+
+    private static boolean isIndexed(BufferedInputStream input) throws IOException {
+        input.mark(4);
+        try {
+            return new DataInputStream(input).readInt() == IndexedTaskOutputPacker.MAGIC;
+        } catch (IOException e) {
+            // Too short for either format, let the tar packer report the problem
+            return false;
+        } finally {
+            input.reset();
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.gradle.api.execution.TaskExecutionGraph;
 import org.gradle.api.execution.TaskExecutionGraphListener;
 import org.gradle.api.execution.TaskExecutionListener;
 import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.changedetection.state.TaskDurationHistory;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
 import org.gradle.api.tasks.TaskState;
@@ -88,7 +89,8 @@ public class DefaultTaskExecutionGraph implements TaskExecutionGraphInternal {
         ResourceLockCoordinationService coordinationService,
         GradleInternal gradleInternal,
         TaskInfoFactory taskInfoFactory,
-        TaskDependencyResolver dependencyResolver
+        TaskDependencyResolver dependencyResolver,
+        TaskDurationHistory taskDurationHistory
     ) {
         this.taskPlanExecutor = taskPlanExecutor;
         this.workInfoExecutors = workInfoExecutors;
@@ -98,7 +100,7 @@ public class DefaultTaskExecutionGraph implements TaskExecutionGraphInternal {
         this.gradleInternal = gradleInternal;
         graphListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionGraphListener.class);
         taskListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionListener.class);
-        this.taskExecutionPlan = new DefaultTaskExecutionPlan(workerLeaseService, gradleInternal, taskInfoFactory, dependencyResolver);
+        this.taskExecutionPlan = new DefaultTaskExecutionPlan(workerLeaseService, gradleInternal, taskInfoFactory, dependencyResolver, taskDurationHistory);
     }
 
     @Override
@@ -37,7 +37,9 @@ import org.gradle.api.UncheckedIOException;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskDurationHistory;
 import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.internal.tasks.TaskExecutionOutcome;
 import org.gradle.api.internal.tasks.execution.DefaultTaskProperties;
 import org.gradle.api.internal.tasks.execution.TaskProperties;
 import org.gradle.api.internal.tasks.properties.PropertyWalker;
@@ -55,6 +57,8 @@ import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.ResourceLockState;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.internal.work.WorkerLeaseRegistry;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
 import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.util.CollectionUtils;
 import org.gradle.util.Path;
@@ -68,6 +72,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -98,16 +103,19 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final Map<File, String> canonicalizedFileCache = Maps.newIdentityHashMap();
     private final Map<Pair<WorkInfo, WorkInfo>, Boolean> reachableCache = Maps.newHashMap();
     private final Set<WorkInfo> dependenciesCompleteCache = Sets.newHashSet();
+    private final Map<WorkInfo, Timer> executionTimers = Maps.newIdentityHashMap();
     private final WorkerLeaseService workerLeaseService;
     private final GradleInternal gradle;
+    private final TaskDurationHistory taskDurationHistory;
 
     private boolean tasksCancelled;
 
-    public DefaultTaskExecutionPlan(WorkerLeaseService workerLeaseService, GradleInternal gradle, TaskInfoFactory taskInfoFactory, TaskDependencyResolver dependencyResolver) {
+    public DefaultTaskExecutionPlan(WorkerLeaseService workerLeaseService, GradleInternal gradle, TaskInfoFactory taskInfoFactory, TaskDependencyResolver dependencyResolver, TaskDurationHistory taskDurationHistory) {
         this.workerLeaseService = workerLeaseService;
         this.gradle = gradle;
         this.nodeFactory = taskInfoFactory;
         this.dependencyResolver = dependencyResolver;
+        this.taskDurationHistory = taskDurationHistory;
     }
 
     @Override
@@ -330,6 +338,104 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
         executionQueue.clear();
         Iterables.addAll(executionQueue, workInfoMapping);
+        prioritizeCriticalPath();
+    }
+
+    /**
+     * Reorders the execution queue so that work with the longest path of dependent work still to execute after it is selected first,
+     * using the task durations of previous builds. Work with a long tail then starts early instead of waiting for short work that
+     * happens to come first in the queue.
+     *
+     * <p>The reordered queue is still in an order allowed by the dependency, must run after, should run after and finalizer relationships,
+     * and work required by an earlier requested task still comes before work required by later requested tasks only. When no durations are
+     * known, the queue is left as is.</p>
+     */
+    private void prioritizeCriticalPath() {
+        Map<WorkInfo, Long> durations = Maps.newIdentityHashMap();
+        long knownTotal = 0;
+        for (WorkInfo workInfo : executionQueue) {
+            if (workInfo instanceof LocalTaskInfo) {
+                Long duration = taskDurationHistory.getPreviousDuration(((LocalTaskInfo) workInfo).getTask());
+                if (duration != null) {
+                    durations.put(workInfo, duration);
+                    knownTotal += duration;
+                }
+            }
+        }
+        if (knownTotal <= 0) {
+            return;
+        }
+        // Tasks that have not executed before are assumed to take as long as the average task
+        long unknownDuration = knownTotal / durations.size();
+
+        final Map<WorkInfo, Integer> positions = Maps.newIdentityHashMap();
+        final Map<WorkInfo, Integer> groups = Maps.newIdentityHashMap();
+        int entryTaskIndex = 0;
+        for (TaskInfo entryTask : entryTasks) {
+            assignGroup(entryTask, entryTaskIndex++, groups);
+        }
+        List<WorkInfo> queue = new ArrayList<WorkInfo>(executionQueue);
+        for (int i = 0; i < queue.size(); i++) {
+            // Work never comes before anything it has to run after
+            WorkInfo workInfo = queue.get(i);
+            Integer group = groups.get(workInfo);
+            int maxGroup = group == null ? 0 : group;
+            for (WorkInfo successor : workInfo.getAllSuccessorsInReverseOrder()) {
+                if (positions.containsKey(successor)) {
+                    maxGroup = Math.max(maxGroup, groups.get(successor));
+                }
+            }
+            groups.put(workInfo, maxGroup);
+            positions.put(workInfo, i);
+        }
+
+        final Map<WorkInfo, Long> tails = Maps.newIdentityHashMap();
+        Map<WorkInfo, Long> longestDependentTails = Maps.newIdentityHashMap();
+        for (int i = queue.size() - 1; i >= 0; i--) {
+            WorkInfo workInfo = queue.get(i);
+            long duration = 0;
+            if (workInfo instanceof LocalTaskInfo) {
+                Long knownDuration = durations.get(workInfo);
+                duration = knownDuration == null ? unknownDuration : knownDuration;
+            }
+            Long longestDependentTail = longestDependentTails.get(workInfo);
+            long tail = duration + (longestDependentTail == null ? 0 : longestDependentTail);
+            tails.put(workInfo, tail);
+            for (WorkInfo successor : workInfo.getAllSuccessorsInReverseOrder()) {
+                Long successorDependentTail = longestDependentTails.get(successor);
+                if (positions.containsKey(successor) && (successorDependentTail == null || successorDependentTail < tail)) {
+                    longestDependentTails.put(successor, tail);
+                }
+            }
+        }
+
+        Collections.sort(queue, new Comparator<WorkInfo>() {
+            @Override
+            public int compare(WorkInfo o1, WorkInfo o2) {
+                int result = groups.get(o1).compareTo(groups.get(o2));
+                if (result == 0) {
+                    result = tails.get(o2).compareTo(tails.get(o1));
+                }
+                if (result == 0) {
+                    result = positions.get(o1).compareTo(positions.get(o2));
+                }
+                return result;
+            }
+        });
+        executionQueue.clear();
+        executionQueue.addAll(queue);
+    }
+
+    private static void assignGroup(WorkInfo entryTask, int group, Map<WorkInfo, Integer> groups) {
+        Deque<WorkInfo> queue = new ArrayDeque<WorkInfo>();
+        queue.add(entryTask);
+        while (!queue.isEmpty()) {
+            WorkInfo workInfo = queue.removeFirst();
+            if (!groups.containsKey(workInfo)) {
+                groups.put(workInfo, group);
+                queue.addAll(workInfo.getDependencySuccessors());
+            }
+        }
     }
 
     @Override
@@ -512,6 +618,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         reachableCache.clear();
         dependenciesCompleteCache.clear();
         runningNodes.clear();
+        executionTimers.clear();
     }
 
     @Override
@@ -814,10 +921,20 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     private void recordWorkStarted(WorkInfo workInfo) {
         runningNodes.add(workInfo);
+        if (workInfo instanceof LocalTaskInfo) {
+            executionTimers.put(workInfo, Time.startTimer());
+        }
     }
 
     private void recordWorkCompleted(WorkInfo workInfo) {
         runningNodes.remove(workInfo);
+        Timer executionTimer = executionTimers.remove(workInfo);
+        if (executionTimer != null && workInfo.isSuccessful()) {
+            TaskInternal task = ((LocalTaskInfo) workInfo).getTask();
+            if (task.getState().getOutcome() == TaskExecutionOutcome.EXECUTED) {
+                taskDurationHistory.recordDuration(task, executionTimer.getElapsedMillis());
+            }
+        }
         MutationInfo mutations = workMutations.get(workInfo);
         for (WorkInfo producer : mutations.consumesOutputOf) {
             MutationInfo producerMutations = workMutations.get(producer);
@@ -27,16 +27,24 @@ import org.gradle.internal.MutableBoolean;
 import org.gradle.internal.MutableReference;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.operations.BuildOperationListener;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
+import org.gradle.internal.operations.OperationIdentifier;
+import org.gradle.internal.operations.OperationProgressEvent;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.resources.ResourceLockState;
+import org.gradle.internal.time.Clock;
 import org.gradle.internal.time.Time;
 import org.gradle.internal.time.TimeFormatting;
 import org.gradle.internal.time.Timer;
 import org.gradle.internal.work.WorkerLeaseRegistry.WorkerLease;
 import org.gradle.internal.work.WorkerLeaseService;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.unlock;
@@ -51,11 +59,25 @@ public class DefaultTaskPlanExecutor implements TaskPlanExecutor {
     private final WorkerLeaseService workerLeaseService;
     private final BuildCancellationToken cancellationToken;
     private final ResourceLockCoordinationService coordinationService;
+    private final BuildOperationListener buildOperationListener;
+    private final CurrentBuildOperationRef currentBuildOperationRef;
+    private final Clock clock;
 
     public DefaultTaskPlanExecutor(ParallelismConfiguration parallelismConfiguration, ExecutorFactory executorFactory, WorkerLeaseService workerLeaseService, BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService) {
+        this(parallelismConfiguration, executorFactory, workerLeaseService, cancellationToken, coordinationService, null, CurrentBuildOperationRef.instance(), Time.clock());
+    }
+
+    /**
+     * @param buildOperationListener receives the scheduling statistics of each executed plan, or null to not report them.
+     */
+    public DefaultTaskPlanExecutor(ParallelismConfiguration parallelismConfiguration, ExecutorFactory executorFactory, WorkerLeaseService workerLeaseService, BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService,
+                                   @Nullable BuildOperationListener buildOperationListener, CurrentBuildOperationRef currentBuildOperationRef, Clock clock) {
         this.executorFactory = executorFactory;
         this.cancellationToken = cancellationToken;
         this.coordinationService = coordinationService;
+        this.buildOperationListener = buildOperationListener;
+        this.currentBuildOperationRef = currentBuildOperationRef;
+        this.clock = clock;
         int numberOfParallelExecutors = parallelismConfiguration.getMaxWorkerCount();
         if (numberOfParallelExecutors < 1) {
             throw new IllegalArgumentException("Not a valid number of parallel executors: " + numberOfParallelExecutors);
@@ -68,14 +90,27 @@ public class DefaultTaskPlanExecutor implements TaskPlanExecutor {
     @Override
     public void process(TaskExecutionPlan taskExecutionPlan, Collection<? super Throwable> failures, Action<WorkInfo> workExecutor) {
         ManagedExecutor executor = executorFactory.create("Task worker for '" + taskExecutionPlan.getDisplayName() + "'");
+        SchedulingStatistics statistics = new SchedulingStatistics();
         try {
             WorkerLease parentWorkerLease = workerLeaseService.getCurrentWorkerLease();
-            startAdditionalWorkers(taskExecutionPlan, workExecutor, executor, parentWorkerLease);
-            new ExecutorWorker(taskExecutionPlan, workExecutor, parentWorkerLease, cancellationToken, coordinationService).run();
+            startAdditionalWorkers(taskExecutionPlan, workExecutor, executor, parentWorkerLease, statistics);
+            new ExecutorWorker(taskExecutionPlan, workExecutor, parentWorkerLease, cancellationToken, coordinationService, statistics).run();
             awaitCompletion(taskExecutionPlan, failures);
         } finally {
             executor.stop();
         }
+        reportStatistics(statistics.toStatistics());
+    }
+
+    private void reportStatistics(TaskPlanSchedulingStatistics statistics) {
+        LOGGER.debug("Task workers finished, {}", statistics);
+        if (buildOperationListener == null) {
+            return;
+        }
+        OperationIdentifier id = currentBuildOperationRef.getId();
+        if (id != null) {
+            buildOperationListener.progress(id, new OperationProgressEvent(clock.getCurrentTime(), statistics));
+        }
     }
 
     /**
@@ -95,11 +130,59 @@ public class DefaultTaskPlanExecutor implements TaskPlanExecutor {
         });
     }
 
-    private void startAdditionalWorkers(TaskExecutionPlan taskExecutionPlan, Action<? super WorkInfo> workExecutor, Executor executor, WorkerLease parentWorkerLease) {
+    private void startAdditionalWorkers(TaskExecutionPlan taskExecutionPlan, Action<? super WorkInfo> workExecutor, Executor executor, WorkerLease parentWorkerLease, SchedulingStatistics statistics) {
         LOGGER.debug("Using {} parallel executor threads", executorCount);
 
         for (int i = 1; i < executorCount; i++) {
-            executor.execute(new ExecutorWorker(taskExecutionPlan, workExecutor, parentWorkerLease, cancellationToken, coordinationService));
+            executor.execute(new ExecutorWorker(taskExecutionPlan, workExecutor, parentWorkerLease, cancellationToken, coordinationService, statistics));
+        }
+    }
+
+    /**
+     * Collects the scheduling statistics of the workers executing a plan.
+     */
+    private static class SchedulingStatistics {
+        private final AtomicInteger workerCount = new AtomicInteger();
+        private final AtomicLong busyTime = new AtomicLong();
+        private final AtomicLong idleTime = new AtomicLong();
+        private final AtomicLong stateLockWaitNanos = new AtomicLong();
+        private final AtomicLong wakeUps = new AtomicLong();
+        private final AtomicLong unproductiveWakeUps = new AtomicLong();
+
+        void workerFinished(long busy, long idle) {
+            workerCount.incrementAndGet();
+            busyTime.addAndGet(busy);
+            idleTime.addAndGet(idle);
+        }
+
+        /**
+         * Decorates the given state lock action to measure how long it takes to acquire the state lock and how often it is woken up.
+         */
+        Transformer<ResourceLockState.Disposition, ResourceLockState> measure(final Transformer<ResourceLockState.Disposition, ResourceLockState> stateLockAction) {
+            final long start = System.nanoTime();
+            return new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                private boolean evaluated;
+
+                @Override
+                public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                    boolean wokenUp = evaluated;
+                    if (wokenUp) {
+                        wakeUps.incrementAndGet();
+                    } else {
+                        evaluated = true;
+                        stateLockWaitNanos.addAndGet(System.nanoTime() - start);
+                    }
+                    ResourceLockState.Disposition disposition = stateLockAction.transform(resourceLockState);
+                    if (wokenUp && disposition == RETRY) {
+                        unproductiveWakeUps.incrementAndGet();
+                    }
+                    return disposition;
+                }
+            };
+        }
+
+        TaskPlanSchedulingStatistics toStatistics() {
+            return new TaskPlanSchedulingStatistics(workerCount.get(), busyTime.get(), idleTime.get(), TimeUnit.NANOSECONDS.toMillis(stateLockWaitNanos.get()), wakeUps.get(), unproductiveWakeUps.get());
         }
     }
 
@@ -109,13 +192,15 @@ public class DefaultTaskPlanExecutor implements TaskPlanExecutor {
         private final WorkerLease parentWorkerLease;
         private final BuildCancellationToken cancellationToken;
         private final ResourceLockCoordinationService coordinationService;
+        private final SchedulingStatistics statistics;
 
-        private ExecutorWorker(TaskExecutionPlan taskExecutionPlan, Action<? super WorkInfo> workExecutor, WorkerLease parentWorkerLease, BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService) {
+        private ExecutorWorker(TaskExecutionPlan taskExecutionPlan, Action<? super WorkInfo> workExecutor, WorkerLease parentWorkerLease, BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService, SchedulingStatistics statistics) {
             this.taskExecutionPlan = taskExecutionPlan;
             this.workExecutor = workExecutor;
             this.parentWorkerLease = parentWorkerLease;
             this.cancellationToken = cancellationToken;
             this.coordinationService = coordinationService;
+            this.statistics = statistics;
         }
 
         @Override
@@ -143,6 +228,7 @@ public class DefaultTaskPlanExecutor implements TaskPlanExecutor {
             }
 
             long total = totalTimer.getElapsedMillis();
+            statistics.workerFinished(busy.get(), total - busy.get());
 
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Task worker [{}] finished, busy: {}, idle: {}", Thread.currentThread(), TimeFormatting.formatDurationVerbose(busy.get()), TimeFormatting.formatDurationVerbose(total - busy.get()));
@@ -158,7 +244,7 @@ public class DefaultTaskPlanExecutor implements TaskPlanExecutor {
         private boolean executeWithWork(final WorkerLease workerLease, final Action<WorkInfo> workExecutor) {
             final MutableReference<WorkInfo> selected = MutableReference.empty();
             final MutableBoolean workRemaining = new MutableBoolean();
-            coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+            coordinationService.withStateLock(statistics.measure(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
                 @Override
                 public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
                     if (cancellationToken.isCancellationRequested()) {
@@ -184,7 +270,7 @@ public class DefaultTaskPlanExecutor implements TaskPlanExecutor {
                         return FINISHED;
                     }
                 }
-            });
+            }));
 
             WorkInfo selectedWorkInfo = selected.get();
             if (selectedWorkInfo != null) {
@@ -203,13 +289,13 @@ public class DefaultTaskPlanExecutor implements TaskPlanExecutor {
                     }
                 }
             } finally {
-                coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                coordinationService.withStateLock(statistics.measure(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
                     @Override
                     public ResourceLockState.Disposition transform(ResourceLockState state) {
                         taskExecutionPlan.workComplete(selected);
                         return unlock(workerLease).transform(state);
                     }
-                });
+                }));
             }
         }
     }
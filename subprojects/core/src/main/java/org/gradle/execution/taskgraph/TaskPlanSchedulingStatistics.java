@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+/**
+ * How the workers executing a task plan spent their time, reported as progress of the build operation that executes the plan.
+ */
+public class TaskPlanSchedulingStatistics {
+    private final int workerCount;
+    private final long busyTimeMillis;
+    private final long idleTimeMillis;
+    private final long stateLockWaitTimeMillis;
+    private final long wakeUps;
+    private final long unproductiveWakeUps;
+
+    public TaskPlanSchedulingStatistics(int workerCount, long busyTimeMillis, long idleTimeMillis, long stateLockWaitTimeMillis, long wakeUps, long unproductiveWakeUps) {
+        this.workerCount = workerCount;
+        this.busyTimeMillis = busyTimeMillis;
+        this.idleTimeMillis = idleTimeMillis;
+        this.stateLockWaitTimeMillis = stateLockWaitTimeMillis;
+        this.wakeUps = wakeUps;
+        this.unproductiveWakeUps = unproductiveWakeUps;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * The time the workers spent executing work, summed over all workers.
+     */
+    public long getBusyTimeMillis() {
+        return busyTimeMillis;
+    }
+
+    /**
+     * The time the workers spent not executing work, summed over all workers. Includes the state lock wait time.
+     */
+    public long getIdleTimeMillis() {
+        return idleTimeMillis;
+    }
+
+    /**
+     * The time the workers spent waiting to acquire the state lock, excluding the time spent waiting for a state change.
+     */
+    public long getStateLockWaitTimeMillis() {
+        return stateLockWaitTimeMillis;
+    }
+
+    /**
+     * The number of times a worker waiting for work was woken up by a state change.
+     */
+    public long getWakeUps() {
+        return wakeUps;
+    }
+
+    /**
+     * The number of times a worker woken up by a state change found no work it could execute and went back to waiting.
+     */
+    public long getUnproductiveWakeUps() {
+        return unproductiveWakeUps;
+    }
+
+    @Override
+    public String toString() {
+        return "workers: " + workerCount
+            + ", busy: " + busyTimeMillis + "ms"
+            + ", idle: " + idleTimeMillis + "ms"
+            + ", state lock wait: " + stateLockWaitTimeMillis + "ms"
+            + ", wake-ups: " + wakeUps
+            + ", unproductive wake-ups: " + unproductiveWakeUps;
+    }
+}
@@ -25,6 +25,7 @@ import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.tasks.execution.statistics.TaskExecutionStatisticsEventAdapter;
 import org.gradle.api.logging.Logging;
 import org.gradle.api.logging.configuration.ShowStacktrace;
+import org.gradle.cache.internal.FileLockWaitStatisticsReporter;
 import org.gradle.composite.internal.IncludedBuildControllers;
 import org.gradle.configuration.BuildConfigurer;
 import org.gradle.deployment.internal.DefaultDeploymentRegistry;
@@ -143,6 +144,7 @@ public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
         if (parent == null) {
             BuildStartedTime buildStartedTime = serviceRegistry.get(BuildStartedTime.class);
             listenerManager.useLogger(new BuildLogger(Logging.getLogger(BuildLogger.class), serviceRegistry.get(StyledTextOutputFactory.class), startParameter, requestMetaData, buildStartedTime, clock));
+            listenerManager.addListener(serviceRegistry.get(FileLockWaitStatisticsReporter.class));
         }
 
         listenerManager.addListener(serviceRegistry.get(TaskExecutionStatisticsEventAdapter.class));
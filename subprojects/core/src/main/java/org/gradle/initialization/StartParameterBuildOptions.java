@@ -43,6 +43,7 @@ public class StartParameterBuildOptions {
         options.add(new RerunTasksOption());
         options.add(new RecompileScriptsOption());
         options.add(new ProfileOption());
+        options.add(new ResolutionProfileOption());
         options.add(new ContinueOption());
         options.add(new OfflineOption());
         options.add(new RefreshDependenciesOption());
@@ -118,6 +119,19 @@ public class StartParameterBuildOptions {
         }
     }
 
+    public static class ResolutionProfileOption extends EnabledOnlyBooleanBuildOption<StartParameterInternal> {
+        public static final String LONG_OPTION = "resolution-profile";
+
+        public ResolutionProfileOption() {
+            super(null, CommandLineOptionConfiguration.create(LONG_OPTION, "Profile dependency resolution and generates a report in the <build_dir>/reports/resolution-profile directory.").incubating());
+        }
+
+        @Override
+        public void applyTo(StartParameterInternal settings, Origin origin) {
+            settings.setResolutionProfile(true);
+        }
+    }
+
     public static class ContinueOption extends EnabledOnlyBooleanBuildOption<StartParameterInternal> {
         public static final String LONG_OPTION = "continue";
 
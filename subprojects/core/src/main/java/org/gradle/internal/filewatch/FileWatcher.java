@@ -39,4 +39,16 @@ public interface FileWatcher extends Stoppable {
     boolean isRunning();
 
     void watch(FileSystemSubset fileSystemSubset) throws IOException;
+
+    /**
+     * Whether the watcher is notified of changes by the file system as they happen.
+     * <p>
+     * When false, the watcher discovers changes by polling the file system, and may only notice a change several seconds after it was made.
+     */
+    boolean isNotifiedOfChangesImmediately();
+
+    /**
+     * Delivers the events the watcher has been notified of, but not delivered yet, to its listener before returning.
+     */
+    void deliverPendingEvents();
 }
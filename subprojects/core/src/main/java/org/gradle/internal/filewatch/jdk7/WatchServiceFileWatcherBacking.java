@@ -51,6 +51,14 @@ public class WatchServiceFileWatcherBacking {
     private final WatchServiceRegistrar watchServiceRegistrar;
     private final WatchService watchService;
     private final WatchServicePoller poller;
+    // Held while events are delivered, so that events are delivered to the listener one batch at a time and in order
+    private final Object deliveryLock = new Object();
+    // Whether the poller thread is waiting for, or has just taken, a batch of events that it has not delivered yet. Guarded by deliveryLock
+    private boolean polling;
+    // Whether the poller thread has been interrupted to deliver the batch it has taken, if any, straight away. Guarded by deliveryLock
+    private boolean wakeRequested;
+    // Whether pending events are being delivered on another thread, in which case the poller thread does not take further events. Guarded by deliveryLock
+    private boolean flushing;
 
     private final FileWatcher fileWatcher = new FileWatcher() {
         @Override
@@ -63,6 +71,16 @@ public class WatchServiceFileWatcherBacking {
             WatchServiceFileWatcherBacking.this.watchServiceRegistrar.watch(fileSystemSubset);
         }
 
+        @Override
+        public boolean isNotifiedOfChangesImmediately() {
+            return !poller.isPolling();
+        }
+
+        @Override
+        public void deliverPendingEvents() {
+            WatchServiceFileWatcherBacking.this.deliverPendingEvents();
+        }
+
         @Override
         public void stop() {
             WatchServiceFileWatcherBacking.this.stop();
@@ -127,17 +145,84 @@ public class WatchServiceFileWatcherBacking {
     private void pumpEvents() throws InterruptedException {
         while (isRunning()) {
             try {
-                List<FileWatcherEvent> events = poller.takeEvents();
-                if (events != null) {
+                synchronized (deliveryLock) {
+                    while (flushing) {
+                        deliveryLock.wait();
+                    }
+                    polling = true;
+                }
+                List<FileWatcherEvent> events = null;
+                InterruptedException interrupted = null;
+                try {
+                    events = poller.takeEvents();
+                } catch (InterruptedException e) {
+                    interrupted = e;
+                } finally {
+                    synchronized (deliveryLock) {
+                        polling = false;
+                        if (wakeRequested) {
+                            // Interrupted by deliverPendingEvents() rather than stop(), so carry on once the taken batch has been delivered
+                            wakeRequested = false;
+                            Thread.interrupted();
+                            interrupted = null;
+                        }
+                        try {
+                            if (events != null) {
+                                deliverEvents(events);
+                            }
+                        } finally {
+                            deliveryLock.notifyAll();
+                        }
+                    }
+                }
+                if (interrupted != null) {
+                    throw interrupted;
+                }
+            } catch (ClosedWatchServiceException e) {
+                LOGGER.debug("Received ClosedWatchServiceException, stopping");
+                stop();
+            }
+        }
+    }
+
+    private void deliverPendingEvents() {
+        synchronized (deliveryLock) {
+            flushing = true;
+            try {
+                // The poller thread may have taken a batch of events without having delivered it yet. Wake it up and wait for it to
+                // deliver that batch, so that no event that happened before this call is delivered after it returns
+                while (polling && running.get()) {
+                    if (!wakeRequested) {
+                        wakeRequested = true;
+                        wakePollerThread();
+                    }
+                    deliveryLock.wait(100);
+                }
+                List<FileWatcherEvent> events = poller.pollEvents();
+                while (events != null && isRunning()) {
                     deliverEvents(events);
+                    events = poller.pollEvents();
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             } catch (ClosedWatchServiceException e) {
                 LOGGER.debug("Received ClosedWatchServiceException, stopping");
                 stop();
+            } finally {
+                flushing = false;
+                deliveryLock.notifyAll();
             }
         }
     }
 
+    private void wakePollerThread() {
+        SoftReference<Thread> threadSoftReference = pollerThreadReference.get();
+        Thread pollerThread = threadSoftReference == null ? null : threadSoftReference.get();
+        if (pollerThread != null && pollerThread != Thread.currentThread()) {
+            pollerThread.interrupt();
+        }
+    }
+
     private void deliverEvents(List<FileWatcherEvent> events) {
         for (FileWatcherEvent event : events) {
             if (!isRunning()) {
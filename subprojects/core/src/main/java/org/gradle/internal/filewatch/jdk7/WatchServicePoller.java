@@ -50,6 +50,25 @@ class WatchServicePoller {
         return null;
     }
 
+    /**
+     * Returns the events that are currently queued, without waiting for further events.
+     */
+    @Nullable
+    public List<FileWatcherEvent> pollEvents() {
+        WatchKey watchKey = watchService.poll();
+        if (watchKey != null) {
+            return handleWatchKey(watchKey);
+        }
+        return null;
+    }
+
+    /**
+     * Whether the watch service discovers changes by periodically scanning the watched directories, as the JDK does on macOS.
+     */
+    public boolean isPolling() {
+        return watchService.getClass().getName().endsWith("PollingWatchService");
+    }
+
     private List<FileWatcherEvent> handleWatchKey(WatchKey watchKey) {
         final Path watchedPath = (Path) watchKey.watchable();
         Transformer<FileWatcherEvent, WatchEvent<?>> watchEventTransformer = new Transformer<FileWatcherEvent, WatchEvent<?>>() {
@@ -17,6 +17,7 @@
 package org.gradle.internal.fingerprint;
 
 import org.gradle.api.internal.changedetection.state.mirror.PhysicalSnapshotVisitor;
+import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 
 /**
@@ -34,4 +35,9 @@ public interface CurrentFileCollectionFingerprint extends FileCollectionFingerpr
     void visitRoots(PhysicalSnapshotVisitor visitor);
 
     FingerprintingStrategy.Identifier getStrategyIdentifier();
+
+    /**
+     * Fingerprints the same files again, with the content of regular files hashed by the given hasher.
+     */
+    CurrentFileCollectionFingerprint rehash(FileHasher fileHasher);
 }
@@ -0,0 +1,431 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.fingerprint.impl;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSortedMap;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.changedetection.rules.TaskStateChangeVisitor;
+import org.gradle.api.internal.changedetection.state.DefaultNormalizedFileSnapshot;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.fingerprint.HistoricalFileCollectionFingerprint;
+import org.gradle.internal.fingerprint.NormalizedFileSnapshot;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.HashCodeSerializer;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes the file collection fingerprints of a task execution in a columnar layout.
+ *
+ * <p>The absolute paths and content hashes used by the fingerprints are interned into dictionaries that are written once per task execution,
+ * and the fingerprints refer to them by index. Absolute paths are stored as a tree of path segments, so files in the same directory share the entry for that directory.
+ * Normalized paths that are a suffix of the absolute path are stored as a length.</p>
+ *
+ * <p>Each fingerprint is written as a separate block that is only decoded when the fingerprint is first used.</p>
+ */
+public class ColumnarFingerprintsSerializer {
+    private static final byte EMPTY_FINGERPRINT = 0;
+    private static final byte COLUMNAR_FINGERPRINT = 1;
+    private static final byte OTHER_FINGERPRINT = 2;
+
+    private static final byte DIR_SNAPSHOT = 1;
+    private static final byte MISSING_FILE_SNAPSHOT = 2;
+    private static final byte REGULAR_FILE_SNAPSHOT = 3;
+
+    private static final byte IGNORED_PATH = 1;
+    private static final byte SUFFIX_OF_ABSOLUTE_PATH = 2;
+    private static final byte EXPLICIT_PATH = 3;
+
+    private final Serializer<HistoricalFileCollectionFingerprint> otherFingerprintSerializer;
+    private final StringInterner stringInterner;
+    private final HashCodeSerializer hashCodeSerializer = new HashCodeSerializer();
+
+    /**
+     * @param otherFingerprintSerializer used for fingerprint types which do not have a columnar representation.
+     */
+    public ColumnarFingerprintsSerializer(Serializer<HistoricalFileCollectionFingerprint> otherFingerprintSerializer, StringInterner stringInterner) {
+        this.otherFingerprintSerializer = otherFingerprintSerializer;
+        this.stringInterner = stringInterner;
+    }
+
+    /**
+     * Reads the given number of fingerprint maps, in the order they were written.
+     */
+    public List<ImmutableSortedMap<String, HistoricalFileCollectionFingerprint>> read(Decoder decoder, int mapCount) throws Exception {
+        Dictionary dictionary = readDictionary(decoder);
+        List<ImmutableSortedMap<String, HistoricalFileCollectionFingerprint>> fingerprintMaps = new ArrayList<ImmutableSortedMap<String, HistoricalFileCollectionFingerprint>>(mapCount);
+        for (int mapIdx = 0; mapIdx < mapCount; mapIdx++) {
+            int count = decoder.readSmallInt();
+            ImmutableSortedMap.Builder<String, HistoricalFileCollectionFingerprint> builder = ImmutableSortedMap.naturalOrder();
+            for (int fingerprintIdx = 0; fingerprintIdx < count; fingerprintIdx++) {
+                String property = decoder.readString();
+                byte[] block = decoder.readBinary();
+                builder.put(property, readBlock(block, dictionary));
+            }
+            fingerprintMaps.add(builder.build());
+        }
+        return fingerprintMaps;
+    }
+
+    public void write(Encoder encoder, List<? extends Map<String, HistoricalFileCollectionFingerprint>> fingerprintMaps) throws Exception {
+        DictionaryBuilder dictionary = new DictionaryBuilder();
+        List<byte[]> blocks = new ArrayList<byte[]>();
+        for (Map<String, HistoricalFileCollectionFingerprint> fingerprints : fingerprintMaps) {
+            for (HistoricalFileCollectionFingerprint fingerprint : fingerprints.values()) {
+                blocks.add(writeBlock(fingerprint, dictionary));
+            }
+        }
+
+        dictionary.write(encoder);
+        Iterator<byte[]> blockIterator = blocks.iterator();
+        for (Map<String, HistoricalFileCollectionFingerprint> fingerprints : fingerprintMaps) {
+            encoder.writeSmallInt(fingerprints.size());
+            for (String property : fingerprints.keySet()) {
+                encoder.writeString(property);
+                encoder.writeBinary(blockIterator.next());
+            }
+        }
+    }
+
+    private HistoricalFileCollectionFingerprint readBlock(byte[] block, Dictionary dictionary) throws Exception {
+        switch (block[0]) {
+            case EMPTY_FINGERPRINT:
+                return EmptyHistoricalFileCollectionFingerprint.INSTANCE;
+            case COLUMNAR_FINGERPRINT:
+                return new ColumnarFingerprint(block, dictionary);
+            case OTHER_FINGERPRINT:
+                return otherFingerprintSerializer.read(blockDecoder(block));
+            default:
+                throw new RuntimeException("Unable to read serialized file collection fingerprint. Unrecognized value found in the data stream.");
+        }
+    }
+
+    private byte[] writeBlock(HistoricalFileCollectionFingerprint fingerprint, DictionaryBuilder dictionary) throws Exception {
+        if (fingerprint instanceof ColumnarFingerprint) {
+            fingerprint = ((ColumnarFingerprint) fingerprint).getDelegate();
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+        if (fingerprint == EmptyHistoricalFileCollectionFingerprint.INSTANCE) {
+            encoder.writeByte(EMPTY_FINGERPRINT);
+        } else if (fingerprint instanceof DefaultHistoricalFileCollectionFingerprint) {
+            encoder.writeByte(COLUMNAR_FINGERPRINT);
+            writeColumns(encoder, (DefaultHistoricalFileCollectionFingerprint) fingerprint, dictionary);
+        } else {
+            encoder.writeByte(OTHER_FINGERPRINT);
+            otherFingerprintSerializer.write(encoder, fingerprint);
+        }
+        encoder.flush();
+        return outputStream.toByteArray();
+    }
+
+    private static Decoder blockDecoder(byte[] block) {
+        // Skip the fingerprint kind
+        return new KryoBackedDecoder(new ByteArrayInputStream(block, 1, block.length - 1));
+    }
+
+    private DefaultHistoricalFileCollectionFingerprint readColumns(Decoder decoder, Dictionary dictionary) throws IOException {
+        FingerprintCompareStrategy compareStrategy = FingerprintCompareStrategy.values()[decoder.readSmallInt()];
+        int count = decoder.readSmallInt();
+        String[] absolutePaths = new String[count];
+        for (int i = 0; i < count; i++) {
+            absolutePaths[i] = dictionary.getPath(decoder.readSmallInt());
+        }
+        FileType[] fileTypes = new FileType[count];
+        for (int i = 0; i < count; i++) {
+            fileTypes[i] = readFileType(decoder);
+        }
+        HashCode[] contentHashes = new HashCode[count];
+        for (int i = 0; i < count; i++) {
+            contentHashes[i] = readContentHash(fileTypes[i], decoder, dictionary);
+        }
+        Map<String, NormalizedFileSnapshot> snapshots = new LinkedHashMap<String, NormalizedFileSnapshot>(count);
+        for (int i = 0; i < count; i++) {
+            snapshots.put(absolutePaths[i], readNormalizedSnapshot(decoder, absolutePaths[i], fileTypes[i], contentHashes[i]));
+        }
+        ImmutableMultimap<String, HashCode> rootHashes = readRootHashes(decoder, dictionary);
+        return new DefaultHistoricalFileCollectionFingerprint(snapshots, compareStrategy, rootHashes);
+    }
+
+    private void writeColumns(Encoder encoder, DefaultHistoricalFileCollectionFingerprint fingerprint, DictionaryBuilder dictionary) throws IOException {
+        Map<String, NormalizedFileSnapshot> snapshots = fingerprint.getSnapshots();
+        encoder.writeSmallInt(fingerprint.getCompareStrategy().ordinal());
+        encoder.writeSmallInt(snapshots.size());
+        for (String absolutePath : snapshots.keySet()) {
+            encoder.writeSmallInt(dictionary.addPath(absolutePath));
+        }
+        for (NormalizedFileSnapshot snapshot : snapshots.values()) {
+            writeFileType(encoder, snapshot.getType());
+        }
+        for (NormalizedFileSnapshot snapshot : snapshots.values()) {
+            if (snapshot.getType() == FileType.RegularFile) {
+                encoder.writeSmallInt(dictionary.addHash(snapshot.getNormalizedContentHash()));
+            }
+        }
+        for (Map.Entry<String, NormalizedFileSnapshot> entry : snapshots.entrySet()) {
+            writeNormalizedPath(encoder, entry.getKey(), entry.getValue());
+        }
+        ImmutableMultimap<String, HashCode> rootHashes = fingerprint.getRootHashes();
+        encoder.writeSmallInt(rootHashes.size());
+        for (Map.Entry<String, HashCode> entry : rootHashes.entries()) {
+            encoder.writeSmallInt(dictionary.addPath(entry.getKey()));
+            encoder.writeSmallInt(dictionary.addHash(entry.getValue()));
+        }
+    }
+
+    private static FileType readFileType(Decoder decoder) throws IOException {
+        byte fileSnapshotKind = decoder.readByte();
+        switch (fileSnapshotKind) {
+            case DIR_SNAPSHOT:
+                return FileType.Directory;
+            case MISSING_FILE_SNAPSHOT:
+                return FileType.Missing;
+            case REGULAR_FILE_SNAPSHOT:
+                return FileType.RegularFile;
+            default:
+                throw new RuntimeException("Unable to read serialized file snapshot. Unrecognized value found in the data stream.");
+        }
+    }
+
+    private static void writeFileType(Encoder encoder, FileType fileType) throws IOException {
+        switch (fileType) {
+            case Directory:
+                encoder.writeByte(DIR_SNAPSHOT);
+                break;
+            case Missing:
+                encoder.writeByte(MISSING_FILE_SNAPSHOT);
+                break;
+            case RegularFile:
+                encoder.writeByte(REGULAR_FILE_SNAPSHOT);
+                break;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private static HashCode readContentHash(FileType fileType, Decoder decoder, Dictionary dictionary) throws IOException {
+        switch (fileType) {
+            case Directory:
+                return NormalizedFileSnapshot.DIR_SIGNATURE;
+            case Missing:
+                return NormalizedFileSnapshot.MISSING_FILE_SIGNATURE;
+            case RegularFile:
+                return dictionary.getHash(decoder.readSmallInt());
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private NormalizedFileSnapshot readNormalizedSnapshot(Decoder decoder, String absolutePath, FileType fileType, HashCode contentHash) throws IOException {
+        byte normalizedPathKind = decoder.readByte();
+        switch (normalizedPathKind) {
+            case IGNORED_PATH:
+                return IgnoredPathFingerprint.create(fileType, contentHash);
+            case SUFFIX_OF_ABSOLUTE_PATH:
+                int length = decoder.readSmallInt();
+                return new DefaultNormalizedFileSnapshot(stringInterner.intern(absolutePath.substring(absolutePath.length() - length)), fileType, contentHash);
+            case EXPLICIT_PATH:
+                return new DefaultNormalizedFileSnapshot(stringInterner.intern(decoder.readString()), fileType, contentHash);
+            default:
+                throw new RuntimeException("Unable to read serialized file snapshot. Unrecognized value found in the data stream.");
+        }
+    }
+
+    private static void writeNormalizedPath(Encoder encoder, String absolutePath, NormalizedFileSnapshot snapshot) throws IOException {
+        if (snapshot instanceof IgnoredPathFingerprint) {
+            encoder.writeByte(IGNORED_PATH);
+        } else if (snapshot instanceof DefaultNormalizedFileSnapshot) {
+            String normalizedPath = snapshot.getNormalizedPath();
+            if (absolutePath.endsWith(normalizedPath)) {
+                encoder.writeByte(SUFFIX_OF_ABSOLUTE_PATH);
+                encoder.writeSmallInt(normalizedPath.length());
+            } else {
+                encoder.writeByte(EXPLICIT_PATH);
+                encoder.writeString(normalizedPath);
+            }
+        } else {
+            throw new AssertionError();
+        }
+    }
+
+    private static ImmutableMultimap<String, HashCode> readRootHashes(Decoder decoder, Dictionary dictionary) throws IOException {
+        int numberOfRoots = decoder.readSmallInt();
+        if (numberOfRoots == 0) {
+            return ImmutableMultimap.of();
+        }
+        ImmutableMultimap.Builder<String, HashCode> builder = ImmutableMultimap.builder();
+        for (int i = 0; i < numberOfRoots; i++) {
+            String absolutePath = dictionary.getPath(decoder.readSmallInt());
+            HashCode rootHash = dictionary.getHash(decoder.readSmallInt());
+            builder.put(absolutePath, rootHash);
+        }
+        return builder.build();
+    }
+
+    private Dictionary readDictionary(Decoder decoder) throws IOException {
+        int pathCount = decoder.readSmallInt();
+        int[] parents = new int[pathCount];
+        String[] segments = new String[pathCount];
+        for (int i = 0; i < pathCount; i++) {
+            parents[i] = decoder.readSmallInt() - 1;
+            segments[i] = decoder.readString();
+        }
+        int hashCount = decoder.readSmallInt();
+        HashCode[] hashes = new HashCode[hashCount];
+        for (int i = 0; i < hashCount; i++) {
+            hashes[i] = hashCodeSerializer.read(decoder);
+        }
+        return new Dictionary(parents, segments, hashes);
+    }
+
+    /**
+     * The paths and hashes of a task execution, as read from the task history.
+     */
+    private class Dictionary {
+        private final int[] parents;
+        private final String[] segments;
+        private final String[] paths;
+        private final HashCode[] hashes;
+
+        Dictionary(int[] parents, String[] segments, HashCode[] hashes) {
+            this.parents = parents;
+            this.segments = segments;
+            this.paths = new String[segments.length];
+            this.hashes = hashes;
+        }
+
+        synchronized String getPath(int index) {
+            String path = paths[index];
+            if (path == null) {
+                int parent = parents[index];
+                path = stringInterner.intern(parent < 0 ? segments[index] : getPath(parent) + segments[index]);
+                paths[index] = path;
+            }
+            return path;
+        }
+
+        HashCode getHash(int index) {
+            return hashes[index];
+        }
+    }
+
+    /**
+     * Collects the paths and hashes of a task execution while it is written.
+     */
+    private class DictionaryBuilder {
+        private final Map<String, Integer> pathIndices = new HashMap<String, Integer>();
+        private final List<Integer> parents = new ArrayList<Integer>();
+        private final List<String> segments = new ArrayList<String>();
+        private final Map<HashCode, Integer> hashIndices = new LinkedHashMap<HashCode, Integer>();
+
+        int addPath(String path) {
+            Integer index = pathIndices.get(path);
+            if (index == null) {
+                int separator = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+                int parent = separator > 0 ? addPath(path.substring(0, separator)) : -1;
+                index = segments.size();
+                parents.add(parent);
+                segments.add(separator > 0 ? path.substring(separator) : path);
+                pathIndices.put(path, index);
+            }
+            return index;
+        }
+
+        int addHash(HashCode hash) {
+            Integer index = hashIndices.get(hash);
+            if (index == null) {
+                index = hashIndices.size();
+                hashIndices.put(hash, index);
+            }
+            return index;
+        }
+
+        void write(Encoder encoder) throws IOException {
+            encoder.writeSmallInt(segments.size());
+            for (int i = 0; i < segments.size(); i++) {
+                encoder.writeSmallInt(parents.get(i) + 1);
+                encoder.writeString(segments.get(i));
+            }
+            encoder.writeSmallInt(hashIndices.size());
+            for (HashCode hash : hashIndices.keySet()) {
+                hashCodeSerializer.write(encoder, hash);
+            }
+        }
+    }
+
+    /**
+     * A fingerprint which is decoded from its block when it is first used.
+     */
+    private class ColumnarFingerprint implements HistoricalFileCollectionFingerprint {
+        private final Dictionary dictionary;
+        private byte[] block;
+        private DefaultHistoricalFileCollectionFingerprint delegate;
+
+        ColumnarFingerprint(byte[] block, Dictionary dictionary) {
+            this.block = block;
+            this.dictionary = dictionary;
+        }
+
+        synchronized DefaultHistoricalFileCollectionFingerprint getDelegate() {
+            if (delegate == null) {
+                try {
+                    delegate = readColumns(blockDecoder(block), dictionary);
+                } catch (IOException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+                block = null;
+            }
+            return delegate;
+        }
+
+        @Override
+        public boolean visitChangesSince(FileCollectionFingerprint oldFingerprint, String title, boolean includeAdded, TaskStateChangeVisitor visitor) {
+            return getDelegate().visitChangesSince(oldFingerprint, title, includeAdded, visitor);
+        }
+
+        @Override
+        public Map<String, NormalizedFileSnapshot> getSnapshots() {
+            return getDelegate().getSnapshots();
+        }
+
+        @Override
+        public ImmutableMultimap<String, HashCode> getRootHashes() {
+            return getDelegate().getRootHashes();
+        }
+
+        @Override
+        public HistoricalFileCollectionFingerprint archive() {
+            return this;
+        }
+    }
+}
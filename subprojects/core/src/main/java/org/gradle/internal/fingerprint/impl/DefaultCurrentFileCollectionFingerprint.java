@@ -16,11 +16,14 @@
 
 package org.gradle.internal.fingerprint.impl;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 import org.gradle.api.internal.changedetection.rules.TaskStateChangeVisitor;
 import org.gradle.api.internal.changedetection.state.mirror.FileSystemSnapshot;
+import org.gradle.api.internal.changedetection.state.mirror.MerkleDirectorySnapshotBuilder;
+import org.gradle.api.internal.changedetection.state.mirror.PhysicalFileSnapshot;
 import org.gradle.api.internal.changedetection.state.mirror.PhysicalDirectorySnapshot;
 import org.gradle.api.internal.changedetection.state.mirror.PhysicalSnapshot;
 import org.gradle.api.internal.changedetection.state.mirror.PhysicalSnapshotVisitor;
@@ -30,13 +33,16 @@ import org.gradle.internal.fingerprint.FileCollectionFingerprint;
 import org.gradle.internal.fingerprint.FingerprintingStrategy;
 import org.gradle.internal.fingerprint.HistoricalFileCollectionFingerprint;
 import org.gradle.internal.fingerprint.NormalizedFileSnapshot;
+import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 
+import java.io.File;
 import java.util.Map;
 
 public class DefaultCurrentFileCollectionFingerprint implements CurrentFileCollectionFingerprint {
 
     private final Map<String, NormalizedFileSnapshot> snapshots;
+    private final FingerprintingStrategy strategy;
     private final FingerprintCompareStrategy compareStrategy;
     private final FingerprintingStrategy.Identifier identifier;
     private final Iterable<FileSystemSnapshot> roots;
@@ -51,13 +57,14 @@ public class DefaultCurrentFileCollectionFingerprint implements CurrentFileColle
         if (snapshots.isEmpty()) {
             return strategy.getIdentifier().getEmptyFingerprint();
         }
-        return new DefaultCurrentFileCollectionFingerprint(snapshots, strategy.getCompareStrategy(), strategy.getIdentifier(), roots);
+        return new DefaultCurrentFileCollectionFingerprint(snapshots, strategy, roots);
     }
 
-    private DefaultCurrentFileCollectionFingerprint(Map<String, NormalizedFileSnapshot> snapshots, FingerprintCompareStrategy compareStrategy, FingerprintingStrategy.Identifier identifier, Iterable<FileSystemSnapshot> roots) {
+    private DefaultCurrentFileCollectionFingerprint(Map<String, NormalizedFileSnapshot> snapshots, FingerprintingStrategy strategy, Iterable<FileSystemSnapshot> roots) {
         this.snapshots = snapshots;
-        this.compareStrategy = compareStrategy;
-        this.identifier = identifier;
+        this.strategy = strategy;
+        this.compareStrategy = strategy.getCompareStrategy();
+        this.identifier = strategy.getIdentifier();
         this.roots = roots;
 
         final ImmutableMultimap.Builder<String, HashCode> builder = ImmutableMultimap.builder();
@@ -127,6 +134,41 @@ public class DefaultCurrentFileCollectionFingerprint implements CurrentFileColle
         }
     }
 
+    @Override
+    public CurrentFileCollectionFingerprint rehash(final FileHasher fileHasher) {
+        ImmutableList.Builder<FileSystemSnapshot> rehashedRoots = ImmutableList.builder();
+        for (FileSystemSnapshot root : roots) {
+            final MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+            root.accept(new PhysicalSnapshotVisitor() {
+                @Override
+                public boolean preVisitDirectory(PhysicalDirectorySnapshot directorySnapshot) {
+                    return builder.preVisitDirectory(directorySnapshot);
+                }
+
+                @Override
+                public void visit(PhysicalSnapshot fileSnapshot) {
+                    if (fileSnapshot instanceof PhysicalFileSnapshot) {
+                        PhysicalFileSnapshot regularFile = (PhysicalFileSnapshot) fileSnapshot;
+                        HashCode contentHash = fileHasher.hash(new File(regularFile.getAbsolutePath()));
+                        builder.visit(new PhysicalFileSnapshot(regularFile.getAbsolutePath(), regularFile.getName(), contentHash, regularFile.getLastModified()));
+                    } else {
+                        builder.visit(fileSnapshot);
+                    }
+                }
+
+                @Override
+                public void postVisitDirectory(PhysicalDirectorySnapshot directorySnapshot) {
+                    builder.postVisitDirectory(directorySnapshot);
+                }
+            });
+            PhysicalSnapshot rehashedRoot = builder.getResult();
+            if (rehashedRoot != null) {
+                rehashedRoots.add(rehashedRoot);
+            }
+        }
+        return from(rehashedRoots.build(), strategy);
+    }
+
     @Override
     public HistoricalFileCollectionFingerprint archive() {
         return new DefaultHistoricalFileCollectionFingerprint(snapshots, compareStrategy, rootHashes);
@@ -16,7 +16,6 @@
 
 package org.gradle.internal.fingerprint.impl;
 
-import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableMultimap;
 import org.gradle.api.internal.cache.StringInterner;
@@ -50,7 +49,6 @@ public class DefaultHistoricalFileCollectionFingerprint implements HistoricalFil
         return compareStrategy.visitChangesSince(visitor, getSnapshots(), oldFingerprint.getSnapshots(), title, includeAdded);
     }
 
-    @VisibleForTesting
     FingerprintCompareStrategy getCompareStrategy() {
         return compareStrategy;
     }
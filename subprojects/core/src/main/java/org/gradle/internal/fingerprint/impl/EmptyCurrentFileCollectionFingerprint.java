@@ -25,6 +25,7 @@ import org.gradle.internal.fingerprint.FileCollectionFingerprint;
 import org.gradle.internal.fingerprint.FingerprintingStrategy;
 import org.gradle.internal.fingerprint.HistoricalFileCollectionFingerprint;
 import org.gradle.internal.fingerprint.NormalizedFileSnapshot;
+import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.Hashing;
 
@@ -56,6 +57,11 @@ public class EmptyCurrentFileCollectionFingerprint implements CurrentFileCollect
         return Collections.emptyMap();
     }
 
+    @Override
+    public CurrentFileCollectionFingerprint rehash(FileHasher fileHasher) {
+        return this;
+    }
+
     @Override
     public void visitRoots(PhysicalSnapshotVisitor visitor) {
     }
@@ -16,13 +16,51 @@
 
 package org.gradle.internal.hash;
 
+/**
+ * Creates the hashers used for file content.
+ *
+ * <p>File content is hashed with MD5 by default. A fast non-cryptographic hash function can be selected instead with
+ * {@value #FAST_CONTENT_HASHING_PROPERTY}. Content hashes are used for up-to-date checks and as inputs to build cache keys.
+ * Build cache keys must not depend on the selected hash function, so the input files of cacheable tasks are hashed again with MD5
+ * for their keys when the fast hash function is selected.</p>
+ */
 public class DefaultContentHasherFactory implements ContentHasherFactory {
-    private static final HashCode SIGNATURE = Hashing.md5().hashString(DefaultContentHasherFactory.class.getName());
+    public static final String FAST_CONTENT_HASHING_PROPERTY = "org.gradle.internal.fast-content-hashing";
+
+    private final HashFunction hashFunction;
+    private final HashCode signature;
+
+    public DefaultContentHasherFactory() {
+        this(Hashing.md5());
+    }
+
+    public DefaultContentHasherFactory(HashFunction hashFunction) {
+        this.hashFunction = hashFunction;
+        this.signature = hashFunction.hashString(DefaultContentHasherFactory.class.getName());
+    }
+
+    public static DefaultContentHasherFactory fromSystemProperties() {
+        return Boolean.getBoolean(FAST_CONTENT_HASHING_PROPERTY) ? new DefaultContentHasherFactory(Hashing.murmur3_128()) : new DefaultContentHasherFactory();
+    }
+
+    /**
+     * Whether content is hashed with MD5, so that the hashes can be used to calculate build cache keys.
+     */
+    public boolean isDefaultHashFunction() {
+        return hashFunction == Hashing.md5();
+    }
+
+    /**
+     * Qualifies the name of a persistent cache that stores content hashes, so hashes created by different hash functions are never mixed.
+     */
+    public String qualifyCacheName(String cacheName) {
+        return isDefaultHashFunction() ? cacheName : cacheName + "-" + hashFunction;
+    }
 
     @Override
     public Hasher create() {
-        Hasher hasher = Hashing.md5().newHasher();
-        hasher.putHash(SIGNATURE);
+        Hasher hasher = hashFunction.newHasher();
+        hasher.putHash(signature);
         return hasher;
     }
 }
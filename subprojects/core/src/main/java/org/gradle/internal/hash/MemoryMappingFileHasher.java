@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.os.OperatingSystem;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Hashes large files by feeding memory mapped regions of the file to the hasher, producing the same hashes as {@link DefaultFileHasher}.
+ *
+ * <p>Files of at least the threshold size are memory mapped and the mapped regions are fed to the hasher. Files mapped on Windows
+ * cannot be deleted until the mapping is garbage collected, so on Windows the content is read into direct buffers instead.
+ * Smaller files are hashed through the stream based hasher, as setting up a mapping costs more than copying a few pages.
+ * Hash functions that read the buffers directly, such as Murmur3, do not copy the content to the heap. MD5 still copies it
+ * through a small heap array, so mapping saves little when MD5 is used.</p>
+ *
+ * <p>Mapping is only used when {@value #MEMORY_MAPPING_PROPERTY} is set. If a mapped file is truncated while it is being hashed,
+ * the file is hashed again through the stream based hasher.</p>
+ */
+public class MemoryMappingFileHasher implements FileHasher {
+    public static final String MEMORY_MAPPING_PROPERTY = "org.gradle.internal.memory-mapped-file-hashing";
+    public static final long DEFAULT_THRESHOLD = 1024 * 1024;
+    private static final long MAPPED_REGION_SIZE = 256 * 1024 * 1024;
+    private static final int DIRECT_BUFFER_SIZE = 64 * 1024;
+
+    private final Queue<ByteBuffer> directBuffers = new ArrayBlockingQueue<ByteBuffer>(16);
+    private final FileHasher smallFileHasher;
+    private final ContentHasherFactory hasherFactory;
+    private final long threshold;
+    private final boolean mapFiles;
+
+    public MemoryMappingFileHasher(StreamHasher streamHasher, ContentHasherFactory hasherFactory) {
+        this(new DefaultFileHasher(streamHasher), hasherFactory, Boolean.getBoolean(MEMORY_MAPPING_PROPERTY) ? DEFAULT_THRESHOLD : Long.MAX_VALUE, !OperatingSystem.current().isWindows());
+    }
+
+    @VisibleForTesting
+    MemoryMappingFileHasher(FileHasher smallFileHasher, ContentHasherFactory hasherFactory, long threshold, boolean mapFiles) {
+        this.smallFileHasher = smallFileHasher;
+        this.hasherFactory = hasherFactory;
+        this.threshold = threshold;
+        this.mapFiles = mapFiles;
+    }
+
+    @Override
+    public HashCode hash(File file) {
+        return hash(file, file.length());
+    }
+
+    @Override
+    public HashCode hash(File file, FileMetadataSnapshot fileDetails) {
+        return hash(file, fileDetails.getLength());
+    }
+
+    @Override
+    public HashCode hash(FileTreeElement fileDetails) {
+        return hash(fileDetails.getFile(), fileDetails.getSize());
+    }
+
+    private HashCode hash(File file, long length) {
+        if (length < threshold) {
+            return smallFileHasher.hash(file);
+        }
+        try {
+            FileInputStream inputStream = new FileInputStream(file);
+            try {
+                // The file may have changed since its length was determined, so use the length of the channel from here on
+                FileChannel channel = inputStream.getChannel();
+                Hasher hasher = hasherFactory.create();
+                if (mapFiles) {
+                    hashMapped(channel, hasher);
+                } else {
+                    hashDirect(channel, hasher);
+                }
+                return hasher.hash();
+            } finally {
+                inputStream.close();
+            }
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(String.format("Failed to create hash for file '%s' as it does not exist.", file), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create hash for file '%s'.", file), e);
+        } catch (InternalError e) {
+            // Accessing a mapped region of a file that has been truncated in the meantime faults, and the JVM reports the fault this way
+            return smallFileHasher.hash(file);
+        }
+    }
+
+    private static void hashMapped(FileChannel channel, Hasher hasher) throws IOException {
+        long size = channel.size();
+        for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+            hasher.putBytes(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position)));
+        }
+    }
+
+    private void hashDirect(FileChannel channel, Hasher hasher) throws IOException {
+        ByteBuffer buffer = takeBuffer();
+        try {
+            while (channel.read(buffer) >= 0) {
+                ((Buffer) buffer).flip();
+                hasher.putBytes(buffer);
+                ((Buffer) buffer).clear();
+            }
+        } finally {
+            ((Buffer) buffer).clear();
+            // Retain buffer if there is capacity in the queue, otherwise discard
+            directBuffers.offer(buffer);
+        }
+    }
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = directBuffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+        }
+        return buffer;
+    }
+}
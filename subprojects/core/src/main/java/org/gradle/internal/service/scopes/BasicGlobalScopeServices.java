@@ -26,6 +26,7 @@ import org.gradle.api.tasks.util.internal.PatternSpecFactory;
 import org.gradle.cache.FileLockManager;
 import org.gradle.cache.internal.DefaultFileLockManager;
 import org.gradle.cache.internal.DefaultProcessMetaDataProvider;
+import org.gradle.cache.internal.FileLockWaitStatistics;
 import org.gradle.cache.internal.locklistener.DefaultFileLockContentionHandler;
 import org.gradle.cache.internal.locklistener.FileLockContentionHandler;
 import org.gradle.internal.Factory;
@@ -50,11 +51,16 @@ import org.gradle.process.internal.ExecHandleFactory;
  * {@link GlobalScopeServices}.
  */
 public class BasicGlobalScopeServices {
-    FileLockManager createFileLockManager(ProcessEnvironment processEnvironment, FileLockContentionHandler fileLockContentionHandler) {
+    FileLockWaitStatistics createFileLockWaitStatistics() {
+        return new FileLockWaitStatistics();
+    }
+
+    FileLockManager createFileLockManager(ProcessEnvironment processEnvironment, FileLockContentionHandler fileLockContentionHandler, FileLockWaitStatistics fileLockWaitStatistics) {
         return new DefaultFileLockManager(
             new DefaultProcessMetaDataProvider(
                 processEnvironment),
-            fileLockContentionHandler);
+            fileLockContentionHandler,
+            fileLockWaitStatistics);
     }
 
 
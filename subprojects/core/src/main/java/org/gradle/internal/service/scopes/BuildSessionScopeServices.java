@@ -35,6 +35,7 @@ import org.gradle.api.internal.changedetection.state.SplitResourceSnapshotterCac
 import org.gradle.api.internal.changedetection.state.TaskHistoryStore;
 import org.gradle.api.internal.changedetection.state.WellKnownFileLocations;
 import org.gradle.api.internal.changedetection.state.isolation.IsolatableFactory;
+import org.gradle.api.internal.changedetection.state.mirror.DirectoryWalkerPool;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.internal.model.NamedObjectInstantiator;
 import org.gradle.api.internal.project.BuildOperationCrossProjectConfigurator;
@@ -45,7 +46,10 @@ import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.internal.CacheRepositoryServices;
 import org.gradle.cache.internal.CacheScopeMapping;
 import org.gradle.cache.internal.CleanupActionFactory;
+import org.gradle.cache.internal.FileLockWaitStatistics;
+import org.gradle.cache.internal.FileLockWaitStatisticsReporter;
 import org.gradle.cache.internal.VersionStrategy;
+import org.gradle.caching.internal.tasks.TaskCacheKeyCalculator;
 import org.gradle.deployment.internal.DefaultDeploymentRegistry;
 import org.gradle.groovy.scripts.internal.DefaultScriptSourceHasher;
 import org.gradle.groovy.scripts.internal.ScriptSourceHasher;
@@ -70,9 +74,11 @@ import org.gradle.internal.fingerprint.impl.NameOnlyFileCollectionFingerprinter;
 import org.gradle.internal.fingerprint.impl.OutputFileCollectionFingerprinter;
 import org.gradle.internal.fingerprint.impl.RelativePathFileCollectionFingerprinter;
 import org.gradle.internal.hash.ContentHasherFactory;
-import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultContentHasherFactory;
+import org.gradle.internal.hash.DefaultStreamHasher;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.MemoryMappingFileHasher;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.logging.progress.ProgressLoggerFactory;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
@@ -157,17 +163,27 @@ public class BuildSessionScopeServices extends DefaultServiceRegistry {
         return new CrossBuildFileHashCache(cacheDir, cacheRepository, inMemoryCacheDecoratorFactory);
     }
 
-    FileHasher createFileSnapshotter(FileHasher globalHasher, TaskHistoryStore cacheAccess, StringInterner stringInterner, FileSystem fileSystem, BuildScopeFileTimeStampInspector fileTimeStampInspector, StreamHasher streamHasher, WellKnownFileLocations wellKnownFileLocations) {
-        CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), cacheAccess, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem);
+    FileHasher createFileSnapshotter(FileHasher globalHasher, TaskHistoryStore cacheAccess, StringInterner stringInterner, FileSystem fileSystem, BuildScopeFileTimeStampInspector fileTimeStampInspector, StreamHasher streamHasher, WellKnownFileLocations wellKnownFileLocations, DefaultContentHasherFactory contentHasherFactory) {
+        CachingFileHasher localHasher = new CachingFileHasher(new MemoryMappingFileHasher(streamHasher, contentHasherFactory), cacheAccess, stringInterner, fileTimeStampInspector, contentHasherFactory.qualifyCacheName("fileHashes"), fileSystem);
         return new SplitFileHasher(globalHasher, localHasher, wellKnownFileLocations);
     }
 
+    TaskCacheKeyCalculator createTaskCacheKeyCalculator(StartParameter startParameter, TaskHistoryStore cacheAccess, StringInterner stringInterner, FileSystem fileSystem, BuildScopeFileTimeStampInspector fileTimeStampInspector, DefaultContentHasherFactory contentHasherFactory) {
+        FileHasher cacheKeyFileHasher = null;
+        if (startParameter.isBuildCacheEnabled() && !contentHasherFactory.isDefaultHashFunction()) {
+            // Build cache keys are calculated from MD5 content hashes, so they do not depend on the hash function used for up-to-date checks
+            DefaultContentHasherFactory md5HasherFactory = new DefaultContentHasherFactory();
+            cacheKeyFileHasher = new CachingFileHasher(new MemoryMappingFileHasher(new DefaultStreamHasher(md5HasherFactory), md5HasherFactory), cacheAccess, stringInterner, fileTimeStampInspector, md5HasherFactory.qualifyCacheName("fileHashes"), fileSystem);
+        }
+        return new TaskCacheKeyCalculator(startParameter.isBuildCacheDebugLogging(), cacheKeyFileHasher);
+    }
+
     ScriptSourceHasher createScriptSourceHasher(FileHasher fileHasher, ContentHasherFactory contentHasherFactory) {
         return new DefaultScriptSourceHasher(fileHasher, contentHasherFactory);
     }
 
-    FileSystemSnapshotter createFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, FileSystemMirror fileSystemMirror) {
-        return new DefaultFileSystemSnapshotter(hasher, stringInterner, fileSystem, fileSystemMirror);
+    FileSystemSnapshotter createFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, FileSystemMirror fileSystemMirror, DirectoryWalkerPool directoryWalkerPool) {
+        return new DefaultFileSystemSnapshotter(hasher, stringInterner, fileSystem, fileSystemMirror, directoryWalkerPool);
     }
 
     AbsolutePathFileCollectionFingerprinter createAbsolutePathFileCollectionFingerprinter(StringInterner stringInterner, FileSystemSnapshotter fileSystemSnapshotter) {
@@ -248,4 +264,18 @@ public class BuildSessionScopeServices extends DefaultServiceRegistry {
             currentBuildOperationRef
         );
     }
+
+    FileLockWaitStatisticsReporter createFileLockWaitStatisticsReporter(
+        FileLockWaitStatistics fileLockWaitStatistics,
+        Clock clock,
+        BuildOperationListenerManager buildOperationListenerManager,
+        CurrentBuildOperationRef currentBuildOperationRef
+    ) {
+        return new FileLockWaitStatisticsReporter(
+            fileLockWaitStatistics,
+            clock,
+            buildOperationListenerManager.getBroadcaster(),
+            currentBuildOperationRef
+        );
+    }
 }
@@ -30,6 +30,7 @@ import org.gradle.api.internal.InstantiatorFactory;
 import org.gradle.api.internal.StartParameterInternal;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.state.InMemoryCacheDecoratorFactory;
+import org.gradle.api.internal.changedetection.state.mirror.DirectoryWalkerPool;
 import org.gradle.api.internal.classpath.DefaultModuleRegistry;
 import org.gradle.api.internal.classpath.DefaultPluginModuleRegistry;
 import org.gradle.api.internal.classpath.ModuleRegistry;
@@ -156,7 +157,7 @@ public class GlobalScopeServices extends BasicGlobalScopeServices {
     }
 
     ResourceLockCoordinationService createWorkerLeaseCoordinationService() {
-        return new DefaultResourceLockCoordinationService();
+        return DefaultResourceLockCoordinationService.fromSystemProperties();
     }
 
     CurrentBuildOperationRef createCurrentBuildOperationRef() {
@@ -290,6 +291,10 @@ public class GlobalScopeServices extends BasicGlobalScopeServices {
         return new DefaultFileWatcherFactory(executorFactory, fileSystem);
     }
 
+    DirectoryWalkerPool createDirectoryWalkerPool() {
+        return DirectoryWalkerPool.fromSystemProperties();
+    }
+
     StringInterner createStringInterner() {
         return new StringInterner();
     }
@@ -350,8 +355,8 @@ public class GlobalScopeServices extends BasicGlobalScopeServices {
         return new DefaultProgressLoggerFactory(new ProgressLoggingBridge(outputEventListener), clock, buildOperationIdFactory);
     }
 
-    ContentHasherFactory createHasherFactory() {
-        return new DefaultContentHasherFactory();
+    DefaultContentHasherFactory createHasherFactory() {
+        return DefaultContentHasherFactory.fromSystemProperties();
     }
 
     StreamHasher createStreamHasher(ContentHasherFactory hasherFactory) {
@@ -17,11 +17,18 @@
 package org.gradle.api.internal.changedetection.state
 
 import org.gradle.BuildResult
+import org.gradle.api.Action
 import org.gradle.api.internal.GradleInternal
 import org.gradle.api.internal.changedetection.state.mirror.PhysicalFileSnapshot
 import org.gradle.api.internal.changedetection.state.mirror.PhysicalSnapshot
+import org.gradle.api.internal.file.FileSystemSubset
 import org.gradle.internal.classpath.CachedJarFileStore
 import org.gradle.internal.file.FileMetadataSnapshot
+import org.gradle.internal.file.FileType
+import org.gradle.internal.filewatch.FileWatcher
+import org.gradle.internal.filewatch.FileWatcherEvent
+import org.gradle.internal.filewatch.FileWatcherFactory
+import org.gradle.internal.filewatch.FileWatcherListener
 import org.gradle.internal.hash.HashCode
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -135,4 +142,228 @@ class DefaultFileSystemMirrorTest extends Specification {
         mirror.getMetadata(file.path) == null
         mirror.getSnapshot(file.path) == null
     }
+
+    def "discards state only for the affected output locations and their parents when the locations are known"() {
+        def outputDir = tmpDir.file("some/output")
+        def outputFile = outputDir.file("a")
+        def parentDir = tmpDir.file("some")
+        def otherFile = tmpDir.file("other/b")
+
+        given:
+        [outputDir, outputFile, parentDir, otherFile].each {
+            mirror.putMetadata(it.path, Stub(FileMetadataSnapshot))
+            mirror.putSnapshot(snapshot(it))
+        }
+
+        when:
+        mirror.beforeTaskOutputChanged([outputDir.path])
+
+        then:
+        [outputDir, outputFile, parentDir].each {
+            assert mirror.getMetadata(it.path) == null
+            assert mirror.getSnapshot(it.path) == null
+        }
+        mirror.getMetadata(otherFile.path) != null
+        mirror.getSnapshot(otherFile.path) != null
+    }
+
+    def "retains state about watched locations between builds until the watcher reports a change"() {
+        def fileWatcherFactory = Mock(FileWatcherFactory)
+        def fileWatcher = Mock(FileWatcher)
+        def watchedRoots = []
+        FileWatcherListener listener = null
+        mirror = new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([]), fileWatcherFactory)
+        def dir = tmpDir.createDir("dir")
+        def file = dir.file("a")
+
+        when:
+        mirror.putSnapshot(snapshot(dir, FileType.Directory))
+        mirror.beforeComplete()
+
+        then:
+        1 * fileWatcherFactory.watch(_, _) >> { Action onError, FileWatcherListener l ->
+            listener = l
+            fileWatcher
+        }
+        1 * fileWatcher.isNotifiedOfChangesImmediately() >> true
+        1 * fileWatcher.watch(_) >> { FileSystemSubset subset -> watchedRoots.addAll(subset.roots) }
+        watchedRoots == [dir]
+        // State captured before the location was watched is discarded
+        mirror.getSnapshot(dir.path) == null
+
+        when:
+        mirror.afterStart()
+        def dirSnapshot = snapshot(dir, FileType.Directory)
+        def fileSnapshot = snapshot(file)
+        mirror.putSnapshot(dirSnapshot)
+        mirror.putSnapshot(fileSnapshot)
+        mirror.beforeComplete()
+
+        then:
+        1 * fileWatcher.deliverPendingEvents()
+        0 * fileWatcherFactory._
+        0 * fileWatcher._
+        mirror.getSnapshot(dir.path) == dirSnapshot
+        mirror.getSnapshot(file.path) == fileSnapshot
+
+        when:
+        listener.onChange(fileWatcher, FileWatcherEvent.modify(file))
+
+        then:
+        mirror.getSnapshot(dir.path) == null
+        mirror.getSnapshot(file.path) == null
+    }
+
+    def "delivers the pending watcher events before retained state is used"() {
+        def fileWatcherFactory = Mock(FileWatcherFactory)
+        def fileWatcher = Mock(FileWatcher)
+        FileWatcherListener listener = null
+        mirror = new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([]), fileWatcherFactory)
+        def dir = tmpDir.createDir("dir")
+        def file = dir.file("a")
+
+        given:
+        _ * fileWatcherFactory.watch(_, _) >> { Action onError, FileWatcherListener l ->
+            listener = l
+            fileWatcher
+        }
+        _ * fileWatcher.isNotifiedOfChangesImmediately() >> true
+        mirror.putSnapshot(snapshot(file))
+        mirror.beforeComplete()
+        mirror.putSnapshot(snapshot(file))
+        mirror.beforeComplete()
+
+        when:
+        mirror.afterStart()
+
+        then:
+        1 * fileWatcher.deliverPendingEvents() >> { listener.onChange(fileWatcher, FileWatcherEvent.modify(file)) }
+        mirror.getSnapshot(file.path) == null
+    }
+
+    def "watches a watched directory again when it is recreated after being deleted"() {
+        def fileWatcherFactory = Mock(FileWatcherFactory)
+        def fileWatcher = Mock(FileWatcher)
+        def watchedRoots = []
+        FileWatcherListener listener = null
+        mirror = new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([]), fileWatcherFactory)
+        def dir = tmpDir.createDir("dir")
+        def file = dir.file("a")
+
+        given:
+        _ * fileWatcherFactory.watch(_, _) >> { Action onError, FileWatcherListener l ->
+            listener = l
+            fileWatcher
+        }
+        _ * fileWatcher.isNotifiedOfChangesImmediately() >> true
+        mirror.putSnapshot(snapshot(file))
+        mirror.beforeComplete()
+
+        when:
+        dir.deleteDir()
+        listener.onChange(fileWatcher, FileWatcherEvent.delete(dir))
+        dir.createDir()
+        mirror.afterStart()
+        mirror.putSnapshot(snapshot(file))
+        mirror.beforeComplete()
+
+        then:
+        1 * fileWatcher.watch(_) >> { FileSystemSubset subset -> watchedRoots.addAll(subset.roots) }
+        watchedRoots == [dir]
+        // State captured before the recreated directory was watched is discarded
+        mirror.getSnapshot(file.path) == null
+
+        when:
+        def fileSnapshot = snapshot(file)
+        mirror.afterStart()
+        mirror.putSnapshot(fileSnapshot)
+        mirror.beforeComplete()
+
+        then:
+        0 * fileWatcher.watch(_)
+        mirror.getSnapshot(file.path) == fileSnapshot
+
+        when:
+        listener.onChange(fileWatcher, FileWatcherEvent.modify(file))
+
+        then:
+        mirror.getSnapshot(file.path) == null
+    }
+
+    def "watches the directories containing the visited files"() {
+        def fileWatcherFactory = Mock(FileWatcherFactory)
+        def fileWatcher = Mock(FileWatcher)
+        def watchedRoots = []
+        mirror = new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([]), fileWatcherFactory)
+        def dir = tmpDir.createDir("dir")
+        def subDir = dir.createDir("sub")
+        def otherDir = tmpDir.createDir("other")
+
+        when:
+        mirror.putSnapshot(snapshot(dir.file("a")))
+        mirror.putSnapshot(snapshot(dir.file("b")))
+        mirror.putSnapshot(snapshot(subDir, FileType.Directory))
+        mirror.putMetadata(otherDir.file("c").path, metadata(FileType.RegularFile))
+        mirror.putSnapshot(snapshot(tmpDir.file("missing/d"), FileType.Missing))
+        mirror.beforeComplete()
+
+        then:
+        1 * fileWatcherFactory.watch(_, _) >> fileWatcher
+        1 * fileWatcher.isNotifiedOfChangesImmediately() >> true
+        1 * fileWatcher.watch(_) >> { FileSystemSubset subset -> watchedRoots.addAll(subset.roots) }
+        watchedRoots as Set == [dir, otherDir] as Set
+    }
+
+    def "does not retain state when the watcher polls for changes"() {
+        def fileWatcherFactory = Mock(FileWatcherFactory)
+        def fileWatcher = Mock(FileWatcher)
+        mirror = new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([]), fileWatcherFactory)
+        def file = tmpDir.createDir("dir").file("a")
+
+        when:
+        mirror.putSnapshot(snapshot(file))
+        mirror.beforeComplete()
+        mirror.putSnapshot(snapshot(file))
+        mirror.beforeComplete()
+
+        then:
+        1 * fileWatcherFactory.watch(_, _) >> fileWatcher
+        1 * fileWatcher.isNotifiedOfChangesImmediately() >> false
+        1 * fileWatcher.stop()
+        0 * fileWatcher.watch(_)
+        mirror.getSnapshot(file.path) == null
+    }
+
+    def "discards all state when watching the file system fails"() {
+        def fileWatcherFactory = Mock(FileWatcherFactory)
+        def fileWatcher = Mock(FileWatcher)
+        mirror = new DefaultFileSystemMirror(new DefaultWellKnownFileLocations([]), fileWatcherFactory)
+        def file = tmpDir.createDir("dir").file("a")
+
+        when:
+        mirror.putSnapshot(snapshot(file))
+        mirror.beforeComplete()
+        mirror.putSnapshot(snapshot(file))
+        mirror.beforeComplete()
+
+        then:
+        2 * fileWatcherFactory.watch(_, _) >> fileWatcher
+        2 * fileWatcher.isNotifiedOfChangesImmediately() >> true
+        2 * fileWatcher.watch(_) >> { throw new IOException("broken") }
+        2 * fileWatcher.stop()
+        mirror.getSnapshot(file.path) == null
+    }
+
+    private PhysicalSnapshot snapshot(File file, FileType type = FileType.RegularFile) {
+        def snapshot = Stub(PhysicalSnapshot)
+        _ * snapshot.absolutePath >> file.path
+        _ * snapshot.type >> type
+        return snapshot
+    }
+
+    private FileMetadataSnapshot metadata(FileType type) {
+        def metadata = Stub(FileMetadataSnapshot)
+        _ * metadata.type >> type
+        return metadata
+    }
 }
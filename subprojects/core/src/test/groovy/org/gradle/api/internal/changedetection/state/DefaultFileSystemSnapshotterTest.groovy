@@ -269,6 +269,23 @@ class DefaultFileSystemSnapshotterTest extends Specification {
         !snapshotter.exists(m)
     }
 
+    def "finds files excluded by default beneath a cached directory tree"() {
+        def d = tmpDir.createDir("d")
+        d.createFile("f1")
+        def gitHead = d.createFile(".git/HEAD")
+        def gitIgnore = d.createFile(".gitignore")
+
+        given:
+        snapshotter.snapshot(d)
+
+        expect:
+        snapshotter.exists(gitHead)
+        snapshotter.exists(gitIgnore)
+        snapshotter.snapshot(gitHead).type == FileType.RegularFile
+        snapshotter.snapshot(gitIgnore).type == FileType.RegularFile
+        !snapshotter.exists(d.file("missing"))
+    }
+
     private static DirectoryFileTree dirTree(File dir) {
         TestFiles.directoryFileTreeFactory().create(dir)
     }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.internal.changedetection.state.mirror.PhysicalDirectorySnapshot
+import org.gradle.api.internal.changedetection.state.mirror.PhysicalFileSnapshot
+import org.gradle.api.internal.changedetection.state.mirror.PhysicalMissingSnapshot
+import org.gradle.api.internal.changedetection.state.mirror.PhysicalSnapshot
+import org.gradle.internal.file.FileType
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.nativeintegration.filesystem.DefaultFileMetadata
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class FileSystemMirrorTrieTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def trie = new FileSystemMirrorTrie()
+
+    def "stores snapshots and metadata by path"() {
+        def file = tmpDir.file("a/b")
+        def snapshot = fileSnapshot(file)
+        def metadata = DefaultFileMetadata.file(1, 2)
+
+        when:
+        trie.putSnapshot(snapshot)
+        trie.putMetadata(file.path, metadata)
+
+        then:
+        trie.getSnapshot(file.path) == snapshot
+        trie.getMetadata(file.path) == metadata
+        trie.getSnapshot(file.parentFile.path) == null
+        trie.getMetadata(file.parentFile.path) == null
+        trie.getSnapshot(tmpDir.file("a/c").path) == null
+    }
+
+    def "finds descendants in the snapshot of an ancestor directory"() {
+        def dir = tmpDir.file("dir")
+        def subDir = dir.file("sub")
+        def file = subDir.file("file.txt")
+        def fileSnapshot = fileSnapshot(file)
+        def subDirSnapshot = directorySnapshot(subDir, fileSnapshot)
+
+        when:
+        trie.putSnapshot(directorySnapshot(dir, subDirSnapshot))
+
+        then:
+        trie.getSnapshot(subDir.path) == subDirSnapshot
+        trie.getSnapshot(file.path) == fileSnapshot
+        trie.getMetadata(subDir.path) == DefaultFileMetadata.directory()
+        // The length of regular files is not known from the snapshot
+        trie.getMetadata(file.path) == null
+
+        def missing = trie.getSnapshot(file.file("below-file").path)
+        missing instanceof PhysicalMissingSnapshot
+        missing.absolutePath == file.file("below-file").path
+        missing.name == "below-file"
+        missing.type == FileType.Missing
+        trie.getMetadata(file.file("below-file").path) == DefaultFileMetadata.missing()
+    }
+
+    def "does not answer for locations that are not in the snapshot of an ancestor directory"() {
+        def dir = tmpDir.file("dir")
+        def file = dir.file("file.txt")
+
+        when:
+        // Directory snapshots leave out the files excluded by default, such as .git
+        trie.putSnapshot(directorySnapshot(dir, fileSnapshot(file)))
+
+        then:
+        trie.getSnapshot(dir.file(".git/HEAD").path) == null
+        trie.getMetadata(dir.file(".git/HEAD").path) == null
+        trie.getSnapshot(dir.file(".gitignore").path) == null
+        trie.getSnapshot(dir.file("missing").path) == null
+    }
+
+    def "invalidating a location discards its state, the state beneath it and the state of its ancestors"() {
+        def dir = tmpDir.file("dir")
+        def subDir = dir.file("sub")
+        def file = subDir.file("file.txt")
+        def sibling = dir.file("sibling.txt")
+        def siblingSnapshot = fileSnapshot(sibling)
+
+        given:
+        trie.putSnapshot(directorySnapshot(dir, directorySnapshot(subDir, fileSnapshot(file)), siblingSnapshot))
+        trie.putMetadata(dir.path, DefaultFileMetadata.directory())
+        trie.putSnapshot(fileSnapshot(file))
+        trie.putSnapshot(siblingSnapshot)
+
+        when:
+        trie.invalidate(subDir.path)
+
+        then:
+        trie.getSnapshot(dir.path) == null
+        trie.getMetadata(dir.path) == null
+        trie.getSnapshot(subDir.path) == null
+        trie.getSnapshot(file.path) == null
+        trie.getSnapshot(sibling.path) == siblingSnapshot
+    }
+
+    def "can clear all state"() {
+        def file = tmpDir.file("file.txt")
+
+        given:
+        trie.putSnapshot(fileSnapshot(file))
+
+        when:
+        trie.clear()
+
+        then:
+        trie.getSnapshot(file.path) == null
+    }
+
+    private static PhysicalFileSnapshot fileSnapshot(TestFile file) {
+        new PhysicalFileSnapshot(file.path, file.name, HashCode.fromInt(file.name.hashCode()), 0)
+    }
+
+    private static PhysicalDirectorySnapshot directorySnapshot(TestFile dir, PhysicalSnapshot... children) {
+        new PhysicalDirectorySnapshot(dir.path, dir.name, children as List, HashCode.fromInt(dir.name.hashCode()))
+    }
+}
@@ -20,6 +20,7 @@ import com.google.common.cache.CacheBuilder
 import org.gradle.api.Transformer
 import org.gradle.cache.FileLock
 import org.gradle.cache.internal.MultiProcessSafeAsyncPersistentIndexedCache
+import org.gradle.internal.serialize.BaseSerializerFactory
 import org.gradle.test.fixtures.concurrent.ConcurrentSpec
 
 import java.util.concurrent.atomic.AtomicReference
@@ -193,4 +194,94 @@ class InMemoryDecoratedCacheTest extends ConcurrentSpec {
         instant.one_done > instant.two
         instant.two_done > instant.one
     }
+
+    def "reads values evicted from memory from the off-heap store"() {
+        def inMemoryCache = CacheBuilder.newBuilder().build()
+        def cache = new InMemoryDecoratedCache(target, inMemoryCache, new OffHeapValueStore(BaseSerializerFactory.STRING_SERIALIZER, OffHeapValueStore.PAGE_SIZE), "id", new AtomicReference<FileLock.State>())
+
+        when:
+        cache.putLater("key1", "value1", Stub(Runnable))
+        cache.get("key2")
+
+        then:
+        1 * target.get("key2") >> "value2"
+
+        when:
+        inMemoryCache.invalidateAll()
+        def result1 = cache.get("key1")
+        def result2 = cache.get("key2")
+
+        then:
+        result1 == "value1"
+        result2 == "value2"
+
+        and:
+        0 * target.get(_)
+    }
+
+    def "does not replace value written to off-heap store while loading from backing cache"() {
+        def inMemoryCache = CacheBuilder.newBuilder().build()
+        def cache = new InMemoryDecoratedCache(target, inMemoryCache, new OffHeapValueStore(BaseSerializerFactory.STRING_SERIALIZER, OffHeapValueStore.PAGE_SIZE), "id", new AtomicReference<FileLock.State>())
+
+        when:
+        async {
+            start {
+                cache.get("key")
+            }
+            start {
+                thread.blockUntil.loading
+                cache.putLater("key", "new value", Stub(Runnable))
+                instant.written
+            }
+        }
+
+        then:
+        1 * target.get("key") >> {
+            instant.loading
+            thread.blockUntil.written
+            return "old value"
+        }
+        1 * target.putLater("key", "new value", _)
+
+        when:
+        inMemoryCache.invalidateAll()
+        def result = cache.get("key")
+
+        then:
+        result == "new value"
+        0 * target.get(_)
+    }
+
+    def "does not restore value removed from off-heap store while loading from backing cache"() {
+        def inMemoryCache = CacheBuilder.newBuilder().build()
+        def cache = new InMemoryDecoratedCache(target, inMemoryCache, new OffHeapValueStore(BaseSerializerFactory.STRING_SERIALIZER, OffHeapValueStore.PAGE_SIZE), "id", new AtomicReference<FileLock.State>())
+
+        when:
+        async {
+            start {
+                cache.get("key")
+            }
+            start {
+                thread.blockUntil.loading
+                cache.removeLater("key", Stub(Runnable))
+                instant.removed
+            }
+        }
+
+        then:
+        1 * target.get("key") >> {
+            instant.loading
+            thread.blockUntil.removed
+            return "old value"
+        }
+        1 * target.removeLater("key", _)
+
+        when:
+        inMemoryCache.invalidateAll()
+        def result = cache.get("key")
+
+        then:
+        result == null
+        1 * target.get("key") >> null
+    }
 }
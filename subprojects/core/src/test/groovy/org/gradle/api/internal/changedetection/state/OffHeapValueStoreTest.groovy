@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import spock.lang.Specification
+
+class OffHeapValueStoreTest extends Specification {
+    def store = new OffHeapValueStore(BaseSerializerFactory.STRING_SERIALIZER, 2 * OffHeapValueStore.PAGE_SIZE)
+
+    def "returns decoded copy of stored values"() {
+        when:
+        store.put("a", "value a")
+        store.put("b", "value b")
+        store.put("a", "new value a")
+
+        then:
+        store.get("a") == "new value a"
+        store.get("b") == "value b"
+        store.get("c") == null
+    }
+
+    def "removes values"() {
+        given:
+        store.put("a", "value a")
+        store.put("b", "value b")
+
+        when:
+        store.remove("a")
+
+        then:
+        store.get("a") == null
+        store.get("b") == "value b"
+
+        when:
+        store.clear()
+
+        then:
+        store.get("b") == null
+        store.size() == 0
+    }
+
+    def "discards oldest values when full"() {
+        def value = "x" * 1000
+
+        when:
+        3000.times { store.put("key$it".toString(), value) }
+
+        then:
+        store.get("key0") == null
+        store.get("key2999") == value
+        store.size() < 3000
+    }
+
+    def "keeps values that are read before they are discarded"() {
+        def value = "x" * 1000
+        store.put("kept", value)
+        store.put("discarded", value)
+
+        when:
+        3000.times {
+            store.put("key$it".toString(), value)
+            assert store.get("kept") == value
+        }
+
+        then:
+        store.get("kept") == value
+        store.get("discarded") == null
+    }
+
+    def "does not keep values larger than a page"() {
+        given:
+        store.put("a", "value")
+
+        when:
+        store.put("a", "x" * (OffHeapValueStore.PAGE_SIZE + 1))
+
+        then:
+        store.get("a") == null
+    }
+
+    def "does not store loaded value when key has been modified since loading started"() {
+        when:
+        def modification = store.currentModification()
+        store.put("a", "new value a")
+        store.remove("b")
+        store.putIfNotModifiedSince("a", "old value a", modification)
+        store.putIfNotModifiedSince("b", "old value b", modification)
+        store.putIfNotModifiedSince("c", "value c", modification)
+
+        then:
+        store.get("a") == "new value a"
+        store.get("b") == null
+        store.get("c") == "value c"
+
+        when:
+        modification = store.currentModification()
+        store.clear()
+        store.putIfNotModifiedSince("c", "value c", modification)
+
+        then:
+        store.get("c") == null
+    }
+}
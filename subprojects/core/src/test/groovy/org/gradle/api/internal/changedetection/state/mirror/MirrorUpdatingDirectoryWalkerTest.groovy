@@ -34,6 +34,12 @@ class MirrorUpdatingDirectoryWalkerTest extends Specification {
 
     def fileHasher = new TestFileHasher()
     def walker = new MirrorUpdatingDirectoryWalker(fileHasher, TestFiles.fileSystem(), new StringInterner())
+    def walkerPool = new DirectoryWalkerPool(4)
+    def parallelWalker = new MirrorUpdatingDirectoryWalker(fileHasher, TestFiles.fileSystem(), new StringInterner(), walkerPool)
+
+    def cleanup() {
+        walkerPool.stop()
+    }
 
     def "basic directory walking works"() {
         given:
@@ -129,6 +135,39 @@ class MirrorUpdatingDirectoryWalkerTest extends Specification {
         ] as Set
     }
 
+    def "parallel walk produces the same snapshot as a sequential walk"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        rootDir.file("a.txt").text = "a"
+        rootDir.file("a/b/c.txt").text = "c"
+        rootDir.file("a/b/c.html").text = "html"
+        rootDir.file("a/c/c.txt").text = "other c"
+        rootDir.file("a/empty").createDir()
+        rootDir.file("subdir1/a/b/c.html").text = "excluded"
+        rootDir.file(".git/config").text = "default excluded"
+        (1..100).each { rootDir.file("many/file${it}.txt").text = "content ${it}" }
+
+        def patterns = new PatternSet()
+        patterns.include("**/*.txt")
+        patterns.exclude("subdir1/**")
+
+        def sequentiallyFiltered = new MutableBoolean(false)
+        def parallelFiltered = new MutableBoolean(false)
+
+        when:
+        def sequential = walkDir(rootDir, filter ? patterns : null, walker, sequentiallyFiltered)
+        def parallel = walkDir(rootDir, filter ? patterns : null, parallelWalker, parallelFiltered)
+
+        then:
+        parallel.hash == sequential.hash
+        relativePaths(parallel) == relativePaths(sequential)
+        parallelFiltered.get() == sequentiallyFiltered.get()
+        parallelFiltered.get() == filter
+
+        where:
+        filter << [false, true]
+    }
+
     def "default excludes are correctly parsed"() {
         def defaultExcludes = new MirrorUpdatingDirectoryWalker.DefaultExcludes(DirectoryScanner.getDefaultExcludes())
 
@@ -150,7 +189,18 @@ class MirrorUpdatingDirectoryWalkerTest extends Specification {
         !defaultExcludes.excludeFile('#some')
     }
 
-    private static FileSystemSnapshot walkDir(File dir, PatternSet patterns, MirrorUpdatingDirectoryWalker walker, MutableBoolean actuallyFiltered) {
+    private static List<String> relativePaths(PhysicalSnapshot root) {
+        def relativePaths = []
+        root.accept(new RelativePathTrackingVisitor() {
+            @Override
+            void visit(String absolutePath, Deque<String> relativePath) {
+                relativePaths << relativePath.join("/")
+            }
+        })
+        return relativePaths
+    }
+
+    private static PhysicalSnapshot walkDir(File dir, PatternSet patterns, MirrorUpdatingDirectoryWalker walker, MutableBoolean actuallyFiltered) {
         walker.walkDir(dir.absolutePath, patterns, actuallyFiltered)
     }
 }
@@ -22,9 +22,11 @@ import org.gradle.api.Task
 import org.gradle.api.internal.TaskInputsInternal
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.changedetection.state.TaskDurationHistory
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.internal.tasks.TaskDestroyablesInternal
 import org.gradle.api.internal.tasks.TaskLocalStateInternal
+import org.gradle.api.internal.tasks.TaskExecutionOutcome
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.api.specs.Spec
 import org.gradle.api.tasks.TaskDependency
@@ -50,12 +52,13 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
     ProjectInternal root
     def workerLeaseService = Mock(WorkerLeaseService)
     def workerLease = Mock(WorkerLeaseRegistry.WorkerLease)
+    def taskDurationHistory = Mock(TaskDurationHistory)
 
     def setup() {
         root = createRootProject(temporaryFolder.testDirectory)
         def taskInfoFactory = new TaskInfoFactory(root.gradle, Stub(IncludedBuildTaskGraph))
         def dependencyResolver = new TaskDependencyResolver([new TaskInfoWorkDependencyResolver(taskInfoFactory)])
-        executionPlan = new DefaultTaskExecutionPlan(workerLeaseService, root.gradle, taskInfoFactory, dependencyResolver)
+        executionPlan = new DefaultTaskExecutionPlan(workerLeaseService, root.gradle, taskInfoFactory, dependencyResolver, taskDurationHistory)
         _ * workerLeaseService.getProjectLock(_, _) >> Mock(ResourceLock) {
             _ * isLocked() >> false
             _ * tryLock() >> true
@@ -138,6 +141,63 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
         orderingRule << ['mustRunAfter', 'shouldRunAfter']
     }
 
+    def "schedules tasks with the longest remaining path first when durations of a previous build are known"() {
+        given:
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [b])
+        Task d = task("d", dependsOn: [c])
+        Task e = task("e", dependsOn: [a, d])
+        def durations = [a: 60L, b: 10L, c: 50L, d: 50L]
+        _ * taskDurationHistory.getPreviousDuration(_) >> { TaskInternal task -> durations[task.name] }
+
+        when:
+        addToGraphAndPopulate([e])
+
+        then:
+        executedTasks == [b, c, a, d, e]
+    }
+
+    def "schedules tasks with the longest remaining path first only within the dependencies of each requested task"() {
+        given:
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [b])
+        def durations = [a: 1L, b: 100L, c: 100L]
+        _ * taskDurationHistory.getPreviousDuration(_) >> { TaskInternal task -> durations[task.name] }
+
+        when:
+        executionPlan.addToTaskGraph(toList(a))
+        executionPlan.addToTaskGraph(toList(c))
+        executionPlan.determineExecutionPlan()
+
+        then:
+        executedTasks == [a, b, c]
+    }
+
+    def "records the duration of tasks that executed their actions only"() {
+        given:
+        TaskInternal a = task("a")
+        TaskInternal b = task("b", dependsOn: [a])
+        TaskInternal c = task("c", dependsOn: [b])
+        TaskInternal d = task("d", dependsOn: [c])
+        a.state.outcome >> TaskExecutionOutcome.EXECUTED
+        b.state.outcome >> TaskExecutionOutcome.UP_TO_DATE
+        c.state.outcome >> TaskExecutionOutcome.FROM_CACHE
+        d.state.outcome >> TaskExecutionOutcome.EXECUTED
+
+        when:
+        addToGraphAndPopulate([d])
+        def executed = executedTasks
+
+        then:
+        executed == [a, b, c, d]
+        1 * taskDurationHistory.recordDuration(a, _)
+        0 * taskDurationHistory.recordDuration(b, _)
+        0 * taskDurationHistory.recordDuration(c, _)
+        1 * taskDurationHistory.recordDuration(d, _)
+    }
+
     def "common tasks in separate batches are schedules only once"() {
         Task a = task("a")
         Task b = task("b")
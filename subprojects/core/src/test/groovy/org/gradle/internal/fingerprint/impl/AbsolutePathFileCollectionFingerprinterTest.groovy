@@ -26,6 +26,8 @@ import org.gradle.api.internal.changedetection.state.WellKnownFileLocations
 import org.gradle.api.internal.file.TestFiles
 import org.gradle.api.internal.file.collections.ImmutableFileCollection
 import org.gradle.internal.fingerprint.FileCollectionFingerprint
+import org.gradle.internal.hash.FileHasher
+import org.gradle.internal.hash.HashCode
 import org.gradle.internal.hash.TestFileHasher
 import org.gradle.normalization.internal.InputNormalizationStrategy
 import org.gradle.test.fixtures.file.TestFile
@@ -282,6 +284,32 @@ class AbsolutePathFileCollectionFingerprinterTest extends Specification {
         0 * listener._
     }
 
+    def "rehashes the content of regular files with another hasher"() {
+        given:
+        TestFile file = tmpDir.createFile('file1').write('content')
+        TestFile dir = tmpDir.createDir('dir')
+        TestFile file2 = dir.createFile('file2').write('other content')
+        TestFile noExist = tmpDir.file('file3')
+        def otherHasher = Mock(FileHasher)
+        def fingerprint = fingerprinter.fingerprint(files(file, dir, noExist), normalizationStrategy)
+
+        when:
+        def rehashed = fingerprint.rehash(otherHasher)
+
+        then:
+        1 * otherHasher.hash(file) >> HashCode.fromInt(1)
+        1 * otherHasher.hash(file2) >> HashCode.fromInt(2)
+        0 * otherHasher._
+
+        and:
+        rehashed.snapshots.keySet() == fingerprint.snapshots.keySet()
+        rehashed.snapshots[file.absolutePath].normalizedContentHash == HashCode.fromInt(1)
+        rehashed.snapshots[file2.absolutePath].normalizedContentHash == HashCode.fromInt(2)
+        rehashed.snapshots[dir.absolutePath] == fingerprint.snapshots[dir.absolutePath]
+        rehashed.snapshots[noExist.absolutePath] == fingerprint.snapshots[noExist.absolutePath]
+        rehashed.hash != fingerprint.hash
+    }
+
     private static void changes(FileCollectionFingerprint newFingerprint, FileCollectionFingerprint oldFingerprint, ChangeListener<String> listener) {
         newFingerprint.visitChangesSince(oldFingerprint, "TYPE", true) { FileChange change ->
             switch (change.type) {
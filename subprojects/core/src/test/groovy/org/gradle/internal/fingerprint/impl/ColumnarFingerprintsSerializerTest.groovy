@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.fingerprint.impl
+
+import com.google.common.collect.ImmutableMultimap
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.changedetection.state.DefaultNormalizedFileSnapshot
+import org.gradle.internal.file.FileType
+import org.gradle.internal.fingerprint.HistoricalFileCollectionFingerprint
+import org.gradle.internal.fingerprint.NormalizedFileSnapshot
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.serialize.Serializer
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder
+import spock.lang.Specification
+
+class ColumnarFingerprintsSerializerTest extends Specification {
+
+    def otherFingerprintSerializer = Mock(Serializer)
+    def serializer = new ColumnarFingerprintsSerializer(otherFingerprintSerializer, new StringInterner())
+
+    def "reads and writes the fingerprints"(FingerprintCompareStrategy strategy) {
+        def hash = HashCode.fromInt(1234)
+        def rootHashes = ImmutableMultimap.of(
+            "/root/1", NormalizedFileSnapshot.MISSING_FILE_SIGNATURE,
+            "/root/2", HashCode.fromInt(5678),
+            "/root/3", HashCode.fromInt(1234))
+
+        when:
+        def out = roundTrip([
+            [input: new DefaultHistoricalFileCollectionFingerprint(
+                '/root/1': new DefaultNormalizedFileSnapshot("1", FileType.Directory, NormalizedFileSnapshot.DIR_SIGNATURE),
+                '/root/2': IgnoredPathFingerprint.create(FileType.RegularFile, hash),
+                '/root/3': new DefaultNormalizedFileSnapshot("/root/3", FileType.Missing, NormalizedFileSnapshot.MISSING_FILE_SIGNATURE),
+                '/root/4': new DefaultNormalizedFileSnapshot("other/4", FileType.RegularFile, hash),
+                strategy, rootHashes
+            )]
+        ])[0].input
+
+        then:
+        out.snapshots.size() == 4
+        out.snapshots['/root/1'].with {
+            type == FileType.Directory
+            normalizedPath == "1"
+            normalizedContentHash == NormalizedFileSnapshot.DIR_SIGNATURE
+        }
+        out.snapshots['/root/2'].with {
+            type == FileType.RegularFile
+            normalizedPath == ""
+            normalizedContentHash == hash
+        }
+        out.snapshots['/root/3'].with {
+            type == FileType.Missing
+            normalizedPath == "/root/3"
+            normalizedContentHash == NormalizedFileSnapshot.MISSING_FILE_SIGNATURE
+        }
+        out.snapshots['/root/4'].with {
+            type == FileType.RegularFile
+            normalizedPath == "other/4"
+            normalizedContentHash == hash
+        }
+        out.getDelegate().compareStrategy == strategy
+        out.rootHashes == rootHashes
+
+        where:
+        strategy << FingerprintCompareStrategy.values()
+    }
+
+    def "retains order of files and properties"() {
+        when:
+        def out = roundTrip([
+            [b: fingerprint("/3", "/2", "/1"), a: EmptyHistoricalFileCollectionFingerprint.INSTANCE],
+            [:]
+        ])
+
+        then:
+        out.size() == 2
+        out[0].keySet() as List == ["a", "b"]
+        out[0].a == EmptyHistoricalFileCollectionFingerprint.INSTANCE
+        out[0].b.snapshots.keySet() as List == ["/3", "/2", "/1"]
+        out[1].isEmpty()
+    }
+
+    def "stores paths and hashes shared between fingerprints once"() {
+        def files = (1..100).collect { "/some/long/directory/path/file${it}.txt" } as String[]
+
+        when:
+        def single = toBytes([[a: fingerprint(files)]])
+        def shared = toBytes([[a: fingerprint(files)], [a: fingerprint(files)]])
+
+        then:
+        shared.length < single.length * 1.5
+    }
+
+    def "rewrites fingerprints which were read before"() {
+        def original = roundTrip([[a: fingerprint("/dir/a", "/dir/b")]])
+
+        when:
+        def out = roundTrip(original)
+
+        then:
+        out[0].a.snapshots.keySet() as List == ["/dir/a", "/dir/b"]
+        out[0].a.snapshots["/dir/b"].normalizedPath == "b"
+    }
+
+    def "uses the other serializer for fingerprints without a columnar representation"() {
+        def other = Stub(HistoricalFileCollectionFingerprint)
+        def read = Stub(HistoricalFileCollectionFingerprint)
+
+        when:
+        def out = roundTrip([[a: other]])
+
+        then:
+        1 * otherFingerprintSerializer.write(_, other) >> { encoder, value -> encoder.writeString("other") }
+        1 * otherFingerprintSerializer.read(_) >> { decoder -> assert decoder.readString() == "other"; read }
+        out[0].a == read
+    }
+
+    private static DefaultHistoricalFileCollectionFingerprint fingerprint(String... paths) {
+        def snapshots = new LinkedHashMap<String, NormalizedFileSnapshot>()
+        paths.eachWithIndex { path, i ->
+            snapshots.put(path, new DefaultNormalizedFileSnapshot(path.substring(path.lastIndexOf('/') + 1), FileType.RegularFile, HashCode.fromInt(i)))
+        }
+        return new DefaultHistoricalFileCollectionFingerprint(snapshots, FingerprintCompareStrategy.NORMALIZED, ImmutableMultimap.of())
+    }
+
+    private List<Map<String, HistoricalFileCollectionFingerprint>> roundTrip(List<Map<String, HistoricalFileCollectionFingerprint>> fingerprintMaps) {
+        def bytes = toBytes(fingerprintMaps)
+        return serializer.read(new KryoBackedDecoder(new ByteArrayInputStream(bytes)), fingerprintMaps.size())
+    }
+
+    private byte[] toBytes(List<Map<String, HistoricalFileCollectionFingerprint>> fingerprintMaps) {
+        def bytes = new ByteArrayOutputStream()
+        def encoder = new KryoBackedEncoder(bytes)
+        serializer.write(encoder, fingerprintMaps)
+        encoder.flush()
+        return bytes.toByteArray()
+    }
+}
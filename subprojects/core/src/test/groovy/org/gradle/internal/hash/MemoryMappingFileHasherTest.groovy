@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import org.gradle.api.UncheckedIOException
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class MemoryMappingFileHasherTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def hasherFactory = new DefaultContentHasherFactory()
+    def streamHasher = new DefaultFileHasher(new DefaultStreamHasher(hasherFactory))
+
+    @Unroll
+    def "produces the same hash as the stream hasher for #length bytes when mapping files is #mapFiles"() {
+        def file = tmpDir.file("file.bin")
+        def content = new byte[length]
+        new Random(length).nextBytes(content)
+        file.bytes = content
+        def hasher = new MemoryMappingFileHasher(streamHasher, hasherFactory, 1024, mapFiles)
+
+        expect:
+        hasher.hash(file) == streamHasher.hash(file)
+
+        where:
+        [length, mapFiles] << [[0, 100, 1023, 1024, 1025, 100 * 1024, 1024 * 1024], [true, false]].combinations()
+    }
+
+    def "uses the stream hasher for files smaller than the threshold"() {
+        def smallFileHasher = Mock(FileHasher)
+        def hasher = new MemoryMappingFileHasher(smallFileHasher, hasherFactory, 1024, true)
+        def file = tmpDir.file("file.bin")
+        file.bytes = new byte[100]
+        def hash = HashCode.fromInt(123)
+
+        when:
+        def result = hasher.hash(file)
+
+        then:
+        result == hash
+        1 * smallFileHasher.hash(file) >> hash
+    }
+
+    def "falls back to the stream hasher when the mapped file is truncated while hashing"() {
+        def smallFileHasher = Mock(FileHasher)
+        def faultingHasher = Stub(Hasher) {
+            putBytes(_ as java.nio.ByteBuffer) >> { throw new InternalError("a fault occurred in a recent unsafe memory access operation") }
+        }
+        def faultingHasherFactory = Stub(ContentHasherFactory) {
+            create() >> faultingHasher
+        }
+        def hasher = new MemoryMappingFileHasher(smallFileHasher, faultingHasherFactory, 0, true)
+        def file = tmpDir.file("file.bin")
+        file.bytes = new byte[100]
+        def hash = HashCode.fromInt(123)
+
+        when:
+        def result = hasher.hash(file)
+
+        then:
+        result == hash
+        1 * smallFileHasher.hash(file) >> hash
+    }
+
+    def "fails for files that do not exist"() {
+        def hasher = new MemoryMappingFileHasher(streamHasher, hasherFactory, 0, true)
+        def file = tmpDir.file("missing.bin")
+
+        when:
+        hasher.hash(file)
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e.message.contains(file.absolutePath)
+    }
+}
@@ -25,6 +25,7 @@ import org.gradle.api.internal.changedetection.state.FileSystemSnapshotter
 import org.gradle.api.internal.changedetection.state.GlobalScopeFileTimeStampInspector
 import org.gradle.api.internal.changedetection.state.InMemoryCacheDecoratorFactory
 import org.gradle.api.internal.changedetection.state.ValueSnapshotter
+import org.gradle.api.internal.changedetection.state.mirror.DirectoryWalkerPool
 import org.gradle.api.internal.classpath.ModuleRegistry
 import org.gradle.api.internal.file.TemporaryFileProvider
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory
@@ -45,6 +46,7 @@ import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.concurrent.ParallelismConfigurationManager
 import org.gradle.internal.event.ListenerManager
 import org.gradle.internal.hash.ContentHasherFactory
+import org.gradle.internal.hash.DefaultContentHasherFactory
 import org.gradle.internal.hash.FileHasher
 import org.gradle.internal.hash.StreamHasher
 import org.gradle.internal.jvm.inspection.JvmVersionDetector
@@ -126,7 +128,9 @@ class GradleUserHomeScopeServicesTest extends WorkspaceTest {
         expectParentServiceLocated(ClassLoaderRegistry)
         expectParentServiceLocated(DirectoryFileTreeFactory)
         expectParentServiceLocated(ContentHasherFactory)
+        parent.get(DefaultContentHasherFactory) >> new DefaultContentHasherFactory()
         expectParentServiceLocated(StreamHasher)
+        expectParentServiceLocated(DirectoryWalkerPool)
 
         expect:
         findsAndCachesService(serviceType)
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import com.google.common.io.ByteStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * Parses a set of real world POMs, comparing the streaming parser used to read POMs against building a full DOM of them.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class PomParserBenchmark {
+    private static final String[] POMS = {
+        "junit-4.12.pom",
+        "ant-parent-1.10.13.pom",
+        "ant-1.10.13.pom",
+        "ant-launcher-1.10.13.pom",
+        "ant-junit-1.10.13.pom"
+    };
+
+    byte[][] poms;
+    DocumentBuilder documentBuilder;
+
+    @Setup
+    public void setup() throws Exception {
+        poms = new byte[POMS.length][];
+        for (int i = 0; i < POMS.length; i++) {
+            InputStream inputStream = getClass().getResourceAsStream(POMS[i]);
+            try {
+                poms[i] = ByteStreams.toByteArray(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        }
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setValidating(false);
+        documentBuilder = factory.newDocumentBuilder();
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < poms.length; i++) {
+            blackhole.consume(PomDomParser.parse(new ByteArrayInputStream(poms[i]), POMS[i]));
+        }
+    }
+
+    @Benchmark
+    public void dom(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < poms.length; i++) {
+            blackhole.consume(documentBuilder.parse(new ByteArrayInputStream(poms[i]), POMS[i]));
+        }
+    }
+}
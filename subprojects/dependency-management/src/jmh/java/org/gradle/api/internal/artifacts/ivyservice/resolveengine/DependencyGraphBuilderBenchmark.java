@@ -0,0 +1,330 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine;
+
+import com.google.common.collect.ImmutableSet;
+import org.gradle.api.Action;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.internal.artifacts.ComponentSelectorConverter;
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionSelector;
+import org.gradle.api.internal.artifacts.ResolveContext;
+import org.gradle.api.internal.artifacts.ResolvedVersionConstraint;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.dependencies.DefaultMutableVersionConstraint;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionApplicator;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.RootGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.DependencyGraphBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultCapabilitiesConflictHandler;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultConflictHandler;
+import org.gradle.api.internal.attributes.DefaultImmutableAttributesFactory;
+import org.gradle.api.internal.attributes.EmptySchema;
+import org.gradle.api.internal.attributes.ImmutableAttributes;
+import org.gradle.api.internal.changedetection.state.ValueSnapshotter;
+import org.gradle.api.internal.model.NamedObjectInstantiator;
+import org.gradle.api.specs.Specs;
+import org.gradle.internal.classloader.ClassLoaderHierarchyHasher;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector;
+import org.gradle.internal.component.external.model.ImmutableCapabilities;
+import org.gradle.internal.component.local.model.BuildableLocalConfigurationMetadata;
+import org.gradle.internal.component.local.model.DefaultLocalComponentMetadata;
+import org.gradle.internal.component.local.model.RootLocalComponentMetadata;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.component.model.ExcludeMetadata;
+import org.gradle.internal.component.model.IvyArtifactName;
+import org.gradle.internal.component.model.LocalComponentDependencyMetadata;
+import org.gradle.internal.component.model.LocalOriginDependencyMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.locking.NoOpDependencyLockingProvider;
+import org.gradle.internal.operations.BuildOperation;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.BuildOperationRef;
+import org.gradle.internal.operations.BuildOperationWorker;
+import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.resolver.DependencyToComponentIdResolver;
+import org.gradle.internal.resolve.resolver.ResolveContextToComponentResolver;
+import org.gradle.internal.resolve.result.BuildableComponentIdResolveResult;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Resolves a synthetic dependency graph of in-memory components, to measure the time and memory spent by the graph traversal itself.
+ *
+ * The graph is a tree where each module depends on {@value #CHILDREN} further modules, with additional dependencies to random modules
+ * further down, so that modules are reached through several paths. A few of the additional dependencies request a newer version
+ * of their target, which causes version conflicts. Run with {@code -prof gc} to compare the allocations per resolution.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class DependencyGraphBuilderBenchmark {
+    private static final String GROUP = "org.test";
+    private static final String CONFIGURATION = "default";
+    private static final int CHILDREN = 4;
+    private static final int SHARED_DEPENDENCIES = 2;
+    private static final int CONFLICT_RATE = 20;
+
+    @Param({"1000", "10000"})
+    int nodes;
+
+    private final Map<ComponentIdentifier, DefaultLocalComponentMetadata> components = new HashMap<ComponentIdentifier, DefaultLocalComponentMetadata>();
+    private final VersionParser versionParser = new VersionParser();
+    private final DefaultVersionComparator versionComparator = new DefaultVersionComparator();
+    private RootLocalComponentMetadata root;
+    private DefaultImmutableAttributesFactory attributesFactory;
+    private ModuleExclusions moduleExclusions;
+
+    @Setup
+    public void setup() {
+        attributesFactory = new DefaultImmutableAttributesFactory(new ValueSnapshotter(new ClassLoaderHierarchyHasher() {
+            @Override
+            public HashCode getClassLoaderHash(ClassLoader classLoader) {
+                return HashCode.fromInt(classLoader.hashCode());
+            }
+        }, NamedObjectInstantiator.INSTANCE), NamedObjectInstantiator.INSTANCE);
+        moduleExclusions = new ModuleExclusions(new DefaultImmutableModuleIdentifierFactory());
+
+        root = new RootLocalComponentMetadata(DefaultModuleVersionIdentifier.newId(GROUP, "root", "1.0"), id("root", "1.0"), "release", EmptySchema.INSTANCE, NoOpDependencyLockingProvider.getInstance());
+        root.addConfiguration(CONFIGURATION, CONFIGURATION, Collections.<String>emptySet(), ImmutableSet.of(CONFIGURATION), true, true, ImmutableAttributes.EMPTY, true, true, ImmutableCapabilities.EMPTY)
+            .addDependency(dependency(root.getId(), 0, "1.0"));
+
+        // Pick the dependencies of each module first, as the newer versions depend on the same modules as the versions they replace
+        Random random = new Random(1234L);
+        List<List<LocalOriginDependencyMetadata>> dependencies = new ArrayList<List<LocalOriginDependencyMetadata>>(nodes);
+        boolean[] hasNewerVersion = new boolean[nodes];
+        for (int i = 0; i < nodes; i++) {
+            List<LocalOriginDependencyMetadata> moduleDependencies = new ArrayList<LocalOriginDependencyMetadata>();
+            ComponentIdentifier from = id(name(i), "1.0");
+            for (int child = CHILDREN * i + 1; child <= CHILDREN * i + CHILDREN && child < nodes; child++) {
+                moduleDependencies.add(dependency(from, child, "1.0"));
+            }
+            for (int j = 0; j < SHARED_DEPENDENCIES && i + 1 < nodes; j++) {
+                int target = i + 1 + random.nextInt(nodes - i - 1);
+                boolean newer = random.nextInt(CONFLICT_RATE) == 0;
+                hasNewerVersion[target] |= newer;
+                moduleDependencies.add(dependency(from, target, newer ? "2.0" : "1.0"));
+            }
+            dependencies.add(moduleDependencies);
+        }
+        for (int i = 0; i < nodes; i++) {
+            addComponent(i, "1.0", dependencies.get(i));
+            if (hasNewerVersion[i]) {
+                addComponent(i, "2.0", dependencies.get(i));
+            }
+        }
+    }
+
+    @Benchmark
+    public void resolve(Blackhole blackhole) {
+        CountingVisitor visitor = new CountingVisitor();
+        createBuilder().resolve(new BenchmarkResolveContext(), visitor);
+        blackhole.consume(visitor.nodes);
+    }
+
+    private DependencyGraphBuilder createBuilder() {
+        DefaultConflictHandler conflictHandler = new DefaultConflictHandler(new LatestModuleConflictResolver(versionComparator, versionParser), ModuleReplacementsData.NO_OP);
+        return new DependencyGraphBuilder(new IdResolver(), new MetadataResolver(), new RootResolver(), conflictHandler, new DefaultCapabilitiesConflictHandler(), Specs.satisfyAll(),
+            EmptySchema.INSTANCE, moduleExclusions, new InlineBuildOperationExecutor(), ModuleReplacementsData.NO_OP, DependencySubstitutionApplicator.NO_OP, new SelectorConverter(),
+            attributesFactory, new DefaultVersionSelectorScheme(versionComparator, versionParser), versionComparator.asVersionComparator(), versionParser);
+    }
+
+    private static String name(int index) {
+        return "m" + index;
+    }
+
+    private static ModuleComponentIdentifier id(String name, String version) {
+        return DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId(GROUP, name), version);
+    }
+
+    private void addComponent(int index, String version, List<LocalOriginDependencyMetadata> dependencies) {
+        ModuleComponentIdentifier id = id(name(index), version);
+        DefaultLocalComponentMetadata component = new DefaultLocalComponentMetadata(DefaultModuleVersionIdentifier.newId(id), id, "release", EmptySchema.INSTANCE);
+        BuildableLocalConfigurationMetadata configuration = component.addConfiguration(CONFIGURATION, CONFIGURATION, Collections.<String>emptySet(), ImmutableSet.of(CONFIGURATION), true, true, ImmutableAttributes.EMPTY, true, false, ImmutableCapabilities.EMPTY);
+        for (LocalOriginDependencyMetadata dependency : dependencies) {
+            configuration.addDependency(dependency);
+        }
+        components.put(id, component);
+    }
+
+    private static LocalOriginDependencyMetadata dependency(ComponentIdentifier from, int target, String version) {
+        ModuleComponentSelector selector = DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId(GROUP, name(target)), new DefaultMutableVersionConstraint(version));
+        return new LocalComponentDependencyMetadata(from, selector, CONFIGURATION, null, ImmutableAttributes.EMPTY, CONFIGURATION,
+            Collections.<IvyArtifactName>emptyList(), Collections.<ExcludeMetadata>emptyList(), false, false, true, false, null);
+    }
+
+    private class IdResolver implements DependencyToComponentIdResolver {
+        @Override
+        public void resolve(DependencyMetadata dependency, ResolvedVersionConstraint versionConstraint, BuildableComponentIdResolveResult result) {
+            ModuleComponentSelector selector = (ModuleComponentSelector) dependency.getSelector();
+            result.resolved(DefaultModuleComponentIdentifier.newId(selector.getModuleIdentifier(), selector.getVersion()),
+                DefaultModuleVersionIdentifier.newId(selector.getModuleIdentifier(), selector.getVersion()));
+        }
+    }
+
+    private class MetadataResolver implements ComponentMetaDataResolver {
+        @Override
+        public void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+            result.resolved(components.get(identifier));
+        }
+
+        @Override
+        public boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+            return true;
+        }
+    }
+
+    private class RootResolver implements ResolveContextToComponentResolver {
+        @Override
+        public void resolve(ResolveContext resolveContext, BuildableComponentResolveResult result) {
+            result.resolved(root);
+        }
+    }
+
+    private static class SelectorConverter implements ComponentSelectorConverter {
+        @Override
+        public ModuleIdentifier getModule(ComponentSelector selector) {
+            ModuleComponentSelector moduleSelector = (ModuleComponentSelector) selector;
+            return DefaultModuleIdentifier.newId(moduleSelector.getGroup(), moduleSelector.getModule());
+        }
+
+        @Override
+        public ModuleVersionSelector getSelector(ComponentSelector selector) {
+            ModuleComponentSelector moduleSelector = (ModuleComponentSelector) selector;
+            return DefaultModuleVersionSelector.newSelector(moduleSelector.getModuleIdentifier(), moduleSelector.getVersion());
+        }
+    }
+
+    private class BenchmarkResolveContext implements ResolveContext {
+        @Override
+        public String getName() {
+            return CONFIGURATION;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return CONFIGURATION;
+        }
+
+        @Override
+        public ResolutionStrategyInternal getResolutionStrategy() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ComponentResolveMetadata toRootComponentMetaData() {
+            return root;
+        }
+
+        @Override
+        public AttributeContainer getAttributes() {
+            return ImmutableAttributes.EMPTY;
+        }
+    }
+
+    /**
+     * Metadata is always cheap to fetch in this benchmark, so no operations are ever scheduled.
+     */
+    private static class InlineBuildOperationExecutor implements BuildOperationExecutor {
+        @Override
+        public void run(RunnableBuildOperation buildOperation) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> T call(CallableBuildOperation<T> buildOperation) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <O extends RunnableBuildOperation> void runAll(Action<BuildOperationQueue<O>> schedulingAction) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <O extends BuildOperation> void runAll(BuildOperationWorker<O> worker, Action<BuildOperationQueue<O>> schedulingAction) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BuildOperationRef getCurrentOperation() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class CountingVisitor implements DependencyGraphVisitor {
+        int nodes;
+
+        @Override
+        public void start(RootGraphNode root) {
+        }
+
+        @Override
+        public void visitNode(DependencyGraphNode node) {
+            nodes++;
+        }
+
+        @Override
+        public void visitSelector(DependencyGraphSelector selector) {
+        }
+
+        @Override
+        public void visitEdges(DependencyGraphNode node) {
+        }
+
+        @Override
+        public void finish(DependencyGraphNode root) {
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
+
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.internal.component.external.descriptor.DefaultExclude;
+import org.gradle.internal.component.model.ExcludeMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+
+/**
+ * Evaluates the exclusions of an exclude heavy graph, such as one importing Maven BOMs where most dependencies carry a list of excludes,
+ * against the modules of that graph.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ModuleExclusionBenchmark {
+    private static final int GROUPS = 50;
+    private static final int PATHS = 100;
+    private static final int PATH_LENGTH = 4;
+
+    @Param({"10", "100"})
+    int excludesPerDependency;
+
+    @Param({"1000"})
+    int modules;
+
+    ModuleExclusion[] exclusions;
+    ModuleIdentifier[] moduleIds;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1234L);
+        ModuleExclusions moduleExclusions = new ModuleExclusions(new DefaultImmutableModuleIdentifierFactory());
+
+        moduleIds = new ModuleIdentifier[modules];
+        for (int i = 0; i < modules; i++) {
+            moduleIds[i] = DefaultModuleIdentifier.newId("org.group" + random.nextInt(GROUPS), "module" + i);
+        }
+
+        // Each path through the graph intersects the excludes of the dependencies along it, and the paths leading to the same node are combined in a union
+        exclusions = new ModuleExclusion[PATHS];
+        for (int i = 0; i < PATHS; i++) {
+            ModuleExclusion path = ModuleExclusions.excludeNone();
+            for (int j = 0; j < PATH_LENGTH; j++) {
+                path = moduleExclusions.intersect(path, moduleExclusions.excludeAny(excludes(random)));
+            }
+            exclusions[i] = i == 0 ? path : moduleExclusions.union(exclusions[i - 1], path);
+        }
+    }
+
+    private ExcludeMetadata[] excludes(Random random) {
+        ExcludeMetadata[] excludes = new ExcludeMetadata[excludesPerDependency];
+        for (int i = 0; i < excludes.length; i++) {
+            int kind = random.nextInt(10);
+            ModuleIdentifier module = moduleIds[random.nextInt(modules)];
+            if (kind == 0) {
+                excludes[i] = new DefaultExclude(DefaultModuleIdentifier.newId(module.getGroup(), PatternMatchers.ANY_EXPRESSION));
+            } else if (kind == 1) {
+                excludes[i] = new DefaultExclude(DefaultModuleIdentifier.newId(PatternMatchers.ANY_EXPRESSION, module.getName()));
+            } else {
+                excludes[i] = new DefaultExclude(module);
+            }
+        }
+        return excludes;
+    }
+
+    @Benchmark
+    public void excludeModules(Blackhole blackhole) {
+        for (ModuleExclusion exclusion : exclusions) {
+            for (ModuleIdentifier moduleId : moduleIds) {
+                blackhole.consume(exclusion.excludeModule(moduleId));
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.gradle.api.internal.artifacts;
 import org.gradle.api.artifacts.ResolveException;
 import org.gradle.api.artifacts.ResolvedConfiguration;
 import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ResolutionStatistics;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.projectresult.ResolvedLocalComponentsResult;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.GraphValidationException;
@@ -31,6 +32,7 @@ public class DefaultResolverResults implements ResolverResults {
     private ResolvedLocalComponentsResult resolvedLocalComponentsResult;
     private Object artifactResolveState;
     private VisitedArtifactSet visitedArtifacts;
+    private ResolutionStatistics statistics;
 
     @Override
     public boolean hasError() {
@@ -173,4 +175,14 @@ public class DefaultResolverResults implements ResolverResults {
         maybeRethrowAnyError();
         return artifactResolveState;
     }
+
+    @Override
+    public void statisticsCollected(ResolutionStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public ResolutionStatistics getStatistics() {
+        return statistics;
+    }
 }
@@ -18,9 +18,12 @@ package org.gradle.api.internal.artifacts;
 import org.gradle.api.artifacts.ResolveException;
 import org.gradle.api.artifacts.ResolvedConfiguration;
 import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ResolutionStatistics;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.projectresult.ResolvedLocalComponentsResult;
 
+import javax.annotation.Nullable;
+
 public interface ResolverResults {
     boolean hasError();
 
@@ -87,4 +90,15 @@ public interface ResolverResults {
     Throwable getFailure();
 
     boolean hasResolutionResult();
+
+    /**
+     * Attaches the statistics collected while resolving the dependency graph.
+     */
+    void statisticsCollected(ResolutionStatistics statistics);
+
+    /**
+     * Returns the statistics collected while resolving the dependency graph, or null when the graph was not resolved from repositories.
+     */
+    @Nullable
+    ResolutionStatistics getStatistics();
 }
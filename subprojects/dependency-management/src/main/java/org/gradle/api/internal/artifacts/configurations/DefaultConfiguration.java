@@ -551,7 +551,7 @@ public class DefaultConfiguration extends AbstractFileCollection implements Conf
                 if (failure != null) {
                     context.failed(failure);
                 }
-                context.setResult(new ResolveConfigurationResolutionBuildOperationResult(incoming, failure != null));
+                context.setResult(new ResolveConfigurationResolutionBuildOperationResult(incoming, failure != null, cachedResolverResults.getStatistics()));
             }
 
             @Override
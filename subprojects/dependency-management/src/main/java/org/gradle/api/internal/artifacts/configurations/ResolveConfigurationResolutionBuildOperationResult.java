@@ -19,10 +19,12 @@ package org.gradle.api.internal.artifacts.configurations;
 import com.google.common.collect.Maps;
 import org.gradle.api.Action;
 import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ResolutionStatistics;
 import org.gradle.api.internal.artifacts.result.ResolvedComponentResultInternal;
 import org.gradle.internal.Actions;
 import org.gradle.internal.operations.trace.CustomOperationTraceSerialization;
 
+import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -33,10 +35,12 @@ class ResolveConfigurationResolutionBuildOperationResult implements ResolveConfi
 
     private final ResolvableDependenciesInternal incoming;
     private final boolean failSafe;
+    private final ResolutionStatistics statistics;
 
-    ResolveConfigurationResolutionBuildOperationResult(ResolvableDependenciesInternal incoming, boolean failSafe) {
+    ResolveConfigurationResolutionBuildOperationResult(ResolvableDependenciesInternal incoming, boolean failSafe, @Nullable ResolutionStatistics statistics) {
         this.incoming = incoming;
         this.failSafe = failSafe;
+        this.statistics = statistics;
     }
 
     @Override
@@ -56,6 +60,14 @@ class ResolveConfigurationResolutionBuildOperationResult implements ResolveConfi
         return ((ResolvedComponentResultInternal) resolvedComponentResult).getRepositoryName();
     }
 
+    @Override
+    public Map<String, ?> getStatistics() {
+        if (statistics == null) {
+            return Collections.emptyMap();
+        }
+        return statistics.asMap();
+    }
+
     @Override
     public Object getCustomOperationTraceSerializableModel() {
         Map<String, Object> model = new HashMap<String, Object>();
@@ -71,6 +83,7 @@ class ResolveConfigurationResolutionBuildOperationResult implements ResolveConfi
             }
         });
         model.put("components", components);
+        model.put("statistics", getStatistics());
         return model;
     }
 
@@ -35,6 +35,7 @@ import org.gradle.api.internal.artifacts.ivyservice.modulecache.artifacts.Cached
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.artifacts.ModuleArtifactCache;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.artifacts.ModuleArtifactsCache;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.dynamicversions.ModuleVersionsCache;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ResolutionStatistics;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ResolvableArtifact;
 import org.gradle.api.internal.artifacts.repositories.resolver.MetadataFetchingCost;
 import org.gradle.api.internal.component.ArtifactType;
@@ -87,6 +88,7 @@ public class CachingModuleComponentRepository implements ModuleComponentReposito
     private final BuildCommencedTimeProvider timeProvider;
     private final ComponentMetadataProcessor metadataProcessor;
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final ResolutionStatistics.RepositoryStatistics statistics;
     private LocateInCacheRepositoryAccess locateInCacheRepositoryAccess = new LocateInCacheRepositoryAccess();
     private ResolveAndCacheRepositoryAccess resolveAndCacheRepositoryAccess = new ResolveAndCacheRepositoryAccess();
 
@@ -94,6 +96,14 @@ public class CachingModuleComponentRepository implements ModuleComponentReposito
                                             CachePolicy cachePolicy, BuildCommencedTimeProvider timeProvider,
                                             ComponentMetadataProcessor metadataProcessor,
                                             ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+        this(delegate, caches, cachePolicy, timeProvider, metadataProcessor, moduleIdentifierFactory, new ResolutionStatistics.RepositoryStatistics());
+    }
+
+    public CachingModuleComponentRepository(ModuleComponentRepository delegate, ModuleRepositoryCaches caches,
+                                            CachePolicy cachePolicy, BuildCommencedTimeProvider timeProvider,
+                                            ComponentMetadataProcessor metadataProcessor,
+                                            ImmutableModuleIdentifierFactory moduleIdentifierFactory,
+                                            ResolutionStatistics.RepositoryStatistics statistics) {
         this.delegate = delegate;
         this.moduleMetadataCache = caches.moduleMetadataCache;
         this.moduleVersionsCache = caches.moduleVersionsCache;
@@ -103,6 +113,7 @@ public class CachingModuleComponentRepository implements ModuleComponentReposito
         this.timeProvider = timeProvider;
         this.metadataProcessor = metadataProcessor;
         this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.statistics = statistics;
     }
 
     public String getId() {
@@ -187,6 +198,11 @@ public class CachingModuleComponentRepository implements ModuleComponentReposito
             }
 
             resolveComponentMetaDataFromCache(moduleComponentIdentifier, requestMetaData, result);
+            if (result.hasResult()) {
+                statistics.metadataCacheHit();
+            } else {
+                statistics.metadataCacheMiss();
+            }
         }
 
         private void resolveComponentMetaDataFromCache(ModuleComponentIdentifier moduleComponentIdentifier, ComponentOverrideMetadata requestMetaData, BuildableModuleComponentMetaDataResolveResult result) {
@@ -375,7 +391,9 @@ public class CachingModuleComponentRepository implements ModuleComponentReposito
         public void resolveComponentMetaData(ModuleComponentIdentifier moduleComponentIdentifier, ComponentOverrideMetadata requestMetaData, BuildableModuleComponentMetaDataResolveResult result) {
             ComponentOverrideMetadata forced = requestMetaData.withChanging();
 
+            long start = System.nanoTime();
             delegate.getRemoteAccess().resolveComponentMetaData(moduleComponentIdentifier, forced, result);
+            statistics.remoteMetadataResolved(System.nanoTime() - start);
             switch (result.getState()) {
                 case Missing:
                     moduleMetadataCache.cacheMissing(delegate, moduleComponentIdentifier);
@@ -426,6 +444,7 @@ public class CachingModuleComponentRepository implements ModuleComponentReposito
 
             ArtifactResolveException failure = result.getFailure();
             if (failure == null) {
+                statistics.downloaded(result.getResult().length());
                 moduleArtifactCache.store(artifactCacheKey(artifact.getId()), result.getResult(), cachingModuleSource.getDescriptorHash());
             } else if (failure instanceof ArtifactNotFoundException) {
                 moduleArtifactCache.storeMissing(artifactCacheKey(artifact.getId()), result.getAttempted(), cachingModuleSource.getDescriptorHash());
@@ -31,6 +31,7 @@ import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionP
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleRepositoryCacheProvider;
 import org.gradle.api.internal.artifacts.ivyservice.resolutionstrategy.DefaultComponentSelectionRules;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ResolutionStatistics;
 import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
 import org.gradle.api.internal.artifacts.repositories.resolver.ExternalResourceResolver;
 import org.gradle.api.internal.attributes.ImmutableAttributesFactory;
@@ -89,6 +90,17 @@ public class ResolveIvyFactory {
                                      AttributesSchema attributesSchema,
                                      ImmutableAttributesFactory attributesFactory,
                                      ComponentMetadataSupplierRuleExecutor componentMetadataSupplierRuleExecutor) {
+        return create(resolutionStrategy, repositories, metadataProcessor, consumerAttributes, attributesSchema, attributesFactory, componentMetadataSupplierRuleExecutor, new ResolutionStatistics());
+    }
+
+    public ComponentResolvers create(ResolutionStrategyInternal resolutionStrategy,
+                                     Collection<? extends ResolutionAwareRepository> repositories,
+                                     ComponentMetadataProcessorFactory metadataProcessor,
+                                     AttributeContainer consumerAttributes,
+                                     AttributesSchema attributesSchema,
+                                     ImmutableAttributesFactory attributesFactory,
+                                     ComponentMetadataSupplierRuleExecutor componentMetadataSupplierRuleExecutor,
+                                     ResolutionStatistics statistics) {
         if (repositories.isEmpty()) {
             return new NoRepositoriesResolver();
         }
@@ -111,15 +123,16 @@ public class ResolveIvyFactory {
             MetadataResolutionContext metadataResolutionContext = new DefaultMetadataResolutionContext(cachePolicy, instantiator);
             ComponentMetadataProcessor componentMetadataProcessor = metadataProcessor.createComponentMetadataProcessor(metadataResolutionContext);
 
+            ResolutionStatistics.RepositoryStatistics repositoryStatistics = statistics.forRepository(baseRepository.getName());
             ModuleComponentRepository moduleComponentRepository = baseRepository;
             if (baseRepository.isLocal()) {
                 moduleComponentRepository = new CachingModuleComponentRepository(moduleComponentRepository, cacheProvider.getInMemoryCaches(),
-                    cachePolicy, timeProvider, componentMetadataProcessor, moduleIdentifierFactory);
+                    cachePolicy, timeProvider, componentMetadataProcessor, moduleIdentifierFactory, repositoryStatistics);
                 moduleComponentRepository = new LocalModuleComponentRepository(moduleComponentRepository);
             } else {
                 moduleComponentRepository = startParameterResolutionOverride.overrideModuleVersionRepository(moduleComponentRepository);
                 moduleComponentRepository = new CachingModuleComponentRepository(moduleComponentRepository, cacheProvider.getCaches(),
-                    cachePolicy, timeProvider, componentMetadataProcessor, moduleIdentifierFactory);
+                    cachePolicy, timeProvider, componentMetadataProcessor, moduleIdentifierFactory, repositoryStatistics);
             }
             moduleComponentRepository = cacheProvider.getResolvedArtifactCaches().provideResolvedArtifactCache(moduleComponentRepository);
 
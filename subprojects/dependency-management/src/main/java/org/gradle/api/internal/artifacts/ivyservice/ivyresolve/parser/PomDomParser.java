@@ -16,39 +16,157 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
 
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.IOUtils;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.classloader.ClassLoaderUtils;
 
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.*;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Reads POM files into a tree of {@link PomElement}s, using a streaming parser.
+ *
+ * <p>Only the parts of a POM that are relevant to dependency resolution are kept in the tree: the coordinates, parent, packaging,
+ * relocation, properties, dependencies, dependency management and the profiles that may contribute to these. Everything else,
+ * such as the build, reporting and project information sections, is skipped while parsing and never materialized.</p>
+ */
 public final class PomDomParser {
-    private PomDomParser() {}
+    private static final Set<String> PROJECT_CHILDREN = ImmutableSet.of("groupId", "artifactId", "version", "packaging", "parent", "distributionManagement", "properties", "dependencies", "dependencyManagement", "profiles");
+    private static final Set<String> DISTRIBUTION_MANAGEMENT_CHILDREN = ImmutableSet.of("relocation");
+    private static final Set<String> PROFILES_CHILDREN = ImmutableSet.of("profile");
+    private static final Set<String> PROFILE_CHILDREN = ImmutableSet.of("id", "activation", "properties", "dependencies", "dependencyManagement");
+
+    private static final byte[] M2_ENTITIES_RESOURCE;
+    private static final XMLInputFactory XML_INPUT_FACTORY;
+
+    static {
+        byte[] bytes;
+        try {
+            bytes = IOUtils.toByteArray(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        M2_ENTITIES_RESOURCE = bytes;
 
-    public static String getTextContent(Element element) {
-        StringBuilder result = new StringBuilder();
+        // Set the context classloader the bootstrap classloader, to work around the way that JAXP locates implementation classes
+        // This should ensure that the JAXP classes provided by the JVM are used, rather than some other implementation
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(ClassLoaderUtils.getPlatformClassLoader());
+        try {
+            XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+            // Element names are used as they appear in the POM, the same way as a DOM parser that is not namespace aware does
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_VALIDATING, false);
+            XML_INPUT_FACTORY.setXMLResolver(new XMLResolver() {
+                public Object resolveEntity(String publicID, String systemID, String baseURI, String namespace) {
+                    if ((systemID != null) && systemID.endsWith("m2-entities.ent")) {
+                        return new ByteArrayInputStream(M2_ENTITIES_RESOURCE);
+                    }
+                    return null;
+                }
+            });
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    private PomDomParser() {}
 
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            Node child = childNodes.item(i);
+    /**
+     * Parses the given POM content, returning its root element.
+     */
+    public static PomElement parse(InputStream stream, String systemId) throws IOException, XMLStreamException {
+        XMLStreamReader reader;
+        synchronized (XML_INPUT_FACTORY) {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(systemId, new AddDTDFilterInputStream(stream));
+        }
+        try {
+            // Skip the prolog
+            for (int event = reader.next(); event != XMLStreamConstants.START_ELEMENT; event = reader.next()) {
+                if (event == XMLStreamConstants.END_DOCUMENT) {
+                    throw new XMLStreamException("Premature end of file.", reader.getLocation());
+                }
+            }
+            PomElement root = new PomElement(reader.getLocalName());
+            readContent(reader, root, PROJECT_CHILDREN);
+            return root;
+        } finally {
+            reader.close();
+        }
+    }
 
-            switch (child.getNodeType()) {
-                case Node.CDATA_SECTION_NODE:
-                case Node.TEXT_NODE:
-                    result.append(child.getNodeValue());
+    /**
+     * Reads the content of the current element, up to and including its end tag.
+     */
+    private static void readContent(XMLStreamReader reader, PomElement element, @Nullable Set<String> retainedChildren) throws XMLStreamException {
+        while (true) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    String name = reader.getLocalName();
+                    if (retainedChildren == null || retainedChildren.contains(name)) {
+                        PomElement child = new PomElement(name);
+                        readContent(reader, child, retainedChildrenOf(retainedChildren, name));
+                        element.addChild(child);
+                    } else {
+                        skipContent(reader);
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    element.appendText(reader.getText());
                     break;
+                case XMLStreamConstants.END_ELEMENT:
+                    return;
                 default:
                     break;
             }
         }
+    }
 
-        return result.toString();
+    private static void skipContent(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
     }
 
-    public static String getFirstChildText(Element parentElem, String name) {
-        Element node = getFirstChildElement(parentElem, name);
+    @Nullable
+    private static Set<String> retainedChildrenOf(@Nullable Set<String> retainedSiblings, String name) {
+        if (retainedSiblings == PROJECT_CHILDREN) {
+            if (name.equals("distributionManagement")) {
+                return DISTRIBUTION_MANAGEMENT_CHILDREN;
+            }
+            if (name.equals("profiles")) {
+                return PROFILES_CHILDREN;
+            }
+        } else if (retainedSiblings == PROFILES_CHILDREN) {
+            return PROFILE_CHILDREN;
+        }
+        return null;
+    }
+
+    public static String getTextContent(PomElement element) {
+        return element.getTextContent();
+    }
+
+    public static String getFirstChildText(PomElement parentElem, String name) {
+        PomElement node = getFirstChildElement(parentElem, name);
         if (node != null) {
             return getTextContent(node);
         } else {
@@ -56,32 +174,62 @@ public final class PomDomParser {
         }
     }
 
-    public static Element getFirstChildElement(Element parentElem, String name) {
+    public static PomElement getFirstChildElement(PomElement parentElem, String name) {
         if (parentElem == null) {
             return null;
         }
-        NodeList childs = parentElem.getChildNodes();
-        for (int i = 0; i < childs.getLength(); i++) {
-            Node node = childs.item(i);
-            if (node instanceof Element && name.equals(node.getNodeName())) {
-                return (Element) node;
+        for (PomElement child : parentElem.getChildren()) {
+            if (name.equals(child.getName())) {
+                return child;
             }
         }
         return null;
     }
 
-    public static List<Element> getAllChilds(Element parent) {
-        List<Element> r = new LinkedList<Element>();
-        if (parent != null) {
-            NodeList childs = parent.getChildNodes();
-            for (int i = 0; i < childs.getLength(); i++) {
-                Node node = childs.item(i);
-                if (node instanceof Element) {
-                    r.add((Element) node);
-                }
+    public static List<PomElement> getAllChilds(PomElement parent) {
+        if (parent == null) {
+            return Collections.emptyList();
+        }
+        return parent.getChildren();
+    }
+
+    /**
+     * An element of a POM, with its text and child elements.
+     */
+    public static final class PomElement {
+        private final String name;
+        private List<PomElement> children = Collections.emptyList();
+        private String text = "";
+
+        PomElement(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the text directly contained by this element, not including the text of its child elements.
+         */
+        public String getTextContent() {
+            return text;
+        }
+
+        public List<PomElement> getChildren() {
+            return children;
+        }
+
+        private void addChild(PomElement child) {
+            if (children.isEmpty()) {
+                children = Lists.newArrayListWithCapacity(4);
             }
+            children.add(child);
+        }
+
+        private void appendText(String value) {
+            text = text.isEmpty() ? value : text + value;
         }
-        return r;
     }
 
     public static final class AddDTDFilterInputStream extends FilterInputStream {
@@ -35,7 +35,15 @@ import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
 import org.gradle.util.BuildCommencedTimeProvider;
 
+import java.io.File;
+
 public class DefaultModuleMetadataCache extends InMemoryModuleMetadataCache {
+    /**
+     * When set to true, module descriptors are packed into segment files rather than stored as a file per descriptor.
+     *
+     * @see SegmentedModuleMetadataStore
+     */
+    public static final String SEGMENTED_METADATA_STORE_PROPERTY = "org.gradle.internal.dependency-resolution.segmented-metadata-store";
 
     private PersistentIndexedCache<ModuleComponentAtRepositoryKey, ModuleMetadataCacheEntry> cache;
     private final ModuleMetadataStore moduleMetadataStore;
@@ -50,7 +58,12 @@ public class DefaultModuleMetadataCache extends InMemoryModuleMetadataCache {
                                       IvyMutableModuleMetadataFactory ivyMetadataFactory,
                                       Interner<String> stringInterner) {
         super(timeProvider);
-        moduleMetadataStore = new ModuleMetadataStore(new DefaultPathKeyFileStore(artifactCacheMetadata.getMetaDataStoreDirectory()), new ModuleMetadataSerializer(attributeContainerSerializer, mavenMetadataFactory, ivyMetadataFactory), moduleIdentifierFactory, stringInterner);
+        ModuleMetadataSerializer moduleMetadataSerializer = new ModuleMetadataSerializer(attributeContainerSerializer, mavenMetadataFactory, ivyMetadataFactory);
+        if (Boolean.getBoolean(SEGMENTED_METADATA_STORE_PROPERTY)) {
+            moduleMetadataStore = new SegmentedModuleMetadataStore(new File(artifactCacheMetadata.getMetaDataStoreDirectory().getParentFile(), "descriptor-segments"), moduleMetadataSerializer, moduleIdentifierFactory, stringInterner);
+        } else {
+            moduleMetadataStore = new DefaultModuleMetadataStore(new DefaultPathKeyFileStore(artifactCacheMetadata.getMetaDataStoreDirectory()), moduleMetadataSerializer, moduleIdentifierFactory, stringInterner);
+        }
         this.artifactCacheLockingManager = artifactCacheLockingManager;
     }
 
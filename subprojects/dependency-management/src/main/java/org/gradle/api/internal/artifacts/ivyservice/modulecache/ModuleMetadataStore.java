@@ -1,5 +1,5 @@
 /*
- * Copyright 2011 the original author or authors.
+ * Copyright 2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,75 +15,20 @@
  */
 package org.gradle.api.internal.artifacts.ivyservice.modulecache;
 
-import com.google.common.collect.Interner;
-import org.gradle.api.Action;
-import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
-import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
-import org.gradle.internal.UncheckedException;
 import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
 import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata;
-import org.gradle.internal.resource.local.LocallyAvailableResource;
-import org.gradle.internal.resource.local.PathKeyFileStore;
-import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
-import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-
-public class ModuleMetadataStore {
-
-    private final PathKeyFileStore metaDataStore;
-    private final ModuleMetadataSerializer moduleMetadataSerializer;
-    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
-    private final Interner<String> stringInterner;
-
-    public ModuleMetadataStore(PathKeyFileStore metaDataStore, ModuleMetadataSerializer moduleMetadataSerializer, ImmutableModuleIdentifierFactory moduleIdentifierFactory, Interner<String> stringInterner) {
-        this.metaDataStore = metaDataStore;
-        this.moduleMetadataSerializer = moduleMetadataSerializer;
-        this.moduleIdentifierFactory = moduleIdentifierFactory;
-        this.stringInterner = stringInterner;
-    }
-
-    public MutableModuleComponentResolveMetadata getModuleDescriptor(ModuleComponentAtRepositoryKey component) {
-        String filePath = getFilePath(component);
-        final LocallyAvailableResource resource = metaDataStore.get(filePath);
-        if (resource != null) {
-            try {
-                StringDeduplicatingDecoder decoder = new StringDeduplicatingDecoder(new KryoBackedDecoder(new FileInputStream(resource.getFile())), stringInterner);
-                try {
-                    return moduleMetadataSerializer.read(decoder, moduleIdentifierFactory);
-                } finally {
-                    decoder.close();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Could not load module metadata from " + resource.getDisplayName(), e);
-            }
-        }
-        return null;
-    }
-
-    public LocallyAvailableResource putModuleDescriptor(ModuleComponentAtRepositoryKey component, final ModuleComponentResolveMetadata metadata) {
-        String filePath = getFilePath(component);
-        return metaDataStore.add(filePath, new Action<File>() {
-            public void execute(File moduleDescriptorFile) {
-                try {
-                    KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(moduleDescriptorFile));
-                    try {
-                        moduleMetadataSerializer.write(encoder, metadata);
-                    } finally {
-                        encoder.close();
-                    }
-                } catch (Exception e) {
-                    throw UncheckedException.throwAsUncheckedException(e);
-                }
-            }
-        });
-    }
-
-    private String getFilePath(ModuleComponentAtRepositoryKey componentId) {
-        ModuleComponentIdentifier moduleComponentIdentifier = componentId.getComponentId();
-        return moduleComponentIdentifier.getGroup() + "/" + moduleComponentIdentifier.getModule() + "/" + moduleComponentIdentifier.getVersion() + "/" + componentId.getRepositoryId() + "/descriptor.bin";
-    }
+import javax.annotation.Nullable;
 
+/**
+ * Persists the descriptors of the modules in the artifact cache. Must only be used while holding the artifact cache lock.
+ */
+public interface ModuleMetadataStore {
+    /**
+     * Returns the stored descriptor of the given component, or null if there is none.
+     */
+    @Nullable
+    MutableModuleComponentResolveMetadata getModuleDescriptor(ModuleComponentAtRepositoryKey component);
+
+    void putModuleDescriptor(ModuleComponentAtRepositoryKey component, ModuleComponentResolveMetadata metadata);
 }
@@ -0,0 +1,765 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Stores module descriptors packed into a few large files, instead of a file per descriptor.
+ *
+ * <p>The store consists of segment files, a string table and an index, which are only ever appended to:</p>
+ * <ul>
+ * <li>A segment file holds serialized descriptors back to back. A new segment is started once the current one is full.</li>
+ * <li>The string table holds the strings used by the descriptors. Descriptors refer to strings by their position in the table,
+ * so a string is decoded at most once per build and the same instance is shared by all descriptors that use it.</li>
+ * <li>The index maps each component to the location of its descriptor. An index entry is written after the descriptor and the strings it uses,
+ * and is checksummed, so it is what commits the descriptor. Anything written after the last valid entry, for example by a process that was killed,
+ * is ignored and later overwritten.</li>
+ * </ul>
+ *
+ * <p>The segments and the string table are memory mapped and read lazily: a descriptor is only decoded when it is requested, and a string only when
+ * a descriptor that uses it is decoded. Each part of a file is mapped at most once, as the files only grow. The index is held in memory. It is brought
+ * up to date with the entries added by other processes each time the store is used, which is safe because the store is only used while holding
+ * the artifact cache lock.</p>
+ *
+ * <p>A string is only looked up among the strings this process has decoded or written, so writing a descriptor never decodes the whole table.
+ * A string that is already in the table may be appended again.</p>
+ *
+ * <p>Descriptors that are stored again, such as those of changing modules, leave their previous version behind. Once more than half of the
+ * segments hold such replaced descriptors, the live descriptors are copied into a new generation of the files, which also drops duplicate and
+ * unused strings. The index of the new generation is renamed into place once it is complete, and the files of earlier generations are deleted.
+ * Files that cannot be deleted yet, for example because another process still has them mapped on Windows, are deleted by a later compaction.</p>
+ */
+public class SegmentedModuleMetadataStore implements ModuleMetadataStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentedModuleMetadataStore.class);
+    private static final int MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_INDEX_ENTRY_SIZE = 64 * 1024;
+    private static final long MIN_COMPACTION_GARBAGE = 16 * 1024 * 1024;
+    private static final Pattern GENERATION_FILE_NAME = Pattern.compile("(?:index|strings|segment)-(\\d+)[-.].*");
+    private static final Pattern INDEX_FILE_NAME = Pattern.compile("index-(\\d+)\\.bin");
+
+    private final File baseDir;
+    private final ModuleMetadataSerializer moduleMetadataSerializer;
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final Interner<String> stringInterner;
+    private final long minCompactionGarbage;
+
+    private Generation current;
+
+    public SegmentedModuleMetadataStore(File baseDir, ModuleMetadataSerializer moduleMetadataSerializer, ImmutableModuleIdentifierFactory moduleIdentifierFactory, Interner<String> stringInterner) {
+        this(baseDir, moduleMetadataSerializer, moduleIdentifierFactory, stringInterner, MIN_COMPACTION_GARBAGE);
+    }
+
+    @VisibleForTesting
+    SegmentedModuleMetadataStore(File baseDir, ModuleMetadataSerializer moduleMetadataSerializer, ImmutableModuleIdentifierFactory moduleIdentifierFactory, Interner<String> stringInterner, long minCompactionGarbage) {
+        this.baseDir = baseDir;
+        this.moduleMetadataSerializer = moduleMetadataSerializer;
+        this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.stringInterner = stringInterner;
+        this.minCompactionGarbage = minCompactionGarbage;
+    }
+
+    @Override
+    public synchronized MutableModuleComponentResolveMetadata getModuleDescriptor(ModuleComponentAtRepositoryKey component) {
+        try {
+            Generation generation = refresh();
+            IndexEntry entry = generation.index.get(getKey(component));
+            if (entry == null) {
+                return null;
+            }
+            return generation.read(entry);
+        } catch (Exception e) {
+            throw new RuntimeException("Could not load module metadata for " + component.getComponentId() + " from " + baseDir, e);
+        }
+    }
+
+    @Override
+    public synchronized void putModuleDescriptor(ModuleComponentAtRepositoryKey component, ModuleComponentResolveMetadata metadata) {
+        Generation generation;
+        try {
+            generation = refresh();
+            generation.write(getKey(component), metadata);
+        } catch (Exception e) {
+            // Strings or a descriptor may have been written without being committed, so read everything again next time
+            current = null;
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        if (generation.shouldCompact()) {
+            compact(generation);
+        }
+    }
+
+    /**
+     * Brings the index up to date with the entries added since it was last read, possibly by another process.
+     */
+    private Generation refresh() throws IOException {
+        if (current == null || current.isReplaced()) {
+            // First use, or another process has compacted the store
+            current = new Generation(findLatestGeneration());
+        }
+        current.refresh();
+        return current;
+    }
+
+    /**
+     * Copies the live descriptors into a new generation of the files, and deletes the files of the earlier generations.
+     */
+    private void compact(Generation source) {
+        int number = source.number + 1;
+        // Remove whatever an earlier compaction that did not complete left behind
+        deleteGenerations(number, number);
+        File indexFile = getIndexFile(number);
+        Generation target = new Generation(number, new File(baseDir, indexFile.getName() + ".tmp"));
+        try {
+            for (Map.Entry<String, IndexEntry> entry : source.index.entrySet()) {
+                target.write(entry.getKey(), source.read(entry.getValue()).asImmutable());
+            }
+            if (!target.indexFile.renameTo(indexFile)) {
+                throw new IOException("Could not rename " + target.indexFile + " to " + indexFile);
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Could not compact the module metadata store in {}.", baseDir, e);
+            deleteGenerations(number, number);
+            return;
+        }
+        // Drop the mappings of the earlier generation, the compacted one is read on next use
+        current = null;
+        deleteGenerations(0, number - 1);
+    }
+
+    private int findLatestGeneration() {
+        int latest = 0;
+        File[] files = baseDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Matcher matcher = INDEX_FILE_NAME.matcher(file.getName());
+                if (matcher.matches()) {
+                    latest = Math.max(latest, Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        return latest;
+    }
+
+    private void deleteGenerations(int from, int to) {
+        File[] files = baseDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            Matcher matcher = GENERATION_FILE_NAME.matcher(file.getName());
+            if (matcher.matches()) {
+                int generation = Integer.parseInt(matcher.group(1));
+                if (generation >= from && generation <= to && !file.delete()) {
+                    LOGGER.debug("Could not delete {}, it will be deleted by a later compaction.", file);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static byte[] readIndexEntry(DataInputStream inputStream) throws IOException {
+        try {
+            int length = inputStream.readInt();
+            if (length <= 0 || length > MAX_INDEX_ENTRY_SIZE) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            inputStream.readFully(payload);
+            int checksum = inputStream.readInt();
+            return checksum == checksum(payload) ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private File getIndexFile(int generation) {
+        return new File(baseDir, "index-" + generation + ".bin");
+    }
+
+    private File getStringsFile(int generation) {
+        return new File(baseDir, "strings-" + generation + ".bin");
+    }
+
+    private File getSegmentFile(int generation, int segment) {
+        return new File(baseDir, "segment-" + generation + "-" + segment + ".bin");
+    }
+
+    private void write(File file, long position, byte[] bytes) throws IOException {
+        if (!baseDir.isDirectory() && !baseDir.mkdirs()) {
+            throw new IOException("Could not create directory " + baseDir);
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.seek(position);
+            randomAccessFile.write(bytes);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void skipFully(InputStream inputStream, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = inputStream.skip(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    private static String getKey(ModuleComponentAtRepositoryKey componentId) {
+        ModuleComponentIdentifier moduleComponentIdentifier = componentId.getComponentId();
+        return moduleComponentIdentifier.getGroup() + "/" + moduleComponentIdentifier.getModule() + "/" + moduleComponentIdentifier.getVersion() + "/" + componentId.getRepositoryId();
+    }
+
+    /**
+     * One generation of the files of the store. A compaction copies the live descriptors of a generation into the next one.
+     */
+    private class Generation {
+        private final int number;
+        private final File indexFile;
+        private final StringTable strings;
+        private final Map<String, IndexEntry> index = Maps.newHashMap();
+        private final List<MappedRegions> segments = Lists.newArrayList();
+        private long indexEnd;
+        private int currentSegment;
+        private long currentSegmentEnd;
+        private long liveBytes;
+        private long garbageBytes;
+
+        private Generation(int number) {
+            this(number, getIndexFile(number));
+        }
+
+        private Generation(int number, File indexFile) {
+            this.number = number;
+            this.indexFile = indexFile;
+            this.strings = new StringTable(getStringsFile(number));
+        }
+
+        /**
+         * Returns true when another process has compacted the store into a later generation.
+         */
+        boolean isReplaced() {
+            return indexFile.length() < indexEnd || (indexEnd > 0 && !indexFile.isFile()) || getIndexFile(number + 1).isFile();
+        }
+
+        boolean shouldCompact() {
+            return garbageBytes >= minCompactionGarbage && garbageBytes > liveBytes;
+        }
+
+        void refresh() throws IOException {
+            if (indexFile.length() <= indexEnd) {
+                return;
+            }
+            DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            try {
+                skipFully(inputStream, indexEnd);
+                while (true) {
+                    byte[] payload = readIndexEntry(inputStream);
+                    if (payload == null) {
+                        // Reached the end of the index, or an entry that was not completely written
+                        break;
+                    }
+                    DataInputStream entryStream = new DataInputStream(new ByteArrayInputStream(payload));
+                    String key = entryStream.readUTF();
+                    IndexEntry entry = new IndexEntry(entryStream.readInt(), entryStream.readLong(), entryStream.readInt(), entryStream.readInt(), entryStream.readLong());
+                    add(key, entry);
+                    indexEnd += 8 + payload.length;
+                    currentSegment = entry.segment;
+                    currentSegmentEnd = entry.offset + entry.length;
+                    strings.committed(entry.stringCount, entry.stringsEnd);
+                }
+            } finally {
+                inputStream.close();
+            }
+        }
+
+        MutableModuleComponentResolveMetadata read(IndexEntry entry) throws IOException {
+            // Descriptors are only ever appended to the current segment, so the earlier ones can be mapped up to their end
+            long committedEnd = entry.segment == currentSegment ? currentSegmentEnd : Long.MAX_VALUE;
+            ByteBuffer buffer = getSegment(entry.segment).slice(entry.offset, entry.length, committedEnd);
+            return moduleMetadataSerializer.read(new StringTableDecoder(strings, new KryoBackedDecoder(new ByteBufferInputStream(buffer))), moduleIdentifierFactory);
+        }
+
+        void write(String key, ModuleComponentResolveMetadata metadata) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            StringTableEncoder encoder = new StringTableEncoder(strings, new KryoBackedEncoder(bytes));
+            moduleMetadataSerializer.write(encoder, metadata);
+            encoder.flush();
+
+            strings.append(encoder.newStrings.keySet());
+            if (currentSegmentEnd > 0 && currentSegmentEnd + bytes.size() > MAX_SEGMENT_SIZE) {
+                currentSegment++;
+                currentSegmentEnd = 0;
+            }
+            SegmentedModuleMetadataStore.this.write(getSegmentFile(number, currentSegment), currentSegmentEnd, bytes.toByteArray());
+
+            IndexEntry entry = new IndexEntry(currentSegment, currentSegmentEnd, bytes.size(), strings.count, strings.end);
+            appendToIndex(key, entry);
+            add(key, entry);
+            currentSegmentEnd += bytes.size();
+        }
+
+        private void add(String key, IndexEntry entry) {
+            IndexEntry previous = index.put(key, entry);
+            liveBytes += entry.length;
+            if (previous != null) {
+                liveBytes -= previous.length;
+                garbageBytes += previous.length;
+            }
+        }
+
+        private void appendToIndex(String key, IndexEntry entry) throws IOException {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream payloadStream = new DataOutputStream(payload);
+            payloadStream.writeUTF(key);
+            payloadStream.writeInt(entry.segment);
+            payloadStream.writeLong(entry.offset);
+            payloadStream.writeInt(entry.length);
+            payloadStream.writeInt(entry.stringCount);
+            payloadStream.writeLong(entry.stringsEnd);
+            byte[] payloadBytes = payload.toByteArray();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(payloadBytes.length + 8);
+            DataOutputStream outputStream = new DataOutputStream(bytes);
+            outputStream.writeInt(payloadBytes.length);
+            outputStream.write(payloadBytes);
+            outputStream.writeInt(checksum(payloadBytes));
+            SegmentedModuleMetadataStore.this.write(indexFile, indexEnd, bytes.toByteArray());
+            indexEnd += bytes.size();
+        }
+
+        private MappedRegions getSegment(int segment) {
+            while (segments.size() <= segment) {
+                segments.add(new MappedRegions(getSegmentFile(number, segments.size())));
+            }
+            return segments.get(segment);
+        }
+    }
+
+    private static class IndexEntry {
+        private final int segment;
+        private final long offset;
+        private final int length;
+        private final int stringCount;
+        private final long stringsEnd;
+
+        private IndexEntry(int segment, long offset, int length, int stringCount, long stringsEnd) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.stringCount = stringCount;
+            this.stringsEnd = stringsEnd;
+        }
+    }
+
+    /**
+     * The memory mapped regions of a file that is only ever appended to. Each part of the file is mapped at most once, instead of mapping the whole
+     * file again when it has grown. Regions end where a descriptor or a string ends, so each descriptor and string can be read from a single region.
+     */
+    private static class MappedRegions {
+        private final File file;
+        private final List<MappedByteBuffer> regions = Lists.newArrayList();
+        private final List<Long> regionStarts = Lists.newArrayList();
+        private long mappedEnd;
+
+        private MappedRegions(File file) {
+            this.file = file;
+        }
+
+        /**
+         * Returns a buffer holding the given bytes of the file. When they are not mapped yet, the file is mapped from the end of the last region
+         * up to the committed end of the file, which must be where a descriptor or string ends.
+         */
+        ByteBuffer slice(long offset, int length, long committedEnd) throws IOException {
+            if (offset + length > mappedEnd) {
+                map(offset + length, committedEnd);
+            }
+            int region = regions.size() - 1;
+            while (regionStarts.get(region) > offset) {
+                region--;
+            }
+            ByteBuffer buffer = regions.get(region).duplicate();
+            int start = (int) (offset - regionStarts.get(region));
+            ((Buffer) buffer).limit(start + length);
+            ((Buffer) buffer).position(start);
+            return buffer;
+        }
+
+        private void map(long requiredEnd, long committedEnd) throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                // The mapping remains valid after the file has been closed
+                FileChannel channel = randomAccessFile.getChannel();
+                long end = Math.max(requiredEnd, Math.min(committedEnd, channel.size()));
+                regions.add(channel.map(FileChannel.MapMode.READ_ONLY, mappedEnd, end - mappedEnd));
+                regionStarts.add(mappedEnd);
+                mappedEnd = end;
+            } finally {
+                randomAccessFile.close();
+            }
+        }
+    }
+
+    /**
+     * The strings used by the stored descriptors, each stored as its length followed by its UTF-8 encoded form.
+     */
+    private class StringTable {
+        private final File file;
+        private final MappedRegions regions;
+        private final Map<String, Integer> positions = Maps.newHashMap();
+        private int count;
+        private long end;
+        private int scanned;
+        private int[] offsets = new int[256];
+        private String[] values = new String[256];
+
+        private StringTable(File file) {
+            this.file = file;
+            this.regions = new MappedRegions(file);
+        }
+
+        void committed(int count, long end) {
+            this.count = count;
+            this.end = end;
+        }
+
+        String get(int position) throws IOException {
+            if (position < 0 || position >= count) {
+                throw new IOException("Unknown string " + position + " in " + file);
+            }
+            scan();
+            String value = values[position];
+            if (value == null) {
+                int offset = offsets[position];
+                byte[] bytes = new byte[regions.slice(offset, 4, end).getInt()];
+                regions.slice(offset + 4, bytes.length, end).get(bytes);
+                value = stringInterner.intern(new String(bytes, Charsets.UTF_8));
+                values[position] = value;
+                if (!positions.containsKey(value)) {
+                    positions.put(value, position);
+                }
+            }
+            return value;
+        }
+
+        /**
+         * Returns the position of the given string, if this process has decoded or written it.
+         */
+        @Nullable
+        Integer positionOf(String value) {
+            return positions.get(value);
+        }
+
+        void append(Collection<String> newStrings) throws IOException {
+            if (newStrings.isEmpty()) {
+                return;
+            }
+            scan();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream outputStream = new DataOutputStream(bytes);
+            ensureCapacity(count + newStrings.size());
+            long offset = end;
+            int position = count;
+            for (String value : newStrings) {
+                byte[] encoded = value.getBytes(Charsets.UTF_8);
+                outputStream.writeInt(encoded.length);
+                outputStream.write(encoded);
+                offsets[position] = (int) offset;
+                values[position] = stringInterner.intern(value);
+                positions.put(values[position], position);
+                offset += 4 + encoded.length;
+                position++;
+            }
+            write(file, end, bytes.toByteArray());
+            count = position;
+            scanned = position;
+            end = offset;
+        }
+
+        /**
+         * Locates the strings added since the table was last scanned, without decoding them.
+         */
+        private void scan() throws IOException {
+            if (scanned == count) {
+                return;
+            }
+            ensureCapacity(count);
+            long offset = scanned == 0 ? 0 : offsets[scanned - 1] + 4 + regions.slice(offsets[scanned - 1], 4, end).getInt();
+            for (; scanned < count; scanned++) {
+                offsets[scanned] = (int) offset;
+                offset += 4 + regions.slice(offset, 4, end).getInt();
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (offsets.length < capacity) {
+                int newLength = Math.max(capacity, offsets.length * 2);
+                offsets = Arrays.copyOf(offsets, newLength);
+                values = Arrays.copyOf(values, newLength);
+            }
+        }
+    }
+
+    /**
+     * Writes strings as their position in the string table, collecting the strings that are not in the table yet.
+     */
+    private static class StringTableEncoder implements Encoder {
+        private final StringTable strings;
+        private final KryoBackedEncoder delegate;
+        private final Map<String, Integer> newStrings = Maps.newLinkedHashMap();
+
+        private StringTableEncoder(StringTable strings, KryoBackedEncoder delegate) {
+            this.strings = strings;
+            this.delegate = delegate;
+        }
+
+        private int positionOf(CharSequence value) {
+            String string = value.toString();
+            Integer position = strings.positionOf(string);
+            if (position == null) {
+                position = newStrings.get(string);
+                if (position == null) {
+                    position = strings.count + newStrings.size();
+                    newStrings.put(string, position);
+                }
+            }
+            return position;
+        }
+
+        void flush() {
+            delegate.flush();
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return delegate.getOutputStream();
+        }
+
+        @Override
+        public void writeByte(byte value) throws IOException {
+            delegate.writeByte(value);
+        }
+
+        @Override
+        public void writeBytes(byte[] bytes) throws IOException {
+            delegate.writeBytes(bytes);
+        }
+
+        @Override
+        public void writeBytes(byte[] bytes, int offset, int count) throws IOException {
+            delegate.writeBytes(bytes, offset, count);
+        }
+
+        @Override
+        public void writeBinary(byte[] bytes) throws IOException {
+            delegate.writeBinary(bytes);
+        }
+
+        @Override
+        public void writeBinary(byte[] bytes, int offset, int count) throws IOException {
+            delegate.writeBinary(bytes, offset, count);
+        }
+
+        @Override
+        public void writeLong(long value) throws IOException {
+            delegate.writeLong(value);
+        }
+
+        @Override
+        public void writeSmallLong(long value) throws IOException {
+            delegate.writeSmallLong(value);
+        }
+
+        @Override
+        public void writeInt(int value) throws IOException {
+            delegate.writeInt(value);
+        }
+
+        @Override
+        public void writeSmallInt(int value) throws IOException {
+            delegate.writeSmallInt(value);
+        }
+
+        @Override
+        public void writeBoolean(boolean value) throws IOException {
+            delegate.writeBoolean(value);
+        }
+
+        @Override
+        public void writeString(CharSequence value) throws IOException {
+            delegate.writeSmallInt(positionOf(value));
+        }
+
+        @Override
+        public void writeNullableString(@Nullable CharSequence value) throws IOException {
+            // 0 stands for null, other strings are written as their position + 1
+            delegate.writeSmallInt(value == null ? 0 : positionOf(value) + 1);
+        }
+    }
+
+    private static class StringTableDecoder implements Decoder {
+        private final StringTable strings;
+        private final Decoder delegate;
+
+        private StringTableDecoder(StringTable strings, Decoder delegate) {
+            this.strings = strings;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return delegate.getInputStream();
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            return delegate.readLong();
+        }
+
+        @Override
+        public long readSmallLong() throws IOException {
+            return delegate.readSmallLong();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            return delegate.readInt();
+        }
+
+        @Override
+        public int readSmallInt() throws IOException {
+            return delegate.readSmallInt();
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return delegate.readBoolean();
+        }
+
+        @Override
+        public String readString() throws IOException {
+            return strings.get(delegate.readSmallInt());
+        }
+
+        @Nullable
+        @Override
+        public String readNullableString() throws IOException {
+            int position = delegate.readSmallInt();
+            return position == 0 ? null : strings.get(position - 1);
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            return delegate.readByte();
+        }
+
+        @Override
+        public void readBytes(byte[] buffer) throws IOException {
+            delegate.readBytes(buffer);
+        }
+
+        @Override
+        public void readBytes(byte[] buffer, int offset, int count) throws IOException {
+            delegate.readBytes(buffer, offset, count);
+        }
+
+        @Override
+        public byte[] readBinary() throws IOException {
+            return delegate.readBinary();
+        }
+
+        @Override
+        public void skipBytes(long count) throws IOException {
+            delegate.skipBytes(count);
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine;
+
+import org.gradle.BuildResult;
+import org.gradle.api.Action;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.logging.LogLevel;
+import org.gradle.internal.IoActions;
+import org.gradle.internal.InternalBuildAdapter;
+import org.gradle.internal.logging.ConsoleRenderer;
+import org.gradle.internal.logging.text.StyledTextOutput;
+import org.gradle.internal.logging.text.StyledTextOutputFactory;
+import org.gradle.util.GFileUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the {@link ResolutionStatistics} of each configuration resolved by a build, and writes them to a report when the build finishes.
+ * Does nothing unless resolution profiling was requested for the build.
+ */
+public class ResolutionProfileReporter extends InternalBuildAdapter {
+    private static final String FILE_DATE_FORMAT = "yyyy-MM-dd-HH-mm-ss";
+    private final boolean enabled;
+    private final StyledTextOutputFactory textOutputFactory;
+    private final long buildStarted;
+    private final List<ConfigurationStatistics> configurations = new ArrayList<ConfigurationStatistics>();
+    private File buildDir;
+
+    public ResolutionProfileReporter(boolean enabled, StyledTextOutputFactory textOutputFactory) {
+        this.enabled = enabled;
+        this.textOutputFactory = textOutputFactory;
+        this.buildStarted = System.currentTimeMillis();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void resolved(String configurationPath, ResolutionStatistics statistics) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (configurations) {
+            configurations.add(new ConfigurationStatistics(configurationPath, statistics));
+        }
+    }
+
+    @Override
+    public void projectsEvaluated(Gradle gradle) {
+        buildDir = gradle.getRootProject().getBuildDir();
+    }
+
+    @Override
+    public void buildFinished(BuildResult result) {
+        final List<ConfigurationStatistics> configurations;
+        synchronized (this.configurations) {
+            if (!enabled || buildDir == null || this.configurations.isEmpty()) {
+                return;
+            }
+            configurations = new ArrayList<ConfigurationStatistics>(this.configurations);
+            this.configurations.clear();
+        }
+        Collections.sort(configurations, new Comparator<ConfigurationStatistics>() {
+            @Override
+            public int compare(ConfigurationStatistics o1, ConfigurationStatistics o2) {
+                long t1 = o1.statistics.getTraversalTimeMillis();
+                long t2 = o2.statistics.getTraversalTimeMillis();
+                return t1 < t2 ? 1 : t1 == t2 ? o1.path.compareTo(o2.path) : -1;
+            }
+        });
+
+        File reportFile = new File(buildDir, "reports/resolution-profile/resolution-profile-" + new SimpleDateFormat(FILE_DATE_FORMAT).format(new Date(buildStarted)) + ".txt");
+        GFileUtils.mkdirs(reportFile.getParentFile());
+        IoActions.writeTextFile(reportFile, "utf-8", new Action<BufferedWriter>() {
+            @Override
+            public void execute(BufferedWriter writer) {
+                render(configurations, new PrintWriter(writer));
+            }
+        });
+
+        StyledTextOutput textOutput = textOutputFactory.create(ResolutionProfileReporter.class, LogLevel.LIFECYCLE);
+        textOutput.println();
+        textOutput.formatln("See the dependency resolution profile at: %s", new ConsoleRenderer().asClickableFileUrl(reportFile));
+    }
+
+    private static void render(List<ConfigurationStatistics> configurations, PrintWriter writer) {
+        for (ConfigurationStatistics configuration : configurations) {
+            ResolutionStatistics statistics = configuration.statistics;
+            writer.format("%-60s graph %d ms (excludes %d ms), %d nodes, %d edges, %d conflicts%n",
+                configuration.path, statistics.getTraversalTimeMillis(), statistics.getExclusionTimeMillis(), statistics.getNodesVisited(), statistics.getEdgesVisited(), statistics.getConflictsResolved());
+            for (Map.Entry<String, ResolutionStatistics.RepositoryStatistics> entry : statistics.getRepositories().entrySet()) {
+                ResolutionStatistics.RepositoryStatistics repository = entry.getValue();
+                writer.format("    %-56s metadata cache %d hits, %d misses, remote metadata %d ms, %d artifact bytes downloaded%n",
+                    entry.getKey(), repository.getMetadataCacheHits(), repository.getMetadataCacheMisses(), repository.getRemoteMetadataTimeMillis(), repository.getBytesDownloaded());
+            }
+        }
+        writer.flush();
+    }
+
+    private static class ConfigurationStatistics {
+        private final String path;
+        private final ResolutionStatistics statistics;
+
+        ConfigurationStatistics(String path, ResolutionStatistics statistics) {
+            this.path = path;
+            this.statistics = statistics;
+        }
+    }
+}
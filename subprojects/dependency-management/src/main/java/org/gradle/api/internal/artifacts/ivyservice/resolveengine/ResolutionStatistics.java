@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and timers collected while resolving the dependency graph of a single configuration. Cheap enough to be always on,
+ * and safe to update from the threads that resolve metadata in parallel.
+ *
+ * <p>The bytes of metadata downloaded are not counted. Metadata is downloaded by the metadata sources of each repository, below the caching
+ * repository that collects the repository statistics, and only the time spent is known at that level.</p>
+ */
+public class ResolutionStatistics {
+    private final AtomicInteger nodesVisited = new AtomicInteger();
+    private final AtomicInteger edgesVisited = new AtomicInteger();
+    private final AtomicInteger conflictsResolved = new AtomicInteger();
+    private final AtomicLong traversalTime = new AtomicLong();
+    private final AtomicLong exclusionTime = new AtomicLong();
+    private final Map<String, RepositoryStatistics> repositories = new LinkedHashMap<String, RepositoryStatistics>();
+
+    public void nodeVisited() {
+        nodesVisited.incrementAndGet();
+    }
+
+    public void edgesVisited(int count) {
+        edgesVisited.addAndGet(count);
+    }
+
+    public void conflictResolved() {
+        conflictsResolved.incrementAndGet();
+    }
+
+    public void graphTraversed(long nanos) {
+        traversalTime.addAndGet(nanos);
+    }
+
+    /**
+     * Records the time spent combining the excludes of the incoming edges of a node, and matching its dependencies against them.
+     * This time is part of the graph traversal time.
+     */
+    public void exclusionsEvaluated(long nanos) {
+        exclusionTime.addAndGet(nanos);
+    }
+
+    /**
+     * Returns the statistics for the repository with the given name, creating them when the repository is first used.
+     */
+    public RepositoryStatistics forRepository(String name) {
+        synchronized (repositories) {
+            RepositoryStatistics statistics = repositories.get(name);
+            if (statistics == null) {
+                statistics = new RepositoryStatistics();
+                repositories.put(name, statistics);
+            }
+            return statistics;
+        }
+    }
+
+    public int getNodesVisited() {
+        return nodesVisited.get();
+    }
+
+    public int getEdgesVisited() {
+        return edgesVisited.get();
+    }
+
+    public int getConflictsResolved() {
+        return conflictsResolved.get();
+    }
+
+    public long getTraversalTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(traversalTime.get());
+    }
+
+    public long getExclusionTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(exclusionTime.get());
+    }
+
+    public Map<String, RepositoryStatistics> getRepositories() {
+        synchronized (repositories) {
+            return new LinkedHashMap<String, RepositoryStatistics>(repositories);
+        }
+    }
+
+    /**
+     * Returns these statistics as a map of name to value, with the statistics of each repository as a nested map.
+     */
+    public Map<String, Object> asMap() {
+        Map<String, Object> model = new LinkedHashMap<String, Object>();
+        model.put("nodesVisited", getNodesVisited());
+        model.put("edgesVisited", getEdgesVisited());
+        model.put("conflictsResolved", getConflictsResolved());
+        model.put("traversalTimeMillis", getTraversalTimeMillis());
+        model.put("exclusionTimeMillis", getExclusionTimeMillis());
+        Map<String, Object> repositories = new LinkedHashMap<String, Object>();
+        for (Map.Entry<String, RepositoryStatistics> entry : getRepositories().entrySet()) {
+            repositories.put(entry.getKey(), entry.getValue().asMap());
+        }
+        model.put("repositories", repositories);
+        return model;
+    }
+
+    public static class RepositoryStatistics {
+        private final AtomicInteger metadataCacheHits = new AtomicInteger();
+        private final AtomicInteger metadataCacheMisses = new AtomicInteger();
+        private final AtomicLong remoteMetadataTime = new AtomicLong();
+        private final AtomicLong bytesDownloaded = new AtomicLong();
+
+        public void metadataCacheHit() {
+            metadataCacheHits.incrementAndGet();
+        }
+
+        public void metadataCacheMiss() {
+            metadataCacheMisses.incrementAndGet();
+        }
+
+        /**
+         * Records the time spent fetching and parsing metadata from the repository itself.
+         */
+        public void remoteMetadataResolved(long nanos) {
+            remoteMetadataTime.addAndGet(nanos);
+        }
+
+        /**
+         * Records the bytes of an artifact downloaded from the repository.
+         */
+        public void downloaded(long bytes) {
+            bytesDownloaded.addAndGet(bytes);
+        }
+
+        public int getMetadataCacheHits() {
+            return metadataCacheHits.get();
+        }
+
+        public int getMetadataCacheMisses() {
+            return metadataCacheMisses.get();
+        }
+
+        public long getRemoteMetadataTimeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(remoteMetadataTime.get());
+        }
+
+        public long getBytesDownloaded() {
+            return bytesDownloaded.get();
+        }
+
+        Map<String, Object> asMap() {
+            Map<String, Object> model = new LinkedHashMap<String, Object>();
+            model.put("metadataCacheHits", getMetadataCacheHits());
+            model.put("metadataCacheMisses", getMetadataCacheMisses());
+            model.put("remoteMetadataTimeMillis", getRemoteMetadataTimeMillis());
+            model.put("bytesDownloaded", getBytesDownloaded());
+            return model;
+        }
+    }
+}
@@ -17,15 +17,47 @@
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
 
 import com.google.common.collect.Sets;
+import org.gradle.api.artifacts.ModuleIdentifier;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 abstract class AbstractCompositeExclusion extends AbstractModuleExclusion {
+    private static final int MAX_CACHED_MODULE_DECISIONS = 1024;
+
     private int hashCode = -1;
 
+    // Composite exclusions are shared by many nodes of the graph, so the same module is checked against them over and over.
+    // The most recent decisions are memoized, as a graph can contain many more modules than a single exclusion is asked about.
+    // Many composite exclusions are never asked about a module, so the memo is only allocated on first use.
+    private Map<ModuleIdentifier, Boolean> moduleDecisions;
+
     abstract Collection<AbstractModuleExclusion> getFilters();
 
+    @Override
+    public final boolean excludeModule(ModuleIdentifier module) {
+        synchronized (this) {
+            if (moduleDecisions != null) {
+                Boolean excluded = moduleDecisions.get(module);
+                if (excluded != null) {
+                    return excluded;
+                }
+            }
+        }
+        boolean excluded = doExcludeModule(module);
+        synchronized (this) {
+            if (moduleDecisions == null) {
+                moduleDecisions = new ModuleDecisions();
+            }
+            moduleDecisions.put(module, excluded);
+        }
+        return excluded;
+    }
+
+    protected abstract boolean doExcludeModule(ModuleIdentifier module);
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -99,4 +131,18 @@ abstract class AbstractCompositeExclusion extends AbstractModuleExclusion {
         }
         return true;
     }
+
+    /**
+     * Keeps the most recently used decisions, evicting the least recently used one once the bound is reached.
+     */
+    private static class ModuleDecisions extends LinkedHashMap<ModuleIdentifier, Boolean> {
+        ModuleDecisions() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ModuleIdentifier, Boolean> eldest) {
+            return size() > MAX_CACHED_MODULE_DECISIONS;
+        }
+    }
 }
@@ -69,7 +69,8 @@ class IntersectionExclusion extends AbstractCompositeExclusion {
         return true;
     }
 
-    public boolean excludeModule(ModuleIdentifier element) {
+    @Override
+    protected boolean doExcludeModule(ModuleIdentifier element) {
         return excludeSpecs.excludesModule(element);
     }
 
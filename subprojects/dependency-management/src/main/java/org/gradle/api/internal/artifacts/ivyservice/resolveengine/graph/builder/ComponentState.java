@@ -66,10 +66,11 @@ public class ComponentState implements ComponentResolutionState, DependencyGraph
     private final ModuleVersionIdentifier id;
     private final ComponentMetaDataResolver resolver;
     private final VariantNameBuilder variantNameBuilder;
-    private final List<NodeState> nodes = Lists.newLinkedList();
+    // Most components have a single node
+    private final List<NodeState> nodes = Lists.newArrayListWithCapacity(1);
     private final Long resultId;
     private final ModuleResolveState module;
-    private final List<ComponentSelectionDescriptorInternal> selectionCauses = Lists.newArrayList();
+    private final List<ComponentSelectionDescriptorInternal> selectionCauses = Lists.newArrayListWithCapacity(1);
     private final ImmutableCapability implicitCapability;
     private Multimap<VersionSelector, String> rejectedBySelectors;
 
@@ -18,6 +18,7 @@ package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.gradle.api.Action;
 import org.gradle.api.GradleException;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
@@ -30,6 +31,7 @@ import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.Depen
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.Version;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ResolutionStatistics;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
@@ -56,13 +58,20 @@ import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class DependencyGraphBuilder {
+    /**
+     * Fetches remote metadata ahead of the graph traversal, on the worker threads of the build operation executor. When not set, metadata is fetched only when the traversal needs it.
+     */
+    public static final String METADATA_PREFETCH_PROPERTY = "org.gradle.internal.dependency-resolution.metadata-prefetch";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(DependencyGraphBuilder.class);
     private final ModuleConflictHandler moduleConflictHandler;
     private final Spec<? super DependencyMetadata> edgeFilter;
@@ -116,14 +125,25 @@ public class DependencyGraphBuilder {
     }
 
     public void resolve(final ResolveContext resolveContext, final DependencyGraphVisitor modelVisitor) {
+        resolve(resolveContext, modelVisitor, new ResolutionStatistics());
+    }
+
+    public void resolve(final ResolveContext resolveContext, final DependencyGraphVisitor modelVisitor, ResolutionStatistics statistics) {
 
         IdGenerator<Long> idGenerator = new LongIdGenerator();
         DefaultBuildableComponentResolveResult rootModule = new DefaultBuildableComponentResolveResult();
         moduleResolver.resolve(resolveContext, rootModule);
 
-        final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, metaDataResolver, edgeFilter, attributesSchema, moduleExclusions, moduleReplacementsData, componentSelectorConverter, attributesFactory, dependencySubstitutionApplicator, versionSelectorScheme, versionComparator, versionParser);
+        MetadataPrefetcher prefetcher = Boolean.getBoolean(METADATA_PREFETCH_PROPERTY) ? new MetadataPrefetcher(metaDataResolver, versionSelectorScheme) : null;
+        ComponentMetaDataResolver componentMetaDataResolver = prefetcher != null ? prefetcher : metaDataResolver;
+
+        final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, componentMetaDataResolver, edgeFilter, attributesSchema, moduleExclusions, moduleReplacementsData, componentSelectorConverter, attributesFactory, dependencySubstitutionApplicator, versionSelectorScheme, versionComparator, versionParser, statistics);
 
-        traverseGraph(resolveState);
+        if (prefetcher != null) {
+            traverseGraphWhilePrefetching(resolveState, prefetcher, statistics);
+        } else {
+            traverseGraph(resolveState, metaDataResolver, null, statistics);
+        }
 
         validateGraph(resolveState);
 
@@ -131,10 +151,45 @@ public class DependencyGraphBuilder {
 
     }
 
+    /**
+     * Traverses the dependency graph while the prefetcher adds its fetches to a build operation queue. Fetches that have not started when
+     * the traversal completes are discarded.
+     */
+    private void traverseGraphWhilePrefetching(final ResolveState resolveState, final MetadataPrefetcher prefetcher, final ResolutionStatistics statistics) {
+        final List<RuntimeException> failures = Lists.newArrayListWithCapacity(1);
+        buildOperationExecutor.runAll(new Action<BuildOperationQueue<RunnableBuildOperation>>() {
+            @Override
+            public void execute(BuildOperationQueue<RunnableBuildOperation> queue) {
+                prefetcher.start(queue);
+                try {
+                    traverseGraph(resolveState, prefetcher, prefetcher, statistics);
+                } catch (RuntimeException e) {
+                    // Rethrown as is below, instead of being reported as a failure to populate the queue
+                    failures.add(e);
+                } finally {
+                    prefetcher.stop();
+                }
+            }
+        });
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+    }
+
     /**
      * Traverses the dependency graph, resolving conflicts and building the paths from the root configuration.
      */
-    private void traverseGraph(final ResolveState resolveState) {
+    private void traverseGraph(final ResolveState resolveState, ComponentMetaDataResolver metadataResolver, @Nullable MetadataPrefetcher prefetcher, ResolutionStatistics statistics) {
+        // Only the traversal itself is timed, not the completion of the prefetches that are still running when it finishes
+        long start = System.nanoTime();
+        try {
+            doTraverseGraph(resolveState, metadataResolver, prefetcher, statistics);
+        } finally {
+            statistics.graphTraversed(System.nanoTime() - start);
+        }
+    }
+
+    private void doTraverseGraph(final ResolveState resolveState, ComponentMetaDataResolver metadataResolver, @Nullable MetadataPrefetcher prefetcher, ResolutionStatistics statistics) {
         resolveState.onMoreSelected(resolveState.getRoot());
         final List<EdgeState> dependencies = Lists.newArrayList();
         final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache = Maps.newHashMap();
@@ -145,6 +200,7 @@ public class DependencyGraphBuilder {
             if (resolveState.peek() != null) {
                 final NodeState node = resolveState.pop();
                 LOGGER.debug("Visiting configuration {}.", node);
+                statistics.nodeVisited();
 
                 // Register capabilities for this node
                 registerCapabilities(resolveState, node.getComponent());
@@ -152,9 +208,11 @@ public class DependencyGraphBuilder {
                 // Initialize and collect any new outgoing edges of this node
                 dependencies.clear();
                 node.visitOutgoingDependencies(dependencies, pendingDependenciesHandler);
-                resolveEdges(node, dependencies, resolveState, componentIdentifierCache);
+                statistics.edgesVisited(dependencies.size());
+                resolveEdges(node, dependencies, resolveState, componentIdentifierCache, metadataResolver, prefetcher);
             } else {
                 // We have some batched up conflicts. Resolve the first, and continue traversing the graph
+                statistics.conflictResolved();
                 if (moduleConflictHandler.hasConflicts()) {
                     moduleConflictHandler.resolveNextConflict(resolveState.getReplaceSelectionWithConflictResultAction());
                 } else {
@@ -193,16 +251,52 @@ public class DependencyGraphBuilder {
     private void resolveEdges(final NodeState node,
                               final List<EdgeState> dependencies,
                               final ResolveState resolveState,
-                              final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+                              final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache,
+                              final ComponentMetaDataResolver metadataResolver,
+                              @Nullable final MetadataPrefetcher prefetcher) {
         if (dependencies.isEmpty()) {
             return;
         }
+        maybeResolveDynamicVersionsInParallel(node, dependencies);
         performSelectionSerially(dependencies, resolveState);
-        maybeDownloadMetadataInParallel(node, componentIdentifierCache, dependencies);
+        if (prefetcher != null) {
+            prefetchMetadata(dependencies, prefetcher);
+        }
+        maybeDownloadMetadataInParallel(node, componentIdentifierCache, dependencies, metadataResolver);
         attachToTargetRevisionsSerially(dependencies);
 
     }
 
+    /**
+     * Resolves the dynamic versions requested by the new edges concurrently, when there is more than one of them. Resolving a dynamic version
+     * lists the versions of the module in each repository, which takes a remote request per repository whenever the cached listing has expired.
+     * The selection that follows is still performed serially, reusing the successful results and reporting any failure.
+     */
+    private void maybeResolveDynamicVersionsInParallel(NodeState node, List<EdgeState> dependencies) {
+        Set<SelectorState> requiringResolve = null;
+        for (EdgeState dependency : dependencies) {
+            SelectorState selector = dependency.getSelector();
+            if (!selector.isResolved() && selector.canResolveAhead()) {
+                if (requiringResolve == null) {
+                    requiringResolve = Sets.newLinkedHashSet();
+                }
+                requiringResolve.add(selector);
+            }
+        }
+        if (requiringResolve != null && requiringResolve.size() > 1) {
+            final ImmutableList<SelectorState> toResolveInParallel = ImmutableList.copyOf(requiringResolve);
+            LOGGER.debug("Submitting {} dynamic versions to resolve in parallel for {}", toResolveInParallel.size(), node);
+            buildOperationExecutor.runAll(new Action<BuildOperationQueue<RunnableBuildOperation>>() {
+                @Override
+                public void execute(BuildOperationQueue<RunnableBuildOperation> buildOperationQueue) {
+                    for (SelectorState selector : toResolveInParallel) {
+                        buildOperationQueue.add(new ResolveDynamicVersionOperation(selector));
+                    }
+                }
+            });
+        }
+    }
+
     private void performSelectionSerially(List<EdgeState> dependencies, ResolveState resolveState) {
         for (EdgeState dependency : dependencies) {
             SelectorState selector = dependency.getSelector();
@@ -265,16 +359,29 @@ public class DependencyGraphBuilder {
         }
     }
 
+    /**
+     * Starts fetching the metadata of the newly selected components in the background, along with the metadata of the components they declare
+     * dependencies on, so that it is available by the time the traversal reaches them.
+     */
+    private void prefetchMetadata(List<EdgeState> dependencies, MetadataPrefetcher prefetcher) {
+        for (EdgeState dependency : dependencies) {
+            ComponentState targetComponent = dependency.getTargetComponent();
+            if (targetComponent != null && targetComponent.isSelected() && !targetComponent.alreadyResolved() && !dependency.getDependencyMetadata().isChanging()) {
+                prefetcher.prefetch(targetComponent.getComponentId());
+            }
+        }
+    }
+
     /**
      * Prepares the resolution of edges, either serially or concurrently.
      * It uses a simple heuristic to determine if we should perform concurrent resolution, based on the the number of edges, and whether they have unresolved metadata.
      */
-    private void maybeDownloadMetadataInParallel(NodeState node, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, List<EdgeState> dependencies) {
+    private void maybeDownloadMetadataInParallel(NodeState node, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, List<EdgeState> dependencies, ComponentMetaDataResolver metadataResolver) {
         List<ComponentState> requiringDownload = null;
         for (EdgeState dependency : dependencies) {
             ComponentState targetComponent = dependency.getTargetComponent();
             if (targetComponent != null && targetComponent.isSelected() && !targetComponent.alreadyResolved()) {
-                if (!metaDataResolver.isFetchingMetadataCheap(toComponentId(targetComponent.getId(), componentIdentifierCache))) {
+                if (!metadataResolver.isFetchingMetadataCheap(toComponentId(targetComponent.getId(), componentIdentifierCache))) {
                     // Avoid initializing the list if there are no components requiring download (a common case)
                     if (requiringDownload == null) {
                         requiringDownload = Lists.newArrayList();
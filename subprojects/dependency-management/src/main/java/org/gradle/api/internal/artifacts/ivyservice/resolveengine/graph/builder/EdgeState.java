@@ -52,7 +52,8 @@ class EdgeState implements DependencyGraphEdge {
     private final SelectorState selector;
     private final ResolveState resolveState;
     private final ModuleExclusion transitiveExclusions;
-    private final List<NodeState> targetNodes = Lists.newLinkedList();
+    // Most edges have a single target node
+    private final List<NodeState> targetNodes = Lists.newArrayListWithCapacity(1);
     private final boolean isTransitive;
 
     private ModuleVersionResolveException targetNodeSelectionFailure;
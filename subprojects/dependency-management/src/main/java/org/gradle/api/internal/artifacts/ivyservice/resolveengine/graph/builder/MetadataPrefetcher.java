@@ -0,0 +1,256 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.external.descriptor.MavenScope;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.ExternalDependencyDescriptor;
+import org.gradle.internal.component.external.model.ivy.IvyModuleResolveMetadata;
+import org.gradle.internal.component.external.model.maven.MavenDependencyDescriptor;
+import org.gradle.internal.component.external.model.maven.MavenModuleResolveMetadata;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fetches the metadata of remote components on background threads, ahead of the graph traversal.
+ *
+ * <p>Each component the traversal selects is prefetched, and once its metadata is available the components it declares dependencies on
+ * are prefetched speculatively, up to a fixed depth. This way the remote requests for the next levels of the graph overlap with
+ * the traversal and conflict resolution of the current one, instead of being made level by level.</p>
+ *
+ * <p>The fetches are build operations added to a queue of the build operation executor, so they run on its worker threads and
+ * within the worker leases of the build. When the traversal needs metadata whose fetch has not started yet, it fetches it itself
+ * instead of waiting for a worker to become available.</p>
+ *
+ * <p>Only the metadata of components requested without overrides is prefetched, and only successful results are handed to the traversal.
+ * Failures are discarded and the component is resolved again on the traversal thread, so failures are reported exactly as they would be
+ * without prefetching. A speculative fetch may turn out to be unnecessary, for example when a conflict resolution or substitution selects
+ * another component, in which case it only warms the metadata caches.</p>
+ */
+class MetadataPrefetcher implements ComponentMetaDataResolver, Stoppable {
+    private static final int MAX_SPECULATION_DEPTH = 3;
+    private static final int MAX_PREFETCHES = 2000;
+
+    private final ComponentMetaDataResolver delegate;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final Map<ComponentIdentifier, PrefetchOperation> prefetches = Maps.newHashMap();
+    private BuildOperationQueue<RunnableBuildOperation> queue;
+    private boolean stopped;
+
+    MetadataPrefetcher(ComponentMetaDataResolver delegate, VersionSelectorScheme versionSelectorScheme) {
+        this.delegate = delegate;
+        this.versionSelectorScheme = versionSelectorScheme;
+    }
+
+    /**
+     * Starts prefetching through the given queue. Nothing is prefetched before this is called.
+     */
+    public void start(BuildOperationQueue<RunnableBuildOperation> queue) {
+        synchronized (prefetches) {
+            this.queue = queue;
+        }
+    }
+
+    /**
+     * Starts fetching the metadata of the given component, unless it is already available locally or being fetched.
+     */
+    public void prefetch(ComponentIdentifier id) {
+        prefetch(id, 0);
+    }
+
+    private void prefetch(ComponentIdentifier id, int depth) {
+        if (!(id instanceof ModuleComponentIdentifier) || delegate.isFetchingMetadataCheap(id)) {
+            return;
+        }
+        synchronized (prefetches) {
+            if (queue == null || stopped || prefetches.containsKey(id) || prefetches.size() >= MAX_PREFETCHES) {
+                return;
+            }
+            PrefetchOperation operation = new PrefetchOperation(id, depth);
+            prefetches.put(id, operation);
+            queue.add(operation);
+        }
+    }
+
+    @Override
+    public void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+        if (result.isRetryMissing() && isDefault(componentOverrideMetadata)) {
+            PrefetchOperation operation;
+            synchronized (prefetches) {
+                operation = prefetches.get(identifier);
+            }
+            DefaultBuildableComponentResolveResult prefetched = operation == null ? null : operation.await();
+            if (prefetched != null) {
+                prefetched.applyTo(result);
+                result.resolved(prefetched.getMetadata());
+                return;
+            }
+        }
+        delegate.resolve(identifier, componentOverrideMetadata, result);
+    }
+
+    /**
+     * Fetching is cheap for components that are being prefetched, as the traversal only has to wait for the background fetch.
+     */
+    @Override
+    public boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+        synchronized (prefetches) {
+            if (prefetches.containsKey(identifier)) {
+                return true;
+            }
+        }
+        return delegate.isFetchingMetadataCheap(identifier);
+    }
+
+    /**
+     * Discards the prefetches that have not started yet. The build operation executor waits for the running ones to complete.
+     */
+    @Override
+    public void stop() {
+        synchronized (prefetches) {
+            stopped = true;
+            if (queue != null) {
+                queue.cancel();
+            }
+        }
+    }
+
+    private static boolean isDefault(ComponentOverrideMetadata componentOverrideMetadata) {
+        return !componentOverrideMetadata.isChanging() && componentOverrideMetadata.getArtifacts().isEmpty() && componentOverrideMetadata.getClientModule() == null;
+    }
+
+    /**
+     * Collects the dependencies declared by a Maven or Ivy module that are likely to be traversed: those on a fixed version, that are not optional,
+     * not changing and that do not select a particular artifact.
+     */
+    private List<ModuleComponentIdentifier> declaredDependencies(ComponentResolveMetadata metadata) {
+        List<? extends ExternalDependencyDescriptor> descriptors;
+        if (metadata instanceof MavenModuleResolveMetadata) {
+            descriptors = ((MavenModuleResolveMetadata) metadata).getDependencies();
+        } else if (metadata instanceof IvyModuleResolveMetadata) {
+            descriptors = ((IvyModuleResolveMetadata) metadata).getDependencies();
+        } else {
+            return Collections.emptyList();
+        }
+        List<ModuleComponentIdentifier> dependencies = null;
+        for (ExternalDependencyDescriptor descriptor : descriptors) {
+            if (descriptor.isOptional() || descriptor.isChanging()) {
+                continue;
+            }
+            if (descriptor instanceof MavenDependencyDescriptor) {
+                MavenDependencyDescriptor mavenDescriptor = (MavenDependencyDescriptor) descriptor;
+                MavenScope scope = mavenDescriptor.getScope();
+                if ((scope != MavenScope.Compile && scope != MavenScope.Runtime) || mavenDescriptor.getDependencyArtifact() != null) {
+                    continue;
+                }
+            }
+            ModuleComponentSelector selector = descriptor.getSelector();
+            String version = selector.getVersion();
+            if (version == null || version.isEmpty() || versionSelectorScheme.parseSelector(version).isDynamic()) {
+                continue;
+            }
+            if (dependencies == null) {
+                dependencies = Lists.newArrayListWithCapacity(descriptors.size());
+            }
+            dependencies.add(DefaultModuleComponentIdentifier.newId(selector.getModuleIdentifier(), version));
+        }
+        return dependencies == null ? Collections.<ModuleComponentIdentifier>emptyList() : dependencies;
+    }
+
+    private class PrefetchOperation implements RunnableBuildOperation {
+        private final ComponentIdentifier id;
+        private final int depth;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch fetched = new CountDownLatch(1);
+        private volatile DefaultBuildableComponentResolveResult result;
+
+        PrefetchOperation(ComponentIdentifier id, int depth) {
+            this.id = id;
+            this.depth = depth;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            if (claimed.compareAndSet(false, true)) {
+                fetch();
+            }
+        }
+
+        /**
+         * Returns the metadata if it was fetched successfully, fetching it on the calling thread if no worker has started to.
+         */
+        @Nullable
+        DefaultBuildableComponentResolveResult await() {
+            if (claimed.compareAndSet(false, true)) {
+                fetch();
+            } else {
+                try {
+                    fetched.await();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            return result;
+        }
+
+        private void fetch() {
+            try {
+                DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+                delegate.resolve(id, new DefaultComponentOverrideMetadata(), result);
+                if (result.getFailure() == null) {
+                    this.result = result;
+                    if (depth < MAX_SPECULATION_DEPTH) {
+                        for (ModuleComponentIdentifier dependency : declaredDependencies(result.getMetadata())) {
+                            prefetch(dependency, depth + 1);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                // Discard the failure, the traversal resolves the component again and reports it
+            } finally {
+                fetched.countDown();
+            }
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Prefetch metadata of " + id.getDisplayName());
+        }
+    }
+}
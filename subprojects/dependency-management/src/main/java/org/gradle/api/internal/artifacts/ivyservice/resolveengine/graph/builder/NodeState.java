@@ -199,10 +199,13 @@ class NodeState implements DependencyGraphNode {
         }
 
         // Determine the net exclusion for this node, by inspecting all transitive incoming edges
+        long start = System.nanoTime();
         ModuleExclusion resolutionFilter = getModuleResolutionFilter(transitiveIncoming);
 
         // Check if the was previously traversed with the same net exclusion
-        if (previousTraversalExclusions != null && previousTraversalExclusions.excludesSameModulesAs(resolutionFilter)) {
+        boolean sameExclusions = previousTraversalExclusions != null && previousTraversalExclusions.excludesSameModulesAs(resolutionFilter);
+        resolveState.getStatistics().exclusionsEvaluated(System.nanoTime() - start);
+        if (sameExclusions) {
             // Was previously traversed, and no change to the set of modules that are linked by outgoing edges.
             // Don't need to traverse again, but hang on to the new filter since it may change the set of excluded artifacts.
             LOGGER.debug("Changed edges for {} selects same versions as previous traversal. ignoring", this);
@@ -339,7 +342,10 @@ class NodeState implements DependencyGraphNode {
             return false;
         }
         ModuleIdentifier targetModuleId = dependencyState.getModuleIdentifier();
-        if (selector.excludeModule(targetModuleId)) {
+        long start = System.nanoTime();
+        boolean excluded = selector.excludeModule(targetModuleId);
+        resolveState.getStatistics().exclusionsEvaluated(System.nanoTime() - start);
+        if (excluded) {
             LOGGER.debug("{} is excluded from {}.", targetModuleId, this);
             return true;
         }
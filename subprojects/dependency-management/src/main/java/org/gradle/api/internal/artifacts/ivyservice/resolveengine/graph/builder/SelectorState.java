@@ -16,7 +16,7 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
 
-import com.google.common.collect.Sets;
+import com.google.common.collect.Lists;
 import org.gradle.api.Transformer;
 import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.artifacts.component.ComponentSelector;
@@ -40,7 +40,7 @@ import org.gradle.internal.resolve.result.BuildableComponentIdResolveResult;
 import org.gradle.internal.resolve.result.ComponentIdResolveResult;
 import org.gradle.internal.resolve.result.DefaultBuildableComponentIdResolveResult;
 
-import java.util.Set;
+import java.util.List;
 
 import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.VersionSelectionReasons.CONSTRAINT;
 import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.VersionSelectionReasons.REQUESTED;
@@ -68,7 +68,8 @@ class SelectorState implements DependencyGraphSelector, ResolvableSelectorState
     private final DefaultResolvedVersionConstraint versionConstraint;
     private final VersionSelectorScheme versionSelectorScheme;
     private final ImmutableAttributesFactory attributesFactory;
-    private final Set<ComponentSelectionDescriptorInternal> dependencyReasons = Sets.newLinkedHashSet();
+    // Usually holds a single reason, so a list is more compact than a set
+    private final List<ComponentSelectionDescriptorInternal> dependencyReasons = Lists.newArrayListWithCapacity(1);
 
     private ComponentIdResolveResult idResolveResult;
     private ModuleVersionResolveException failure;
@@ -118,7 +119,9 @@ class SelectorState implements DependencyGraphSelector, ResolvableSelectorState
         if (reason != null) {
             dependencyDescriptor = dependencyDescriptor.withReason(Describables.of(reason));
         }
-        dependencyReasons.add(dependencyDescriptor);
+        if (!dependencyReasons.contains(dependencyDescriptor)) {
+            dependencyReasons.add(dependencyDescriptor);
+        }
     }
 
     private DefaultResolvedVersionConstraint resolveVersionConstraint(ComponentSelector selector) {
@@ -159,6 +162,8 @@ class SelectorState implements DependencyGraphSelector, ResolvableSelectorState
      */
     public ComponentIdResolveResult resolve(VersionSelector allRejects) {
         if (!requiresResolve(allRejects)) {
+            // The selector may have been resolved ahead of the selection of its target
+            this.resolved = true;
             return idResolveResult;
         }
 
@@ -179,6 +184,41 @@ class SelectorState implements DependencyGraphSelector, ResolvableSelectorState
         return idResolveResult;
     }
 
+    /**
+     * Is it worth resolving this selector ahead of the selection of its target? Only a dynamic version may require remote requests to resolve.
+     * The selector is only resolved ahead when it is the only selector for a module that has no selected version yet. The selection would
+     * then resolve it with no rejections other than its own, which is what resolving ahead does. Otherwise, the selection may reuse the
+     * version selected for another selector without resolving this one.
+     */
+    boolean canResolveAhead() {
+        if (idResolveResult != null || dependencyState.failure != null || versionConstraint == null) {
+            return false;
+        }
+        VersionSelector preferredSelector = versionConstraint.getPreferredSelector();
+        if (preferredSelector == null || !preferredSelector.isDynamic()) {
+            return false;
+        }
+        List<SelectorState> moduleSelectors = targetModule.getSelectors();
+        return targetModule.getSelected() == null && moduleSelectors.size() == 1 && moduleSelectors.get(0) == this;
+    }
+
+    /**
+     * Resolves this selector ahead of the selection of its target, possibly concurrently with other selectors. A successful result is reused
+     * by {@link #resolve(VersionSelector)} unless the rejections known at that point require another resolve. A failure is discarded, so that
+     * the selection resolves the selector again and reports the failure as usual.
+     */
+    void resolveAhead() {
+        BuildableComponentIdResolveResult idResolveResult = new DefaultBuildableComponentIdResolveResult();
+        try {
+            resolver.resolve(firstSeenDependency, versionConstraint, idResolveResult);
+        } catch (RuntimeException e) {
+            return;
+        }
+        if (idResolveResult.getFailure() == null) {
+            this.idResolveResult = idResolveResult;
+        }
+    }
+
     private boolean requiresResolve(VersionSelector allRejects) {
         // If we've never resolved, must resolve
         if (idResolveResult == null) {
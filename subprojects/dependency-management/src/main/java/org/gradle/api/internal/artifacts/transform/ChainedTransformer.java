@@ -32,6 +32,14 @@ class ChainedTransformer implements ArtifactTransformer {
         this.second = second;
     }
 
+    public ArtifactTransformer getFirst() {
+        return first;
+    }
+
+    public ArtifactTransformer getSecond() {
+        return second;
+    }
+
     @Override
     public List<File> transform(File file) {
         List<File> result = new ArrayList<File>();
@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.artifacts.transform;
 
+import com.google.common.cache.Cache;
 import com.google.common.collect.ImmutableList;
 import org.gradle.api.Action;
 import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheMetadata;
@@ -64,12 +65,15 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
 
     private static final int FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP = 2;
     private static final String CACHE_PREFIX = TRANSFORMS_META_DATA.getKey() + "/";
+    private static final int MAX_RETAINED_RESULTS = 10000;
 
     private final PersistentCache cache;
     private final PersistentIndexedCache<HashCode, List<File>> indexedCache;
     private final FileStore<String> fileStore;
     private final ProducerGuard<CacheKey> producing = ProducerGuard.adaptive();
     private final Map<CacheKey, List<File>> resultHashToResult = new ConcurrentHashMap<CacheKey, List<File>>();
+    // Results of previous builds, which are reused by later builds when their files still exist
+    private final Cache<CacheKey, List<File>> retainedResults = com.google.common.cache.CacheBuilder.newBuilder().maximumSize(MAX_RETAINED_RESULTS).build();
     private final FileSystemSnapshotter fileSystemSnapshotter;
     private final FileAccessTracker fileAccessTracker;
 
@@ -108,25 +112,57 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
 
     @Override
     public void beforeComplete() {
-        // Discard cached results between builds
+        // Keep the results of this build around for the next build, as the transformed files are checked again before they are reused
+        retainedResults.putAll(resultHashToResult);
         resultHashToResult.clear();
     }
 
     @Override
     public boolean contains(File absoluteFile, HashCode inputsHash) {
-        return resultHashToResult.containsKey(getCacheKey(absoluteFile, inputsHash));
+        return getFromMemory(getCacheKey(absoluteFile, inputsHash)) != null;
     }
 
     @Override
     public List<File> getResult(File inputFile, HashCode inputsHash, BiFunction<List<File>, File, File> transformer) {
         final CacheKey resultHash = getCacheKey(inputFile, inputsHash);
-        List<File> files = resultHashToResult.get(resultHash);
+        List<File> files = getFromMemory(resultHash);
         if (files != null) {
             return files;
         }
         return loadIntoCache(inputFile, resultHash, transformer);
     }
 
+    /*
+     * Returns the result calculated by this build, or else the result retained from a previous build when all of its files still exist.
+     * The cache key contains the hash of the input file contents, so a retained result is only reused when the input file is unchanged.
+     */
+    private List<File> getFromMemory(CacheKey cacheKey) {
+        List<File> files = resultHashToResult.get(cacheKey);
+        if (files != null) {
+            return files;
+        }
+        files = retainedResults.getIfPresent(cacheKey);
+        if (files == null) {
+            return null;
+        }
+        if (!allExist(files)) {
+            retainedResults.invalidate(cacheKey);
+            return null;
+        }
+        fileAccessTracker.markAccessed(files);
+        resultHashToResult.put(cacheKey, files);
+        return files;
+    }
+
+    private static boolean allExist(List<File> files) {
+        for (File file : files) {
+            if (!file.exists()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /*
      * Loads the transformed files from the file system cache into memory. Creates them if they are not present yet.
      * This makes sure that only one thread tries to load a result for a given key.
@@ -135,7 +171,7 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
         return producing.guardByKey(cacheKey, new Factory<List<File>>() {
             @Override
             public List<File> create() {
-                List<File> files = resultHashToResult.get(cacheKey);
+                List<File> files = getFromMemory(cacheKey);
                 if (files != null) {
                     return files;
                 }
@@ -144,17 +180,8 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
                     public List<File> create() {
                         HashCode persistentCacheKey = cacheKey.getPersistentCacheKey();
                         List<File> files = indexedCache.get(persistentCacheKey);
-                        if (files != null) {
-                            boolean allExist = true;
-                            for (File file : files) {
-                                if (!file.exists()) {
-                                    allExist = false;
-                                    break;
-                                }
-                            }
-                            if (allExist) {
-                                return files;
-                            }
+                        if (files != null && allExist(files)) {
+                            return files;
                         }
 
                         String key = inputFile.getName() + "/" + persistentCacheKey;
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.transform;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The transformation of a single file by one step of a chain of transforms, along with the transformations of its outputs by the remaining steps.
+ *
+ * <p>When run with a queue, the next step for each output is queued as soon as the output is available, so that the steps of a chain overlap
+ * across the outputs and artifacts being transformed, instead of each artifact going through the whole chain on a single thread.</p>
+ */
+class PipelinedTransformation {
+    private final List<ArtifactTransformer> steps;
+    private final int step;
+    private final File input;
+    private volatile List<File> result;
+    private volatile List<PipelinedTransformation> next;
+    private volatile Throwable failure;
+
+    private PipelinedTransformation(List<ArtifactTransformer> steps, int step, File input) {
+        this.steps = steps;
+        this.step = step;
+        this.input = input;
+    }
+
+    static PipelinedTransformation of(ArtifactTransformer transform, File input) {
+        List<ArtifactTransformer> steps = new ArrayList<ArtifactTransformer>();
+        collectSteps(transform, steps);
+        return new PipelinedTransformation(steps, 0, input);
+    }
+
+    private static void collectSteps(ArtifactTransformer transform, List<ArtifactTransformer> steps) {
+        if (transform instanceof ChainedTransformer) {
+            ChainedTransformer chain = (ChainedTransformer) transform;
+            collectSteps(chain.getFirst(), steps);
+            collectSteps(chain.getSecond(), steps);
+        } else {
+            steps.add(transform);
+        }
+    }
+
+    File getInput() {
+        return input;
+    }
+
+    ArtifactTransformer getTransformer() {
+        return steps.get(step);
+    }
+
+    /**
+     * Runs this step, then the remaining steps for each of its outputs. Remaining steps that need to do work are added to the given queue, or run in the calling thread when there is no queue.
+     */
+    void run(@Nullable BuildOperationQueue<RunnableBuildOperation> queue) {
+        List<File> outputs;
+        try {
+            outputs = getTransformer().transform(input);
+        } catch (Throwable t) {
+            failure = t;
+            return;
+        }
+        if (step == steps.size() - 1) {
+            result = outputs;
+            return;
+        }
+        List<PipelinedTransformation> next = new ArrayList<PipelinedTransformation>(outputs.size());
+        for (File output : outputs) {
+            next.add(new PipelinedTransformation(steps, step + 1, output));
+        }
+        this.next = next;
+        for (PipelinedTransformation transformation : next) {
+            if (queue == null || transformation.getTransformer().hasCachedResult(transformation.getInput())) {
+                transformation.run(queue);
+            } else {
+                queue.add(new TransformFileOperation(transformation, queue));
+            }
+        }
+    }
+
+    /**
+     * Returns the first failure of this step or of any of the remaining steps. Should only be called once all queued steps have completed.
+     */
+    @Nullable
+    Throwable getFailure() {
+        if (failure != null) {
+            return failure;
+        }
+        List<PipelinedTransformation> next = this.next;
+        if (next != null) {
+            for (PipelinedTransformation transformation : next) {
+                Throwable failure = transformation.getFailure();
+                if (failure != null) {
+                    return failure;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the outputs of the last step, in order. Should only be called once all queued steps have completed.
+     */
+    @Nullable
+    List<File> getResult() {
+        List<PipelinedTransformation> next = this.next;
+        if (next == null) {
+            return result;
+        }
+        ImmutableList.Builder<File> builder = ImmutableList.builder();
+        for (PipelinedTransformation transformation : next) {
+            List<File> result = transformation.getResult();
+            if (result == null) {
+                return null;
+            }
+            builder.addAll(result);
+        }
+        return builder.build();
+    }
+}
@@ -20,6 +20,7 @@ import org.gradle.api.artifacts.component.ComponentArtifactIdentifier;
 import org.gradle.internal.operations.BuildOperationCategory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationQueue;
 import org.gradle.internal.operations.RunnableBuildOperation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,27 +32,30 @@ import java.util.List;
 class TransformArtifactOperation implements RunnableBuildOperation {
     private static final Logger LOGGER = LoggerFactory.getLogger(TransformArtifactOperation.class);
     private final ComponentArtifactIdentifier artifactId;
-    private final File file;
     private final ArtifactTransformer transform;
-    private Throwable failure;
-    private List<File> result;
+    private final PipelinedTransformation transformation;
+    private final BuildOperationQueue<RunnableBuildOperation> queue;
 
     TransformArtifactOperation(ComponentArtifactIdentifier artifactId, File file, ArtifactTransformer transform) {
+        this(artifactId, file, transform, null);
+    }
+
+    /**
+     * Creates an operation that runs the first step of the given transform and adds the remaining steps for each of its outputs to the given queue.
+     */
+    TransformArtifactOperation(ComponentArtifactIdentifier artifactId, File file, ArtifactTransformer transform, @Nullable BuildOperationQueue<RunnableBuildOperation> queue) {
         this.artifactId = artifactId;
-        this.file = file;
-        this.transform = transform;
+        this.transformation = PipelinedTransformation.of(transform, file);
+        this.transform = transformation.getTransformer();
+        this.queue = queue;
     }
 
     @Override
     public void run(@Nullable BuildOperationContext context) {
-        try {
-            if (LOGGER.isInfoEnabled()) {
-                LOGGER.info("Executing transform {} on artifact {}", transform.getDisplayName(), artifactId.getDisplayName());
-            }
-            result = transform.transform(file);
-        } catch (Throwable t) {
-            failure = t;
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Executing transform {} on artifact {}", transform.getDisplayName(), artifactId.getDisplayName());
         }
+        transformation.run(queue);
     }
 
     @Override
@@ -64,11 +68,11 @@ class TransformArtifactOperation implements RunnableBuildOperation {
 
     @Nullable
     public Throwable getFailure() {
-        return failure;
+        return transformation.getFailure();
     }
 
     @Nullable
     public List<File> getResult() {
-        return result;
+        return transformation.getResult();
     }
 }
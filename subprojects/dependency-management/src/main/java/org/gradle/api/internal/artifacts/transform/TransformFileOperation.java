@@ -19,6 +19,7 @@ package org.gradle.api.internal.artifacts.transform;
 import org.gradle.internal.operations.BuildOperationCategory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationQueue;
 import org.gradle.internal.operations.RunnableBuildOperation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,24 +32,29 @@ class TransformFileOperation implements RunnableBuildOperation {
     private static final Logger LOGGER = LoggerFactory.getLogger(TransformFileOperation.class);
     private final File file;
     private final ArtifactTransformer transform;
-    private Throwable failure;
-    private List<File> result;
+    private final PipelinedTransformation transformation;
+    private final BuildOperationQueue<RunnableBuildOperation> queue;
 
     TransformFileOperation(File file, ArtifactTransformer transform) {
-        this.file = file;
-        this.transform = transform;
+        this(PipelinedTransformation.of(transform, file), null);
+    }
+
+    /**
+     * Creates an operation that runs the first step of the given transformation and adds the remaining steps to the given queue.
+     */
+    TransformFileOperation(PipelinedTransformation transformation, @Nullable BuildOperationQueue<RunnableBuildOperation> queue) {
+        this.file = transformation.getInput();
+        this.transform = transformation.getTransformer();
+        this.transformation = transformation;
+        this.queue = queue;
     }
 
     @Override
     public void run(@Nullable BuildOperationContext context) {
-        try {
-            if (LOGGER.isInfoEnabled()) {
-                LOGGER.info("Executing transform {} on file {}", transform.getDisplayName(), file);
-            }
-            result = transform.transform(file);
-        } catch (Throwable t) {
-            failure = t;
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Executing transform {} on file {}", transform.getDisplayName(), file);
         }
+        transformation.run(queue);
     }
 
     @Override
@@ -61,11 +67,11 @@ class TransformFileOperation implements RunnableBuildOperation {
 
     @Nullable
     public Throwable getFailure() {
-        return failure;
+        return transformation.getFailure();
     }
 
     @Nullable
     public List<File> getResult() {
-        return result;
+        return transformation.getResult();
     }
 }
@@ -1016,4 +1016,50 @@ class PomReaderTest extends AbstractPomReaderTest {
         then:
         def excluded = pomReader.dependencies[keyGroupTwo].excludedModules
         excluded == [DefaultModuleIdentifier.newId('*', '*')]
-    }}
+    }
+
+    def "ignores sections of the POM that are not used for resolution"() {
+        when:
+        pomFile << """
+<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group-one</groupId>
+    <artifactId>artifact-one</artifactId>
+    <version>version-one</version>
+    <description>Entities&nbsp;such as &copy; are defined</description>
+    <build>
+        <plugins>
+            <plugin>
+                <artifactId>plugin</artifactId>
+                <dependencies>
+                    <dependency>
+                        <groupId>group-three</groupId>
+                        <artifactId>artifact-three</artifactId>
+                        <version>version-three</version>
+                    </dependency>
+                </dependencies>
+            </plugin>
+        </plugins>
+    </build>
+    <properties>
+        <some.prop>some-value</some.prop>
+    </properties>
+    <dependencies>
+        <dependency>
+            <groupId>group-two</groupId>
+            <artifactId>artifact-two</artifactId>
+            <version>\${some.prop}</version>
+        </dependency>
+    </dependencies>
+</project>
+"""
+        pomReader = new PomReader(locallyAvailableExternalResource, moduleIdentifierFactory)
+
+        then:
+        pomReader.groupId == 'group-one'
+        pomReader.artifactId == 'artifact-one'
+        pomReader.version == 'version-one'
+        pomReader.dependencies.size() == 1
+        pomReader.dependencies[new MavenDependencyKey('group-two', 'artifact-two', 'jar', null)].version == 'some-value'
+    }
+}
@@ -29,7 +29,7 @@ import org.junit.Rule
 import spock.lang.Specification
 import spock.lang.Subject
 
-class ModuleMetadataStoreTest extends Specification {
+class DefaultModuleMetadataStoreTest extends Specification {
 
     @Rule TestNameTestDirectoryProvider temporaryFolder
     def pathKeyFileStore = Mock(PathKeyFileStore)
@@ -40,7 +40,7 @@ class ModuleMetadataStoreTest extends Specification {
     }
     def moduleComponentIdentifier = DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org.test", "testArtifact"), "1.0")
     def serializer = Mock(ModuleMetadataSerializer)
-    @Subject ModuleMetadataStore store = new ModuleMetadataStore(pathKeyFileStore, serializer, moduleIdentifierFactory, SimpleMapInterner.notThreadSafe())
+    @Subject DefaultModuleMetadataStore store = new DefaultModuleMetadataStore(pathKeyFileStore, serializer, moduleIdentifierFactory, SimpleMapInterner.notThreadSafe())
     def mavenMetadataFactory = new MavenMutableModuleMetadataFactory(moduleIdentifierFactory, TestUtil.attributesFactory(), TestUtil.objectInstantiator(), TestUtil.featurePreviews())
 
     def "getModuleDescriptorFile returns null for not cached descriptors"() {
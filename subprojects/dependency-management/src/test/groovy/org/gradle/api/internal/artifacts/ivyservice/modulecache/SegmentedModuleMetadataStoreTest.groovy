@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DesugaredAttributeContainerSerializer
+import org.gradle.api.internal.artifacts.repositories.metadata.IvyMutableModuleMetadataFactory
+import org.gradle.api.internal.artifacts.repositories.metadata.MavenMutableModuleMetadataFactory
+import org.gradle.api.internal.model.NamedObjectInstantiator
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.TestUtil
+import org.gradle.util.internal.SimpleMapInterner
+import org.junit.Rule
+import spock.lang.Specification
+
+class SegmentedModuleMetadataStoreTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder
+    ImmutableModuleIdentifierFactory moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory()
+    def mavenMetadataFactory = new MavenMutableModuleMetadataFactory(moduleIdentifierFactory, TestUtil.attributesFactory(), TestUtil.objectInstantiator(), TestUtil.featurePreviews())
+    def ivyMetadataFactory = new IvyMutableModuleMetadataFactory(moduleIdentifierFactory, TestUtil.attributesFactory())
+    def serializer = new ModuleMetadataSerializer(new DesugaredAttributeContainerSerializer(TestUtil.attributesFactory(), NamedObjectInstantiator.INSTANCE), mavenMetadataFactory, ivyMetadataFactory)
+
+    def "returns null for components that have not been stored"() {
+        expect:
+        store().getModuleDescriptor(key("org.test", "a", "1.0")) == null
+    }
+
+    def "can read back stored descriptors"() {
+        def store = store()
+        def first = descriptor("org.test", "a", "1.0")
+        def second = descriptor("org.test", "b", "2.0")
+
+        when:
+        store.putModuleDescriptor(key("org.test", "a", "1.0"), first)
+        store.putModuleDescriptor(key("org.test", "b", "2.0"), second)
+
+        then:
+        store.getModuleDescriptor(key("org.test", "a", "1.0")).asImmutable() == first
+        store.getModuleDescriptor(key("org.test", "b", "2.0")).asImmutable() == second
+        store.getModuleDescriptor(key("org.test", "c", "1.0")) == null
+    }
+
+    def "reads descriptors stored by another instance"() {
+        def store = store()
+        def other = store()
+        def first = descriptor("org.test", "a", "1.0")
+        def second = descriptor("org.test", "b", "2.0")
+
+        when:
+        store.putModuleDescriptor(key("org.test", "a", "1.0"), first)
+        other.putModuleDescriptor(key("org.test", "b", "2.0"), second)
+
+        then:
+        other.getModuleDescriptor(key("org.test", "a", "1.0")).asImmutable() == first
+        store.getModuleDescriptor(key("org.test", "b", "2.0")).asImmutable() == second
+        store().getModuleDescriptor(key("org.test", "b", "2.0")).asImmutable() == second
+    }
+
+    def "ignores an index entry that was not completely written"() {
+        def first = descriptor("org.test", "a", "1.0")
+        def second = descriptor("org.test", "b", "2.0")
+        store().putModuleDescriptor(key("org.test", "a", "1.0"), first)
+        temporaryFolder.testDirectory.file("index-0.bin") << ([0, 0, 0, 20, 1, 2, 3] as byte[])
+
+        when:
+        def store = store()
+        store.putModuleDescriptor(key("org.test", "b", "2.0"), second)
+
+        then:
+        store().getModuleDescriptor(key("org.test", "a", "1.0")).asImmutable() == first
+        store().getModuleDescriptor(key("org.test", "b", "2.0")).asImmutable() == second
+    }
+
+    def "replaces descriptors that are stored again"() {
+        def store = store()
+        def original = descriptor("org.test", "a", "1.0")
+        def replacement = mavenMetadataFactory.create(DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org.test", "a"), "1.0"))
+        replacement.changing = true
+
+        when:
+        store.putModuleDescriptor(key("org.test", "a", "1.0"), original)
+        store.putModuleDescriptor(key("org.test", "a", "1.0"), replacement.asImmutable())
+
+        then:
+        store.getModuleDescriptor(key("org.test", "a", "1.0")).changing
+        store().getModuleDescriptor(key("org.test", "a", "1.0")).changing
+    }
+
+    def "compacts descriptors that have been replaced"() {
+        def store = store(1)
+        def other = store()
+        def original = descriptor("org.test", "a", "1.0")
+        def changing = mavenMetadataFactory.create(DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org.test", "a"), "1.0"))
+        changing.changing = true
+        def unrelated = descriptor("org.test", "b", "2.0")
+        store.putModuleDescriptor(key("org.test", "b", "2.0"), unrelated)
+        store.putModuleDescriptor(key("org.test", "a", "1.0"), original)
+        other.getModuleDescriptor(key("org.test", "a", "1.0"))
+
+        when:
+        store.putModuleDescriptor(key("org.test", "a", "1.0"), changing.asImmutable())
+        store.putModuleDescriptor(key("org.test", "a", "1.0"), original)
+        store.putModuleDescriptor(key("org.test", "a", "1.0"), changing.asImmutable())
+
+        then:
+        !temporaryFolder.testDirectory.file("index-0.bin").exists()
+        temporaryFolder.testDirectory.listFiles().any { it.name ==~ /index-[1-9]\d*\.bin/ }
+        store.getModuleDescriptor(key("org.test", "a", "1.0")).changing
+        store.getModuleDescriptor(key("org.test", "b", "2.0")).asImmutable() == unrelated
+        other.getModuleDescriptor(key("org.test", "a", "1.0")).changing
+        other.getModuleDescriptor(key("org.test", "b", "2.0")).asImmutable() == unrelated
+        store().getModuleDescriptor(key("org.test", "a", "1.0")).changing
+        store().getModuleDescriptor(key("org.test", "b", "2.0")).asImmutable() == unrelated
+    }
+
+    private SegmentedModuleMetadataStore store() {
+        new SegmentedModuleMetadataStore(temporaryFolder.testDirectory, serializer, moduleIdentifierFactory, SimpleMapInterner.notThreadSafe())
+    }
+
+    private SegmentedModuleMetadataStore store(long minCompactionGarbage) {
+        new SegmentedModuleMetadataStore(temporaryFolder.testDirectory, serializer, moduleIdentifierFactory, SimpleMapInterner.notThreadSafe(), minCompactionGarbage)
+    }
+
+    private def descriptor(String group, String module, String version) {
+        mavenMetadataFactory.create(DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId(group, module), version)).asImmutable()
+    }
+
+    private static ModuleComponentAtRepositoryKey key(String group, String module, String version) {
+        new ModuleComponentAtRepositoryKey("repo", DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId(group, module), version))
+    }
+}
@@ -146,6 +146,27 @@ class DependencyGraphBuilderTest extends Specification {
         result.components == ids(root, a, b, c)
     }
 
+    def "collects statistics while traversing the graph"() {
+        given:
+        def a = revision("a")
+        def b = revision("b")
+        def c = revision("c")
+        traverses root, a
+        traverses root, b
+        traverses a, c
+        def statistics = new ResolutionStatistics()
+
+        when:
+        def result = new TestGraphVisitor()
+        builder.resolve(configuration, result, statistics)
+        result.rethrowFailure()
+
+        then:
+        statistics.nodesVisited == 4
+        statistics.edgesVisited == 3
+        statistics.conflictsResolved == 0
+    }
+
     def "honors component replacements"() {
         given:
         def a = revision('a') // a->c
@@ -201,6 +222,52 @@ class DependencyGraphBuilderTest extends Specification {
         result.components == ids(root, a, b, c, d)
     }
 
+    def "resolves the dynamic versions requested by a module once each when resolving them ahead of selection"() {
+        given:
+        def a = revision("a")
+        def b = revision("b")
+        def c = revision("c")
+        def d = revision("d")
+        traverses root, a, revision: '1.+'
+        traverses root, b, revision: 'latest.integration'
+        traverses root, c
+        traverses a, d, revision: '1.+'
+        doesNotResolve b, d, revision: '1.+'
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        result.components == ids(root, a, b, c, d)
+    }
+
+    def "resolves a dynamic version again during selection when resolving it ahead of selection fails"() {
+        given:
+        def a = revision("a")
+        def b = revision("b")
+        def dependency = dependsOn(root, a.moduleVersionId, revision: '1.+')
+        traverses root, b, revision: '1.+'
+        def attempts = 0
+        2 * idResolver.resolve(dependency, _, _) >> { DependencyMetadata dep, ResolvedVersionConstraint versionConstraint, BuildableComponentIdResolveResult result ->
+            if (attempts++ == 0) {
+                result.failed(new ModuleVersionResolveException(newSelector(DefaultModuleIdentifier.newId("group", "a"), new DefaultMutableVersionConstraint("1.+")), "No cached version listing"))
+            } else {
+                result.resolved(a.id, a.moduleVersionId)
+            }
+        }
+        1 * metaDataResolver.resolve(a.id, _, _) >> { ComponentIdentifier id, ComponentOverrideMetadata requestMetaData, BuildableComponentResolveResult result ->
+            result.resolved(a)
+        }
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        result.components == ids(root, a, b)
+    }
+
     def "does not include evicted module or dependencies when selected module already traversed before conflict detected"() {
         given:
         def selected = revision('a', '1.2')
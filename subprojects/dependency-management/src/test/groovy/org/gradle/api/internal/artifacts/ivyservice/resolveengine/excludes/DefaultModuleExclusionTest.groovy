@@ -290,6 +290,35 @@ class DefaultModuleExclusionTest extends Specification {
         !spec.excludeModule(moduleId("regexp", "module2"))
     }
 
+    def "answers repeated module queries consistently"() {
+        def spec = excludeAny(excludeRule("org", "module"), excludeGroupRule("org2"), excludeModuleRule("module3"), regexpExcludeRule("regexp-\\d+", ".*"))
+        def union = union(spec, excludeAny(excludeGroupRule("org2"), excludeModuleRule("module3"), excludeRule("org", "module")))
+
+        expect:
+        3.times {
+            assert spec.excludeModule(moduleId("org", "module"))
+            assert spec.excludeModule(moduleId("org2", "anything"))
+            assert spec.excludeModule(moduleId("other", "module3"))
+            assert spec.excludeModule(moduleId("regexp-1", "anything"))
+            assert !spec.excludeModule(moduleId("org", "other"))
+            assert union.excludeModule(moduleId("org2", "anything"))
+            assert !union.excludeModule(moduleId("regexp-1", "anything"))
+        }
+    }
+
+    def "answers module queries consistently when asked about more modules than it remembers"() {
+        def spec = excludeAny(excludeGroupRule("org"), excludeModuleRule("module3"))
+
+        expect:
+        2.times {
+            (0..<3000).each { i ->
+                assert spec.excludeModule(moduleId("org", "module" + i))
+                assert spec.excludeModule(moduleId("other" + i, "module3"))
+                assert spec.excludeModule(moduleId("other", "module" + i)) == (i == 3)
+            }
+        }
+    }
+
     def "specs with the same set of exclude rules accept the same modules as each other"() {
         def rule1 = excludeRule("org", "module")
         def rule2 = excludeRule("org", "module2")
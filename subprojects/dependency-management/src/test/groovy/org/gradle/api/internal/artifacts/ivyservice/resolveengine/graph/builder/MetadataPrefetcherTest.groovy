@@ -0,0 +1,193 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import com.google.common.collect.ImmutableList
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser
+import org.gradle.internal.component.external.descriptor.MavenScope
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.external.model.maven.MavenDependencyDescriptor
+import org.gradle.internal.component.external.model.maven.MavenModuleResolveMetadata
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata
+import org.gradle.internal.operations.BuildOperationQueue
+import org.gradle.internal.operations.RunnableBuildOperation
+import org.gradle.internal.resolve.ModuleVersionResolveException
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult
+import spock.lang.Specification
+
+class MetadataPrefetcherTest extends Specification {
+    def delegate = Mock(ComponentMetaDataResolver)
+    def operations = []
+    def queue = Mock(BuildOperationQueue) {
+        add(_) >> { RunnableBuildOperation operation -> operations << operation }
+    }
+    def prefetcher = new MetadataPrefetcher(delegate, new DefaultVersionSelectorScheme(new DefaultVersionComparator(), new VersionParser()))
+    def id = DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org", "a"), "1.0")
+
+    def setup() {
+        prefetcher.start(queue)
+    }
+
+    def cleanup() {
+        prefetcher.stop()
+    }
+
+    def "hands prefetched metadata to the traversal"() {
+        def metadata = Stub(ComponentResolveMetadata)
+        def result = new DefaultBuildableComponentResolveResult()
+
+        when:
+        prefetcher.prefetch(id)
+        operations.each { it.run(null) }
+        prefetcher.resolve(id, new DefaultComponentOverrideMetadata(), result)
+
+        then:
+        1 * delegate.isFetchingMetadataCheap(id) >> false
+        1 * delegate.resolve(id, _, _) >> { args -> args[2].resolved(metadata) }
+        0 * delegate._
+        result.metadata == metadata
+    }
+
+    def "fetches metadata on the calling thread when its prefetch has not started"() {
+        def metadata = Stub(ComponentResolveMetadata)
+        def result = new DefaultBuildableComponentResolveResult()
+
+        when:
+        prefetcher.prefetch(id)
+        prefetcher.resolve(id, new DefaultComponentOverrideMetadata(), result)
+        operations.each { it.run(null) }
+
+        then:
+        1 * delegate.isFetchingMetadataCheap(id) >> false
+        1 * delegate.resolve(id, _, _) >> { args -> args[2].resolved(metadata) }
+        0 * delegate._
+        result.metadata == metadata
+    }
+
+    def "does not prefetch metadata that is cheap to fetch"() {
+        when:
+        prefetcher.prefetch(id)
+
+        then:
+        1 * delegate.isFetchingMetadataCheap(id) >> true
+        0 * delegate._
+    }
+
+    def "resolves again on the calling thread when prefetching fails"() {
+        def metadata = Stub(ComponentResolveMetadata)
+        def result = new DefaultBuildableComponentResolveResult()
+
+        when:
+        prefetcher.prefetch(id)
+        operations.each { it.run(null) }
+        prefetcher.resolve(id, new DefaultComponentOverrideMetadata(), result)
+
+        then:
+        1 * delegate.isFetchingMetadataCheap(id) >> false
+        1 * delegate.resolve(id, _, _) >> { args -> args[2].failed(new ModuleVersionResolveException(id, "broken")) }
+
+        then:
+        1 * delegate.resolve(id, _, result) >> { args -> args[2].resolved(metadata) }
+        result.metadata == metadata
+    }
+
+    def "discards exceptions thrown while prefetching"() {
+        def metadata = Stub(ComponentResolveMetadata)
+        def result = new DefaultBuildableComponentResolveResult()
+
+        when:
+        prefetcher.prefetch(id)
+        operations.each { it.run(null) }
+
+        then:
+        1 * delegate.isFetchingMetadataCheap(id) >> false
+        1 * delegate.resolve(id, _, _) >> { throw new RuntimeException("broken") }
+        noExceptionThrown()
+
+        when:
+        prefetcher.resolve(id, new DefaultComponentOverrideMetadata(), result)
+
+        then:
+        1 * delegate.resolve(id, _, result) >> { args -> args[2].resolved(metadata) }
+        result.metadata == metadata
+    }
+
+    def "discards prefetches that have not started when stopped"() {
+        when:
+        prefetcher.stop()
+        prefetcher.prefetch(id)
+
+        then:
+        1 * queue.cancel()
+        _ * delegate.isFetchingMetadataCheap(id) >> false
+        0 * queue.add(_)
+    }
+
+    def "speculatively prefetches the fixed version runtime dependencies of prefetched modules"() {
+        def dependency = DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org", "b"), "2.0")
+        def metadata = Stub(MavenModuleResolveMetadata) {
+            getDependencies() >> ImmutableList.of(
+                descriptor(MavenScope.Compile, false, "b", "2.0"),
+                descriptor(MavenScope.Test, false, "c", "1.0"),
+                descriptor(MavenScope.Runtime, true, "d", "1.0"),
+                descriptor(MavenScope.Runtime, false, "e", "1.+"))
+        }
+        def dependencyMetadata = Stub(ComponentResolveMetadata)
+        def result = new DefaultBuildableComponentResolveResult()
+
+        when:
+        prefetcher.prefetch(id)
+        operations[0].run(null)
+        prefetcher.resolve(id, new DefaultComponentOverrideMetadata(), new DefaultBuildableComponentResolveResult())
+        def cheap = prefetcher.isFetchingMetadataCheap(dependency)
+        prefetcher.resolve(dependency, new DefaultComponentOverrideMetadata(), result)
+
+        then:
+        1 * delegate.isFetchingMetadataCheap(id) >> false
+        1 * delegate.resolve(id, _, _) >> { args -> args[2].resolved(metadata) }
+        1 * delegate.isFetchingMetadataCheap(dependency) >> false
+        1 * delegate.resolve(dependency, _, _) >> { args -> args[2].resolved(dependencyMetadata) }
+        0 * delegate._
+        cheap
+        result.metadata == dependencyMetadata
+    }
+
+    def "does not use prefetched metadata when the traversal requests overrides"() {
+        def metadata = Stub(ComponentResolveMetadata)
+        def result = new DefaultBuildableComponentResolveResult()
+
+        when:
+        prefetcher.prefetch(id)
+        prefetcher.resolve(id, new DefaultComponentOverrideMetadata().withChanging(), result)
+        prefetcher.stop()
+
+        then:
+        1 * delegate.isFetchingMetadataCheap(id) >> false
+        _ * delegate.resolve(id, { !it.changing }, _) >> { args -> args[2].resolved(metadata) }
+        1 * delegate.resolve(id, { it.changing }, result)
+    }
+
+    private static MavenDependencyDescriptor descriptor(MavenScope scope, boolean optional, String module, String version) {
+        return new MavenDependencyDescriptor(scope, optional, DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId("org", module), version), null, [])
+    }
+}
@@ -375,6 +375,54 @@ class DefaultTransformedFileCacheTest extends ConcurrentSpec {
         0 * transform._
     }
 
+    def "reuses result from a previous build when the output still exists"() {
+        def transform = Mock(BiFunction)
+        def inputFile = tmpDir.file("a")
+
+        given:
+        _ * snapshotter.snapshot(inputFile) >> snapshot(HashCode.fromInt(456))
+        1 * transform.apply(inputFile, _) >>  { File file, File dir -> def r = new File(dir, "a.1"); r.text = "result"; [r] }
+
+        def result = cache.getResult(inputFile, HashCode.fromInt(123), transform)
+        cache.beforeComplete()
+
+        when:
+        def result2 = cache.getResult(inputFile, HashCode.fromInt(123), transform)
+
+        then:
+        result2 == result
+        cache.contains(inputFile, HashCode.fromInt(123))
+
+        and:
+        1 * fileAccessTimeJournal.setLastAccessTime(_, _)
+        0 * transform._
+    }
+
+    def "runs transform when output of a previous build has been removed"() {
+        def transform = Mock(BiFunction)
+        def inputFile = tmpDir.file("a")
+
+        given:
+        _ * snapshotter.snapshot(inputFile) >> snapshot(HashCode.fromInt(456))
+        1 * transform.apply(inputFile, _) >>  { File file, File dir -> def r = new File(dir, "a.1"); r.text = "result"; [r] }
+
+        def result = cache.getResult(inputFile, HashCode.fromInt(123), transform)
+        cache.beforeComplete()
+        result.first().delete()
+
+        when:
+        def contained = cache.contains(inputFile, HashCode.fromInt(123))
+        def result2 = cache.getResult(inputFile, HashCode.fromInt(123), transform)
+
+        then:
+        !contained
+        result2 == result
+
+        and:
+        1 * transform.apply(inputFile, _) >>  { File file, File dir -> def r = new File(dir, "a.1"); r.text = "result"; [r] }
+        0 * transform._
+    }
+
     def "stopping the cache cleans up old entries and preserves new ones"() {
         given:
         snapshotter.snapshot(_) >> snapshot(HashCode.fromInt(42))
@@ -49,4 +49,37 @@ class TransformingAsyncArtifactListenerTest extends Specification {
         then:
         2 * transformer.transform(_)
     }
+
+    def "queues the next step of a chained transform for each output of the previous step"() {
+        def first = Mock(ArtifactTransformer)
+        def second = Mock(ArtifactTransformer)
+        def chainListener = new TransformingAsyncArtifactListener(new ChainedTransformer(first, second), null, operationQueue, Maps.newHashMap(), Maps.newHashMap())
+        def operations = []
+
+        when:
+        chainListener.fileAvailable(new File("foo"))
+
+        then:
+        1 * first.hasCachedResult(_) >> false
+        1 * operationQueue.add(_) >> { TransformFileOperation operation -> operations << operation }
+
+        when:
+        operations[0].run(null)
+
+        then:
+        1 * first.transform(new File("foo")) >> [new File("foo.1"), new File("foo.2")]
+        1 * second.hasCachedResult(new File("foo.1")) >> true
+        1 * second.transform(new File("foo.1")) >> [new File("foo.1.out")]
+        1 * second.hasCachedResult(new File("foo.2")) >> false
+        1 * operationQueue.add(_) >> { TransformFileOperation operation -> operations << operation }
+        0 * second.transform(_)
+
+        when:
+        operations[1].run(null)
+
+        then:
+        1 * second.transform(new File("foo.2")) >> [new File("foo.2.out")]
+        operations[0].failure == null
+        operations[0].result == [new File("foo.1.out"), new File("foo.2.out")]
+    }
 }
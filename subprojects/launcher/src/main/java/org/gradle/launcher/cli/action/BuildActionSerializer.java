@@ -120,6 +120,7 @@ public class BuildActionSerializer {
             encoder.writeBoolean(startParameter.isNoBuildScan());
             encoder.writeBoolean(startParameter.isInteractive());
             encoder.writeBoolean(startParameter.isWriteDependencyLocks());
+            encoder.writeBoolean(startParameter.isResolutionProfile());
 
             // Deprecations (these should just be rendered on the client instead of being sent to the daemon to send them back again)
             stringSetSerializer.write(encoder, startParameter.getDeprecations());
@@ -192,6 +193,7 @@ public class BuildActionSerializer {
             startParameter.setNoBuildScan(decoder.readBoolean());
             startParameter.setInteractive(decoder.readBoolean());
             startParameter.setWriteDependencyLocks(decoder.readBoolean());
+            startParameter.setResolutionProfile(decoder.readBoolean());
 
             for (String warning : stringSetSerializer.read(decoder)) {
                 startParameter.addDeprecation(warning);
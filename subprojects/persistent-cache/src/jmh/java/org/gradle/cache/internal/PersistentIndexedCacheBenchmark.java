@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.logstructured.LogStructuredPersistentIndexedCache;
+import org.gradle.cache.internal.store.IndexedCacheStore;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the throughput of reading and writing the entries of a persistent indexed cache stored in a B-tree and in a log with a memory-mapped index.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class PersistentIndexedCacheBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    int entries;
+
+    @Param({"BTREE", "LOG_STRUCTURED"})
+    PersistentIndexedCacheParameters.Storage storage;
+
+    File cacheDir;
+    IndexedCacheStore<String, String> cache;
+    String[] keys;
+    Random random;
+
+    @Setup
+    public void setup() throws IOException {
+        cacheDir = File.createTempFile("indexed-cache", "");
+        cacheDir.delete();
+        cacheDir.mkdirs();
+        keys = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            keys[i] = "org.gradle:module-" + i + ":1.0";
+        }
+        cache = createCache();
+        for (String key : keys) {
+            cache.put(key, value(key));
+        }
+        // Start from a cache that has been persisted by a previous build
+        cache.close();
+        cache = createCache();
+        random = new Random(1234L);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        cache.close();
+        FileUtils.deleteDirectory(cacheDir);
+    }
+
+    @Benchmark
+    public String get() {
+        return cache.get(keys[random.nextInt(entries)]);
+    }
+
+    @Benchmark
+    public void put() {
+        String key = keys[random.nextInt(entries)];
+        cache.put(key, value(key));
+    }
+
+    private IndexedCacheStore<String, String> createCache() {
+        if (storage == PersistentIndexedCacheParameters.Storage.LOG_STRUCTURED) {
+            return new LogStructuredPersistentIndexedCache<String, String>(new File(cacheDir, "cache"), BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER);
+        }
+        return new BTreePersistentIndexedCache<String, String>(new File(cacheDir, "cache.bin"), BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER);
+    }
+
+    private static String value(String key) {
+        return key + ":" + key.hashCode();
+    }
+}
@@ -26,6 +26,7 @@ public class PersistentIndexedCacheParameters<K, V> {
     private final Serializer<K> keySerializer;
     private final Serializer<V> valueSerializer;
     private CacheDecorator cacheDecorator;
+    private Storage storage = Storage.BTREE;
 
     public PersistentIndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
         this.cacheName = cacheName;
@@ -67,4 +68,28 @@ public class PersistentIndexedCacheParameters<K, V> {
         this.cacheDecorator = cacheDecorator;
         return this;
     }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public PersistentIndexedCacheParameters<K, V> storage(Storage storage) {
+        assert storage != null;
+        this.storage = storage;
+        return this;
+    }
+
+    /**
+     * The layout used to store the entries of the cache on disk.
+     */
+    public enum Storage {
+        /**
+         * A B-tree of the key hashes, updated in place.
+         */
+        BTREE,
+        /**
+         * An append-only log of the entries with a memory-mapped hash index. Suited to caches that are mostly read and written by key, and rarely removed from.
+         */
+        LOG_STRUCTURED
+    }
 }
@@ -56,28 +56,20 @@ public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsy
 
     @Override
     public void putLater(final K key, final V value, final Runnable completion) {
-        asyncCacheAccess.enqueue(new Runnable() {
+        asyncCacheAccess.enqueue(new CacheUpdate(persistentCache, key, completion) {
             @Override
-            public void run() {
-                try {
-                    persistentCache.put(key, value);
-                } finally {
-                    completion.run();
-                }
+            protected void update() {
+                persistentCache.put(key, value);
             }
         });
     }
 
     @Override
     public void removeLater(final K key, final Runnable completion) {
-        asyncCacheAccess.enqueue(new Runnable() {
+        asyncCacheAccess.enqueue(new CacheUpdate(persistentCache, key, completion) {
             @Override
-            public void run() {
-                try {
-                    persistentCache.remove(key);
-                } finally {
-                    completion.run();
-                }
+            protected void update() {
+                persistentCache.remove(key);
             }
         });
     }
@@ -25,8 +25,13 @@ import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.time.CountdownTimer;
 import org.gradle.internal.time.Time;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
@@ -36,6 +41,8 @@ import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 
 class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheAccessWorker.class);
+    private static final int MAX_BATCH_SIZE = 1000;
     private final BlockingQueue<Runnable> workQueue;
     private final String displayName;
     private final CacheAccess cacheAccess;
@@ -46,6 +53,12 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
     private boolean stopSeen;
     private final CountDownLatch doneSignal = new CountDownLatch(1);
     private final ExecutorPolicy.CatchAndRecordFailures failureHandler = new ExecutorPolicy.CatchAndRecordFailures();
+    // Statistics, only updated by the worker thread
+    private int maxQueueDepth;
+    private int batches;
+    private int updatesWritten;
+    private int updatesCoalesced;
+    private int largestBatch;
 
     CacheAccessWorker(String displayName, CacheAccess cacheAccess) {
         this.displayName = displayName;
@@ -160,6 +173,9 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
                 }
             }
             workerCompleted = true;
+            if (batches > 0) {
+                LOGGER.debug("{}: wrote {} updates in {} batches (largest {}), skipped {} superseded updates, maximum queue depth {}.", displayName, updatesWritten, batches, largestBatch, updatesCoalesced, maxQueueDepth);
+            }
             doneSignal.countDown();
         }
     }
@@ -175,16 +191,23 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
                 @Override
                 public void run() {
                     CountdownTimer timer = Time.startCountdownTimer(maximumLockingTimeMillis, TimeUnit.MILLISECONDS);
-                    if (updateOperation != null) {
-                        failureHandler.onExecute(updateOperation);
-                    }
-                    Runnable otherOperation;
+                    UpdateBatch batch = new UpdateBatch();
+                    Runnable operation = updateOperation;
                     try {
-                        while ((otherOperation = workQueue.poll(batchWindowMillis, TimeUnit.MILLISECONDS)) != null) {
-                            failureHandler.onExecute(otherOperation);
-                            final Class<? extends Runnable> runnableClass = otherOperation.getClass();
+                        while (operation != null) {
+                            final Class<? extends Runnable> runnableClass = operation.getClass();
+                            if (operation instanceof CacheUpdate) {
+                                batch.add((CacheUpdate) operation);
+                                if (batch.size() >= MAX_BATCH_SIZE) {
+                                    batch.write();
+                                }
+                            } else {
+                                // Reads, flushes and other operations must see all the updates queued before them
+                                batch.write();
+                                failureHandler.onExecute(operation);
+                            }
                             if (runnableClass == FlushOperationsCommand.class) {
-                                flushOperations.add((FlushOperationsCommand) otherOperation);
+                                flushOperations.add((FlushOperationsCommand) operation);
                             }
                             if (runnableClass == ShutdownOperationsCommand.class) {
                                 stopSeen = true;
@@ -194,9 +217,17 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
                                     || timer.hasExpired()) {
                                 break;
                             }
+                            operation = workQueue.poll();
+                            if (operation == null) {
+                                // Write what has been queued so far, rather than holding it back while waiting for more work
+                                batch.write();
+                                operation = workQueue.poll(batchWindowMillis, TimeUnit.MILLISECONDS);
+                            }
                         }
                     } catch (InterruptedException e) {
                         throw UncheckedException.throwAsUncheckedException(e);
+                    } finally {
+                        batch.write();
                     }
                 }
             });
@@ -207,6 +238,65 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
         }
     }
 
+    /**
+     * The updates taken from the queue that have not yet been written to the caches. Only the most recent update of each key is written, the others only complete.
+     */
+    private class UpdateBatch {
+        private final Map<CacheUpdate, CacheUpdate> latestUpdates = new LinkedHashMap<CacheUpdate, CacheUpdate>();
+        private final List<CacheUpdate> supersededUpdates = new ArrayList<CacheUpdate>();
+
+        void add(CacheUpdate update) {
+            CacheUpdate previous = latestUpdates.put(update, update);
+            if (previous != null) {
+                previous.superseded();
+                supersededUpdates.add(previous);
+            }
+        }
+
+        int size() {
+            return latestUpdates.size();
+        }
+
+        void write() {
+            if (latestUpdates.isEmpty()) {
+                return;
+            }
+            maxQueueDepth = Math.max(maxQueueDepth, latestUpdates.size() + supersededUpdates.size() + workQueue.size());
+            for (CacheUpdate update : latestUpdates.values()) {
+                failureHandler.onExecute(update);
+            }
+            for (CacheUpdate update : supersededUpdates) {
+                failureHandler.onExecute(update);
+            }
+            batches++;
+            updatesWritten += latestUpdates.size();
+            updatesCoalesced += supersededUpdates.size();
+            largestBatch = Math.max(largestBatch, latestUpdates.size());
+            latestUpdates.clear();
+            supersededUpdates.clear();
+        }
+    }
+
+    int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    int getBatches() {
+        return batches;
+    }
+
+    int getUpdatesWritten() {
+        return updatesWritten;
+    }
+
+    int getUpdatesCoalesced() {
+        return updatesCoalesced;
+    }
+
+    int getLargestBatch() {
+        return largestBatch;
+    }
+
     public synchronized void stop() {
         if (!closed && !workerCompleted) {
             closed = true;
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+/**
+ * An update of a single key of a cache, made by {@link CacheAccessWorker}. An update is superseded by a later update of the same key of the same cache
+ * that is made in the same batch, in which case only the later update is written to the cache.
+ */
+abstract class CacheUpdate implements Runnable {
+    private final Object cache;
+    private final Object key;
+    private final Runnable completion;
+    private boolean superseded;
+
+    CacheUpdate(Object cache, Object key, Runnable completion) {
+        this.cache = cache;
+        this.key = key;
+        this.completion = completion;
+    }
+
+    /**
+     * Writes the update to the cache.
+     */
+    protected abstract void update();
+
+    void superseded() {
+        superseded = true;
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (!superseded) {
+                update();
+            }
+        } finally {
+            completion.run();
+        }
+    }
+
+    /**
+     * Updates are equal when they update the same key of the same cache.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof CacheUpdate)) {
+            return false;
+        }
+        CacheUpdate other = (CacheUpdate) obj;
+        return cache == other.cache && key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(cache) * 31 + key.hashCode();
+    }
+}
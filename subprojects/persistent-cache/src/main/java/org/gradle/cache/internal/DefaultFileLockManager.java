@@ -48,7 +48,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -62,28 +65,45 @@ import static org.gradle.internal.UncheckedException.throwAsUncheckedException;
 public class DefaultFileLockManager implements FileLockManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultFileLockManager.class);
     public static final int DEFAULT_LOCK_TIMEOUT = 60000;
+    /**
+     * How long a process that released a lock because another process requested it waits before it requests the lock again itself.
+     * This gives the processes notified of the release the chance to acquire the lock first.
+     */
+    static final long HANDOFF_WINDOW_MS = 20;
 
     private final Set<File> lockedFiles = new CopyOnWriteArraySet<File>();
+    private final ConcurrentMap<File, Long> releasedOnContention = new ConcurrentHashMap<File, Long>();
     private final ProcessMetaDataProvider metaDataProvider;
     private final int lockTimeoutMs;
     private final IdGenerator<Long> generator;
     private final FileLockContentionHandler fileLockContentionHandler;
+    private final FileLockWaitStatistics waitStatistics;
     private final int shortTimeoutMs = 10000;
 
     public DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, FileLockContentionHandler fileLockContentionHandler) {
         this(metaDataProvider, DEFAULT_LOCK_TIMEOUT, fileLockContentionHandler);
     }
 
+    public DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, FileLockContentionHandler fileLockContentionHandler, FileLockWaitStatistics waitStatistics) {
+        this(metaDataProvider, DEFAULT_LOCK_TIMEOUT, fileLockContentionHandler, new RandomLongIdGenerator(), waitStatistics);
+    }
+
     public DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, int lockTimeoutMs, FileLockContentionHandler fileLockContentionHandler) {
         this(metaDataProvider, lockTimeoutMs, fileLockContentionHandler, new RandomLongIdGenerator());
     }
 
     DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, int lockTimeoutMs, FileLockContentionHandler fileLockContentionHandler,
                            IdGenerator<Long> generator) {
+        this(metaDataProvider, lockTimeoutMs, fileLockContentionHandler, generator, new FileLockWaitStatistics());
+    }
+
+    DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, int lockTimeoutMs, FileLockContentionHandler fileLockContentionHandler,
+                           IdGenerator<Long> generator, FileLockWaitStatistics waitStatistics) {
         this.metaDataProvider = metaDataProvider;
         this.lockTimeoutMs = lockTimeoutMs;
         this.fileLockContentionHandler = fileLockContentionHandler;
         this.generator = generator;
+        this.waitStatistics = waitStatistics;
     }
 
     public FileLock lock(File target, LockOptions options, String targetDisplayName) throws LockTimeoutException {
@@ -130,8 +150,9 @@ public class DefaultFileLockManager implements FileLockManager {
         private LockState lockState;
         private int port;
         private final long lockId;
+        private volatile boolean contended;
 
-        public DefaultFileLock(File target, LockOptions options, String displayName, String operationDisplayName, int port, Action<FileLockReleasedSignal> whenContended) throws Throwable {
+        public DefaultFileLock(File target, LockOptions options, String displayName, String operationDisplayName, int port, final Action<FileLockReleasedSignal> whenContended) throws Throwable {
             this.port = port;
             this.lockId = generator.generateId();
             if (options.getMode() == LockMode.None) {
@@ -156,7 +177,13 @@ public class DefaultFileLockManager implements FileLockManager {
             lockFileAccess = new LockFileAccess(lockFile, new LockStateAccess(stateProtocol));
             try {
                 if (whenContended != null) {
-                    fileLockContentionHandler.start(lockId, whenContended);
+                    fileLockContentionHandler.start(lockId, new Action<FileLockReleasedSignal>() {
+                        @Override
+                        public void execute(FileLockReleasedSignal signal) {
+                            contended = true;
+                            whenContended.execute(signal);
+                        }
+                    });
                 }
                 lockState = lock(options.getMode());
             } catch (Throwable t) {
@@ -269,6 +296,9 @@ public class DefaultFileLockManager implements FileLockManager {
             });
             stoppable.add(new Stoppable() {
                 public void stop() {
+                    if (contended) {
+                        releasedOnContention.put(target, System.nanoTime());
+                    }
                     lock = null;
                     lockFileAccess = null;
                     lockedFiles.remove(target);
@@ -283,13 +313,17 @@ public class DefaultFileLockManager implements FileLockManager {
 
         private LockState lock(LockMode lockMode) throws Throwable {
             LOGGER.debug("Waiting to acquire {} lock on {}.", lockMode.toString().toLowerCase(), displayName);
+            awaitHandoff();
 
-            // Lock the state region, with the requested mode
+            // Lock the state region, with the requested mode. Only the wait for other processes is recorded, not the handoff above
+            long startTime = System.nanoTime();
             java.nio.channels.FileLock stateRegionLock = lockStateRegion(lockMode);
             if (stateRegionLock == null) {
+                waitStatistics.lockTimedOut();
                 LockInfo lockInfo = readInformationRegion(new ExponentialBackoff(shortTimeoutMs));
                 throw new LockTimeoutException(displayName, lockInfo.pid, metaDataProvider.getProcessIdentifier(), lockInfo.operation, operationDisplayName, lockFile);
             }
+            waitStatistics.lockAcquired(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
 
             try {
                 LockState lockState;
@@ -323,6 +357,20 @@ public class DefaultFileLockManager implements FileLockManager {
             }
         }
 
+        /**
+         * Gives the processes that were notified when this process last released the lock because of their request the chance to acquire it first.
+         */
+        private void awaitHandoff() throws InterruptedException {
+            Long releaseTime = releasedOnContention.remove(target);
+            if (releaseTime != null) {
+                long remainingMillis = HANDOFF_WINDOW_MS - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - releaseTime);
+                if (remainingMillis > 0) {
+                    LOGGER.debug("Waiting {}ms for another process to acquire the lock on {}.", remainingMillis, displayName);
+                    Thread.sleep(remainingMillis);
+                }
+            }
+        }
+
         private LockInfo readInformationRegion(ExponentialBackoff backoff) throws IOException, InterruptedException {
             // Can't acquire lock, get details of owner to include in the error message
             LockInfo out = new LockInfo();
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects how long this process waited for other processes to release cross-process file locks, as a histogram of wait times.
+ * Attempts that timed out are counted separately.
+ */
+public class FileLockWaitStatistics {
+    private static final long[] BUCKET_UPPER_BOUNDS_MILLIS = {1, 10, 100, 1000, 10000, Long.MAX_VALUE};
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_UPPER_BOUNDS_MILLIS.length);
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    public void lockAcquired(long waitMillis) {
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MILLIS.length; i++) {
+            if (waitMillis < BUCKET_UPPER_BOUNDS_MILLIS[i]) {
+                counts.incrementAndGet(i);
+                break;
+            }
+        }
+        totalWaitMillis.addAndGet(waitMillis);
+        long max = maxWaitMillis.get();
+        while (waitMillis > max && !maxWaitMillis.compareAndSet(max, waitMillis)) {
+            max = maxWaitMillis.get();
+        }
+    }
+
+    public void lockTimedOut() {
+        timeouts.incrementAndGet();
+    }
+
+    /**
+     * Returns the wait times collected since the previous call, and starts collecting again.
+     */
+    public Histogram snapshotAndReset() {
+        long[] bucketCounts = new long[BUCKET_UPPER_BOUNDS_MILLIS.length];
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = counts.getAndSet(i, 0);
+        }
+        return new Histogram(BUCKET_UPPER_BOUNDS_MILLIS.clone(), bucketCounts, totalWaitMillis.getAndSet(0), maxWaitMillis.getAndSet(0), timeouts.getAndSet(0));
+    }
+
+    /**
+     * The number of lock acquisitions that waited for less than each bucket's upper bound, and at least the previous bucket's upper bound.
+     */
+    public static class Histogram {
+        private final long[] bucketUpperBoundsMillis;
+        private final long[] bucketCounts;
+        private final long totalWaitMillis;
+        private final long maxWaitMillis;
+        private final long timeouts;
+
+        Histogram(long[] bucketUpperBoundsMillis, long[] bucketCounts, long totalWaitMillis, long maxWaitMillis, long timeouts) {
+            this.bucketUpperBoundsMillis = bucketUpperBoundsMillis;
+            this.bucketCounts = bucketCounts;
+            this.totalWaitMillis = totalWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+            this.timeouts = timeouts;
+        }
+
+        /**
+         * The exclusive upper bound of each bucket. The last bucket is unbounded and has {@link Long#MAX_VALUE} as its bound.
+         */
+        public long[] getBucketUpperBoundsMillis() {
+            return bucketUpperBoundsMillis.clone();
+        }
+
+        public long[] getBucketCounts() {
+            return bucketCounts.clone();
+        }
+
+        public long getLockAcquisitions() {
+            long total = 0;
+            for (long count : bucketCounts) {
+                total += count;
+            }
+            return total;
+        }
+
+        public long getTotalWaitMillis() {
+            return totalWaitMillis;
+        }
+
+        public long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        /**
+         * The number of attempts to acquire a lock that timed out. These are not included in the wait times.
+         */
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("lock acquisitions: ").append(getLockAcquisitions())
+                .append(", total wait: ").append(totalWaitMillis).append("ms")
+                .append(", max wait: ").append(maxWaitMillis).append("ms")
+                .append(", timeouts: ").append(timeouts);
+            for (int i = 0; i < bucketCounts.length; i++) {
+                builder.append(", ");
+                if (bucketUpperBoundsMillis[i] == Long.MAX_VALUE) {
+                    builder.append(">=").append(bucketUpperBoundsMillis[i - 1]);
+                } else {
+                    builder.append('<').append(bucketUpperBoundsMillis[i]);
+                }
+                builder.append("ms: ").append(bucketCounts[i]);
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,565 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.store.IndexedCacheStore;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent indexed cache that appends each entry to a log file, and keeps the position of the most recent entry for each key in a hash index memory-mapped from a second file.
+ *
+ * <p>Each record of the log holds the serialized key and value of an entry, or only the key when the entry is removed, followed by a checksum of the record.
+ * The index is an open-addressing table of key hashes and log positions. It is marked as dirty on disk before it is first changed, and marked as clean again when
+ * the cache is closed, along with the length of the log it covers. When the cache is opened, entries appended to the log since then are added to the index, and
+ * the index is rebuilt from the log when it was not closed cleanly. A record that was not completely written, or that does not match its checksum, is discarded
+ * along with the remainder of the log.</p>
+ *
+ * <p>Replaced and removed entries are left in the log. When they make up more than half of it, the live entries are copied to a new log when the cache is closed.</p>
+ */
+public class LogStructuredPersistentIndexedCache<K, V> implements IndexedCacheStore<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStructuredPersistentIndexedCache.class);
+    private static final HashFunction KEY_HASH = Hashing.murmur3_128();
+
+    private static final int LOG_MAGIC = 0x474c4f47;
+    private static final int INDEX_MAGIC = 0x47494458;
+    private static final int VERSION = 1;
+    private static final int LOG_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int CHECKSUM_SIZE = 4;
+    private static final int TOMBSTONE = -1;
+    private static final byte[] EMPTY_RECORD_HEADER = new byte[RECORD_HEADER_SIZE];
+
+    private static final int INDEX_HEADER_SIZE = 64;
+    private static final int INDEX_STATE = 8;
+    private static final int INDEX_CAPACITY = 12;
+    private static final int INDEX_LIVE = 16;
+    private static final int INDEX_USED = 20;
+    private static final int INDEX_LOG_LENGTH = 24;
+    private static final int INDEX_GARBAGE = 32;
+    private static final int CLEAN = 1;
+    private static final int DIRTY = 2;
+    private static final int SLOT_SIZE = 16;
+    private static final int MIN_CAPACITY = 1024;
+    private static final long EMPTY = 0;
+    private static final long DELETED = -1;
+
+    public static final long DEFAULT_MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    private final File logFile;
+    private final File compactedLogFile;
+    private final File indexFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final long minCompactionSize;
+    private final RecordBuffer keyBuffer = new RecordBuffer();
+    private final KryoBackedEncoder keyEncoder = new KryoBackedEncoder(keyBuffer);
+    private final RecordBuffer recordBuffer = new RecordBuffer();
+    private final KryoBackedEncoder valueEncoder = new KryoBackedEncoder(recordBuffer);
+    private final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    private final CRC32 checksum = new CRC32();
+
+    private RandomAccessFile log;
+    private FileChannel logChannel;
+    private long logLength;
+    private RandomAccessFile indexAccess;
+    private MappedByteBuffer index;
+    private int capacity;
+    private int live;
+    private int used;
+    private long garbage;
+    private boolean dirty;
+
+    public LogStructuredPersistentIndexedCache(File cacheBaseFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(cacheBaseFile, keySerializer, valueSerializer, DEFAULT_MIN_COMPACTION_SIZE);
+    }
+
+    public LogStructuredPersistentIndexedCache(File cacheBaseFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, long minCompactionSize) {
+        this.logFile = new File(cacheBaseFile.getParentFile(), cacheBaseFile.getName() + ".log");
+        this.compactedLogFile = new File(cacheBaseFile.getParentFile(), cacheBaseFile.getName() + ".log.compacted");
+        this.indexFile = new File(cacheBaseFile.getParentFile(), cacheBaseFile.getName() + ".idx");
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.minCompactionSize = minCompactionSize;
+        try {
+            open();
+        } catch (Exception e) {
+            close();
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + logFile.getName() + " (" + logFile + ")";
+    }
+
+    private void open() throws IOException {
+        LOGGER.debug("Opening {}", this);
+        logFile.getParentFile().mkdirs();
+        if (compactedLogFile.isFile()) {
+            // A compaction did not complete. The log is only removed once the compacted log has been completely written
+            if (logFile.isFile()) {
+                delete(compactedLogFile);
+            } else {
+                rename(compactedLogFile, logFile);
+            }
+        }
+
+        log = new RandomAccessFile(logFile, "rw");
+        logChannel = log.getChannel();
+        logLength = logChannel.size();
+        boolean logValid = logLength >= LOG_HEADER_SIZE && log.readInt() == LOG_MAGIC && log.readInt() == VERSION;
+        if (!logValid) {
+            if (logLength > 0) {
+                LOGGER.warn("{} is corrupt. Discarding.", this);
+            }
+            log.setLength(0);
+            log.writeInt(LOG_MAGIC);
+            log.writeInt(VERSION);
+            logLength = LOG_HEADER_SIZE;
+        }
+
+        indexAccess = new RandomAccessFile(indexFile, "rw");
+        long indexedLength = logValid ? readIndexHeader() : -1;
+        if (indexedLength >= LOG_HEADER_SIZE && indexedLength <= logLength) {
+            mapIndex(capacity);
+            if (indexedLength < logLength) {
+                markDirty();
+                replay(indexedLength);
+            }
+        } else {
+            capacity = MIN_CAPACITY;
+            mapIndex(capacity);
+            markDirty();
+            clearIndex();
+            garbage = 0;
+            replay(LOG_HEADER_SIZE);
+        }
+    }
+
+    /**
+     * Reads the header of the index, returning the length of the log covered by the index or -1 when the index cannot be used.
+     */
+    private long readIndexHeader() throws IOException {
+        if (indexAccess.length() < INDEX_HEADER_SIZE) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+        readFully(indexAccess.getChannel(), header, 0);
+        int storedCapacity = header.getInt(INDEX_CAPACITY);
+        if (header.getInt(0) != INDEX_MAGIC || header.getInt(4) != VERSION || header.getInt(INDEX_STATE) != CLEAN
+            || storedCapacity < MIN_CAPACITY || Integer.bitCount(storedCapacity) != 1 || indexAccess.length() < indexSize(storedCapacity)) {
+            return -1;
+        }
+        capacity = storedCapacity;
+        live = header.getInt(INDEX_LIVE);
+        used = header.getInt(INDEX_USED);
+        garbage = header.getLong(INDEX_GARBAGE);
+        return header.getLong(INDEX_LOG_LENGTH);
+    }
+
+    private void mapIndex(int capacity) throws IOException {
+        this.capacity = capacity;
+        index = indexAccess.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, indexSize(capacity));
+    }
+
+    private static long indexSize(int capacity) {
+        return INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE;
+    }
+
+    private void clearIndex() {
+        for (int slot = 0; slot < capacity; slot++) {
+            index.putLong(slotPosition(slot), 0);
+            index.putLong(slotPosition(slot) + 8, EMPTY);
+        }
+        live = 0;
+        used = 0;
+    }
+
+    private void markDirty() {
+        if (!dirty) {
+            index.putInt(INDEX_STATE, DIRTY);
+            index.force();
+            dirty = true;
+        }
+    }
+
+    /**
+     * Adds the records of the log starting at the given position to the index, discarding the remainder of the log from the first record that is not valid.
+     */
+    private void replay(long start) throws IOException {
+        logChannel.position(start);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(logChannel), 64 * 1024));
+        long position = start;
+        while (position < logLength) {
+            int keyLength;
+            int valueLength;
+            byte[] body;
+            try {
+                keyLength = input.readInt();
+                valueLength = input.readInt();
+                if (keyLength < 0 || valueLength < TOMBSTONE || position + recordSize(keyLength, valueLength) > logLength) {
+                    break;
+                }
+                body = new byte[keyLength + Math.max(valueLength, 0)];
+                input.readFully(body);
+                checksum.reset();
+                checksum.update(header(keyLength, valueLength));
+                checksum.update(body);
+                if (input.readInt() != (int) checksum.getValue()) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+            byte[] key = Arrays.copyOf(body, keyLength);
+            if (valueLength == TOMBSTONE) {
+                removeFromIndex(hash(key), key);
+            } else {
+                addToIndex(hash(key), key, position);
+            }
+            position += recordSize(keyLength, valueLength);
+        }
+        if (position < logLength) {
+            LOGGER.warn("{} has an incomplete entry at offset {}. Discarding the remainder of the log.", this, position);
+            logChannel.truncate(position);
+            logLength = position;
+        }
+    }
+
+    @Override
+    public V get(K key) {
+        try {
+            byte[] keyBytes = serializeKey(key);
+            int slot = findSlot(hash(keyBytes), keyBytes);
+            if (slot < 0) {
+                return null;
+            }
+            // findSlot() leaves the header of the matching record in recordHeader
+            long offset = index.getLong(slotPosition(slot) + 8);
+            ByteBuffer value = ByteBuffer.allocate(recordHeader.getInt(4));
+            readFully(logChannel, value, offset + RECORD_HEADER_SIZE + keyBytes.length);
+            return valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(value.array())));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            markDirty();
+            byte[] keyBytes = serializeKey(key);
+            recordBuffer.reset();
+            recordBuffer.write(EMPTY_RECORD_HEADER);
+            recordBuffer.write(keyBytes);
+            valueSerializer.write(valueEncoder, value);
+            valueEncoder.flush();
+            long offset = append(keyBytes.length, recordBuffer.size() - RECORD_HEADER_SIZE - keyBytes.length);
+            addToIndex(hash(keyBytes), keyBytes, offset);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            byte[] keyBytes = serializeKey(key);
+            long hash = hash(keyBytes);
+            if (findSlot(hash, keyBytes) < 0) {
+                return;
+            }
+            markDirty();
+            recordBuffer.reset();
+            recordBuffer.write(EMPTY_RECORD_HEADER);
+            recordBuffer.write(keyBytes);
+            append(keyBytes.length, TOMBSTONE);
+            removeFromIndex(hash, keyBytes);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        LOGGER.debug("Closing {}", this);
+        try {
+            if (dirty) {
+                if (logLength >= minCompactionSize && garbage * 2 > logLength) {
+                    compact();
+                }
+                logChannel.force(false);
+                index.putInt(0, INDEX_MAGIC);
+                index.putInt(4, VERSION);
+                index.putInt(INDEX_CAPACITY, capacity);
+                index.putInt(INDEX_LIVE, live);
+                index.putInt(INDEX_USED, used);
+                index.putLong(INDEX_LOG_LENGTH, logLength);
+                index.putLong(INDEX_GARBAGE, garbage);
+                index.putInt(INDEX_STATE, CLEAN);
+                index.force();
+                dirty = false;
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not close %s.", this), e);
+        } finally {
+            index = null;
+            CompositeStoppable.stoppable(log, indexAccess).stop();
+        }
+    }
+
+    /**
+     * Copies the live entries to a new log, in the order they were written, and replaces the log with it.
+     */
+    private void compact() throws IOException {
+        LOGGER.debug("Compacting {}", this);
+        long[] offsets = new long[live];
+        int count = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            long offset = index.getLong(slotPosition(slot) + 8);
+            if (offset != EMPTY && offset != DELETED) {
+                offsets[count++] = offset;
+            }
+        }
+        Arrays.sort(offsets, 0, count);
+
+        long[] hashes = new long[count];
+        long compactedLength = LOG_HEADER_SIZE;
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compactedLogFile), 64 * 1024));
+        try {
+            output.writeInt(LOG_MAGIC);
+            output.writeInt(VERSION);
+            for (int i = 0; i < count; i++) {
+                readRecordHeader(offsets[i]);
+                int keyLength = recordHeader.getInt(0);
+                ByteBuffer record = ByteBuffer.allocate((int) recordSize(keyLength, recordHeader.getInt(4)));
+                readFully(logChannel, record, offsets[i]);
+                output.write(record.array());
+                hashes[i] = KEY_HASH.hashBytes(record.array(), RECORD_HEADER_SIZE, keyLength).asLong();
+                offsets[i] = compactedLength;
+                compactedLength += record.capacity();
+            }
+            output.flush();
+        } finally {
+            output.close();
+        }
+
+        // Replace the log. The compacted log is used when the process stops before it has been renamed, and the index is rebuilt as it is marked dirty.
+        log.close();
+        delete(logFile);
+        rename(compactedLogFile, logFile);
+        log = new RandomAccessFile(logFile, "rw");
+        logChannel = log.getChannel();
+        logLength = compactedLength;
+        garbage = 0;
+        clearIndex();
+        for (int i = 0; i < count; i++) {
+            insert(hashes[i], offsets[i]);
+        }
+    }
+
+    private long append(int keyLength, int valueLength) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(recordBuffer.buffer());
+        header.putInt(0, keyLength);
+        header.putInt(4, valueLength);
+        checksum.reset();
+        checksum.update(recordBuffer.buffer(), 0, recordBuffer.size());
+        int value = (int) checksum.getValue();
+        recordBuffer.write(value >>> 24);
+        recordBuffer.write(value >>> 16);
+        recordBuffer.write(value >>> 8);
+        recordBuffer.write(value);
+
+        long offset = logLength;
+        ByteBuffer record = ByteBuffer.wrap(recordBuffer.buffer(), 0, recordBuffer.size());
+        while (record.hasRemaining()) {
+            logChannel.write(record, offset + record.position());
+        }
+        logLength += recordBuffer.size();
+        return offset;
+    }
+
+    private void addToIndex(long hash, byte[] key, long offset) throws IOException {
+        int slot = findSlot(hash, key);
+        if (slot >= 0) {
+            garbage += recordSize(recordHeader.getInt(0), recordHeader.getInt(4));
+            index.putLong(slotPosition(slot) + 8, offset);
+        } else {
+            insert(hash, offset);
+            if (used > capacity / 4 * 3) {
+                // Grow the table, unless most of the used slots are of removed entries
+                rehash(live > used / 2 ? capacity * 2 : capacity);
+            }
+        }
+    }
+
+    private void removeFromIndex(long hash, byte[] key) throws IOException {
+        int slot = findSlot(hash, key);
+        if (slot >= 0) {
+            garbage += recordSize(recordHeader.getInt(0), recordHeader.getInt(4));
+            index.putLong(slotPosition(slot) + 8, DELETED);
+            live--;
+        }
+        garbage += recordSize(key.length, TOMBSTONE);
+    }
+
+    /**
+     * Returns the slot of the given key, or -1 when the key is not in the index. When the key is found, the header of its record is left in {@link #recordHeader}.
+     */
+    private int findSlot(long hash, byte[] key) throws IOException {
+        for (int slot = bucket(hash); ; slot = (slot + 1) & (capacity - 1)) {
+            int position = slotPosition(slot);
+            long offset = index.getLong(position + 8);
+            if (offset == EMPTY) {
+                return -1;
+            }
+            if (offset != DELETED && index.getLong(position) == hash && keyMatches(offset, key)) {
+                return slot;
+            }
+        }
+    }
+
+    private void insert(long hash, long offset) {
+        for (int slot = bucket(hash); ; slot = (slot + 1) & (capacity - 1)) {
+            int position = slotPosition(slot);
+            long existing = index.getLong(position + 8);
+            if (existing == EMPTY || existing == DELETED) {
+                if (existing == EMPTY) {
+                    used++;
+                }
+                live++;
+                index.putLong(position, hash);
+                index.putLong(position + 8, offset);
+                return;
+            }
+        }
+    }
+
+    private void rehash(int newCapacity) throws IOException {
+        long[] hashes = new long[live];
+        long[] offsets = new long[live];
+        int count = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            long offset = index.getLong(slotPosition(slot) + 8);
+            if (offset != EMPTY && offset != DELETED) {
+                hashes[count] = index.getLong(slotPosition(slot));
+                offsets[count] = offset;
+                count++;
+            }
+        }
+        mapIndex(newCapacity);
+        clearIndex();
+        for (int i = 0; i < count; i++) {
+            insert(hashes[i], offsets[i]);
+        }
+    }
+
+    private boolean keyMatches(long offset, byte[] key) throws IOException {
+        readRecordHeader(offset);
+        if (recordHeader.getInt(0) != key.length) {
+            return false;
+        }
+        ByteBuffer storedKey = ByteBuffer.allocate(key.length);
+        readFully(logChannel, storedKey, offset + RECORD_HEADER_SIZE);
+        return Arrays.equals(storedKey.array(), key);
+    }
+
+    private void readRecordHeader(long offset) throws IOException {
+        recordHeader.clear();
+        readFully(logChannel, recordHeader, offset);
+    }
+
+    private int bucket(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static long recordSize(int keyLength, int valueLength) {
+        return RECORD_HEADER_SIZE + (long) keyLength + Math.max(valueLength, 0) + CHECKSUM_SIZE;
+    }
+
+    private static byte[] header(int keyLength, int valueLength) {
+        return ByteBuffer.allocate(RECORD_HEADER_SIZE).putInt(keyLength).putInt(valueLength).array();
+    }
+
+    private static long hash(byte[] key) {
+        return KEY_HASH.hashBytes(key).asLong();
+    }
+
+    private byte[] serializeKey(K key) throws Exception {
+        keyBuffer.reset();
+        keySerializer.write(keyEncoder, key);
+        keyEncoder.flush();
+        return keyBuffer.toByteArray();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void delete(File file) throws IOException {
+        if (!file.delete()) {
+            throw new IOException(String.format("Could not delete %s.", file));
+        }
+    }
+
+    private static void rename(File from, File to) throws IOException {
+        if (!from.renameTo(to)) {
+            throw new IOException(String.format("Could not rename %s to %s.", from, to));
+        }
+    }
+
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
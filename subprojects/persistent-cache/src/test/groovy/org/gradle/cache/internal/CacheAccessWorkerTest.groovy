@@ -17,6 +17,7 @@
 package org.gradle.cache.internal
 
 import org.gradle.cache.CacheAccess
+import org.gradle.cache.MultiProcessSafePersistentIndexedCache
 import org.gradle.test.fixtures.concurrent.ConcurrentSpec
 
 class CacheAccessWorkerTest extends ConcurrentSpec {
@@ -198,4 +199,65 @@ class CacheAccessWorkerTest extends ConcurrentSpec {
         def e = thrown(RuntimeException)
         e == failure
     }
+
+    def "writes only the most recent update of each key of a batch"() {
+        given:
+        def persistentCache = Mock(MultiProcessSafePersistentIndexedCache)
+        def otherPersistentCache = Mock(MultiProcessSafePersistentIndexedCache)
+        def cache = new AsyncCacheAccessDecoratedCache(cacheAccessWorker, persistentCache)
+        def otherCache = new AsyncCacheAccessDecoratedCache(cacheAccessWorker, otherPersistentCache)
+        def completion = Mock(Runnable)
+        cache.putLater("a", "1", completion)
+        cache.putLater("b", "2", completion)
+        otherCache.putLater("a", "3", completion)
+        cache.putLater("a", "4", completion)
+        cache.removeLater("b", completion)
+
+        when:
+        start(cacheAccessWorker)
+        cacheAccessWorker.flush()
+
+        then:
+        1 * persistentCache.put("a", "4")
+        1 * persistentCache.remove("b")
+        1 * otherPersistentCache.put("a", "3")
+        5 * completion.run()
+        0 * persistentCache._
+        0 * otherPersistentCache._
+
+        and:
+        cacheAccessWorker.batches == 1
+        cacheAccessWorker.updatesWritten == 3
+        cacheAccessWorker.updatesCoalesced == 2
+        cacheAccessWorker.largestBatch == 3
+        cacheAccessWorker.maxQueueDepth >= 5
+
+        cleanup:
+        cacheAccessWorker?.stop()
+    }
+
+    def "writes pending updates before running a read"() {
+        given:
+        def persistentCache = Mock(MultiProcessSafePersistentIndexedCache)
+        def cache = new AsyncCacheAccessDecoratedCache(cacheAccessWorker, persistentCache)
+        cache.putLater("a", "1", Stub(Runnable))
+        cache.putLater("a", "2", Stub(Runnable))
+
+        when:
+        start(cacheAccessWorker)
+        def result = cache.get("a")
+
+        then:
+        result == "2"
+
+        and:
+        1 * persistentCache.put("a", "2")
+
+        then:
+        1 * persistentCache.get("a") >> "2"
+        0 * persistentCache._
+
+        cleanup:
+        cacheAccessWorker?.stop()
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal
+
+import spock.lang.Specification
+
+class FileLockWaitStatisticsTest extends Specification {
+    def statistics = new FileLockWaitStatistics()
+
+    def "collects wait times into buckets"() {
+        when:
+        statistics.lockAcquired(0)
+        statistics.lockAcquired(5)
+        statistics.lockAcquired(9)
+        statistics.lockAcquired(250)
+        statistics.lockAcquired(60000)
+        def histogram = statistics.snapshotAndReset()
+
+        then:
+        histogram.bucketCounts == [1, 2, 0, 1, 0, 1] as long[]
+        histogram.lockAcquisitions == 5
+        histogram.totalWaitMillis == 60264
+        histogram.maxWaitMillis == 60000
+    }
+
+    def "starts collecting again after a snapshot"() {
+        given:
+        statistics.lockAcquired(20)
+        statistics.snapshotAndReset()
+
+        when:
+        statistics.lockAcquired(2)
+        def histogram = statistics.snapshotAndReset()
+
+        then:
+        histogram.bucketCounts == [0, 1, 0, 0, 0, 0] as long[]
+        histogram.lockAcquisitions == 1
+        histogram.maxWaitMillis == 2
+    }
+
+    def "counts timeouts separately from wait times"() {
+        when:
+        statistics.lockAcquired(5)
+        statistics.lockTimedOut()
+        def histogram = statistics.snapshotAndReset()
+
+        then:
+        histogram.lockAcquisitions == 1
+        histogram.totalWaitMillis == 5
+        histogram.timeouts == 1
+
+        when:
+        histogram = statistics.snapshotAndReset()
+
+        then:
+        histogram.timeouts == 0
+    }
+}
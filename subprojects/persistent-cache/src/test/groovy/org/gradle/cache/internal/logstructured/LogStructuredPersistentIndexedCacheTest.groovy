@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class LogStructuredPersistentIndexedCacheTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def cacheFile = tmpDir.file("cache")
+    def logFile = tmpDir.file("cache.log")
+    def indexFile = tmpDir.file("cache.idx")
+
+    def "returns null for entries that have not been added"() {
+        def cache = cache()
+
+        expect:
+        cache.get("unknown") == null
+
+        cleanup:
+        cache.close()
+    }
+
+    def "can read back added, replaced and removed entries after reopening"() {
+        def cache = cache()
+
+        when:
+        (1..2000).each { cache.put("key$it".toString(), it) }
+        cache.put("key1", 100)
+        cache.remove("key2")
+        cache.remove("unknown")
+
+        then:
+        cache.get("key1") == 100
+        cache.get("key2") == null
+        cache.get("key2000") == 2000
+
+        when:
+        cache.close()
+        cache = cache()
+
+        then:
+        cache.get("key1") == 100
+        cache.get("key2") == null
+        (3..2000).every { cache.get("key$it".toString()) == it }
+
+        cleanup:
+        cache.close()
+    }
+
+    def "compacts the log when most of it holds replaced or removed entries"() {
+        def cache = cache(1024)
+        (1..1000).each { cache.put("key$it".toString(), it) }
+        (1..1000).each { cache.put("key$it".toString(), -it) }
+        (1..500).each { cache.remove("key$it".toString()) }
+        def lengthBefore = logFile.length()
+
+        when:
+        cache.close()
+        cache = cache(1024)
+
+        then:
+        logFile.length() < lengthBefore / 4
+        (1..500).every { cache.get("key$it".toString()) == null }
+        (501..1000).every { cache.get("key$it".toString()) == -it }
+
+        cleanup:
+        cache.close()
+    }
+
+    def "rebuilds the index when it was not closed cleanly"() {
+        def cache = cache()
+        (1..100).each { cache.put("key$it".toString(), it) }
+        cache.remove("key1")
+        cache.close()
+        indexFile.bytes = new byte[16]
+
+        when:
+        cache = cache()
+
+        then:
+        cache.get("key1") == null
+        (2..100).every { cache.get("key$it".toString()) == it }
+
+        cleanup:
+        cache.close()
+    }
+
+    def "discards an entry that was not completely written"() {
+        def cache = cache()
+        cache.put("key1", 1)
+        cache.close()
+        def length = logFile.length()
+        cache = cache()
+        cache.put("key2", 2)
+        cache.close()
+        def log = new RandomAccessFile(logFile, "rw")
+        log.setLength(logFile.length() - 2)
+        log.close()
+
+        when:
+        cache = cache()
+
+        then:
+        cache.get("key1") == 1
+        cache.get("key2") == null
+        logFile.length() == length
+
+        when:
+        cache.put("key2", 3)
+        cache.close()
+        cache = cache()
+
+        then:
+        cache.get("key2") == 3
+
+        cleanup:
+        cache.close()
+    }
+
+    def "ignores a compacted log that was not completely written"() {
+        def cache = cache()
+        cache.put("key1", 1)
+        cache.close()
+        tmpDir.file("cache.log.compacted") << "broken"
+
+        when:
+        cache = cache()
+
+        then:
+        cache.get("key1") == 1
+        !tmpDir.file("cache.log.compacted").exists()
+
+        cleanup:
+        cache.close()
+    }
+
+    def "discards a log that is not a cache log"() {
+        logFile << "not a log"
+
+        when:
+        def cache = cache()
+
+        then:
+        cache.get("key1") == null
+
+        when:
+        cache.put("key1", 1)
+        cache.close()
+        cache = cache()
+
+        then:
+        cache.get("key1") == 1
+
+        cleanup:
+        cache.close()
+    }
+
+    private LogStructuredPersistentIndexedCache<String, Integer> cache(long minCompactionSize = LogStructuredPersistentIndexedCache.DEFAULT_MIN_COMPACTION_SIZE) {
+        new LogStructuredPersistentIndexedCache<String, Integer>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.INTEGER_SERIALIZER, minCompactionSize)
+    }
+}
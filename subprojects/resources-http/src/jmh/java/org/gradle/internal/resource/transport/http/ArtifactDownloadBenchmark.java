@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.gradle.authentication.Authentication;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads the artifacts of a cold cache resolution from a local HTTP server, the way a build would: with a fresh connector per build and a number of
+ * concurrent downloads. Compares connections owned by each build with connections kept by the connection pool between builds.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ArtifactDownloadBenchmark {
+    private static final int ARTIFACTS = 2000;
+
+    @Param({"4", "16"})
+    int concurrentDownloads;
+
+    @Param({"false", "true"})
+    boolean pooled;
+
+    HttpServer server;
+    ExecutorService downloadExecutor;
+    HttpConnectionPool connectionPool;
+    HttpSettings settings;
+    List<URI> artifacts;
+
+    @Setup
+    public void setup() throws IOException {
+        final byte[][] contents = new byte[ARTIFACTS][];
+        Random random = new Random(1234L);
+        for (int i = 0; i < ARTIFACTS; i++) {
+            // Mostly small POMs and jars, with the occasional large jar
+            contents[i] = new byte[i % 2 == 0 ? 2048 : random.nextInt(10) == 0 ? 512 * 1024 : 32 * 1024];
+            random.nextBytes(contents[i]);
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                byte[] content = contents[Integer.parseInt(path.substring(path.lastIndexOf('/') + 1))];
+                exchange.sendResponseHeaders(200, content.length);
+                OutputStream outputStream = exchange.getResponseBody();
+                outputStream.write(content);
+                outputStream.close();
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(32));
+        server.start();
+
+        artifacts = new ArrayList<URI>(ARTIFACTS);
+        for (int i = 0; i < ARTIFACTS; i++) {
+            artifacts.add(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/repo/artifact/" + i));
+        }
+        downloadExecutor = Executors.newFixedThreadPool(concurrentDownloads);
+        connectionPool = new HttpConnectionPool(concurrentDownloads, HttpConnectionPool.DEFAULT_MAX_CONNECTIONS, new DefaultExecutorFactory());
+        settings = DefaultHttpSettings.builder()
+            .withAuthenticationSettings(Collections.<Authentication>emptyList())
+            .withSslContextFactory(new DefaultSslContextFactory())
+            .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        downloadExecutor.shutdownNow();
+        connectionPool.close();
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    @Benchmark
+    public long downloadArtifacts() throws Exception {
+        HttpClientHelper http = new HttpClientHelper(settings, pooled ? connectionPool : null);
+        try {
+            final HttpResourceAccessor accessor = new HttpResourceAccessor(http);
+            List<Future<Long>> downloads = new ArrayList<Future<Long>>(ARTIFACTS);
+            for (final URI artifact : artifacts) {
+                downloads.add(downloadExecutor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        HttpResponseResource resource = accessor.openResource(artifact, false);
+                        try {
+                            InputStream inputStream = resource.openStream();
+                            try {
+                                long length = 0;
+                                byte[] buffer = new byte[8192];
+                                for (int read = inputStream.read(buffer); read >= 0; read = inputStream.read(buffer)) {
+                                    length += read;
+                                }
+                                return length;
+                            } finally {
+                                inputStream.close();
+                            }
+                        } finally {
+                            resource.close();
+                        }
+                    }
+                }));
+            }
+            long total = 0;
+            for (Future<Long> download : downloads) {
+                total += download.get();
+            }
+            return total;
+        } finally {
+            http.close();
+        }
+    }
+}
@@ -74,6 +74,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.net.ProxySelector;
 import java.util.Collection;
@@ -119,8 +120,20 @@ public class HttpClientConfigurer {
         builder.setMaxConnPerRoute(MAX_HTTP_CONNECTIONS);
     }
 
+    /**
+     * Uses connections from the given pool instead of connections owned by the client.
+     */
+    public void configureConnectionPool(HttpClientBuilder builder, HttpConnectionPool connectionPool) {
+        builder.setConnectionManager(connectionPool.getConnectionManager(httpSettings.getSslContextFactory(), httpSettings.getHostnameVerifier()));
+        builder.setConnectionManagerShared(true);
+    }
+
     private void configureSslSocketConnectionFactory(HttpClientBuilder builder, SslContextFactory sslContextFactory, HostnameVerifier hostnameVerifier) {
-        builder.setSSLSocketFactory(new SSLConnectionSocketFactory(sslContextFactory.createSslContext(), SSL_PROTOCOLS, null, hostnameVerifier));
+        builder.setSSLSocketFactory(createSslSocketFactory(sslContextFactory.createSslContext(), hostnameVerifier));
+    }
+
+    static SSLConnectionSocketFactory createSslSocketFactory(SSLContext sslContext, HostnameVerifier hostnameVerifier) {
+        return new SSLConnectionSocketFactory(sslContext, SSL_PROTOCOLS, null, hostnameVerifier);
     }
 
     private void configureAuthSchemeRegistry(HttpClientBuilder builder) {
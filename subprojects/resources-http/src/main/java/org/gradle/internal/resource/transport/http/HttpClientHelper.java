@@ -36,6 +36,7 @@ import org.apache.http.protocol.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Locale;
@@ -49,6 +50,7 @@ public class HttpClientHelper implements Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientHelper.class);
     private CloseableHttpClient client;
     private final HttpSettings settings;
+    private final HttpConnectionPool connectionPool;
 
     /**
      * Maintains a queue of contexts which are shared between threads when authentication
@@ -60,7 +62,15 @@ public class HttpClientHelper implements Closeable {
     private final ConcurrentLinkedQueue<HttpContext> sharedContext;
 
     public HttpClientHelper(HttpSettings settings) {
+        this(settings, null);
+    }
+
+    /**
+     * Creates a helper that uses connections from the given pool, when not null. Otherwise, the helper opens its own connections and closes them when closed.
+     */
+    public HttpClientHelper(HttpSettings settings, @Nullable HttpConnectionPool connectionPool) {
         this.settings = settings;
+        this.connectionPool = connectionPool;
         if (!settings.getAuthenticationSettings().isEmpty()) {
             sharedContext = new ConcurrentLinkedQueue<HttpContext>();
         } else {
@@ -164,7 +174,11 @@ public class HttpClientHelper implements Closeable {
     private synchronized CloseableHttpClient getClient() {
         if (client == null) {
             HttpClientBuilder builder = HttpClientBuilder.create();
-            new HttpClientConfigurer(settings).configure(builder);
+            HttpClientConfigurer configurer = new HttpClientConfigurer(settings);
+            configurer.configure(builder);
+            if (connectionPool != null) {
+                configurer.configureConnectionPool(builder, connectionPool);
+            }
             this.client = builder.build();
         }
         return client;
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import org.apache.http.HttpHost;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedScheduledExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the connections to remote repositories open between the requests of a build, and between the builds run by the same process.
+ * The number of connections opened to a single host bounds the number of requests made concurrently to that host.
+ *
+ * <p>Connections are shared by clients that use the same {@link SslContextFactory} and hostname verifier. The SSL context is requested from
+ * the factory each time a connection is opened, so connections opened after the SSL system properties have changed use the new settings.
+ * The limit on the total number of connections applies to each such configuration. Usually all repositories share one configuration.</p>
+ *
+ * <p>Connections that have been idle for a minute are closed in the background.</p>
+ */
+public class HttpConnectionPool implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpConnectionPool.class);
+    public static final String MAX_CONNECTIONS_PER_HOST_SYSTEM_PROPERTY = "org.gradle.internal.http.maxConnectionsPerHost";
+    public static final String MAX_CONNECTIONS_SYSTEM_PROPERTY = "org.gradle.internal.http.maxConnections";
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+    public static final int DEFAULT_MAX_CONNECTIONS = 200;
+    private static final long IDLE_CONNECTION_TIMEOUT_SECONDS = 60;
+    private static final long EVICTION_INTERVAL_SECONDS = 15;
+
+    private final int maxConnectionsPerHost;
+    private final int maxConnections;
+    private final List<SharedConnectionManager> connectionManagers = new ArrayList<SharedConnectionManager>();
+    private final ManagedScheduledExecutor evictionExecutor;
+
+    public HttpConnectionPool(ExecutorFactory executorFactory) {
+        this(Integer.getInteger(MAX_CONNECTIONS_PER_HOST_SYSTEM_PROPERTY, DEFAULT_MAX_CONNECTIONS_PER_HOST), Integer.getInteger(MAX_CONNECTIONS_SYSTEM_PROPERTY, DEFAULT_MAX_CONNECTIONS), executorFactory);
+    }
+
+    /**
+     * @param maxConnectionsPerHost the maximum number of connections to a single host.
+     * @param maxConnections the maximum number of connections shared by the clients that use the same SSL configuration.
+     */
+    public HttpConnectionPool(int maxConnectionsPerHost, int maxConnections, ExecutorFactory executorFactory) {
+        if (maxConnectionsPerHost < 1) {
+            LOGGER.warn("Invalid value for java system property '{}': {}. Default value '{}' will be used.", MAX_CONNECTIONS_PER_HOST_SYSTEM_PROPERTY, maxConnectionsPerHost, DEFAULT_MAX_CONNECTIONS_PER_HOST);
+            maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+        }
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.maxConnections = Math.max(maxConnections, maxConnectionsPerHost);
+        this.evictionExecutor = executorFactory.createScheduled("HTTP connection eviction", 1);
+        evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                closeIdleConnections();
+            }
+        }, EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the connection manager to use for connections made with the given SSL configuration. The returned connection manager must not be shut down by the caller.
+     */
+    public synchronized HttpClientConnectionManager getConnectionManager(SslContextFactory sslContextFactory, HostnameVerifier hostnameVerifier) {
+        for (SharedConnectionManager connectionManager : connectionManagers) {
+            if (connectionManager.sslContextFactory == sslContextFactory && connectionManager.hostnameVerifier == hostnameVerifier) {
+                return connectionManager.manager;
+            }
+        }
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory>create()
+            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+            .register("https", new CurrentSslConnectionSocketFactory(sslContextFactory, hostnameVerifier))
+            .build());
+        manager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+        manager.setMaxTotal(maxConnections);
+        connectionManagers.add(new SharedConnectionManager(sslContextFactory, hostnameVerifier, manager));
+        return manager;
+    }
+
+    synchronized void closeIdleConnections() {
+        for (SharedConnectionManager connectionManager : connectionManagers) {
+            connectionManager.manager.closeExpiredConnections();
+            connectionManager.manager.closeIdleConnections(IDLE_CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        evictionExecutor.stop();
+        synchronized (this) {
+            for (SharedConnectionManager connectionManager : connectionManagers) {
+                connectionManager.manager.shutdown();
+            }
+            connectionManagers.clear();
+        }
+    }
+
+    private static class SharedConnectionManager {
+        private final SslContextFactory sslContextFactory;
+        private final HostnameVerifier hostnameVerifier;
+        private final PoolingHttpClientConnectionManager manager;
+
+        SharedConnectionManager(SslContextFactory sslContextFactory, HostnameVerifier hostnameVerifier, PoolingHttpClientConnectionManager manager) {
+            this.sslContextFactory = sslContextFactory;
+            this.hostnameVerifier = hostnameVerifier;
+            this.manager = manager;
+        }
+    }
+
+    /**
+     * Opens SSL connections using the SSL context that the factory currently provides.
+     */
+    private static class CurrentSslConnectionSocketFactory implements LayeredConnectionSocketFactory {
+        private final SslContextFactory sslContextFactory;
+        private final HostnameVerifier hostnameVerifier;
+        private SSLContext sslContext;
+        private SSLConnectionSocketFactory delegate;
+
+        CurrentSslConnectionSocketFactory(SslContextFactory sslContextFactory, HostnameVerifier hostnameVerifier) {
+            this.sslContextFactory = sslContextFactory;
+            this.hostnameVerifier = hostnameVerifier;
+        }
+
+        private synchronized SSLConnectionSocketFactory getDelegate() {
+            SSLContext current = sslContextFactory.createSslContext();
+            if (current != sslContext) {
+                sslContext = current;
+                delegate = HttpClientConfigurer.createSslSocketFactory(current, hostnameVerifier);
+            }
+            return delegate;
+        }
+
+        @Override
+        public Socket createSocket(HttpContext context) throws IOException {
+            return getDelegate().createSocket(context);
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress, InetSocketAddress localAddress, HttpContext context) throws IOException {
+            return getDelegate().connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+            return getDelegate().createLayeredSocket(socket, target, port, context);
+        }
+    }
+}
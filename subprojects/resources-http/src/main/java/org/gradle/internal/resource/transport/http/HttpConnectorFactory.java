@@ -39,9 +39,11 @@ public class HttpConnectorFactory implements ResourceConnectorFactory {
     );
 
     private SslContextFactory sslContextFactory;
+    private final HttpConnectionPool connectionPool;
 
-    public HttpConnectorFactory(SslContextFactory sslContextFactory) {
+    public HttpConnectorFactory(SslContextFactory sslContextFactory, HttpConnectionPool connectionPool) {
         this.sslContextFactory = sslContextFactory;
+        this.connectionPool = connectionPool;
     }
 
     @Override
@@ -59,7 +61,8 @@ public class HttpConnectorFactory implements ResourceConnectorFactory {
         HttpClientHelper http = new HttpClientHelper(DefaultHttpSettings.builder()
             .withAuthenticationSettings(connectionDetails.getAuthentications())
             .withSslContextFactory(sslContextFactory)
-            .build()
+            .build(),
+            connectionPool
         );
         HttpResourceAccessor accessor = new HttpResourceAccessor(http);
         HttpResourceLister lister = new HttpResourceLister(accessor);
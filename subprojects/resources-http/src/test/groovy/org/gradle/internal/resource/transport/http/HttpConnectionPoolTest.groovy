@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager
+import org.apache.http.ssl.SSLContexts
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedScheduledExecutor
+import spock.lang.Specification
+
+import javax.net.ssl.HostnameVerifier
+import java.util.concurrent.TimeUnit
+
+class HttpConnectionPoolTest extends Specification {
+    def evictionExecutor = Mock(ManagedScheduledExecutor)
+    def executorFactory = Stub(ExecutorFactory) {
+        createScheduled(_, 1) >> evictionExecutor
+    }
+    def pool = new HttpConnectionPool(5, 50, executorFactory)
+    def sslContextFactory = Stub(SslContextFactory) {
+        createSslContext() >>> [SSLContexts.createDefault(), SSLContexts.createDefault()]
+    }
+    def hostnameVerifier = Stub(HostnameVerifier)
+
+    def cleanup() {
+        pool.close()
+    }
+
+    def "shares connections between clients using the same SSL configuration"() {
+        expect:
+        pool.getConnectionManager(sslContextFactory, hostnameVerifier).is(pool.getConnectionManager(sslContextFactory, hostnameVerifier))
+    }
+
+    def "does not share connections between clients using different SSL configurations"() {
+        expect:
+        !pool.getConnectionManager(sslContextFactory, hostnameVerifier).is(pool.getConnectionManager(Stub(SslContextFactory), hostnameVerifier))
+        !pool.getConnectionManager(sslContextFactory, hostnameVerifier).is(pool.getConnectionManager(sslContextFactory, Stub(HostnameVerifier)))
+    }
+
+    def "limits the number of connections per host"() {
+        when:
+        def manager = pool.getConnectionManager(sslContextFactory, hostnameVerifier) as PoolingHttpClientConnectionManager
+
+        then:
+        manager.defaultMaxPerRoute == 5
+        manager.maxTotal == 50
+    }
+
+    def "uses the default limit when the configured limit is invalid"() {
+        given:
+        def pool = new HttpConnectionPool(0, 1, executorFactory)
+
+        when:
+        def manager = pool.getConnectionManager(sslContextFactory, hostnameVerifier) as PoolingHttpClientConnectionManager
+
+        then:
+        manager.defaultMaxPerRoute == HttpConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST
+        manager.maxTotal == HttpConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST
+
+        cleanup:
+        pool.close()
+    }
+
+    def "closes idle connections in the background until closed"() {
+        Runnable eviction = null
+        def executorFactory = Stub(ExecutorFactory) {
+            createScheduled(_, 1) >> evictionExecutor
+        }
+
+        when:
+        def pool = new HttpConnectionPool(5, 50, executorFactory)
+
+        then:
+        1 * evictionExecutor.scheduleWithFixedDelay(_, _, _, TimeUnit.SECONDS) >> { Runnable runnable, long initialDelay, long delay, TimeUnit unit ->
+            eviction = runnable
+            null
+        }
+
+        when:
+        pool.getConnectionManager(sslContextFactory, hostnameVerifier)
+        eviction.run()
+
+        then:
+        noExceptionThrown()
+
+        when:
+        pool.close()
+
+        then:
+        1 * evictionExecutor.stop()
+    }
+}